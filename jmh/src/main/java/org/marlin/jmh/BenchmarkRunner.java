@@ -0,0 +1,74 @@
+package org.marlin.jmh;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * JMH launcher: prepends the patched MarlinFX jar to the boot classpath of
+ * forked JVMs (JavaFX 8 lies in the extension classpath) and enables the gc
+ * profiler to report allocation rates.
+ *
+ * Usage: java -jar target/benchmarks.jar [JMH options]
+ * (-Dmarlin.jar=path overrides the MarlinFX jar location)
+ */
+public final class BenchmarkRunner {
+
+    private static final String PROPS = "/marlin-jmh.properties";
+
+    private BenchmarkRunner() {
+        // no instance
+    }
+
+    public static void main(final String[] args) throws RunnerException,
+                                                        CommandLineOptionException,
+                                                        IOException
+    {
+        final String marlinJar = getMarlinJar();
+
+        if (!new File(marlinJar).isFile()) {
+            System.err.println("MarlinFX jar not found: " + marlinJar
+                + " (run 'mvn install' in the parent project or set -Dmarlin.jar)");
+            System.exit(1);
+        }
+
+        final CommandLineOptions cmdOptions = new CommandLineOptions(args);
+
+        final OptionsBuilder builder = new OptionsBuilder();
+        if (cmdOptions.getIncludes().isEmpty()) {
+            builder.include(RasterizerBenchmark.class.getSimpleName());
+        }
+        final Options opts = builder
+                .parent(cmdOptions)
+                .jvmArgsPrepend("-Xbootclasspath/p:" + marlinJar,
+                                "-Dprism.marlin.log=false")
+                .addProfiler(GCProfiler.class)
+                .resultFormat(ResultFormatType.CSV)
+                .build();
+
+        new Runner(opts).run();
+    }
+
+    static String getMarlinJar() throws IOException {
+        String path = System.getProperty("marlin.jar");
+        if (path == null) {
+            final Properties props = new Properties();
+            try (InputStream in = BenchmarkRunner.class.getResourceAsStream(PROPS)) {
+                if (in != null) {
+                    props.load(in);
+                }
+            }
+            path = props.getProperty("marlin.jar", "");
+        }
+        return path;
+    }
+}
@@ -0,0 +1,112 @@
+package org.marlin.jmh;
+
+import com.sun.javafx.geom.Ellipse2D;
+import com.sun.javafx.geom.Path2D;
+import com.sun.javafx.geom.RectBounds;
+import com.sun.javafx.geom.RoundRectangle2D;
+import com.sun.javafx.geom.Shape;
+import java.util.Random;
+
+/**
+ * Deterministic shape corpus shared by benchmarks
+ */
+public final class BenchmarkShapes {
+
+    /** corpus extent (pixels) */
+    public static final float SIZE = 512f;
+
+    // fixed seed to get reproducible shapes across runs and releases:
+    private static final long SEED = 0x6d61726c696eL;
+
+    private BenchmarkShapes() {
+        // no instance
+    }
+
+    /**
+     * Return the corpus shape given its name:
+     * <ul>
+     * <li>rect: axis-aligned rectangle</li>
+     * <li>ellipse: circle (4 cubics)</li>
+     * <li>cubics: zig-zag of 64 cubic curves</li>
+     * <li>polygon-N: random star polygon with N vertices (self-intersecting)</li>
+     * </ul>
+     * @param name shape name
+     * @return shape
+     */
+    public static Shape create(final String name) {
+        if ("rect".equals(name)) {
+            return new RoundRectangle2D(10f, 10f, SIZE - 20f, SIZE - 20f, 0f, 0f);
+        }
+        if ("ellipse".equals(name)) {
+            return new Ellipse2D(10f, 10f, SIZE - 20f, SIZE - 20f);
+        }
+        if ("cubics".equals(name)) {
+            return createCubics(64);
+        }
+        if (name.startsWith("polygon-")) {
+            return createPolygon(Integer.parseInt(name.substring(8)));
+        }
+        throw new IllegalArgumentException("Unsupported shape: " + name);
+    }
+
+    public static Path2D createCubics(final int n) {
+        final float x0 = 10f;
+        final float x1 = SIZE - 10f;
+        final float dy = (SIZE - 20f) / n;
+
+        final Path2D p2d = new Path2D(Path2D.WIND_NON_ZERO, 4 * n);
+        p2d.moveTo(x0, 10f);
+        float y = 10f;
+        for (int i = 0; i < n; i++) {
+            if ((i & 1) == 0) {
+                p2d.curveTo(x1, y, x0, y + 0.5f * dy, x1, y + dy);
+            } else {
+                p2d.curveTo(x0, y, x1, y + 0.5f * dy, x0, y + dy);
+            }
+            y += dy;
+        }
+        p2d.closePath();
+        return p2d;
+    }
+
+    public static Path2D createPolygon(final int n) {
+        final Random rnd = new Random(SEED + n);
+        final float half = 0.5f * SIZE;
+
+        final Path2D p2d = new Path2D(Path2D.WIND_NON_ZERO, n + 1);
+        for (int i = 0; i < n; i++) {
+            final double angle = (2.0 * Math.PI * i) / n;
+            final double r = (0.1 + 0.88 * rnd.nextDouble()) * (half - 2f);
+            final float x = (float) (half + r * Math.cos(angle));
+            final float y = (float) (half + r * Math.sin(angle));
+            if (i == 0) {
+                p2d.moveTo(x, y);
+            } else {
+                p2d.lineTo(x, y);
+            }
+        }
+        p2d.closePath();
+        return p2d;
+    }
+
+    /**
+     * Return the given bounds enlarged by the given margin then shrunk
+     * around its center so that its width / height equal to ratio x the
+     * original extents (ratio = 1 means no clipping)
+     * @param bounds shape bounds
+     * @param margin margin (half stroke width)
+     * @param ratio clip ratio in ]0, 1]
+     * @return new bounds
+     */
+    public static RectBounds clipBounds(final RectBounds bounds,
+                                        final float margin,
+                                        final float ratio)
+    {
+        final float cx = 0.5f * (bounds.getMinX() + bounds.getMaxX());
+        final float cy = 0.5f * (bounds.getMinY() + bounds.getMaxY());
+        final float hw = 0.5f * ratio * (bounds.getWidth()  + 2f * margin);
+        final float hh = 0.5f * ratio * (bounds.getHeight() + 2f * margin);
+
+        return new RectBounds(cx - hw, cy - hh, cx + hw, cy + hh);
+    }
+}
@@ -0,0 +1,75 @@
+package org.marlin.jmh;
+
+import com.sun.javafx.geom.RectBounds;
+import com.sun.javafx.geom.Shape;
+import com.sun.javafx.geom.transform.BaseTransform;
+import com.sun.prism.impl.shape.MaskData;
+import com.sun.prism.impl.shape.ShapeRasterizer;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Scaling of the fill rasterization with the edge count (random star
+ * polygons like GIS outlines), unclipped or clipped around the center so
+ * that many edges lie on the left side of the clip.
+ *
+ * The foldLeftEdges parameter sets the prism.marlin.foldLeftEdges property
+ * before Marlin classes get loaded: each parameter combination runs in its
+ * own forked JVM. Use -jvmArgsAppend -Dprism.marlin.clip=false to disable
+ * the path clipper.
+ *
+ * Run it with BenchmarkRunner: java -jar target/benchmarks.jar EdgeScaling
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 2, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+@State(Scope.Thread)
+public class EdgeScalingBenchmark {
+
+    @Param({"float", "double"})
+    public String pipeline;
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int edges;
+
+    // clip = shape bounds scaled by ratio (1 means unclipped):
+    @Param({"1.0", "0.25"})
+    public float clipRatio;
+
+    @Param({"true", "false"})
+    public boolean foldLeftEdges;
+
+    ShapeRasterizer rasterizer;
+    Shape s;
+    RectBounds clip;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        System.setProperty("prism.marlin.foldLeftEdges",
+                           Boolean.toString(foldLeftEdges));
+
+        rasterizer = RasterizerBenchmark.createRasterizer(pipeline);
+        s = BenchmarkShapes.createPolygon(edges);
+        clip = BenchmarkShapes.clipBounds(s.getBounds(), 0f, clipRatio);
+    }
+
+    @Benchmark
+    public MaskData fill() {
+        return rasterizer.getMaskData(s, null, clip,
+                                      BaseTransform.IDENTITY_TRANSFORM,
+                                      true, true);
+    }
+}
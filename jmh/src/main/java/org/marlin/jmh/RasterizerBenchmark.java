@@ -0,0 +1,107 @@
+package org.marlin.jmh;
+
+import com.sun.javafx.geom.RectBounds;
+import com.sun.javafx.geom.Shape;
+import com.sun.javafx.geom.transform.BaseTransform;
+import com.sun.prism.BasicStroke;
+import com.sun.prism.impl.shape.DMarlinRasterizer;
+import com.sun.prism.impl.shape.MarlinRasterizer;
+import com.sun.prism.impl.shape.MaskData;
+import com.sun.prism.impl.shape.ShapeRasterizer;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Full rasterization pipeline benchmark (path iteration, stroking, dashing,
+ * edge building, scanline sweep and mask output) driven through
+ * ShapeRasterizer.getMaskData() for both float and double pipelines.
+ *
+ * Run it with BenchmarkRunner to get the patched JavaFX jar in the boot
+ * classpath of forked JVMs and the gc profiler (allocation rate).
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 2, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+@State(Scope.Thread)
+public class RasterizerBenchmark {
+
+    public static final float STROKE_WIDTH = 4f;
+    public static final float[] DASHES = new float[]{17f, 5f, 3f, 5f};
+
+    @Param({"float", "double"})
+    public String pipeline;
+
+    @Param({"fill", "stroke", "dash"})
+    public String mode;
+
+    @Param({"true", "false"})
+    public boolean antialias;
+
+    @Param({"rect", "ellipse", "cubics", "polygon-100", "polygon-10000"})
+    public String shape;
+
+    // clip = shape bounds scaled by ratio (1 means unclipped):
+    @Param({"1.0", "0.5", "0.1"})
+    public float clipRatio;
+
+    ShapeRasterizer rasterizer;
+    Shape s;
+    BasicStroke stroke;
+    RectBounds clip;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        rasterizer = createRasterizer(pipeline);
+        s = BenchmarkShapes.create(shape);
+        stroke = createStroke(mode);
+
+        final float margin = (stroke != null) ? 0.5f * STROKE_WIDTH : 0f;
+        clip = BenchmarkShapes.clipBounds(s.getBounds(), margin, clipRatio);
+    }
+
+    @Benchmark
+    public MaskData getMaskData() {
+        return rasterizer.getMaskData(s, stroke, clip,
+                                      BaseTransform.IDENTITY_TRANSFORM,
+                                      true, antialias);
+    }
+
+    static ShapeRasterizer createRasterizer(final String pipeline) {
+        if ("float".equals(pipeline)) {
+            return new MarlinRasterizer();
+        }
+        if ("double".equals(pipeline)) {
+            return new DMarlinRasterizer();
+        }
+        throw new IllegalArgumentException("Unsupported pipeline: " + pipeline);
+    }
+
+    static BasicStroke createStroke(final String mode) {
+        if ("fill".equals(mode)) {
+            return null;
+        }
+        if ("stroke".equals(mode)) {
+            return new BasicStroke(STROKE_WIDTH, BasicStroke.CAP_ROUND,
+                                   BasicStroke.JOIN_MITER, 10f);
+        }
+        if ("dash".equals(mode)) {
+            return new BasicStroke(STROKE_WIDTH, BasicStroke.CAP_BUTT,
+                                   BasicStroke.JOIN_ROUND, 10f,
+                                   DASHES, 0f);
+        }
+        throw new IllegalArgumentException("Unsupported mode: " + mode);
+    }
+}
@@ -14,4 +14,15 @@ public abstract class NGCanvasPath extends Shape {
 
     public abstract BaseTransform getCombinedTransform(BaseTransform tx);
 
+    // rasterizer state kept between renderings (incremental rasterization)
+    private Object rasterizerState = null;
+
+    public final Object getRasterizerState() {
+        return rasterizerState;
+    }
+
+    public final void setRasterizerState(final Object state) {
+        this.rasterizerState = state;
+    }
+
 }
@@ -0,0 +1,910 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package com.sun.marlin;
+
+import static com.sun.marlin.OffHeapArray.SIZE_INT;
+import sun.misc.Unsafe;
+
+/**
+ * Analytic coverage renderer: instead of sampling subpixel scanlines, every
+ * edge accumulates its exact signed area into the cells of the pixel rows it
+ * crosses (like font rasterizers), then a single prefix sum per pixel row
+ * gives the exact coverage (non-zero or even-odd winding rule).
+ *
+ * Edges are clipped to the renderer bounds: edge parts outside the clip are
+ * projected on its left or right side (same winding contribution).
+ *
+ * Rows are always swept sequentially by the calling thread: parallel band
+ * rasterization (prism.marlin.parallelBands) only applies to the subpixel
+ * Renderer.
+ */
+public final class AreaRenderer implements MarlinEdgeRenderer, MarlinConst {
+
+    static final boolean DISABLE_RENDER = false;
+
+    // curve flattening tolerance (pixels):
+    private static final float FLAT_TOLERANCE = 1.0f / 32.0f;
+    // Wang's formula: n = sqrt(d * (d - 1) / 8 * max(|second difference|) / tol)
+    private static final float CUB_FLAT_FACTOR  = 0.75f / FLAT_TOLERANCE;
+    private static final float QUAD_FLAT_FACTOR = 0.25f / FLAT_TOLERANCE;
+    // maximum number of lines per curve:
+    private static final int MAX_CURVE_LINES = 1024;
+
+    // edge record (off-heap):
+    // x at y0, y0 < y1 and dx/dy [float] then direction and next edge [int]
+    public static final long OFF_X0    = 0;
+    public static final long OFF_Y0    = OFF_X0    + Float.BYTES;
+    public static final long OFF_Y1    = OFF_Y0    + Float.BYTES;
+    public static final long OFF_SLOPE = OFF_Y1    + Float.BYTES;
+    public static final long OFF_DIR   = OFF_SLOPE + Float.BYTES;
+    public static final long OFF_NEXT  = OFF_DIR   + SIZE_INT;
+
+    // size of one edge in bytes
+    public static final int SIZEOF_EDGE_BYTES = (int)(OFF_NEXT + SIZE_INT);
+
+    // renderer context
+    final RendererContext rdrCtx;
+
+    // bounds of the drawing region, at pixel precision (half-open intervals)
+    private int boundsMinX, boundsMinY, boundsMaxX, boundsMaxY;
+
+    // winding rule
+    private int windingRule;
+
+    // current drawing position (pixels)
+    private float x0, y0;
+
+    // position of most recent 'moveTo' command
+    private float sx0, sy0;
+
+    // edge bounds: pixel rows [edgeMinY; edgeMaxY[ and x range (pixels)
+    private int edgeMinY = Integer.MAX_VALUE;
+    private int edgeMaxY = Integer.MIN_VALUE;
+    private float edgeMinX = Float.POSITIVE_INFINITY;
+    private float edgeMaxX = Float.NEGATIVE_INFINITY;
+
+    // edges [floats|ints] stored in off-heap memory
+    private final OffHeapArray edges;
+
+    // edge list per pixel row (first row crossed by edges)
+    private int[] edgeBuckets;
+    private int[] edgeBucketCounts;
+
+    // edgeBuckets ref (clean)
+    private final IntArrayCache.Reference edgeBuckets_ref;
+    // edgeBucketCounts ref (clean)
+    private final IntArrayCache.Reference edgeBucketCounts_ref;
+
+    // active edges (pointers)
+    private int[] edgePtrs;
+    // edgePtrs ref (dirty)
+    private final IntArrayCache.Reference edgePtrs_ref;
+
+    // signed area accumulated per cell in the current pixel row
+    private float[] cells;
+    // cells ref (dirty)
+    private final FloatArrayCache.Reference cells_ref;
+
+    // alpha deltas of the current pixel row
+    private int[] alphaLine;
+    // alphaLine ref (clean)
+    private final IntArrayCache.Reference alphaLine_ref;
+
+    // max used mark (stats)
+    private int activeEdgeMaxUsed;
+
+    // output pixel bounding box:
+    int bboxX0, bboxX1, bboxY0, bboxY1;
+
+    AreaRenderer(final RendererContext rdrCtx) {
+        this.rdrCtx = rdrCtx;
+
+        this.edges = rdrCtx.rdrMem.edges;
+
+        edgeBuckets_ref      = rdrCtx.rdrMem.edgeBuckets_ref;
+        edgeBucketCounts_ref = rdrCtx.rdrMem.edgeBucketCounts_ref;
+
+        edgeBuckets      = edgeBuckets_ref.initial;
+        edgeBucketCounts = edgeBucketCounts_ref.initial;
+
+        edgePtrs_ref = rdrCtx.rdrMem.edgePtrs_ref;
+        edgePtrs     = edgePtrs_ref.initial;
+
+        alphaLine_ref = rdrCtx.rdrMem.alphaLine_ref;
+        alphaLine     = alphaLine_ref.initial;
+
+        cells_ref = rdrCtx.newDirtyFloatArrayRef(INITIAL_AA_ARRAY); // 4K
+        cells     = cells_ref.initial;
+    }
+
+    @Override
+    public AreaRenderer init(final int pix_boundsX, final int pix_boundsY,
+                             final int pix_boundsWidth, final int pix_boundsHeight,
+                             final int windingRule)
+    {
+        this.windingRule = windingRule;
+
+        // bounds as half-open intervals: minX <= x < maxX and minY <= y < maxY
+        this.boundsMinX = pix_boundsX;
+        this.boundsMaxX = pix_boundsX + pix_boundsWidth;
+        this.boundsMinY = pix_boundsY;
+        this.boundsMaxY = pix_boundsY + pix_boundsHeight;
+
+        if (DO_LOG_BOUNDS) {
+            MarlinUtils.logInfo("boundsXY = [" + boundsMinX + " ... "
+                                + boundsMaxX + "[ [" + boundsMinY + " ... "
+                                + boundsMaxY + "[");
+        }
+
+        // +1 for the last pixel row
+        final int edgeBucketsLength = (boundsMaxY - boundsMinY) + 1;
+
+        if (edgeBucketsLength > INITIAL_BUCKET_ARRAY) {
+            if (DO_STATS) {
+                rdrCtx.stats.stat_array_renderer_edgeBuckets
+                    .add(edgeBucketsLength);
+                rdrCtx.stats.stat_array_renderer_edgeBucketCounts
+                    .add(edgeBucketsLength);
+            }
+            edgeBuckets = edgeBuckets_ref.getArray(edgeBucketsLength);
+            edgeBucketCounts = edgeBucketCounts_ref.getArray(edgeBucketsLength);
+        }
+
+        edgeMinY = Integer.MAX_VALUE;
+        edgeMaxY = Integer.MIN_VALUE;
+        edgeMinX = Float.POSITIVE_INFINITY;
+        edgeMaxX = Float.NEGATIVE_INFINITY;
+
+        // reset used mark:
+        activeEdgeMaxUsed = 0;
+        edges.used = 0;
+
+        // reset bbox:
+        bboxX0 = 0;
+        bboxX1 = 0;
+        bboxY0 = 0;
+        bboxY1 = 0;
+
+        return this; // fluent API
+    }
+
+    /**
+     * Disposes this renderer and recycle it clean up before reusing this instance
+     */
+    @Override
+    public void dispose() {
+        if (DO_STATS) {
+            rdrCtx.stats.stat_rdr_activeEdges.add(activeEdgeMaxUsed);
+            rdrCtx.stats.stat_rdr_edges.add(edges.used);
+            rdrCtx.stats.stat_rdr_edges_count.add(edges.used / SIZEOF_EDGE_BYTES);
+            rdrCtx.stats.hist_rdr_edges_count.add(edges.used / SIZEOF_EDGE_BYTES);
+            rdrCtx.stats.totalOffHeap += edges.length;
+        }
+        // Return arrays:
+        edgePtrs = edgePtrs_ref.putArray(edgePtrs);
+        cells    = cells_ref.putArray(cells);
+
+        alphaLine = alphaLine_ref.putArray(alphaLine, 0, 0); // already zero filled
+
+        if (edgeMinY != Integer.MAX_VALUE) {
+            int from = edgeMinY - boundsMinY;
+            int to   = edgeMaxY - boundsMinY;
+
+            // if context is maked as DIRTY:
+            if (rdrCtx.dirty) {
+                // may happen if an exception if thrown in the pipeline processing:
+                // clear completely buckets arrays:
+                from = 0;
+                to   = boundsMaxY - boundsMinY;
+            }
+            // clear only used part
+            edgeBuckets = edgeBuckets_ref.putArray(edgeBuckets, from, to + 1);
+            edgeBucketCounts = edgeBucketCounts_ref.putArray(edgeBucketCounts,
+                                                             from, to + 1);
+        } else {
+            // unused arrays
+            edgeBuckets = edgeBuckets_ref.putArray(edgeBuckets, 0, 0);
+            edgeBucketCounts = edgeBucketCounts_ref.putArray(edgeBucketCounts, 0, 0);
+        }
+
+        // At last: resize back off-heap edges to initial size
+        if (edges.length != INITIAL_EDGES_CAPACITY) {
+            // note: may throw OOME:
+            edges.resize(INITIAL_EDGES_CAPACITY);
+        }
+        if (DO_CLEAN_DIRTY) {
+            // Force zero-fill dirty arrays:
+            edges.fill(BYTE_0);
+        }
+    }
+
+    @Override
+    public void moveTo(final float pix_x0, final float pix_y0) {
+        closePath();
+        this.sx0 = pix_x0;
+        this.sy0 = pix_y0;
+        this.x0 = pix_x0;
+        this.y0 = pix_y0;
+    }
+
+    @Override
+    public void lineTo(final float pix_x1, final float pix_y1) {
+        addLine(x0, y0, pix_x1, pix_y1);
+        x0 = pix_x1;
+        y0 = pix_y1;
+    }
+
+    @Override
+    public void curveTo(final float pix_x1, final float pix_y1,
+                        final float pix_x2, final float pix_y2,
+                        final float pix_x3, final float pix_y3)
+    {
+        final float x0 = this.x0;
+        final float y0 = this.y0;
+
+        // max second difference of control points:
+        final float dd = Math.max(
+            Math.max(Math.abs(x0 - 2.0f * pix_x1 + pix_x2),
+                     Math.abs(y0 - 2.0f * pix_y1 + pix_y2)),
+            Math.max(Math.abs(pix_x1 - 2.0f * pix_x2 + pix_x3),
+                     Math.abs(pix_y1 - 2.0f * pix_y2 + pix_y3)));
+
+        final int n = getLineCount(dd * CUB_FLAT_FACTOR);
+
+        // power basis: p(t) = ((a t + b) t + c) t + p0
+        final float cx = 3.0f * (pix_x1 - x0);
+        final float cy = 3.0f * (pix_y1 - y0);
+        final float bx = 3.0f * (pix_x2 - pix_x1) - cx;
+        final float by = 3.0f * (pix_y2 - pix_y1) - cy;
+        final float ax = pix_x3 - x0 - cx - bx;
+        final float ay = pix_y3 - y0 - cy - by;
+
+        float px = x0, py = y0, nx, ny, t;
+        final float dt = 1.0f / n;
+
+        for (int i = 1; i < n; i++) {
+            t = i * dt;
+            nx = ((ax * t + bx) * t + cx) * t + x0;
+            ny = ((ay * t + by) * t + cy) * t + y0;
+            addLine(px, py, nx, ny);
+            px = nx;
+            py = ny;
+        }
+        addLine(px, py, pix_x3, pix_y3);
+
+        if (DO_STATS) {
+            rdrCtx.stats.stat_rdr_curveBreak.add(n);
+        }
+        this.x0 = pix_x3;
+        this.y0 = pix_y3;
+    }
+
+    @Override
+    public void quadTo(final float pix_x1, final float pix_y1,
+                       final float pix_x2, final float pix_y2)
+    {
+        final float x0 = this.x0;
+        final float y0 = this.y0;
+
+        // second difference of control points:
+        final float dd = Math.max(Math.abs(x0 - 2.0f * pix_x1 + pix_x2),
+                                  Math.abs(y0 - 2.0f * pix_y1 + pix_y2));
+
+        final int n = getLineCount(dd * QUAD_FLAT_FACTOR);
+
+        // power basis: p(t) = (a t + b) t + p0
+        final float bx = 2.0f * (pix_x1 - x0);
+        final float by = 2.0f * (pix_y1 - y0);
+        final float ax = pix_x2 - x0 - bx;
+        final float ay = pix_y2 - y0 - by;
+
+        float px = x0, py = y0, nx, ny, t;
+        final float dt = 1.0f / n;
+
+        for (int i = 1; i < n; i++) {
+            t = i * dt;
+            nx = (ax * t + bx) * t + x0;
+            ny = (ay * t + by) * t + y0;
+            addLine(px, py, nx, ny);
+            px = nx;
+            py = ny;
+        }
+        addLine(px, py, pix_x2, pix_y2);
+
+        if (DO_STATS) {
+            rdrCtx.stats.stat_rdr_quadBreak.add(n);
+        }
+        this.x0 = pix_x2;
+        this.y0 = pix_y2;
+    }
+
+    private static int getLineCount(final float n2) {
+        // note: NaN or infinite values give 1 line
+        if (!(n2 > 1.0f)) {
+            return 1;
+        }
+        if (n2 >= (float) (MAX_CURVE_LINES * MAX_CURVE_LINES)) {
+            return MAX_CURVE_LINES;
+        }
+        return FloatMath.ceil_int((float) Math.sqrt(n2));
+    }
+
+    @Override
+    public void closePath() {
+        if ((x0 != sx0) || (y0 != sy0)) {
+            addLine(x0, y0, sx0, sy0);
+            x0 = sx0;
+            y0 = sy0;
+        }
+    }
+
+    @Override
+    public void pathDone() {
+        closePath();
+
+        // call endRendering() to determine the boundaries:
+        endRendering();
+    }
+
+    private void addLine(float x1, float y1, float x2, float y2) {
+        if (DO_STATS) {
+            rdrCtx.stats.stat_rdr_addLine.add(1);
+        }
+        int dir = 1; // orientation of the line. 1 if y increases, -1 otherwise.
+        if (y2 < y1) {
+            dir = -1;
+            float tmp = y2;
+            y2 = y1;
+            y1 = tmp;
+            tmp = x2;
+            x2 = x1;
+            x1 = tmp;
+        }
+        addEdge(x1, y1, x2, y2, dir);
+    }
+
+    /**
+     * Clips the given edge (y1 < y2) to the renderer bounds and adds it
+     * into the edge list
+     */
+    private void addEdge(float x1, float y1, float x2, float y2, final int dir) {
+        final float minY = boundsMinY;
+        final float maxY = boundsMaxY;
+
+        /* skip horizontal lines (no area) and clip edges out of y range
+           [boundsMinY; boundsMaxY] (NaN values are skipped too) */
+        if (!(y1 < y2) || !(y2 > minY) || !(y1 < maxY)) {
+            if (DO_STATS) {
+                rdrCtx.stats.stat_rdr_addLine_skip.add(1);
+            }
+            return;
+        }
+        float slope = (x2 - x1) / (y2 - y1);
+
+        // clip y:
+        if (y1 < minY) {
+            x1 += (minY - y1) * slope;
+            y1 = minY;
+        }
+        if (y2 > maxY) {
+            x2 -= (y2 - maxY) * slope;
+            y2 = maxY;
+        }
+
+        final float minX = boundsMinX;
+        final float maxX = boundsMaxX;
+
+        /* edge parts on the right side are projected on the right side:
+           they close the coverage span within the last pixel column */
+        if (x1 >= maxX) {
+            if (x2 >= maxX) {
+                storeEdge(maxX, y1, y2, 0.0f, dir);
+                return;
+            }
+            // split at maxX:
+            final float ym = clampY(y1 + (maxX - x1) / slope, y1, y2);
+            storeEdge(maxX, y1, ym, 0.0f, dir);
+            x1 = maxX;
+            y1 = ym;
+        } else if (x2 > maxX) {
+            final float ym = clampY(y1 + (maxX - x1) / slope, y1, y2);
+            storeEdge(maxX, ym, y2, 0.0f, dir);
+            x2 = maxX;
+            y2 = ym;
+        }
+
+        // edge parts on the left side are projected on the left side:
+        if (x1 <= minX) {
+            if (x2 <= minX) {
+                x1 = x2 = minX;
+                slope = 0.0f;
+            } else {
+                // split at minX:
+                final float ym = clampY(y1 + (minX - x1) / slope, y1, y2);
+                storeEdge(minX, y1, ym, 0.0f, dir);
+                x1 = minX;
+                y1 = ym;
+            }
+        } else if (x2 < minX) {
+            final float ym = clampY(y1 + (minX - x1) / slope, y1, y2);
+            storeEdge(minX, ym, y2, 0.0f, dir);
+            x2 = minX;
+            y2 = ym;
+        }
+        storeEdge(x1, y1, y2, slope, dir);
+
+        // x bounds:
+        if (x1 < x2) {
+            if (x1 < edgeMinX) {
+                edgeMinX = x1;
+            }
+            if (x2 > edgeMaxX) {
+                edgeMaxX = x2;
+            }
+        } else {
+            if (x2 < edgeMinX) {
+                edgeMinX = x2;
+            }
+            if (x1 > edgeMaxX) {
+                edgeMaxX = x1;
+            }
+        }
+    }
+
+    private static float clampY(final float y, final float y1, final float y2) {
+        return (y < y1) ? y1 : ((y > y2) ? y2 : y);
+    }
+
+    private void storeEdge(final float x1, final float y1, final float y2,
+                           final float slope, final int dir)
+    {
+        if (!(y1 < y2)) {
+            return; // empty
+        }
+        // first pixel row crossed by this edge:
+        final int firstRow = FloatMath.floor_int(y1);
+        // last pixel row (exclusive):
+        final int lastRow  = FloatMath.ceil_int(y2);
+
+        if (firstRow < edgeMinY) {
+            edgeMinY = firstRow;
+        }
+        if (lastRow > edgeMaxY) {
+            edgeMaxY = lastRow;
+        }
+        if (x1 < edgeMinX) {
+            edgeMinX = x1;
+        }
+        if (x1 > edgeMaxX) {
+            edgeMaxX = x1;
+        }
+
+        final OffHeapArray _edges = edges;
+
+        // get free pointer (ie length in bytes)
+        final int edgePtr = _edges.used;
+
+        // use substraction to avoid integer overflow:
+        if (_edges.length - edgePtr < SIZEOF_EDGE_BYTES) {
+            final long edgeNewSize = ArrayCacheConst.getNewLargeSize(
+                                        _edges.length,
+                                        edgePtr + SIZEOF_EDGE_BYTES);
+
+            if (DO_STATS) {
+                rdrCtx.stats.stat_rdr_edges_resizes.add(edgeNewSize);
+            }
+            _edges.resize(edgeNewSize);
+        }
+
+        final Unsafe _unsafe = OffHeapArray.UNSAFE;
+        final long addr = _edges.address + edgePtr;
+        final int bucketIdx = firstRow - boundsMinY;
+
+        _unsafe.putFloat(addr + OFF_X0,    x1);
+        _unsafe.putFloat(addr + OFF_Y0,    y1);
+        _unsafe.putFloat(addr + OFF_Y1,    y2);
+        _unsafe.putFloat(addr + OFF_SLOPE, slope);
+        _unsafe.putInt(addr   + OFF_DIR,   dir);
+        _unsafe.putInt(addr   + OFF_NEXT,  edgeBuckets[bucketIdx]);
+
+        // Update buckets:
+        edgeBuckets[bucketIdx] = edgePtr;
+        edgeBucketCounts[bucketIdx]++;
+
+        // update free pointer (ie length in bytes)
+        _edges.used += SIZEOF_EDGE_BYTES;
+    }
+
+    @Override
+    public void saveState(final IncrementalPath state) {
+        state.saveEdges(edges, edges.used);
+
+        if (edgeMinY != Integer.MAX_VALUE) {
+            // used buckets in [edgeMinY; edgeMaxY]
+            state.saveBuckets(edgeBuckets, edgeBucketCounts,
+                              edgeMinY - boundsMinY, edgeMaxY - edgeMinY + 1);
+        } else {
+            state.bucketsLength = 0;
+        }
+        state.edgeMinY = edgeMinY;
+        state.edgeMaxY = edgeMaxY;
+        state.edgeMinX = edgeMinX;
+        state.edgeMaxX = edgeMaxX;
+        state.x0  = x0;
+        state.y0  = y0;
+        state.sx0 = sx0;
+        state.sy0 = sy0;
+    }
+
+    @Override
+    public void restoreState(final IncrementalPath state) {
+        if (DO_STATS) {
+            rdrCtx.stats.stat_rdr_incremental_edges.add(state.edgesUsed / SIZEOF_EDGE_BYTES);
+        }
+        state.restoreEdges(edges);
+        state.restoreBuckets(edgeBuckets, edgeBucketCounts);
+
+        edgeMinY = state.edgeMinY;
+        edgeMaxY = state.edgeMaxY;
+        edgeMinX = (float) state.edgeMinX;
+        edgeMaxX = (float) state.edgeMaxX;
+        x0  = (float) state.x0;
+        y0  = (float) state.y0;
+        sx0 = (float) state.sx0;
+        sy0 = (float) state.sy0;
+    }
+
+    @Override
+    public void compileEdges(final CompiledShape cs) {
+        final int used = edges.used;
+
+        cs.init(this, windingRule, used);
+
+        if (edgeMinY == Integer.MAX_VALUE) {
+            return; // no edge
+        }
+        // edge records are replayed in any order (NEXT ignored):
+        OffHeapArray.UNSAFE.copyMemory(edges.address, cs.edges.address, used);
+
+        cs.edges.used = used;
+        cs.numEdges   = used / SIZEOF_EDGE_BYTES;
+
+        cs.edgeMinY = edgeMinY;
+        cs.edgeMaxY = edgeMaxY;
+        cs.edgeMinX = edgeMinX;
+        cs.edgeMaxX = edgeMaxX;
+
+        cs.minX = bboxX0;
+        cs.minY = bboxY0;
+        cs.maxX = bboxX1;
+        cs.maxY = bboxY1;
+    }
+
+    @Override
+    public void replayEdges(final CompiledShape cs, final int dx, final int dy) {
+        cs.checkCompiledBy(this);
+
+        if ((cs.numEdges != 0)
+            && (cs.edgeMinY + dy < boundsMaxY) && (cs.edgeMaxY + dy > boundsMinY))
+        {
+            if (DO_STATS) {
+                rdrCtx.stats.stat_rdr_compiled_edges.add(cs.numEdges);
+            }
+            final Unsafe _unsafe = OffHeapArray.UNSAFE;
+            float x1, y1, y2;
+
+            for (long addr = cs.edges.address, end = addr + cs.edges.used;
+                 addr < end; addr += SIZEOF_EDGE_BYTES)
+            {
+                x1 = _unsafe.getFloat(addr + OFF_X0);
+                y1 = _unsafe.getFloat(addr + OFF_Y0);
+                y2 = _unsafe.getFloat(addr + OFF_Y1);
+
+                // clip the translated edge again:
+                addEdge(x1 + dx, y1 + dy,
+                        x1 + dx + (y2 - y1) * _unsafe.getFloat(addr + OFF_SLOPE),
+                        y2 + dy, _unsafe.getInt(addr + OFF_DIR));
+            }
+        }
+        // call endRendering() to determine the boundaries:
+        endRendering();
+    }
+
+    private void endRendering() {
+        if (edgeMinY == Integer.MAX_VALUE) {
+            return; // undefined edges bounds
+        }
+
+        // bounds as half-open intervals
+        final int pminX = FloatMath.max(FloatMath.floor_int(edgeMinX), boundsMinX);
+        final int pmaxX = FloatMath.min(FloatMath.ceil_int(edgeMaxX), boundsMaxX);
+        final int pminY = FloatMath.max(edgeMinY, boundsMinY);
+        final int pmaxY = FloatMath.min(edgeMaxY, boundsMaxY);
+
+        if (DO_LOG_BOUNDS) {
+            MarlinUtils.logInfo("edgesXY = [" + edgeMinX + " ... " + edgeMaxX
+                                + "[ [" + edgeMinY + " ... " + edgeMaxY + "[");
+        }
+
+        // test clipping for shapes out of bounds
+        if ((pminX >= pmaxX) || (pminY >= pmaxY)) {
+            return;
+        }
+
+        // store BBox to answer ptg.getBBox():
+        bboxX0 = pminX;
+        bboxX1 = pmaxX;
+        bboxY0 = pminY;
+        bboxY1 = pmaxY;
+
+        // add 2 to deal with the cells on the right side of the last pixel:
+        final int width = (pmaxX - pminX) + 2;
+
+        if (width > INITIAL_AA_ARRAY) {
+            if (DO_STATS) {
+                rdrCtx.stats.stat_array_renderer_alphaline.add(width);
+            }
+            alphaLine = alphaLine_ref.getArray(width);
+        }
+        if (width > cells.length) {
+            cells = cells_ref.getArray(width);
+        }
+    }
+
+    @Override
+    public void produceAlphas(final MarlinAlphaConsumer ac) {
+        ac.setMaxAlpha(MAX_AA_ALPHA);
+
+        if (DO_MONITORS) {
+            rdrCtx.stats.mon_rdr_endRendering_Y.start();
+        }
+
+        // Process all pixel rows:
+        _endRendering(ac);
+
+        if (DO_MONITORS) {
+            rdrCtx.stats.mon_rdr_endRendering_Y.stop();
+        }
+    }
+
+    private void _endRendering(final MarlinAlphaConsumer ac) {
+        if (DISABLE_RENDER) {
+            return;
+        }
+        final int bboxx0 = bboxX0;
+        final int width  = bboxX1 - bboxx0;
+
+        if ((width <= 0) || (bboxY1 <= bboxY0)) {
+            return;
+        }
+
+        final boolean windingRuleEvenOdd = (windingRule == WIND_EVEN_ODD);
+
+        // local vars (performance):
+        final Unsafe _unsafe = OffHeapArray.UNSAFE;
+        final long addr0 = edges.address;
+        final int[] _edgeBuckets = edgeBuckets;
+        final int[] _edgeBucketCounts = edgeBucketCounts;
+        final int[] _alpha = alphaLine;
+        final float[] _cells = cells;
+        final float _maxAlpha = MAX_AA_ALPHA;
+        final float maxCellX = width;
+
+        // clear cells once (cleared after each row):
+        FloatArrayCache.fill(_cells, 0, width + 2, 0.0f);
+
+        int[] _edgePtrs = edgePtrs;
+        int numEdges = 0;
+        int _arrayMaxUsed = activeEdgeMaxUsed;
+
+        int bucket, count, ptr, i, n, minIdx, maxIdx, ia, ib, a, prev;
+        long addr;
+        float fy0, fy1, ey0, ey1, ex0, ey, ex1, d, xa, xb, s, a0, a1, am, acc, cov;
+
+        for (int y = bboxY0, ymax = bboxY1; y < ymax; y++) {
+            bucket = y - boundsMinY;
+
+            // add new edges starting in this pixel row:
+            count = _edgeBucketCounts[bucket];
+            if (count != 0) {
+                if (DO_STATS) {
+                    rdrCtx.stats.stat_rdr_activeEdges_adds.add(count);
+                }
+                if (_edgePtrs.length < numEdges + count) {
+                    if (DO_STATS) {
+                        rdrCtx.stats.stat_array_renderer_edgePtrs
+                            .add(numEdges + count);
+                    }
+                    this.edgePtrs = _edgePtrs
+                        = edgePtrs_ref.widenArray(_edgePtrs, numEdges,
+                                                  numEdges + count);
+                }
+                for (ptr = _edgeBuckets[bucket]; count > 0; count--) {
+                    _edgePtrs[numEdges++] = ptr;
+                    ptr = _unsafe.getInt(addr0 + ptr + OFF_NEXT);
+                }
+                if (numEdges > _arrayMaxUsed) {
+                    _arrayMaxUsed = numEdges;
+                }
+            }
+
+            fy0 = y;
+            fy1 = y + 1;
+            minIdx = Integer.MAX_VALUE;
+            maxIdx = Integer.MIN_VALUE;
+
+            // accumulate the signed area of active edges within this row:
+            for (i = 0, n = 0; i < numEdges; i++) {
+                ptr = _edgePtrs[i];
+                addr = addr0 + ptr;
+
+                ey0 = _unsafe.getFloat(addr + OFF_Y0);
+                ey1 = _unsafe.getFloat(addr + OFF_Y1);
+
+                if (ey1 > fy1) {
+                    // keep active edge for next rows:
+                    _edgePtrs[n++] = ptr;
+                }
+                ey = (ey0 > fy0) ? ey0 : fy0;
+                d  = ((ey1 < fy1) ? ey1 : fy1) - ey;
+
+                if (d > 0.0f) {
+                    s = _unsafe.getFloat(addr + OFF_SLOPE);
+                    ex0 = _unsafe.getFloat(addr + OFF_X0) - bboxx0;
+                    ex1 = ex0 + s * (ey + d - ey0);
+                    ex0 += s * (ey - ey0);
+                    d *= _unsafe.getInt(addr + OFF_DIR);
+
+                    if (ex0 < ex1) {
+                        xa = ex0;
+                        xb = ex1;
+                    } else {
+                        xa = ex1;
+                        xb = ex0;
+                    }
+                    // fix rounding errors:
+                    xa = (xa < 0.0f) ? 0.0f : ((xa > maxCellX) ? maxCellX : xa);
+                    xb = (xb < 0.0f) ? 0.0f : ((xb > maxCellX) ? maxCellX : xb);
+
+                    ia = (int) xa;
+
+                    if (xb <= ia + 1) {
+                        // edge within one cell: trapezoid area
+                        a0 = 0.5f * (xa + xb) - ia;
+                        _cells[ia    ] += d - d * a0;
+                        _cells[ia + 1] += d * a0;
+                        ib = ia + 1;
+                    } else {
+                        ib = FloatMath.ceil_int(xb);
+                        s  = 1.0f / (xb - xa);
+                        // triangle area in the first cell:
+                        a0 = xa - ia;
+                        a0 = 0.5f * s * (1.0f - a0) * (1.0f - a0);
+                        // triangle area left in the last cell:
+                        am = xb - ib + 1.0f;
+                        am = 0.5f * s * am * am;
+
+                        _cells[ia] += d * a0;
+
+                        if (ib == ia + 2) {
+                            _cells[ia + 1] += d * (1.0f - a0 - am);
+                        } else {
+                            a1 = s * (1.5f - (xa - ia));
+                            _cells[ia + 1] += d * (a1 - a0);
+
+                            acc = d * s;
+                            for (int j = ia + 2, end = ib - 1; j < end; j++) {
+                                _cells[j] += acc;
+                            }
+                            a1 += (ib - ia - 3) * s;
+                            _cells[ib - 1] += d * (1.0f - a1 - am);
+                        }
+                        _cells[ib] += d * am;
+                    }
+                    if (ia < minIdx) {
+                        minIdx = ia;
+                    }
+                    if (ib > maxIdx) {
+                        maxIdx = ib;
+                    }
+                }
+            }
+            numEdges = n;
+
+            if (minIdx > maxIdx) {
+                ac.clearAlphas(y);
+                continue;
+            }
+
+            // prefix sum of cells gives the coverage:
+            acc  = 0.0f;
+            prev = 0;
+            // pixels in [minIdx; maxIdx] (cell width + 1 ignored):
+            if (maxIdx >= width) {
+                for (i = width; i <= maxIdx; i++) {
+                    _cells[i] = 0.0f;
+                }
+                maxIdx = width - 1;
+            }
+            for (i = minIdx; i <= maxIdx; i++) {
+                acc += _cells[i];
+                _cells[i] = 0.0f;
+
+                cov = (acc < 0.0f) ? -acc : acc;
+
+                if (windingRuleEvenOdd) {
+                    // fold coverage in [0; 2[ into [0; 1]:
+                    cov -= 2.0f * ((int) (0.5f * cov));
+                    if (cov > 1.0f) {
+                        cov = 2.0f - cov;
+                    }
+                } else if (cov > 1.0f) {
+                    cov = 1.0f;
+                }
+                a = (int) (cov * _maxAlpha + 0.5f);
+                _alpha[i] = a - prev;
+                prev = a;
+            }
+            // note: alpha array will be zeroed by the consumer:
+            ac.setAndClearRelativeAlphas(_alpha, y, bboxx0 + minIdx,
+                                         bboxx0 + maxIdx + 1);
+        }
+
+        activeEdgeMaxUsed = _arrayMaxUsed;
+    }
+
+    @Override
+    public int getOutpixMinX() {
+        return bboxX0;
+    }
+
+    @Override
+    public int getOutpixMaxX() {
+        return bboxX1;
+    }
+
+    @Override
+    public int getOutpixMinY() {
+        return bboxY0;
+    }
+
+    @Override
+    public int getOutpixMaxY() {
+        return bboxY1;
+    }
+
+    @Override
+    public float getOffsetX() {
+        // exact coverage: no sampling offset
+        return 0.0f;
+    }
+
+    @Override
+    public float getOffsetY() {
+        // exact coverage: no sampling offset
+        return 0.0f;
+    }
+}
@@ -41,6 +41,10 @@ public final class ArrayCacheConst implements MarlinConst {
     // threshold to grow arrays only by (5/4) instead of (3/2)
     static final long THRESHOLD_HUGE_ARRAY_SIZE;
     static final int[] ARRAY_SIZES = new int[BUCKETS];
+    // arrays larger are only cached in the shared pool (if enabled)
+    static final int SHARED_MIN_SIZE = MarlinProperties.getSharedArrayMinSize();
+    // shared pool capacity (arrays per bucket)
+    static final int SHARED_CAPACITY = 4;
 
     static {
         // initialize buckets for int/float arrays
@@ -0,0 +1,343 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package com.sun.marlin;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryNotificationInfo;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.management.NotificationEmitter;
+import javax.management.openmbean.CompositeData;
+import static com.sun.marlin.MarlinUtils.logException;
+
+/**
+ * Global memory policy of the [Byte/Int/Float/Double]ArrayCache instances
+ * held by all renderer contexts:
+ * - arrays kept in cache buckets are accounted against a global budget
+ *   (arrays exceeding it are not cached),
+ * - bucket sets unused for the idle time are released by a timer thread
+ *   (started by the first registered bucket set),
+ * - the shared pool (SharedArrayPool) follows the same policies,
+ * - all bucket sets are released on demand (trim()) or on heap pressure if
+ *   prism.marlin.arrayCache.heapPressure is set: only collection usage
+ *   thresholds installed by Marlin are then handled, never the ones set by
+ *   the application.
+ *
+ * Each bucket set (weakly referenced by its cache) is tracked by a CacheRef
+ * counting its cached bytes: releasing it from another thread is safe as
+ * the owner thread only caches arrays into a live (not dropped) set.
+ */
+final class ArrayCacheManager {
+
+    // global budget of cached arrays (bytes)
+    static final long BUDGET = MarlinProperties.getArrayCacheBudget();
+    // idle time (ms) before releasing bucket sets (0 means disabled)
+    static final long IDLE_TIME
+        = 1000L * MarlinProperties.getArrayCacheIdleTime();
+    // old generation usage ratio used as collection usage threshold
+    // (0 means disabled)
+    static final float HEAP_PRESSURE
+        = MarlinProperties.getArrayCacheHeapPressure();
+
+    // dropped bucket set marker
+    private static final long DROPPED = Long.MIN_VALUE;
+
+    // bytes of arrays kept in all bucket sets
+    private static final AtomicLong CACHED = new AtomicLong();
+    // idle epoch incremented every IDLE_TIME
+    static volatile int epoch = 0;
+
+    // live bucket sets
+    private static final ConcurrentLinkedQueue<CacheRef<?>> REFS
+        = new ConcurrentLinkedQueue<CacheRef<?>>();
+    // bucket sets cleared by the GC
+    private static final ReferenceQueue<Object> REF_QUEUE
+        = new ReferenceQueue<Object>();
+    // shared pools (see SharedArrayPool)
+    private static final ConcurrentLinkedQueue<SharedArrayPool> POOLS
+        = new ConcurrentLinkedQueue<SharedArrayPool>();
+    // collection usage thresholds installed by Marlin (per memory pool)
+    private static final Map<String, Long> THRESHOLDS
+        = new ConcurrentHashMap<String, Long>();
+
+    // true once the trimmer thread is started
+    private static volatile boolean trimmerStarted = false;
+
+    static {
+        if (HEAP_PRESSURE > 0.0f) {
+            AccessController.doPrivileged((PrivilegedAction<Void>) () -> {
+                installPressureListener();
+                return null;
+            });
+        }
+    }
+
+    private ArrayCacheManager() {
+        // Utility class
+    }
+
+    /**
+     * @return bytes of arrays kept in all array caches
+     */
+    static long getCachedBytes() {
+        return CACHED.get();
+    }
+
+    /**
+     * Release all bucket sets (all array caches)
+     */
+    static void trim() {
+        trim(true);
+    }
+
+    private static void trim(final boolean all) {
+        expunge();
+
+        final int cur = epoch;
+        for (Iterator<CacheRef<?>> it = REFS.iterator(); it.hasNext();) {
+            final CacheRef<?> ref = it.next();
+            // unused during at least IDLE_TIME ?
+            if (all || (cur - ref.epoch) >= 2 || (ref.get() == null)) {
+                ref.drop();
+                it.remove();
+            }
+        }
+        for (SharedArrayPool pool : POOLS) {
+            if (all || (cur - pool.epoch) >= 2) {
+                pool.clear();
+            }
+        }
+    }
+
+    private static void register(final CacheRef<?> ref) {
+        expunge();
+        REFS.add(ref);
+        startTrimmer();
+    }
+
+    static void register(final SharedArrayPool pool) {
+        POOLS.add(pool);
+        startTrimmer();
+    }
+
+    // start the idle trimmer thread on first use (if enabled)
+    private static void startTrimmer() {
+        if (trimmerStarted || (IDLE_TIME <= 0L)) {
+            return;
+        }
+        synchronized (ArrayCacheManager.class) {
+            if (trimmerStarted) {
+                return;
+            }
+            trimmerStarted = true;
+        }
+        AccessController.doPrivileged((PrivilegedAction<Void>) () -> {
+            final Timer timer = new Timer("MarlinArrayCacheTrimmer", true);
+            timer.scheduleAtFixedRate(new TimerTask() {
+                @Override
+                public void run() {
+                    epoch++;
+                    trim(false);
+                }
+            }, IDLE_TIME, IDLE_TIME);
+            return null;
+        });
+    }
+
+    // release bucket sets collected by the GC
+    private static void expunge() {
+        CacheRef<?> ref;
+        while ((ref = (CacheRef<?>) REF_QUEUE.poll()) != null) {
+            ref.drop();
+            REFS.remove(ref);
+        }
+    }
+
+    static boolean reserve(final long size) {
+        if (CACHED.addAndGet(size) <= BUDGET) {
+            return true;
+        }
+        CACHED.addAndGet(-size);
+        return false;
+    }
+
+    static void release(final long size) {
+        CACHED.addAndGet(-size);
+    }
+
+    private static void installPressureListener() {
+        try {
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                // only old generation pools support usage thresholds:
+                if ((pool.getType() == MemoryType.HEAP)
+                        && pool.isUsageThresholdSupported()
+                        && pool.isCollectionUsageThresholdSupported()
+                        && (pool.getCollectionUsageThreshold() == 0L))
+                {
+                    final long max = pool.getUsage().getMax();
+                    if (max > 0L) {
+                        final long threshold = (long) (HEAP_PRESSURE * max);
+                        pool.setCollectionUsageThreshold(threshold);
+                        THRESHOLDS.put(pool.getName(), threshold);
+                    }
+                }
+            }
+            if (THRESHOLDS.isEmpty()) {
+                return;
+            }
+            ((NotificationEmitter) ManagementFactory.getMemoryMXBean())
+                .addNotificationListener((notification, handback) -> {
+                    if (MemoryNotificationInfo.MEMORY_COLLECTION_THRESHOLD_EXCEEDED
+                            .equals(notification.getType())
+                        && isMarlinThreshold(MemoryNotificationInfo.from(
+                               (CompositeData) notification.getUserData())))
+                    {
+                        trim(true);
+                    }
+                }, null, null);
+        } catch (Throwable th) {
+            // management may be unavailable:
+            logException("ArrayCacheManager: unable to listen heap pressure", th);
+        }
+    }
+
+    // true if the notified pool still uses the threshold installed by Marlin
+    private static boolean isMarlinThreshold(final MemoryNotificationInfo info) {
+        final Long threshold = THRESHOLDS.get(info.getPoolName());
+        if (threshold == null) {
+            return false;
+        }
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getName().equals(info.getPoolName())) {
+                return (pool.getCollectionUsageThreshold() == threshold.longValue());
+            }
+        }
+        return false;
+    }
+
+    // array sizes in bytes:
+
+    static long sizeOf(final byte[] array) {
+        return array.length;
+    }
+
+    static long sizeOf(final int[] array) {
+        return ((long) array.length) << 2;
+    }
+
+    static long sizeOf(final float[] array) {
+        return ((long) array.length) << 2;
+    }
+
+    static long sizeOf(final double[] array) {
+        return ((long) array.length) << 3;
+    }
+
+    /**
+     * Weak reference to a bucket set counting its cached bytes
+     */
+    static final class CacheRef<T> extends WeakReference<T> {
+
+        // bytes of arrays kept in the bucket set or DROPPED
+        private final AtomicLong size = new AtomicLong();
+        // last use epoch (owner thread)
+        int epoch;
+
+        CacheRef(final T buckets) {
+            super(buckets, REF_QUEUE);
+            this.epoch = ArrayCacheManager.epoch;
+            register(this);
+        }
+
+        T getBuckets() {
+            epoch = ArrayCacheManager.epoch;
+            return get();
+        }
+
+        /**
+         * Account an array to be cached
+         * @param n array size in bytes
+         * @return false if the array must not be cached (budget exceeded
+         * or bucket set dropped)
+         */
+        boolean add(final long n) {
+            if (!reserve(n)) {
+                // try releasing bucket sets collected by the GC:
+                expunge();
+                if (!reserve(n)) {
+                    return false;
+                }
+            }
+            for (;;) {
+                final long v = size.get();
+                if (v == DROPPED) {
+                    release(n);
+                    return false;
+                }
+                if (size.compareAndSet(v, v + n)) {
+                    return true;
+                }
+            }
+        }
+
+        /**
+         * Account an array taken from the cache
+         * @param n array size in bytes
+         */
+        void remove(final long n) {
+            for (;;) {
+                final long v = size.get();
+                if (v == DROPPED) {
+                    // already released
+                    return;
+                }
+                if (size.compareAndSet(v, v - n)) {
+                    release(n);
+                    return;
+                }
+            }
+        }
+
+        void drop() {
+            final long v = size.getAndSet(DROPPED);
+            if (v != DROPPED) {
+                release(v);
+            }
+            clear();
+        }
+    }
+}
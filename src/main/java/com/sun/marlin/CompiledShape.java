@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package com.sun.marlin;
+
+/**
+ * Immutable snapshot of the renderer edges of a shape (path iteration,
+ * curve subdivision and stroking already done) stored off-heap to rasterize
+ * the same shape again (same stroke and transform) without recomputation,
+ * possibly translated by integer pixel offsets.
+ *
+ * Edge records use the renderer layout (see Renderer.OFF_*) except that the
+ * NEXT field stores the first crossing (subpixel y) of the edge.
+ *
+ * Shared by float and double pipelines (values stored as double).
+ */
+public final class CompiledShape {
+
+    // edge records (off-heap, freed when this instance is collected):
+    OffHeapArray edges = null;
+    int numEdges = 0;
+
+    // rendering settings:
+    int windingRule;
+    Class<?> rendererClass = null;
+
+    // edge bounds in subpixel space (half-open intervals):
+    int edgeMinY = Integer.MAX_VALUE;
+    int edgeMaxY = Integer.MIN_VALUE;
+    double edgeMinX, edgeMaxX;
+
+    // pixel bounds (untranslated):
+    int minX, minY, maxX, maxY;
+
+    public CompiledShape() {
+        // no-op
+    }
+
+    /**
+     * Allocate the edge storage (once)
+     * @param renderer renderer producing edges
+     * @param windingRule renderer winding rule
+     * @param len storage length in bytes
+     */
+    void init(final Object renderer, final int windingRule, final long len) {
+        if (rendererClass != null) {
+            throw new IllegalStateException("Shape already compiled");
+        }
+        this.rendererClass = renderer.getClass();
+        this.windingRule = windingRule;
+        // note: may throw OOME:
+        this.edges = new OffHeapArray(this, Math.max(len, 1L));
+    }
+
+    void checkCompiledBy(final Object renderer) {
+        if (renderer.getClass() != rendererClass) {
+            throw new IllegalArgumentException("Shape compiled by "
+                + rendererClass + " can not be rendered by " + renderer.getClass());
+        }
+    }
+
+    /**
+     * @return true if this shape was compiled by an antialiasing renderer
+     */
+    public boolean isAntialiased() {
+        return (rendererClass == Renderer.class)
+            || (rendererClass == DRenderer.class)
+            || (rendererClass == AreaRenderer.class)
+            || (rendererClass == DAreaRenderer.class);
+    }
+
+    /**
+     * @return true if this shape was compiled by a double-precision renderer
+     */
+    public boolean isDoublePrecision() {
+        return (rendererClass == DRenderer.class)
+            || (rendererClass == DRendererNoAA.class)
+            || (rendererClass == DAreaRenderer.class);
+    }
+
+    /**
+     * @return true if this shape has no edge
+     */
+    public boolean isEmpty() {
+        return (numEdges == 0) || (minX >= maxX) || (minY >= maxY);
+    }
+
+    public int getNumEdges() {
+        return numEdges;
+    }
+
+    public int getWindingRule() {
+        return windingRule;
+    }
+
+    /**
+     * @return pixel bounds (inclusive) of the untranslated mask
+     */
+    public int getMinX() {
+        return minX;
+    }
+
+    public int getMinY() {
+        return minY;
+    }
+
+    /**
+     * @return pixel bounds (exclusive) of the untranslated mask
+     */
+    public int getMaxX() {
+        return maxX;
+    }
+
+    public int getMaxY() {
+        return maxY;
+    }
+
+    /**
+     * @return off-heap memory used by edge records (bytes)
+     */
+    public long getMemoryUsage() {
+        return (edges != null) ? edges.length : 0L;
+    }
+}
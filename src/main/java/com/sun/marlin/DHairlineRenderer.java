@@ -0,0 +1,923 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.sun.marlin;
+
+import static com.sun.marlin.OffHeapArray.SIZE_INT;
+import sun.misc.Unsafe;
+
+/**
+ * Hairline renderer: strokes no wider than one pixel are not widened by the
+ * Stroker but rasterized directly from their center line (like Java2D thin
+ * line loops): every line spreads its ink (width x length) along its major
+ * axis and over the two nearest pixels along its minor axis (Wu-like tent
+ * filter), then the coverage of overlapping lines is summed and clamped.
+ *
+ * Caps extend the open ends of subpaths by the same ink amount (half width
+ * for square caps, PI/4 x half width for round caps); joins are ignored as
+ * their area is negligible.
+ */
+public final class DHairlineRenderer implements DMarlinRenderer, MarlinConst {
+
+    static final boolean DISABLE_RENDER = false;
+
+    // maximum stroke width (pixels):
+    public static final double MAX_WIDTH = 1.0d;
+
+    // curve flattening tolerance (pixels):
+    private static final double FLAT_TOLERANCE = 1.0d / 16.0d;
+    // Wang's formula: n = sqrt(d * (d - 1) / 8 * max(|second difference|) / tol)
+    private static final double CUB_FLAT_FACTOR  = 0.75d / FLAT_TOLERANCE;
+    private static final double QUAD_FLAT_FACTOR = 0.25d / FLAT_TOLERANCE;
+    // maximum number of lines per curve:
+    private static final int MAX_CURVE_LINES = 1024;
+
+    // line record (off-heap):
+    // start and end points (y0 <= y1) and ink per major axis unit [double]
+    // then next line [int]
+    public static final long OFF_X0   = 0;
+    public static final long OFF_Y0   = OFF_X0  + Double.BYTES;
+    public static final long OFF_X1   = OFF_Y0  + Double.BYTES;
+    public static final long OFF_Y1   = OFF_X1  + Double.BYTES;
+    public static final long OFF_INK  = OFF_Y1  + Double.BYTES;
+    public static final long OFF_NEXT = OFF_INK + Double.BYTES;
+
+    // size of one line in bytes
+    public static final int SIZEOF_LINE_BYTES = (int)(OFF_NEXT + SIZE_INT);
+
+    // renderer context
+    final DRendererContext rdrCtx;
+
+    // bounds of the drawing region, at pixel precision (half-open intervals)
+    private int boundsMinX, boundsMinY, boundsMaxX, boundsMaxY;
+
+    // stroke width and cap extension (pixels):
+    private double width;
+    private double capExt;
+
+    // current drawing position (pixels)
+    private double x0, y0;
+
+    // position of most recent 'moveTo' command
+    private double sx0, sy0;
+
+    // first line of the current subpath (start cap unknown until its end):
+    private boolean hasFirst;
+    private double fx0, fy0, fx1, fy1;
+    // last line of the current subpath (end cap unknown until the next one):
+    private boolean hasLast;
+    private double lx0, ly0, lx1, ly1;
+
+    // line bounds: pixel rows [lineMinY; lineMaxY[ and x range (pixels)
+    private int lineMinY = Integer.MAX_VALUE;
+    private int lineMaxY = Integer.MIN_VALUE;
+    private double lineMinX = Double.POSITIVE_INFINITY;
+    private double lineMaxX = Double.NEGATIVE_INFINITY;
+
+    // lines [doubles|ints] stored in off-heap memory
+    private final OffHeapArray lines;
+
+    // line list per pixel row (first row touched by lines)
+    private int[] edgeBuckets;
+    private int[] edgeBucketCounts;
+
+    // edgeBuckets ref (clean)
+    private final IntArrayCache.Reference edgeBuckets_ref;
+    // edgeBucketCounts ref (clean)
+    private final IntArrayCache.Reference edgeBucketCounts_ref;
+
+    // active lines (pointers)
+    private int[] edgePtrs;
+    // edgePtrs ref (dirty)
+    private final IntArrayCache.Reference edgePtrs_ref;
+
+    // coverage accumulated per pixel in the current pixel row
+    private double[] cells;
+    // cells ref (dirty)
+    private final DoubleArrayCache.Reference cells_ref;
+
+    // alpha deltas of the current pixel row
+    private int[] alphaLine;
+    // alphaLine ref (clean)
+    private final IntArrayCache.Reference alphaLine_ref;
+
+    // 1 if the block of pixels has some coverage in the current pixel row
+    private int[] blkFlags;
+    // blkFlags ref (clean)
+    private final IntArrayCache.Reference blkFlags_ref;
+
+    // max used mark (stats)
+    private int activeLineMaxUsed;
+
+    // output pixel bounding box:
+    int bboxX0, bboxX1, bboxY0, bboxY1;
+
+    DHairlineRenderer(final DRendererContext rdrCtx) {
+        this.rdrCtx = rdrCtx;
+
+        this.lines = rdrCtx.rdrMem.edges;
+
+        edgeBuckets_ref      = rdrCtx.rdrMem.edgeBuckets_ref;
+        edgeBucketCounts_ref = rdrCtx.rdrMem.edgeBucketCounts_ref;
+
+        edgeBuckets      = edgeBuckets_ref.initial;
+        edgeBucketCounts = edgeBucketCounts_ref.initial;
+
+        edgePtrs_ref = rdrCtx.rdrMem.edgePtrs_ref;
+        edgePtrs     = edgePtrs_ref.initial;
+
+        alphaLine_ref = rdrCtx.rdrMem.alphaLine_ref;
+        alphaLine     = alphaLine_ref.initial;
+
+        blkFlags_ref = rdrCtx.rdrMem.blkFlags_ref;
+        blkFlags     = blkFlags_ref.initial;
+
+        cells_ref = rdrCtx.newDirtyDoubleArrayRef(INITIAL_AA_ARRAY); // 4K
+        cells     = cells_ref.initial;
+    }
+
+    @Override
+    public DHairlineRenderer init(final int pix_boundsX, final int pix_boundsY,
+                                 final int pix_boundsWidth, final int pix_boundsHeight,
+                                 final int windingRule)
+    {
+        // note: winding rule ignored (coverage is summed)
+
+        // bounds as half-open intervals: minX <= x < maxX and minY <= y < maxY
+        this.boundsMinX = pix_boundsX;
+        this.boundsMaxX = pix_boundsX + pix_boundsWidth;
+        this.boundsMinY = pix_boundsY;
+        this.boundsMaxY = pix_boundsY + pix_boundsHeight;
+
+        if (DO_LOG_BOUNDS) {
+            MarlinUtils.logInfo("boundsXY = [" + boundsMinX + " ... "
+                                + boundsMaxX + "[ [" + boundsMinY + " ... "
+                                + boundsMaxY + "[");
+        }
+
+        // +1 for the last pixel row
+        final int edgeBucketsLength = (boundsMaxY - boundsMinY) + 1;
+
+        if (edgeBucketsLength > INITIAL_BUCKET_ARRAY) {
+            if (DO_STATS) {
+                rdrCtx.stats.stat_array_renderer_edgeBuckets
+                    .add(edgeBucketsLength);
+                rdrCtx.stats.stat_array_renderer_edgeBucketCounts
+                    .add(edgeBucketsLength);
+            }
+            edgeBuckets = edgeBuckets_ref.getArray(edgeBucketsLength);
+            edgeBucketCounts = edgeBucketCounts_ref.getArray(edgeBucketsLength);
+        }
+
+        lineMinY = Integer.MAX_VALUE;
+        lineMaxY = Integer.MIN_VALUE;
+        lineMinX = Double.POSITIVE_INFINITY;
+        lineMaxX = Double.NEGATIVE_INFINITY;
+
+        hasFirst = false;
+        hasLast  = false;
+
+        // default stroke: 1 pixel wide, butt caps
+        width  = MAX_WIDTH;
+        capExt = 0.0d;
+
+        // reset used mark:
+        activeLineMaxUsed = 0;
+        lines.used = 0;
+
+        // reset bbox:
+        bboxX0 = 0;
+        bboxX1 = 0;
+        bboxY0 = 0;
+        bboxY1 = 0;
+
+        return this; // fluent API
+    }
+
+    /**
+     * Set the stroke width (pixels, in ]0; MAX_WIDTH]) and its end caps
+     * (Stroker.CAP_*)
+     * @return this renderer
+     */
+    public DHairlineRenderer initStroke(final double lineWidth, final int cap) {
+        this.width = lineWidth;
+
+        if (cap == Stroker.CAP_SQUARE) {
+            capExt = 0.5d * lineWidth;
+        } else if (cap == Stroker.CAP_ROUND) {
+            // same area as the half disk:
+            capExt = (0.125d * Math.PI * lineWidth);
+        } else {
+            capExt = 0.0d;
+        }
+        return this; // fluent API
+    }
+
+    /**
+     * Disposes this renderer and recycle it clean up before reusing this instance
+     */
+    @Override
+    public void dispose() {
+        if (DO_STATS) {
+            rdrCtx.stats.stat_rdr_activeEdges.add(activeLineMaxUsed);
+            rdrCtx.stats.stat_rdr_edges.add(lines.used);
+            rdrCtx.stats.stat_rdr_edges_count.add(lines.used / SIZEOF_LINE_BYTES);
+            rdrCtx.stats.hist_rdr_edges_count.add(lines.used / SIZEOF_LINE_BYTES);
+            rdrCtx.stats.totalOffHeap += lines.length;
+        }
+        // Return arrays:
+        edgePtrs = edgePtrs_ref.putArray(edgePtrs);
+        cells    = cells_ref.putArray(cells);
+
+        alphaLine = alphaLine_ref.putArray(alphaLine, 0, 0); // already zero filled
+        blkFlags  = blkFlags_ref.putArray(blkFlags, 0, 0); // already zero filled
+
+        if (lineMinY != Integer.MAX_VALUE) {
+            int from = lineMinY - boundsMinY;
+            int to   = lineMaxY - boundsMinY;
+
+            // if context is maked as DIRTY:
+            if (rdrCtx.dirty) {
+                // may happen if an exception if thrown in the pipeline processing:
+                // clear completely buckets arrays:
+                from = 0;
+                to   = boundsMaxY - boundsMinY;
+            }
+            // clear only used part
+            edgeBuckets = edgeBuckets_ref.putArray(edgeBuckets, from, to + 1);
+            edgeBucketCounts = edgeBucketCounts_ref.putArray(edgeBucketCounts,
+                                                             from, to + 1);
+        } else {
+            // unused arrays
+            edgeBuckets = edgeBuckets_ref.putArray(edgeBuckets, 0, 0);
+            edgeBucketCounts = edgeBucketCounts_ref.putArray(edgeBucketCounts, 0, 0);
+        }
+
+        // At last: resize back off-heap lines to initial size
+        if (lines.length != INITIAL_EDGES_CAPACITY) {
+            // note: may throw OOME:
+            lines.resize(INITIAL_EDGES_CAPACITY);
+        }
+        if (DO_CLEAN_DIRTY) {
+            // Force zero-fill dirty arrays:
+            lines.fill(BYTE_0);
+        }
+    }
+
+    @Override
+    public void moveTo(final double pix_x0, final double pix_y0) {
+        finishSubpath(true);
+        this.sx0 = pix_x0;
+        this.sy0 = pix_y0;
+        this.x0 = pix_x0;
+        this.y0 = pix_y0;
+    }
+
+    @Override
+    public void lineTo(final double pix_x1, final double pix_y1) {
+        addLine(x0, y0, pix_x1, pix_y1);
+        x0 = pix_x1;
+        y0 = pix_y1;
+    }
+
+    @Override
+    public void curveTo(final double pix_x1, final double pix_y1,
+                        final double pix_x2, final double pix_y2,
+                        final double pix_x3, final double pix_y3)
+    {
+        final double x0 = this.x0;
+        final double y0 = this.y0;
+
+        // max second difference of control points:
+        final double dd = Math.max(
+            Math.max(Math.abs(x0 - 2.0d * pix_x1 + pix_x2),
+                     Math.abs(y0 - 2.0d * pix_y1 + pix_y2)),
+            Math.max(Math.abs(pix_x1 - 2.0d * pix_x2 + pix_x3),
+                     Math.abs(pix_y1 - 2.0d * pix_y2 + pix_y3)));
+
+        final int n = getLineCount(dd * CUB_FLAT_FACTOR);
+
+        // power basis: p(t) = ((a t + b) t + c) t + p0
+        final double cx = 3.0d * (pix_x1 - x0);
+        final double cy = 3.0d * (pix_y1 - y0);
+        final double bx = 3.0d * (pix_x2 - pix_x1) - cx;
+        final double by = 3.0d * (pix_y2 - pix_y1) - cy;
+        final double ax = pix_x3 - x0 - cx - bx;
+        final double ay = pix_y3 - y0 - cy - by;
+
+        double px = x0, py = y0, nx, ny, t;
+        final double dt = 1.0d / n;
+
+        for (int i = 1; i < n; i++) {
+            t = i * dt;
+            nx = ((ax * t + bx) * t + cx) * t + x0;
+            ny = ((ay * t + by) * t + cy) * t + y0;
+            addLine(px, py, nx, ny);
+            px = nx;
+            py = ny;
+        }
+        addLine(px, py, pix_x3, pix_y3);
+
+        if (DO_STATS) {
+            rdrCtx.stats.stat_rdr_curveBreak.add(n);
+        }
+        this.x0 = pix_x3;
+        this.y0 = pix_y3;
+    }
+
+    @Override
+    public void quadTo(final double pix_x1, final double pix_y1,
+                       final double pix_x2, final double pix_y2)
+    {
+        final double x0 = this.x0;
+        final double y0 = this.y0;
+
+        // second difference of control points:
+        final double dd = Math.max(Math.abs(x0 - 2.0d * pix_x1 + pix_x2),
+                                  Math.abs(y0 - 2.0d * pix_y1 + pix_y2));
+
+        final int n = getLineCount(dd * QUAD_FLAT_FACTOR);
+
+        // power basis: p(t) = (a t + b) t + p0
+        final double bx = 2.0d * (pix_x1 - x0);
+        final double by = 2.0d * (pix_y1 - y0);
+        final double ax = pix_x2 - x0 - bx;
+        final double ay = pix_y2 - y0 - by;
+
+        double px = x0, py = y0, nx, ny, t;
+        final double dt = 1.0d / n;
+
+        for (int i = 1; i < n; i++) {
+            t = i * dt;
+            nx = (ax * t + bx) * t + x0;
+            ny = (ay * t + by) * t + y0;
+            addLine(px, py, nx, ny);
+            px = nx;
+            py = ny;
+        }
+        addLine(px, py, pix_x2, pix_y2);
+
+        if (DO_STATS) {
+            rdrCtx.stats.stat_rdr_quadBreak.add(n);
+        }
+        this.x0 = pix_x2;
+        this.y0 = pix_y2;
+    }
+
+    private static int getLineCount(final double n2) {
+        // note: NaN or infinite values give 1 line
+        if (!(n2 > 1.0d)) {
+            return 1;
+        }
+        if (n2 >= (MAX_CURVE_LINES * MAX_CURVE_LINES)) {
+            return MAX_CURVE_LINES;
+        }
+        return FloatMath.ceil_int(Math.sqrt(n2));
+    }
+
+    @Override
+    public void closePath() {
+        if ((x0 != sx0) || (y0 != sy0)) {
+            addLine(x0, y0, sx0, sy0);
+            x0 = sx0;
+            y0 = sy0;
+        }
+        // closed subpath: no cap
+        finishSubpath(false);
+    }
+
+    @Override
+    public void pathDone() {
+        finishSubpath(true);
+
+        // call endRendering() to determine the boundaries:
+        endRendering();
+    }
+
+    private void addLine(final double x1, final double y1,
+                         final double x2, final double y2)
+    {
+        if (DO_STATS) {
+            rdrCtx.stats.stat_rdr_addLine.add(1);
+        }
+        if ((x1 == x2) && (y1 == y2)) {
+            // empty line (no direction):
+            return;
+        }
+        if (!hasFirst) {
+            hasFirst = true;
+            fx0 = x1;
+            fy0 = y1;
+            fx1 = x2;
+            fy1 = y2;
+            return;
+        }
+        if (hasLast) {
+            // the last line is followed by this one (join):
+            storeLine(lx0, ly0, lx1, ly1, 0.0d, 0.0d);
+        }
+        hasLast = true;
+        lx0 = x1;
+        ly0 = y1;
+        lx1 = x2;
+        ly1 = y2;
+    }
+
+    private void finishSubpath(final boolean capped) {
+        if (hasFirst) {
+            final double ext = (capped) ? capExt : 0.0d;
+
+            if (hasLast) {
+                storeLine(fx0, fy0, fx1, fy1, ext, 0.0d);
+                storeLine(lx0, ly0, lx1, ly1, 0.0d, ext);
+            } else {
+                storeLine(fx0, fy0, fx1, fy1, ext, ext);
+            }
+            hasFirst = false;
+            hasLast  = false;
+        }
+    }
+
+    /**
+     * Extends the given line by the given amounts at its ends, skips it if
+     * out of the renderer bounds and adds it into the line list
+     */
+    private void storeLine(double x1, double y1, double x2, double y2,
+                           final double ext1, final double ext2)
+    {
+        final double dx = x2 - x1;
+        final double dy = y2 - y1;
+        final double len = Math.sqrt(dx * dx + dy * dy);
+
+        if ((ext1 != 0.0d) || (ext2 != 0.0d)) {
+            final double ux = dx / len;
+            final double uy = dy / len;
+            x1 -= ext1 * ux;
+            y1 -= ext1 * uy;
+            x2 += ext2 * ux;
+            y2 += ext2 * uy;
+        }
+        if (y2 < y1) {
+            double tmp = y2;
+            y2 = y1;
+            y1 = tmp;
+            tmp = x2;
+            x2 = x1;
+            x1 = tmp;
+        }
+        // coverage spreads up to 1 pixel away from the center line
+        // (NaN values are skipped too):
+        if (!(y2 + 1.0d > boundsMinY) || !(y1 - 1.0d < boundsMaxY)
+            || !(Math.max(x1, x2) + 1.0d > boundsMinX)
+            || !(Math.min(x1, x2) - 1.0d < boundsMaxX))
+        {
+            if (DO_STATS) {
+                rdrCtx.stats.stat_rdr_addLine_skip.add(1);
+            }
+            return;
+        }
+        // first pixel row touched by this line:
+        final int firstRow = FloatMath.max(FloatMath.floor_int(y1 - 0.5d), boundsMinY);
+        // last pixel row (exclusive):
+        final int lastRow  = FloatMath.min(FloatMath.floor_int(y2 + 0.5d) + 1, boundsMaxY);
+
+        if (firstRow >= lastRow) {
+            return;
+        }
+        if (firstRow < lineMinY) {
+            lineMinY = firstRow;
+        }
+        if (lastRow > lineMaxY) {
+            lineMaxY = lastRow;
+        }
+        if (x1 < x2) {
+            if (x1 < lineMinX) {
+                lineMinX = x1;
+            }
+            if (x2 > lineMaxX) {
+                lineMaxX = x2;
+            }
+        } else {
+            if (x2 < lineMinX) {
+                lineMinX = x2;
+            }
+            if (x1 > lineMaxX) {
+                lineMaxX = x1;
+            }
+        }
+
+        final OffHeapArray _lines = lines;
+
+        // get free pointer (ie length in bytes)
+        final int linePtr = _lines.used;
+
+        // use substraction to avoid integer overflow:
+        if (_lines.length - linePtr < SIZEOF_LINE_BYTES) {
+            final long lineNewSize = ArrayCacheConst.getNewLargeSize(
+                                        _lines.length,
+                                        linePtr + SIZEOF_LINE_BYTES);
+
+            if (DO_STATS) {
+                rdrCtx.stats.stat_rdr_edges_resizes.add(lineNewSize);
+            }
+            _lines.resize(lineNewSize);
+        }
+
+        final Unsafe _unsafe = OffHeapArray.UNSAFE;
+        final long addr = _lines.address + linePtr;
+        final int bucketIdx = firstRow - boundsMinY;
+
+        // ink per unit along the major axis = width x length / major extent:
+        final double ink = width * len / Math.max(Math.abs(dx), Math.abs(dy));
+
+        _unsafe.putDouble(addr + OFF_X0,  x1);
+        _unsafe.putDouble(addr + OFF_Y0,  y1);
+        _unsafe.putDouble(addr + OFF_X1,  x2);
+        _unsafe.putDouble(addr + OFF_Y1,  y2);
+        _unsafe.putDouble(addr + OFF_INK, ink);
+        _unsafe.putInt(addr   + OFF_NEXT, edgeBuckets[bucketIdx]);
+
+        // Update buckets:
+        edgeBuckets[bucketIdx] = linePtr;
+        edgeBucketCounts[bucketIdx]++;
+
+        // update free pointer (ie length in bytes)
+        _lines.used += SIZEOF_LINE_BYTES;
+    }
+
+    private void endRendering() {
+        if (lineMinY == Integer.MAX_VALUE) {
+            return; // undefined line bounds
+        }
+
+        // bounds as half-open intervals (1 pixel margin for the tent filter)
+        final int pminX = FloatMath.max(FloatMath.floor_int(lineMinX - 1.0d), boundsMinX);
+        final int pmaxX = FloatMath.min(FloatMath.ceil_int(lineMaxX + 1.0d), boundsMaxX);
+        final int pminY = FloatMath.max(lineMinY, boundsMinY);
+        final int pmaxY = FloatMath.min(lineMaxY, boundsMaxY);
+
+        if (DO_LOG_BOUNDS) {
+            MarlinUtils.logInfo("linesXY = [" + lineMinX + " ... " + lineMaxX
+                                + "[ [" + lineMinY + " ... " + lineMaxY + "[");
+        }
+
+        // test clipping for shapes out of bounds
+        if ((pminX >= pmaxX) || (pminY >= pmaxY)) {
+            return;
+        }
+
+        // store BBox to answer ptg.getBBox():
+        bboxX0 = pminX;
+        bboxX1 = pmaxX;
+        bboxY0 = pminY;
+        bboxY1 = pmaxY;
+
+        // add 2 to deal with the last pixel:
+        final int width = (pmaxX - pminX) + 2;
+
+        if (width > INITIAL_AA_ARRAY) {
+            if (DO_STATS) {
+                rdrCtx.stats.stat_array_renderer_alphaline.add(width);
+            }
+            alphaLine = alphaLine_ref.getArray(width);
+        }
+        if (width > cells.length) {
+            cells = cells_ref.getArray(width);
+        }
+    }
+
+    @Override
+    public void produceAlphas(final MarlinAlphaConsumer ac) {
+        ac.setMaxAlpha(MAX_AA_ALPHA);
+
+        if (DO_MONITORS) {
+            rdrCtx.stats.mon_rdr_endRendering_Y.start();
+        }
+
+        // use block flags for large spans (like the Renderer):
+        final int width = bboxX1 - bboxX0;
+        final boolean useBlkFlags = ENABLE_BLOCK_FLAGS && !FORCE_NO_RLE
+                                    && ac.supportBlockFlags()
+                                    && (FORCE_RLE || width > RLE_MIN_WIDTH);
+        if (useBlkFlags) {
+            // note: +2 to ensure enough space left at end
+            final int blkLen = (width >> BLOCK_SIZE_LG) + 2;
+            if (blkLen > INITIAL_ARRAY) {
+                blkFlags = blkFlags_ref.getArray(blkLen);
+            }
+        }
+
+        // Process all pixel rows:
+        _endRendering(ac, (useBlkFlags) ? blkFlags : null);
+
+        if (DO_MONITORS) {
+            rdrCtx.stats.mon_rdr_endRendering_Y.stop();
+        }
+    }
+
+    private void _endRendering(final MarlinAlphaConsumer ac,
+                               final int[] _blkFlags)
+    {
+        if (DISABLE_RENDER) {
+            return;
+        }
+        final int bboxx0 = bboxX0;
+        final int width  = bboxX1 - bboxx0;
+
+        if ((width <= 0) || (bboxY1 <= bboxY0)) {
+            return;
+        }
+
+        // local vars (performance):
+        final Unsafe _unsafe = OffHeapArray.UNSAFE;
+        final long addr0 = lines.address;
+        final int[] _edgeBuckets = edgeBuckets;
+        final int[] _edgeBucketCounts = edgeBucketCounts;
+        final int[] _alpha = alphaLine;
+        final double[] _cells = cells;
+        final double _maxAlpha = MAX_AA_ALPHA;
+        final int _BLK_SIZE_LG = BLOCK_SIZE_LG;
+
+        // clear cells once (cleared after each row):
+        DoubleArrayCache.fill(_cells, 0, width + 2, 0.0d);
+
+        int[] _edgePtrs = edgePtrs;
+        int numLines = 0;
+        int _arrayMaxUsed = activeLineMaxUsed;
+
+        int bucket, count, ptr, i, n, minIdx, maxIdx, c, cEnd, a, prev, t0, t1;
+        long addr;
+        double rc, lx0, ly0, lx1, ly1, ldx, ldy, ink, xa, xb, ya, yb, m, xm, t, cov;
+
+        for (int y = bboxY0, ymax = bboxY1; y < ymax; y++) {
+            bucket = y - boundsMinY;
+
+            // add new lines touching this pixel row:
+            count = _edgeBucketCounts[bucket];
+            if (count != 0) {
+                if (DO_STATS) {
+                    rdrCtx.stats.stat_rdr_activeEdges_adds.add(count);
+                }
+                if (_edgePtrs.length < numLines + count) {
+                    if (DO_STATS) {
+                        rdrCtx.stats.stat_array_renderer_edgePtrs
+                            .add(numLines + count);
+                    }
+                    this.edgePtrs = _edgePtrs
+                        = edgePtrs_ref.widenArray(_edgePtrs, numLines,
+                                                  numLines + count);
+                }
+                for (ptr = _edgeBuckets[bucket]; count > 0; count--) {
+                    _edgePtrs[numLines++] = ptr;
+                    ptr = _unsafe.getInt(addr0 + ptr + OFF_NEXT);
+                }
+                if (numLines > _arrayMaxUsed) {
+                    _arrayMaxUsed = numLines;
+                }
+            }
+
+            // row center:
+            rc = y + 0.5d;
+            minIdx = Integer.MAX_VALUE;
+            maxIdx = Integer.MIN_VALUE;
+
+            // accumulate the ink of active lines within this row:
+            for (i = 0, n = 0; i < numLines; i++) {
+                ptr = _edgePtrs[i];
+                addr = addr0 + ptr;
+
+                ly1 = _unsafe.getDouble(addr + OFF_Y1);
+
+                if (ly1 + 0.5d >= y + 1) {
+                    // keep active line for next rows:
+                    _edgePtrs[n++] = ptr;
+                }
+                lx0 = _unsafe.getDouble(addr + OFF_X0) - bboxx0;
+                ly0 = _unsafe.getDouble(addr + OFF_Y0);
+                lx1 = _unsafe.getDouble(addr + OFF_X1) - bboxx0;
+                ink = _unsafe.getDouble(addr + OFF_INK);
+
+                ldx = lx1 - lx0;
+                ldy = ly1 - ly0;
+
+                if (Math.abs(ldx) >= ldy) {
+                    // x-major line: ink spread over columns, tent over rows
+                    if (lx0 < lx1) {
+                        xa = lx0;
+                        ya = ly0;
+                        xb = lx1;
+                    } else {
+                        xa = lx1;
+                        ya = ly1;
+                        xb = lx0;
+                    }
+                    m = ldy / ldx;
+
+                    // columns whose center line is within 1 pixel of rc:
+                    if (m != 0.0d) {
+                        t  = xa + (rc - 1.0d - ya) / m;
+                        xm = xa + (rc + 1.0d - ya) / m;
+                        if (t > xm) {
+                            final double tmp = t;
+                            t  = xm;
+                            xm = tmp;
+                        }
+                        if (t > xa) {
+                            xa = t;
+                        }
+                        if (xm < xb) {
+                            xb = xm;
+                        }
+                    } else if (!(Math.abs(ya - rc) < 1.0d)) {
+                        continue;
+                    }
+                    if (!(xa < xb)) {
+                        continue;
+                    }
+                    // clip columns:
+                    c    = FloatMath.max(FloatMath.floor_int(xa), 0);
+                    cEnd = FloatMath.min(FloatMath.ceil_int(xb), width);
+                    if (c >= cEnd) {
+                        continue;
+                    }
+                    if (c < minIdx) {
+                        minIdx = c;
+                    }
+                    if (cEnd - 1 > maxIdx) {
+                        maxIdx = cEnd - 1;
+                    }
+                    if (_blkFlags != null) {
+                        for (t0 = c >> _BLK_SIZE_LG, t1 = (cEnd - 1) >> _BLK_SIZE_LG;
+                             t0 <= t1; t0++)
+                        {
+                            _blkFlags[t0] = 1;
+                        }
+                    }
+                    if (lx0 >= lx1) {
+                        // restore the start point of the line:
+                        xm = lx1;
+                        ya = ly1;
+                    } else {
+                        xm = lx0;
+                        ya = ly0;
+                    }
+
+                    for (; c < cEnd; c++) {
+                        // line part within the column [c; c + 1]:
+                        t = ((c + 1 < xb) ? c + 1 : xb) - ((c > xa) ? c : xa);
+                        // distance from the row center at the part middle:
+                        cov = ya + m * ((((c > xa) ? c : xa) + 0.5d * t) - xm) - rc;
+                        cov = 1.0d - ((cov < 0.0d) ? -cov : cov);
+
+                        if (cov > 0.0d) {
+                            _cells[c] += ink * t * cov;
+                        }
+                    }
+                } else {
+                    // y-major line: ink spread over rows, tent over columns
+                    ya = (ly0 > y) ? ly0 : y;
+                    yb = (ly1 < y + 1) ? ly1 : y + 1;
+                    t = yb - ya;
+
+                    if (t > 0.0d) {
+                        // center line at the part middle:
+                        xm = lx0 + ldx * ((ya + 0.5d * t - ly0) / ldy) - 0.5d;
+                        c = FloatMath.floor_int(xm);
+                        xm -= c;
+                        ink *= t;
+
+                        // clip columns:
+                        t0 = FloatMath.max(c, 0);
+                        t1 = FloatMath.min(c + 1, width - 1);
+                        if (t0 > t1) {
+                            continue;
+                        }
+                        if (c >= 0) {
+                            _cells[c] += ink * (1.0d - xm);
+                        }
+                        if (c + 1 < width) {
+                            _cells[c + 1] += ink * xm;
+                        }
+                        if (t0 < minIdx) {
+                            minIdx = t0;
+                        }
+                        if (t1 > maxIdx) {
+                            maxIdx = t1;
+                        }
+                        if (_blkFlags != null) {
+                            _blkFlags[t0 >> _BLK_SIZE_LG] = 1;
+                            _blkFlags[t1 >> _BLK_SIZE_LG] = 1;
+                        }
+                    }
+                }
+            }
+            numLines = n;
+
+            if (minIdx > maxIdx) {
+                ac.clearAlphas(y);
+                continue;
+            }
+
+            // clamp the summed coverage and emit alpha deltas:
+            prev = 0;
+            if (_blkFlags != null) {
+                // traverse flagged blocks only:
+                for (t0 = minIdx >> _BLK_SIZE_LG, t1 = maxIdx >> _BLK_SIZE_LG;
+                     t0 <= t1; t0++)
+                {
+                    if (_blkFlags[t0] == 0) {
+                        continue;
+                    }
+                    i = FloatMath.max(t0 << _BLK_SIZE_LG, minIdx);
+                    cEnd = FloatMath.min((t0 + 1) << _BLK_SIZE_LG, maxIdx + 1);
+
+                    for (; i < cEnd; i++) {
+                        cov = _cells[i];
+                        _cells[i] = 0.0d;
+
+                        a = (cov >= 1.0d) ? MAX_AA_ALPHA : (int) (cov * _maxAlpha + 0.5d);
+                        if (a != prev) {
+                            _alpha[i] = a - prev;
+                            prev = a;
+                        }
+                    }
+                    if ((prev != 0) && (_blkFlags[t0 + 1] == 0)) {
+                        // close the span at the first pixel of the next block:
+                        _alpha[cEnd] = -prev;
+                        prev = 0;
+                    }
+                }
+                // note: alpha array and block flags will be zeroed by the consumer:
+                ac.setAndClearRelativeAlphas(_blkFlags, _alpha, y, bboxx0 + minIdx,
+                                             bboxx0 + maxIdx + 1);
+            } else {
+                for (i = minIdx; i <= maxIdx; i++) {
+                    cov = _cells[i];
+                    _cells[i] = 0.0d;
+
+                    a = (cov >= 1.0d) ? MAX_AA_ALPHA : (int) (cov * _maxAlpha + 0.5d);
+                    _alpha[i] = a - prev;
+                    prev = a;
+                }
+                // note: alpha array will be zeroed by the consumer:
+                ac.setAndClearRelativeAlphas(_alpha, y, bboxx0 + minIdx,
+                                             bboxx0 + maxIdx + 1);
+            }
+        }
+
+        activeLineMaxUsed = _arrayMaxUsed;
+    }
+
+    @Override
+    public int getOutpixMinX() {
+        return bboxX0;
+    }
+
+    @Override
+    public int getOutpixMaxX() {
+        return bboxX1;
+    }
+
+    @Override
+    public int getOutpixMinY() {
+        return bboxY0;
+    }
+
+    @Override
+    public int getOutpixMaxY() {
+        return bboxY1;
+    }
+
+    @Override
+    public double getOffsetX() {
+        // center line coverage: no sampling offset
+        return 0.0d;
+    }
+
+    @Override
+    public double getOffsetY() {
+        // center line coverage: no sampling offset
+        return 0.0d;
+    }
+}
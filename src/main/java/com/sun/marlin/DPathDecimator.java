@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.sun.marlin;
+
+
+
+/**
+ * Pixel-aware polyline decimation (M4): consecutive line points falling in
+ * the same pixel column (device space) are reduced to the first, min y,
+ * max y and last points of the column (in their original order), so the
+ * vertical extent of every column is preserved exactly while the horizontal
+ * error stays below one pixel. Dense polylines (time series) then carry at
+ * most 4 points per pixel column into the stroker / renderer.
+ */
+public final class DPathDecimator implements DPathConsumer2D {
+
+    // minimum number of path points per pixel column to use decimation
+    public static final int MIN_DENSITY = 4;
+
+    // members:
+    private DPathConsumer2D delegate;
+    // pixel column of the current point group
+    private int col;
+    // number of points in the current group (0 means none)
+    private int count;
+    // first point of the group
+    private double fx, fy;
+    // point with the min y (and its index in the group)
+    private double minX, minY;
+    private int minIdx;
+    // point with the max y (and its index in the group)
+    private double maxX, maxY;
+    private int maxIdx;
+    // last point of the group
+    private double lx, ly;
+
+    DPathDecimator() {
+    }
+
+    public DPathDecimator init(final DPathConsumer2D delegate) {
+        this.delegate = delegate;
+        count = 0;
+        return this; // fluent API
+    }
+
+    private void finishGroup() {
+        final int n = count;
+        if (n != 0) {
+            count = 0;
+
+            final DPathConsumer2D out = delegate;
+            out.lineTo(fx, fy);
+
+            if (n > 1) {
+                final int last = n - 1;
+                // min / max points in their original order (if not first / last):
+                if (minIdx < maxIdx) {
+                    if (minIdx != 0) {
+                        out.lineTo(minX, minY);
+                    }
+                    if (maxIdx != last) {
+                        out.lineTo(maxX, maxY);
+                    }
+                } else if (maxIdx < minIdx) {
+                    if (maxIdx != 0) {
+                        out.lineTo(maxX, maxY);
+                    }
+                    if (minIdx != last) {
+                        out.lineTo(minX, minY);
+                    }
+                }
+                out.lineTo(lx, ly);
+            }
+        }
+    }
+
+    @Override
+    public void pathDone() {
+        finishGroup();
+        delegate.pathDone();
+    }
+
+    @Override
+    public void closePath() {
+        finishGroup();
+        delegate.closePath();
+    }
+
+    @Override
+    public void moveTo(final double xe, final double ye) {
+        finishGroup();
+        delegate.moveTo(xe, ye);
+    }
+
+    @Override
+    public void lineTo(final double xe, final double ye) {
+        final int c = FloatMath.floor_int(xe);
+
+        if ((count != 0) && (c == col)) {
+            // same pixel column: update the group
+            if (ye < minY) {
+                minX = xe;
+                minY = ye;
+                minIdx = count;
+            } else if (ye > maxY) {
+                maxX = xe;
+                maxY = ye;
+                maxIdx = count;
+            }
+            lx = xe;
+            ly = ye;
+            count++;
+            return;
+        }
+        finishGroup();
+
+        // start a new group:
+        col = c;
+        count = 1;
+        fx = xe;
+        fy = ye;
+        minX = maxX = lx = xe;
+        minY = maxY = ly = ye;
+        minIdx = maxIdx = 0;
+    }
+
+    @Override
+    public void quadTo(final double x1, final double y1,
+                       final double xe, final double ye)
+    {
+        finishGroup();
+        delegate.quadTo(x1, y1, xe, ye);
+    }
+
+    @Override
+    public void curveTo(final double x1, final double y1,
+                        final double x2, final double y2,
+                        final double xe, final double ye)
+    {
+        finishGroup();
+        delegate.curveTo(x1, y1, x2, y2, xe, ye);
+    }
+}
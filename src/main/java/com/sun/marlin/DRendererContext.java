@@ -70,6 +70,8 @@ public final class DRendererContext extends ReentrantContext implements MarlinCo
     public final DCollinearSimplifier simplifier = new DCollinearSimplifier();
     // Simplifies path
     public final DPathSimplifier pathSimplifier = new DPathSimplifier();
+    // Decimates dense polylines (per pixel column)
+    public final DPathDecimator decimator = new DPathDecimator();
     public final DDasher dasher;
     // flag indicating the shape is stroked (1) or filled (0)
     int stroking = 0;
@@ -90,18 +92,27 @@ public final class DRendererContext extends ReentrantContext implements MarlinCo
     // shared memory between renderer instances:
     final DRendererSharedMemory rdrMem;
     private DRendererNoAA rendererNoAA = null;
+    private DAreaRenderer rendererArea = null;
+    private PrimitiveRenderer rendererPrimitive = null;
+    private DHairlineRenderer rendererHairline = null;
     // dirty bbox rectangle
     public final Rectangle clip = new Rectangle();
     // dirty MaskMarlinAlphaConsumer
     public MaskMarlinAlphaConsumer consumer = null;
+    // dirty TileMarlinAlphaConsumer
+    public TileMarlinAlphaConsumer tileConsumer = null;
+    // dirty RLEMarlinAlphaConsumer
+    public RLEMarlinAlphaConsumer rleConsumer = null;
+    // stage timer (slow rasterization events)
+    public final RasterizationTimer timer = new RasterizationTimer();
 
     // Array caches:
     /* clean int[] cache (zero-filled) = 5 refs */
     private final IntArrayCache cleanIntCache = new IntArrayCache(true, 5);
-    /* dirty int[] cache = 5 refs */
-    private final IntArrayCache dirtyIntCache = new IntArrayCache(false, 5);
-    /* dirty double[] cache = 4 refs (2 polystack) */
-    private final DoubleArrayCache dirtyDoubleCache = new DoubleArrayCache(false, 4);
+    /* dirty int[] cache = 7 refs (4 crossings, 1 index stack, 2 primitive renderer) */
+    private final IntArrayCache dirtyIntCache = new IntArrayCache(false, 7);
+    /* dirty double[] cache = 6 refs (2 dasher, 2 polystack, 1 area renderer, 1 hairline renderer) */
+    private final DoubleArrayCache dirtyDoubleCache = new DoubleArrayCache(false, 6);
     /* dirty byte[] cache = 2 ref (2 polystack) */
     private final ByteArrayCache dirtyByteCache = new ByteArrayCache(false, 2);
 
@@ -162,6 +173,7 @@ public final class DRendererContext extends ReentrantContext implements MarlinCo
         doClip     = false;
         closedPath = false;
         clipInvScale = 0.0d;
+        timer.cancel();
 
         // if context is maked as DIRTY:
         if (dirty) {
@@ -201,6 +213,50 @@ public final class DRendererContext extends ReentrantContext implements MarlinCo
         return rendererNoAA;
     }
 
+    /**
+     * Return the renderer of axis-aligned primitives (see USE_PRIMITIVES)
+     * @return primitive renderer
+     */
+    public PrimitiveRenderer getPrimitiveRenderer() {
+        if (rendererPrimitive == null) {
+            rendererPrimitive = new PrimitiveRenderer(rdrMem.alphaLine_ref,
+                                                      rdrMem.blkFlags_ref,
+                                                      newDirtyIntArrayRef(INITIAL_ARRAY),
+                                                      rdrMem.crossings_ref,
+                                                      rdrMem.edgePtrs_ref,
+                                                      rdrMem.aux_crossings_ref,
+                                                      rdrMem.aux_edgePtrs_ref,
+                                                      newDirtyIntArrayRef(INITIAL_ARRAY));
+        }
+        return rendererPrimitive;
+    }
+
+    /**
+     * Return the renderer of thin strokes (see USE_HAIRLINES)
+     * @return hairline renderer
+     */
+    public DHairlineRenderer getHairlineRenderer() {
+        if (rendererHairline == null) {
+            rendererHairline = new DHairlineRenderer(this);
+        }
+        return rendererHairline;
+    }
+
+    /**
+     * Return the antialiasing renderer: the analytic coverage renderer if
+     * enabled (prism.marlin.analytic) or the subpixel renderer
+     * @return antialiasing renderer
+     */
+    public DMarlinEdgeRenderer getRendererAA() {
+        if (USE_ANALYTIC_AA) {
+            if (rendererArea == null) {
+                rendererArea = new DAreaRenderer(this);
+            }
+            return rendererArea;
+        }
+        return renderer;
+    }
+
     OffHeapArray newOffHeapArray(final long initialSize) {
         if (DO_STATS) {
             stats.totalOffHeapInitial += initialSize;
@@ -233,6 +289,8 @@ public final class DRendererContext extends ReentrantContext implements MarlinCo
         final IntArrayCache.Reference edgeBuckets_ref;
         // edgeBucketCounts ref (clean)
         final IntArrayCache.Reference edgeBucketCounts_ref;
+        // edgeWindings ref (clean)
+        final IntArrayCache.Reference edgeWindings_ref;
 
         // alphaLine ref (clean)
         final IntArrayCache.Reference alphaLine_ref;
@@ -255,6 +313,8 @@ public final class DRendererContext extends ReentrantContext implements MarlinCo
 
             edgeBuckets_ref      = rdrCtx.newCleanIntArrayRef(INITIAL_BUCKET_ARRAY); // 64K
             edgeBucketCounts_ref = rdrCtx.newCleanIntArrayRef(INITIAL_BUCKET_ARRAY); // 64K
+            // only used by edges on the left side (clip):
+            edgeWindings_ref     = rdrCtx.newCleanIntArrayRef(INITIAL_ARRAY); // 1K
 
             // 4096 pixels large
             alphaLine_ref = rdrCtx.newCleanIntArrayRef(INITIAL_AA_ARRAY); // 16K
@@ -28,7 +28,7 @@ package com.sun.marlin;
 import static com.sun.marlin.OffHeapArray.SIZE_INT;
 import sun.misc.Unsafe;
 
-public final class DRendererNoAA implements DMarlinRenderer, MarlinConst {
+public final class DRendererNoAA implements DMarlinEdgeRenderer, MarlinConst {
 
     static final boolean DISABLE_RENDER = false;
 
@@ -118,6 +118,9 @@ public final class DRendererNoAA implements DMarlinRenderer, MarlinConst {
     // auxiliary storage for edge pointers (merge sort)
     private int[] aux_edgePtrs;
 
+    // radix sort digit counts
+    private final int[] radixCounts = new int[RadixSort.DIGIT_SIZE + 1];
+
     // max used for both edgePtrs and crossings (stats only)
     private int activeEdgeMaxUsed;
 
@@ -162,6 +165,13 @@ public final class DRendererNoAA implements DMarlinRenderer, MarlinConst {
                                           final DCurve c,
                                           final double x2, final double y2)
     {
+        if (USE_FLATTENING_CACHE) {
+            final int off = flatCache.quad(c);
+            if (off >= 0) {
+                addCachedLines(x0, y0, off, x2, y2);
+                return;
+            }
+        }
         int count = 1; // dt = 1 / count
 
         // maximum(ddX|Y) = norm(dbx, dby) * dt^2 (= 1)
@@ -216,6 +226,13 @@ public final class DRendererNoAA implements DMarlinRenderer, MarlinConst {
                                            final DCurve c,
                                            final double x3, final double y3)
     {
+        if (USE_FLATTENING_CACHE) {
+            final int off = flatCache.cubic(c);
+            if (off >= 0) {
+                addCachedLines(x0, y0, off, x3, y3);
+                return;
+            }
+        }
         int count            = CUB_COUNT;
         final double icount  = CUB_INV_COUNT;   // dt
         final double icount2 = CUB_INV_COUNT_2; // dt^2
@@ -293,6 +310,31 @@ public final class DRendererNoAA implements DMarlinRenderer, MarlinConst {
         }
     }
 
+    // adds the lines of a cached curve flattening (relative points) starting
+    // at x0, y0 and ending at xe, ye
+    private void addCachedLines(final double x0, final double y0, int off,
+                                final double xe, final double ye)
+    {
+        final double[] _points = flatCache.points;
+        final int n = flatCache.count;
+
+        double px = x0, py = y0, x1, y1;
+
+        for (final int end = off + 2 * n; off < end; off += 2) {
+            x1 = x0 + _points[off];
+            y1 = y0 + _points[off + 1];
+
+            addLine(px, py, x1, y1);
+            px = x1;
+            py = y1;
+        }
+        addLine(px, py, xe, ye);
+
+        if (DO_STATS) {
+            rdrCtx.stats.stat_rdr_curveBreak.add(n + 1);
+        }
+    }
+
     private void addLine(double x1, double y1, double x2, double y2) {
         if (DO_MONITORS) {
             rdrCtx.stats.mon_rdr_addLine.start();
@@ -482,6 +524,8 @@ public final class DRendererNoAA implements DMarlinRenderer, MarlinConst {
     final DRendererContext rdrCtx;
     // dirty curve
     private final DCurve curve;
+    // curve flattening cache (if enabled)
+    private final DFlatteningCache flatCache;
 
     // clean alpha array (zero filled)
     private int[] alphaLine;
@@ -501,6 +545,8 @@ public final class DRendererNoAA implements DMarlinRenderer, MarlinConst {
     DRendererNoAA(final DRendererContext rdrCtx) {
         this.rdrCtx = rdrCtx;
         this.curve = rdrCtx.curve;
+        this.flatCache = (USE_FLATTENING_CACHE) ?
+            new DFlatteningCache(CUB_DEC_BND, CUB_INC_BND, QUAD_DEC_BND, 1.0d) : null;
 
         this.edges = rdrCtx.rdrMem.edges;
 
@@ -567,6 +613,7 @@ public final class DRendererNoAA implements DMarlinRenderer, MarlinConst {
 
         // reset used mark:
         edgeCount = 0;
+        curveCount = 0;
         activeEdgeMaxUsed = 0;
         edges.used = 0;
 
@@ -673,6 +720,7 @@ public final class DRendererNoAA implements DMarlinRenderer, MarlinConst {
                 tosubpixx(pix_x2), tosubpixy(pix_y2),
                 xe, ye);
         curveBreakIntoLinesAndAdd(x0, y0, curve, xe, ye);
+        curveCount++;
         x0 = xe;
         y0 = ye;
     }
@@ -687,6 +735,7 @@ public final class DRendererNoAA implements DMarlinRenderer, MarlinConst {
                 tosubpixx(pix_x1), tosubpixy(pix_y1),
                 xe, ye);
         quadBreakIntoLinesAndAdd(x0, y0, curve, xe, ye);
+        curveCount++;
         x0 = xe;
         y0 = ye;
     }
@@ -708,6 +757,141 @@ public final class DRendererNoAA implements DMarlinRenderer, MarlinConst {
         endRendering();
     }
 
+    @Override
+    public void saveState(final IncrementalPath state) {
+        state.saveEdges(edges, edges.used);
+
+        if (edgeMinY != Integer.MAX_VALUE) {
+            // see addLine(): used buckets in [edgeMinY; edgeMaxY]
+            state.saveBuckets(edgeBuckets, edgeBucketCounts,
+                              edgeMinY - boundsMinY, edgeMaxY - edgeMinY + 1);
+        } else {
+            state.bucketsLength = 0;
+        }
+        state.edgeMinY = edgeMinY;
+        state.edgeMaxY = edgeMaxY;
+        state.edgeMinX = edgeMinX;
+        state.edgeMaxX = edgeMaxX;
+        state.x0  = x0;
+        state.y0  = y0;
+        state.sx0 = sx0;
+        state.sy0 = sy0;
+    }
+
+    @Override
+    public void restoreState(final IncrementalPath state) {
+        if (DO_STATS) {
+            rdrCtx.stats.stat_rdr_incremental_edges.add(state.edgesUsed / SIZEOF_EDGE_BYTES);
+        }
+        state.restoreEdges(edges);
+        state.restoreBuckets(edgeBuckets, edgeBucketCounts);
+
+        edgeMinY = state.edgeMinY;
+        edgeMaxY = state.edgeMaxY;
+        edgeMinX = state.edgeMinX;
+        edgeMaxX = state.edgeMaxX;
+        x0  = state.x0;
+        y0  = state.y0;
+        sx0 = state.sx0;
+        sy0 = state.sy0;
+    }
+
+    @Override
+    public void compileEdges(final CompiledShape cs) {
+        cs.init(this, windingRule, edges.used);
+
+        if (edgeMinY == Integer.MAX_VALUE) {
+            return; // no edge
+        }
+        // local vars (performance):
+        final Unsafe _unsafe = OffHeapArray.UNSAFE;
+        final long addr0 = edges.address;
+        final int[] _edgeBuckets = edgeBuckets;
+        final int[] _edgeBucketCounts = edgeBucketCounts;
+        final int _boundsMinY = boundsMinY;
+
+        long addr = cs.edges.address;
+
+        for (int bucket = edgeMinY - _boundsMinY, bucketEnd = edgeMaxY - _boundsMinY,
+             count, ecur; bucket < bucketEnd; bucket++)
+        {
+            // number of new edges in this bucket:
+            count = _edgeBucketCounts[bucket] >> 1;
+
+            for (ecur = _edgeBuckets[bucket]; count > 0; count--) {
+                // copy CURX_OR, ERROR, BUMP_X and BUMP_ERR:
+                _unsafe.copyMemory(addr0 + ecur, addr, OFF_NEXT);
+                // replace NEXT by the first crossing:
+                _unsafe.putInt(addr + OFF_NEXT, bucket + _boundsMinY);
+                _unsafe.putInt(addr + OFF_YMAX,
+                               _unsafe.getInt(addr0 + ecur + OFF_YMAX));
+                addr += SIZEOF_EDGE_BYTES;
+
+                ecur = _unsafe.getInt(addr0 + ecur + OFF_NEXT);
+            }
+        }
+        cs.edges.used = (int) (addr - cs.edges.address);
+        cs.numEdges   = cs.edges.used / SIZEOF_EDGE_BYTES;
+
+        cs.edgeMinY = edgeMinY;
+        cs.edgeMaxY = edgeMaxY;
+        cs.edgeMinX = edgeMinX;
+        cs.edgeMaxX = edgeMaxX;
+
+        cs.minX = bboxX0;
+        cs.minY = bboxY0;
+        cs.maxX = bboxX1;
+        cs.maxY = bboxY1;
+    }
+
+    @Override
+    public void replayEdges(final CompiledShape cs, final int dx, final int dy) {
+        cs.checkCompiledBy(this);
+
+        if (cs.numEdges != 0) {
+            // integer translation (no subpixel):
+            final int dxs = dx;
+            final int dys = dy;
+
+            final int ymin = FloatMath.max(cs.edgeMinY + dys, boundsMinY);
+            final int ymax = FloatMath.min(cs.edgeMaxY + dys, boundsMaxY);
+
+            if (ymin < ymax) {
+                if (DO_STATS) {
+                    rdrCtx.stats.stat_rdr_compiled_edges.add(cs.numEdges);
+                }
+                // local vars (performance):
+                final Unsafe _unsafe = OffHeapArray.UNSAFE;
+                final int _boundsMinY = boundsMinY;
+                final int _boundsMaxY = boundsMaxY;
+                // CURX_OR stores the orientation bit as LSB:
+                final int dcurx = dxs << 1;
+
+                int firstCrossing, lastCrossing;
+
+                for (long addr = cs.edges.address, end = addr + cs.edges.used;
+                     addr < end; addr += SIZEOF_EDGE_BYTES)
+                {
+                    firstCrossing = _unsafe.getInt(addr + OFF_NEXT) + dys;
+                    lastCrossing  = _unsafe.getInt(addr + OFF_YMAX) + dys;
+
+                    // skip edges out of y range [boundsMinY; boundsMaxY]:
+                    if ((lastCrossing > _boundsMinY) && (firstCrossing < _boundsMaxY)) {
+                        DRenderer.copyEdge(addr, firstCrossing, lastCrossing, dcurx, edges,
+                                           edgeBuckets, edgeBucketCounts,
+                                           _boundsMinY, _boundsMaxY, rdrCtx.stats);
+                    }
+                }
+                edgeMinY = ymin;
+                edgeMaxY = ymax;
+                edgeMinX = (cs.edgeMinX + dxs);
+                edgeMaxX = (cs.edgeMaxX + dxs);
+            }
+        }
+        // call endRendering() to determine the boundaries:
+        endRendering();
+    }
+
     private void _endRendering(final int ymin, final int ymax,
                                final MarlinAlphaConsumer ac)
     {
@@ -780,6 +964,14 @@ public final class DRendererNoAA implements DMarlinRenderer, MarlinConst {
         int low, high, mid, prevNumCrossings;
         boolean useBinarySearch;
 
+        // radix sort counts:
+        final int[] _radixCounts = radixCounts;
+        // insertion sort moves on the previous scanline:
+        int numMoves = 0;
+        // remaining scanlines using radix sort before probing insertion sort:
+        int radixRows = 0;
+        boolean useRadixSort = false;
+
         final int[] _blkFlags = blkFlags;
         final int _BLK_SIZE_LG = BLOCK_SIZE_LG;
         final int _BLK_SIZE = BLOCK_SIZE;
@@ -909,10 +1101,77 @@ public final class DRendererNoAA implements DMarlinRenderer, MarlinConst {
 
             if (numCrossings != 0) {
                 /*
-                 * thresholds to switch to optimized merge sort
-                 * for newly added edges + final merge pass.
+                 * adaptive selection of radix sort for dense scanlines:
+                 * insertion sort is linear when crossings keep their order
+                 * but costly when edges move far (many moves per crossing)
+                 * and merge sort is costly for many new edges.
                  */
-                if ((ptrLen < 10) || (numCrossings < 40)) {
+                if (USE_RADIX_SORT && (numCrossings >= RADIX_SORT_THRESHOLD)) {
+                    if (FORCE_RADIX_SORT || ((ptrLen << 1) >= numCrossings)) {
+                        useRadixSort = true;
+                    } else if (radixRows > 0) {
+                        radixRows--;
+                        useRadixSort = true;
+                    } else if (numMoves >= (numCrossings << 2)) {
+                        // use radix sort for next scanlines before probing:
+                        radixRows = RADIX_SORT_ROWS;
+                        useRadixSort = true;
+                    } else {
+                        useRadixSort = false;
+                    }
+                } else {
+                    useRadixSort = false;
+                }
+                numMoves = 0;
+
+                if (useRadixSort) {
+                    if (DO_STATS) {
+                        rdrCtx.stats.stat_rdr_crossings_rsorts.add(numCrossings);
+                        rdrCtx.stats.hist_rdr_crossings_rsorts.add(numCrossings);
+                    }
+                    for (i = 0; i < numCrossings; i++) {
+                        // get the pointer to the edge
+                        ecur = _edgePtrs[i];
+
+                        // random access so use unsafe:
+                        addr = addr0 + ecur; // ecur + OFF_F_CURX
+
+                        // get current crossing:
+                        curx = _unsafe.getInt(addr);
+
+                        // update crossing with orientation at last bit:
+                        cross = curx;
+
+                        // Increment x using DDA (fixed point):
+                        curx += _unsafe.getInt(addr + _OFF_BUMP_X);
+
+                        // Increment error:
+                        err  =  _unsafe.getInt(addr + _OFF_ERROR)
+                              + _unsafe.getInt(addr + _OFF_BUMP_ERR);
+
+                        // Manual carry handling:
+                        // keep sign and carry bit only and ignore last bit (preserve orientation):
+                        _unsafe.putInt(addr,               curx - ((err >> 30) & _ALL_BUT_LSB));
+                        _unsafe.putInt(addr + _OFF_ERROR, (err & _ERR_STEP_MAX));
+
+                        if (DO_STATS) {
+                            rdrCtx.stats.stat_rdr_crossings_updates.add(numCrossings);
+                        }
+
+                        // store crossing as edgePtrs is in-place:
+                        _crossings[i] = cross;
+                    }
+
+                    // radix sort using auxiliary arrays:
+                    RadixSort.radixSort(_crossings,     _edgePtrs,
+                                        _aux_crossings, _aux_edgePtrs,
+                                        _radixCounts,   numCrossings);
+
+                } else if ((ptrLen < 10) || (numCrossings < 40)) {
+                    /*
+                     * thresholds to switch to optimized merge sort
+                     * for newly added edges + final merge pass.
+                     */
                     if (DO_STATS) {
                         rdrCtx.stats.hist_rdr_crossings.add(numCrossings);
                         rdrCtx.stats.hist_rdr_crossings_adds.add(ptrLen);
@@ -994,6 +1253,7 @@ public final class DRendererNoAA implements DMarlinRenderer, MarlinConst {
                                 }
                                 _crossings[low] = cross;
                                 _edgePtrs [low] = ecur;
+                                numMoves += i - low;
 
                             } else {
                                 j = i - 1;
@@ -1006,6 +1266,7 @@ public final class DRendererNoAA implements DMarlinRenderer, MarlinConst {
                                 }
                                 _crossings[j + 1] = cross;
                                 _edgePtrs [j + 1] = ecur;
+                                numMoves += i - j - 1;
                             }
 
                         } else {
@@ -1082,6 +1343,7 @@ public final class DRendererNoAA implements DMarlinRenderer, MarlinConst {
                             }
                             _aux_crossings[j + 1] = cross;
                             _aux_edgePtrs [j + 1] = ecur;
+                            numMoves += i - j - 1;
 
                         } else {
                             // auxiliary storage:
@@ -1427,6 +1689,13 @@ public final class DRendererNoAA implements DMarlinRenderer, MarlinConst {
         if (DO_MONITORS) {
             rdrCtx.stats.mon_rdr_endRendering_Y.start();
         }
+        // time 1 rendering every N (runtime metrics) and copyAARow calls
+        // if sampled or if the context is timed (slow rasterization):
+        metricsStart = (MarlinMetrics.isActive()) ?
+                           MarlinMetrics.startSample(++metricsCount) : 0L;
+        timeRows = (metricsStart != 0L) || rdrCtx.timer.enabled;
+        metricsRows = 0;
+        metricsRowNanos = 0L;
 
         // Process all scan lines:
         _endRendering(bbox_spminY, bbox_spmaxY, ac);
@@ -1434,6 +1703,29 @@ public final class DRendererNoAA implements DMarlinRenderer, MarlinConst {
         if (DO_MONITORS) {
             rdrCtx.stats.mon_rdr_endRendering_Y.stop();
         }
+        if (MarlinMetrics.isActive()) {
+            addMetrics();
+        }
+        final RasterizationTimer timer = rdrCtx.timer;
+        if (timer.enabled) {
+            timer.edges = edges.used / SIZEOF_EDGE_BYTES;
+            timer.curves = curveCount;
+            timer.copyNanos = metricsRowNanos;
+        }
+    }
+
+    private void addMetrics() {
+        final int width  = bboxX1 - bboxX0;
+        final int height = bboxY1 - bboxY0;
+        final int edgeCount = edges.used / SIZEOF_EDGE_BYTES;
+
+        MarlinMetrics.addRendering(edgeCount, ((long) width) * height);
+
+        if (metricsStart != 0L) {
+            MarlinMetrics.addSample(metricsStart, edgeCount, width, height,
+                                    metricsRows, metricsRowNanos);
+            metricsStart = 0L;
+        }
     }
 
     void copyAARow(final int[] alphaRow,
@@ -1444,6 +1736,8 @@ public final class DRendererNoAA implements DMarlinRenderer, MarlinConst {
         if (DO_MONITORS) {
             rdrCtx.stats.mon_rdr_copyAARow.start();
         }
+        final long start = (timeRows) ? System.nanoTime() : 0L;
+
         if (DO_STATS) {
             rdrCtx.stats.stat_cache_rowAA.add(pix_to - pix_from);
         }
@@ -1459,6 +1753,10 @@ public final class DRendererNoAA implements DMarlinRenderer, MarlinConst {
             }
             ac.setAndClearRelativeAlphas(alphaRow, pix_y, pix_from, pix_to);
         }
+        if (start != 0L) {
+            metricsRows++;
+            metricsRowNanos += System.nanoTime() - start;
+        }
         if (DO_MONITORS) {
             rdrCtx.stats.mon_rdr_copyAARow.stop();
         }
@@ -1467,6 +1765,18 @@ public final class DRendererNoAA implements DMarlinRenderer, MarlinConst {
     // output pixel bounding box:
     int bboxX0, bboxX1, bboxY0, bboxY1;
 
+    // runtime metrics (see MarlinMetrics): rendering counter
+    private int metricsCount;
+    // start time of the sampled rendering or 0
+    private long metricsStart;
+    // true to time copyAARow calls (sampled or timed rendering)
+    private boolean timeRows;
+    // timed copyAARow calls
+    private int metricsRows;
+    private long metricsRowNanos;
+    // number of curves (quadTo / curveTo calls)
+    private int curveCount;
+
     @Override
     public int getOutpixMinX() {
         return bboxX0;
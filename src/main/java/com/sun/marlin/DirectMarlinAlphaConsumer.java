@@ -0,0 +1,384 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package com.sun.marlin;
+
+import java.lang.reflect.Field;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import sun.misc.Unsafe;
+
+/**
+ * Alpha consumer writing coverage values directly into a caller-supplied
+ * region (direct or heap ByteBuffer, or native memory) with a given stride,
+ * so the mask can be uploaded without any intermediate copy.
+ *
+ * The region covers the device rectangle [dstX, dstY, dstW, dstH]; only the
+ * mask bounds (see getOriginX/Y and getWidth/Height) are written.
+ */
+public final class DirectMarlinAlphaConsumer implements MarlinAlphaConsumer {
+
+    // Buffer.address field offset:
+    private static final long BUFFER_ADDRESS_OFFSET;
+
+    static {
+        BUFFER_ADDRESS_OFFSET = AccessController.doPrivileged(
+            (PrivilegedAction<Long>) () -> {
+                try {
+                    final Field field = Buffer.class.getDeclaredField("address");
+                    return OffHeapArray.UNSAFE.objectFieldOffset(field);
+                } catch (Exception e) {
+                    throw new InternalError("Unable to get Buffer.address field", e);
+                }
+            });
+    }
+
+    int x, y, width, height;
+
+    // destination region:
+    private int dstX, dstY, dstW, dstH, stride;
+    // base object (null for native memory) and base address of (dstX, dstY):
+    private Object base = null;
+    private long baseAddress = 0L;
+    // keep the buffer alive while writing:
+    private ByteBuffer buffer = null;
+
+    // address of the mask origin (x, y):
+    private long originAddress = 0L;
+
+    private OffHeapArray ALPHA_MAP_USED = null;
+
+    public DirectMarlinAlphaConsumer() {
+        // no-op
+    }
+
+    /**
+     * Set the destination region as the given writable buffer (direct or
+     * backed by an accessible array)
+     * @param buffer destination buffer
+     * @param offset index of the (dstX, dstY) pixel in the buffer
+     * @param stride row stride (bytes)
+     * @param dstX x of the region in device space
+     * @param dstY y of the region in device space
+     * @param dstW width of the region
+     * @param dstH height of the region
+     */
+    public void setBuffer(final ByteBuffer buffer, final int offset,
+                          final int stride,
+                          final int dstX, final int dstY,
+                          final int dstW, final int dstH)
+    {
+        if (buffer.isReadOnly()) {
+            throw new ReadOnlyBufferException();
+        }
+        checkRegion(buffer.capacity(), offset, stride, dstW, dstH);
+
+        if (buffer.isDirect()) {
+            this.base = null;
+            this.baseAddress = OffHeapArray.UNSAFE.getLong(buffer, BUFFER_ADDRESS_OFFSET)
+                               + offset;
+        } else if (buffer.hasArray()) {
+            this.base = buffer.array();
+            this.baseAddress = Unsafe.ARRAY_BYTE_BASE_OFFSET
+                               + buffer.arrayOffset() + offset;
+        } else {
+            throw new IllegalArgumentException("Unsupported buffer: " + buffer);
+        }
+        this.buffer = buffer;
+        setRegion(stride, dstX, dstY, dstW, dstH);
+    }
+
+    /**
+     * Set the destination region as the given native memory block
+     * @param address address of the (dstX, dstY) pixel
+     * @param length available length (bytes) from address
+     * @param stride row stride (bytes)
+     * @param dstX x of the region in device space
+     * @param dstY y of the region in device space
+     * @param dstW width of the region
+     * @param dstH height of the region
+     */
+    public void setMemory(final long address, final long length,
+                          final int stride,
+                          final int dstX, final int dstY,
+                          final int dstW, final int dstH)
+    {
+        if (address == 0L) {
+            throw new IllegalArgumentException("Invalid address");
+        }
+        checkRegion(length, 0, stride, dstW, dstH);
+
+        this.base = null;
+        this.baseAddress = address;
+        this.buffer = null;
+        setRegion(stride, dstX, dstY, dstW, dstH);
+    }
+
+    private static void checkRegion(final long length, final int offset,
+                                    final int stride,
+                                    final int dstW, final int dstH)
+    {
+        if (offset < 0 || dstW <= 0 || dstH <= 0 || stride < dstW) {
+            throw new IllegalArgumentException("Invalid region: offset = "
+                + offset + " stride = " + stride + " size = " + dstW + " x " + dstH);
+        }
+        if (offset + (long) (dstH - 1) * stride + dstW > length) {
+            throw new IllegalArgumentException("Region exceeds capacity: "
+                + length);
+        }
+    }
+
+    private void setRegion(final int stride,
+                           final int dstX, final int dstY,
+                           final int dstW, final int dstH)
+    {
+        this.stride = stride;
+        this.dstX = dstX;
+        this.dstY = dstY;
+        this.dstW = dstW;
+        this.dstH = dstH;
+    }
+
+    /**
+     * Release the destination region
+     */
+    public void dispose() {
+        this.base = null;
+        this.buffer = null;
+        this.baseAddress = 0L;
+        this.originAddress = 0L;
+    }
+
+    public boolean hasRegion() {
+        return (baseAddress != 0L);
+    }
+
+    public int getRegionX() {
+        return dstX;
+    }
+
+    public int getRegionY() {
+        return dstY;
+    }
+
+    public int getRegionWidth() {
+        return dstW;
+    }
+
+    public int getRegionHeight() {
+        return dstH;
+    }
+
+    public int getStride() {
+        return stride;
+    }
+
+    /**
+     * Set the mask bounds (within the destination region)
+     */
+    public void setBoundsNoClone(final int x, final int y, final int w, final int h) {
+        if (x < dstX || y < dstY || x + w > dstX + dstW || y + h > dstY + dstH) {
+            throw new IllegalStateException("Mask bounds outside region");
+        }
+        this.x = x;
+        this.y = y;
+        this.width = w;
+        this.height = h;
+
+        this.originAddress = baseAddress + (long) (y - dstY) * stride + (x - dstX);
+    }
+
+    @Override
+    public int getOriginX() {
+        return x;
+    }
+
+    @Override
+    public int getOriginY() {
+        return y;
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public void setMaxAlpha(final int maxalpha) {
+        ALPHA_MAP_USED = (maxalpha == 1)
+                         ? MaskMarlinAlphaConsumer.ALPHA_MAP_UNSAFE_NO_AA
+                         : MaskMarlinAlphaConsumer.ALPHA_MAP_UNSAFE;
+    }
+
+    @Override
+    public boolean supportBlockFlags() {
+        return true;
+    }
+
+    @Override
+    public boolean supportParallelBands() {
+        // rows are independent:
+        return true;
+    }
+
+    @Override
+    public void clearAlphas(final int pix_y) {
+        // Clear complete row:
+        OffHeapArray.UNSAFE.setMemory(base,
+            originAddress + (long) (pix_y - y) * stride, width, (byte) 0);
+    }
+
+    @Override
+    public void setAndClearRelativeAlphas(final int[] alphaDeltas, final int pix_y,
+                                          final int pix_from, final int pix_to)
+    {
+        final Unsafe _unsafe = OffHeapArray.UNSAFE;
+        final Object _base = base;
+        final long addr_alpha = ALPHA_MAP_USED.address;
+        final long addr_row = originAddress + (long) (pix_y - y) * stride;
+        final int w = width;
+
+        final int from = pix_from - x;
+
+        // skip useless pixels above boundary
+        final int to = pix_to - x;
+        final int ato = Math.min(to, w);
+
+        if (from > 0) {
+            _unsafe.setMemory(_base, addr_row, from, (byte) 0);
+        }
+
+        int i = from;
+        int curAlpha = 0;
+
+        while (i < ato) {
+            curAlpha += alphaDeltas[i];
+
+            _unsafe.putByte(_base, addr_row + i,
+                            _unsafe.getByte(addr_alpha + curAlpha)); // [0..255]
+            i++;
+        }
+
+        if (i < w) {
+            _unsafe.setMemory(_base, addr_row + i, w - i, (byte) 0);
+        }
+
+        // Clear alpha row for reuse:
+        IntArrayCache.fill(alphaDeltas, from, to + 1, 0);
+    }
+
+    @Override
+    public void setAndClearRelativeAlphas(final int[] blkFlags, final int[] alphaDeltas,
+                                          final int pix_y,
+                                          final int pix_from, final int pix_to)
+    {
+        final Unsafe _unsafe = OffHeapArray.UNSAFE;
+        final Object _base = base;
+        final long addr_alpha = ALPHA_MAP_USED.address;
+        final long addr_row = originAddress + (long) (pix_y - y) * stride;
+        final int w = width;
+
+        final int from = pix_from - x;
+
+        // skip useless pixels above boundary
+        final int to = pix_to - x;
+        final int ato = Math.min(to, w);
+
+        final int _BLK_SIZE_LG  = MarlinConst.BLOCK_SIZE_LG;
+
+        // traverse flagged blocks:
+        final int blkW = (from >> _BLK_SIZE_LG);
+        final int blkE = (ato   >> _BLK_SIZE_LG) + 1;
+        // ensure last block flag = 0 to process final block:
+        blkFlags[blkE] = 0;
+
+        int curAlpha = 0;
+
+        final int _MAX_VALUE = Integer.MAX_VALUE;
+        int last_t0 = _MAX_VALUE;
+
+        // Zero-fill complete row:
+        _unsafe.setMemory(_base, addr_row, w, (byte) 0);
+
+        int i = from;
+
+        for (int t = blkW, blk_x0, blk_x1, cx, delta; t <= blkE; t++) {
+            if (blkFlags[t] != 0) {
+                blkFlags[t] = 0;
+
+                if (last_t0 == _MAX_VALUE) {
+                    last_t0 = t;
+                }
+                continue;
+            }
+            if (last_t0 != _MAX_VALUE) {
+                // emit blocks:
+                blk_x0 = FloatMath.max(last_t0 << _BLK_SIZE_LG, from);
+                last_t0 = _MAX_VALUE;
+
+                // (last block pixel+1) inclusive => +1
+                blk_x1 = FloatMath.min((t << _BLK_SIZE_LG) + 1, ato);
+
+                for (cx = blk_x0; cx < blk_x1; cx++) {
+                    if ((delta = alphaDeltas[cx]) != 0) {
+                        alphaDeltas[cx] = 0;
+
+                        // fill span (skip alpha = 0):
+                        if (cx != i && curAlpha != 0) {
+                            _unsafe.setMemory(_base, addr_row + i, cx - i,
+                                              _unsafe.getByte(addr_alpha + curAlpha));
+                        }
+                        i = cx;
+
+                        // alpha value = running sum of coverage delta:
+                        curAlpha += delta;
+                    }
+                }
+            }
+        }
+
+        // Process remaining span:
+        if (curAlpha != 0 && i < ato) {
+            _unsafe.setMemory(_base, addr_row + i, ato - i,
+                              _unsafe.getByte(addr_alpha + curAlpha));
+        }
+
+        // Clear alpha row for reuse:
+        alphaDeltas[ato] = 0;
+
+        if (MarlinConst.DO_CHECKS) {
+            IntArrayCache.check(blkFlags, blkW, blkE, 0);
+            IntArrayCache.check(alphaDeltas, from, to + 1, 0);
+        }
+    }
+}
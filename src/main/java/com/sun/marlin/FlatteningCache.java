@@ -0,0 +1,298 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.sun.marlin;
+
+import java.util.Arrays;
+
+/**
+ * Cache of curve flattenings (adaptive forward differencing) keyed on the
+ * curve coefficients (Curve.ax ... cy) in subpixel space: as they do not
+ * depend on the curve position but include the transform scale, curves
+ * repeated at other positions (glyphs, icons drawn as paths) reuse the
+ * same line sequence. Coefficients are quantized (KEY_SCALE) so the reused
+ * points may differ from exact ones by a tiny fraction of a subpixel.
+ *
+ * Flattened points are stored relative to the curve start point in a
+ * fixed size pool; the cache is direct-mapped and fully invalidated once
+ * the pool is full. Curves needing more than MAX_POINTS lines are never
+ * cached (the caller must flatten them).
+ */
+final class FlatteningCache {
+
+    // quantization of curve coefficients (1/16th subpixel):
+    private static final float KEY_SCALE = 16.0f;
+    // max coefficient magnitude to get int keys:
+    private static final float MAX_COEFF = (1 << 26) / KEY_SCALE;
+
+    // number of entries (power of 2):
+    private static final int CACHE_SIZE_LG = 10;
+    private static final int CACHE_SIZE = 1 << CACHE_SIZE_LG;
+    private static final int CACHE_MASK = CACHE_SIZE - 1;
+
+    // max number of intermediate points per curve:
+    static final int MAX_POINTS = 128;
+    // point pool capacity (x, y pairs):
+    private static final int POOL_SIZE = 16 * 1024;
+
+    // entry count (number of points) value for empty entries:
+    private static final int EMPTY = -1;
+    // entry count value for curves too complex to be cached:
+    private static final int UNCACHED = -2;
+
+    private static final int TYPE_QUAD = 1;
+    private static final int TYPE_CUBIC = 2;
+
+    // flattening bounds (see Renderer):
+    private final float cubDecBnd;
+    private final float cubIncBnd;
+    private final float quadDecBnd;
+    private final float scaleDy;
+
+    // entry keys: type then 6 quantized coefficients
+    private final int[] keys = new int[CACHE_SIZE * 7];
+    // entry number of points (or EMPTY / UNCACHED)
+    private final int[] counts = new int[CACHE_SIZE];
+    // entry point offsets in the pool
+    private final int[] offsets = new int[CACHE_SIZE];
+
+    // flattened points (relative to the curve start point)
+    final float[] points = new float[POOL_SIZE];
+    // used part of the pool
+    private int used = 0;
+
+    // number of points of the last lookup
+    int count;
+
+    FlatteningCache(final float cubDecBnd, final float cubIncBnd,
+                    final float quadDecBnd, final float scaleDy)
+    {
+        this.cubDecBnd = cubDecBnd;
+        this.cubIncBnd = cubIncBnd;
+        this.quadDecBnd = quadDecBnd;
+        this.scaleDy = scaleDy;
+        Arrays.fill(counts, EMPTY);
+    }
+
+    /**
+     * Return the pool offset of the flattened points of the given cubic curve
+     * (count is set) or -1 if it is not cached
+     */
+    int cubic(final Curve c) {
+        return lookup(TYPE_CUBIC, c);
+    }
+
+    /**
+     * Return the pool offset of the flattened points of the given quadratic
+     * curve (count is set) or -1 if it is not cached
+     */
+    int quad(final Curve c) {
+        return lookup(TYPE_QUAD, c);
+    }
+
+    private int lookup(final int type, final Curve c) {
+        if (!(Math.abs(c.ax) < MAX_COEFF && Math.abs(c.ay) < MAX_COEFF
+              && Math.abs(c.bx) < MAX_COEFF && Math.abs(c.by) < MAX_COEFF
+              && Math.abs(c.cx) < MAX_COEFF && Math.abs(c.cy) < MAX_COEFF))
+        {
+            // huge or invalid curve:
+            return -1;
+        }
+        final int k0 = (int) (c.ax * KEY_SCALE);
+        final int k1 = (int) (c.ay * KEY_SCALE);
+        final int k2 = (int) (c.bx * KEY_SCALE);
+        final int k3 = (int) (c.by * KEY_SCALE);
+        final int k4 = (int) (c.cx * KEY_SCALE);
+        final int k5 = (int) (c.cy * KEY_SCALE);
+
+        int h = type;
+        h = 31 * h + k0;
+        h = 31 * h + k1;
+        h = 31 * h + k2;
+        h = 31 * h + k3;
+        h = 31 * h + k4;
+        h = 31 * h + k5;
+        final int e = (h ^ (h >>> CACHE_SIZE_LG) ^ (h >>> (2 * CACHE_SIZE_LG))) & CACHE_MASK;
+
+        final int[] _keys = keys;
+        final int k = e * 7;
+        int n = counts[e];
+
+        if ((n != EMPTY) && (_keys[k] == type)
+            && (_keys[k + 1] == k0) && (_keys[k + 2] == k1)
+            && (_keys[k + 3] == k2) && (_keys[k + 4] == k3)
+            && (_keys[k + 5] == k4) && (_keys[k + 6] == k5))
+        {
+            // hit:
+            if (n == UNCACHED) {
+                return -1;
+            }
+            count = n;
+            return offsets[e];
+        }
+
+        // miss: flatten into the pool
+        if (used + 2 * MAX_POINTS > POOL_SIZE) {
+            // pool is full: invalidate all entries
+            Arrays.fill(counts, EMPTY);
+            used = 0;
+        }
+        final int off = used;
+        n = (type == TYPE_CUBIC) ? flattenCubic(c, off) : flattenQuad(c, off);
+
+        _keys[k]     = type;
+        _keys[k + 1] = k0;
+        _keys[k + 2] = k1;
+        _keys[k + 3] = k2;
+        _keys[k + 4] = k3;
+        _keys[k + 5] = k4;
+        _keys[k + 6] = k5;
+
+        if (n < 0) {
+            counts[e] = UNCACHED;
+            return -1;
+        }
+        counts[e] = n;
+        offsets[e] = off;
+        used = off + 2 * n;
+
+        count = n;
+        return off;
+    }
+
+    // same adaptive forward differencing as Renderer.quadBreakIntoLinesAndAdd()
+    private int flattenQuad(final Curve c, int off) {
+        int count = 1; // dt = 1 / count
+
+        // maximum(ddX|Y) = norm(dbx, dby) * dt^2 (= 1)
+        float maxDD = Math.abs(c.dbx) + Math.abs(c.dby) * scaleDy;
+
+        final float _DEC_BND = quadDecBnd;
+
+        while (maxDD >= _DEC_BND) {
+            // divide step by half:
+            maxDD /= 4.0f; // error divided by 2^2 = 4
+
+            count <<= 1;
+            if (count > MAX_POINTS) {
+                return -1;
+            }
+        }
+        final int n = count - 1;
+
+        if (count > 1) {
+            final float[] _points = points;
+            final float icount = 1.0f / count; // dt
+            final float icount2 = icount * icount; // dt^2
+
+            final float ddx = c.dbx * icount2;
+            final float ddy = c.dby * icount2;
+            float dx = c.bx * icount2 + c.cx * icount;
+            float dy = c.by * icount2 + c.cy * icount;
+
+            for (float x1 = 0.0f, y1 = 0.0f; --count > 0; dx += ddx, dy += ddy) {
+                x1 += dx;
+                y1 += dy;
+
+                _points[off++] = x1;
+                _points[off++] = y1;
+            }
+        }
+        return n;
+    }
+
+    // same adaptive forward differencing as Renderer.curveBreakIntoLinesAndAdd()
+    private int flattenCubic(final Curve c, int off) {
+        int count           = 1 << Renderer.CUB_COUNT_LG;
+        final float icount  = 1.0f / count;         // dt
+        final float icount2 = icount * icount;      // dt^2
+        final float icount3 = icount2 * icount;     // dt^3
+
+        // the dx and dy refer to forward differencing variables, not the last
+        // coefficients of the "points" polynomial
+        float dddx, dddy, ddx, ddy, dx, dy;
+        dddx = 2.0f * c.dax * icount3;
+        dddy = 2.0f * c.day * icount3;
+        ddx = dddx + c.dbx * icount2;
+        ddy = dddy + c.dby * icount2;
+        dx = c.ax * icount3 + c.bx * icount2 + c.cx * icount;
+        dy = c.ay * icount3 + c.by * icount2 + c.cy * icount;
+
+        final float[] _points = points;
+        final int end = off + 2 * MAX_POINTS;
+
+        final float _DEC_BND = cubDecBnd;
+        final float _INC_BND = cubIncBnd;
+        final float _SCALE_DY = scaleDy;
+
+        int n = 0;
+
+        for (float x1 = 0.0f, y1 = 0.0f; count > 0; ) {
+            // float step:
+            // can only do this on even "count" values, because we must divide count by 2
+            while ((count % 2 == 0)
+                    && ((Math.abs(ddx) + Math.abs(ddy) * _SCALE_DY) <= _INC_BND)) {
+                dx = 2.0f * dx + ddx;
+                dy = 2.0f * dy + ddy;
+                ddx = 4.0f * (ddx + dddx);
+                ddy = 4.0f * (ddy + dddy);
+                dddx *= 8.0f;
+                dddy *= 8.0f;
+
+                count >>= 1;
+            }
+
+            // divide step by half:
+            while ((Math.abs(ddx) + Math.abs(ddy) * _SCALE_DY) >= _DEC_BND) {
+                dddx /= 8.0f;
+                dddy /= 8.0f;
+                ddx = ddx / 4.0f - dddx;
+                ddy = ddy / 4.0f - dddy;
+                dx = (dx - ddx) / 2.0f;
+                dy = (dy - ddy) / 2.0f;
+
+                count <<= 1;
+            }
+            if (--count == 0) {
+                break;
+            }
+            if (off == end) {
+                // too many lines:
+                return -1;
+            }
+
+            x1 += dx;
+            y1 += dy;
+            dx += ddx;
+            dy += ddy;
+            ddx += dddx;
+            ddy += dddy;
+
+            _points[off++] = x1;
+            _points[off++] = y1;
+            n++;
+        }
+        return n;
+    }
+}
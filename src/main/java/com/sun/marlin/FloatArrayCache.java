@@ -28,14 +28,17 @@ package com.sun.marlin;
 import static com.sun.marlin.ArrayCacheConst.ARRAY_SIZES;
 import static com.sun.marlin.ArrayCacheConst.BUCKETS;
 import static com.sun.marlin.ArrayCacheConst.MAX_ARRAY_SIZE;
+import static com.sun.marlin.ArrayCacheConst.SHARED_MIN_SIZE;
 import static com.sun.marlin.MarlinUtils.logInfo;
 import static com.sun.marlin.MarlinUtils.logException;
 
-import java.lang.ref.WeakReference;
+import static com.sun.marlin.ArrayCacheManager.sizeOf;
+
 import java.util.Arrays;
 
 import com.sun.marlin.ArrayCacheConst.BucketStats;
 import com.sun.marlin.ArrayCacheConst.CacheStats;
+import com.sun.marlin.ArrayCacheManager.CacheRef;
 
 /*
  * Note that the [BYTE/INT/FLOAT/DOUBLE]ArrayCache files are nearly identical except
@@ -49,9 +52,15 @@ import com.sun.marlin.ArrayCacheConst.CacheStats;
 
 public final class FloatArrayCache implements MarlinConst {
 
+    // shared pools of large arrays (all contexts):
+    private static final SharedArrayPool SHARED_CLEAN = (USE_SHARED_ARRAY_POOL) ?
+        new SharedArrayPool(sizeOf(new float[1])) : null;
+    private static final SharedArrayPool SHARED_DIRTY = (USE_SHARED_ARRAY_POOL) ?
+        new SharedArrayPool(sizeOf(new float[1])) : null;
+
     final boolean clean;
     private final int bucketCapacity;
-    private WeakReference<Bucket[]> refBuckets = null;
+    private CacheRef<Bucket[]> refBuckets = null;
     final CacheStats stats;
 
     FloatArrayCache(final boolean clean, final int bucketCapacity) {
@@ -68,19 +77,24 @@ public final class FloatArrayCache implements MarlinConst {
 
     private Bucket[] getBuckets() {
         // resolve reference:
-        Bucket[] buckets = (refBuckets != null) ? refBuckets.get() : null;
+        Bucket[] buckets = (refBuckets != null) ? refBuckets.getBuckets() : null;
 
         // create a new buckets ?
         if (buckets == null) {
             buckets = new Bucket[BUCKETS];
 
+            // update weak reference (accounting cached arrays):
+            refBuckets = new CacheRef<Bucket[]>(buckets);
+
+            // large arrays are only kept in the shared pool (if enabled):
+            final SharedArrayPool shared = (clean) ? SHARED_CLEAN : SHARED_DIRTY;
+
             for (int i = 0; i < BUCKETS; i++) {
                 buckets[i] = new Bucket(clean, ARRAY_SIZES[i], bucketCapacity,
+                        refBuckets,
+                        (ARRAY_SIZES[i] > SHARED_MIN_SIZE) ? shared : null, i,
                         (DO_STATS) ? stats.bucketStats[i] : null);
             }
-
-            // update weak reference:
-            refBuckets = new WeakReference<Bucket[]>(buckets);
         }
         return buckets;
     }
@@ -178,13 +192,22 @@ public final class FloatArrayCache implements MarlinConst {
         private final int arraySize;
         private final boolean clean;
         private final float[][] arrays;
+        private final CacheRef<Bucket[]> ref;
+        // shared pool or null (per-context bucket)
+        private final SharedArrayPool shared;
+        private final int index;
         private final BucketStats stats;
 
         Bucket(final boolean clean, final int arraySize,
-               final int capacity, final BucketStats stats)
+               final int capacity, final CacheRef<Bucket[]> ref,
+               final SharedArrayPool shared, final int index,
+               final BucketStats stats)
         {
             this.arraySize = arraySize;
             this.clean = clean;
+            this.ref = ref;
+            this.shared = shared;
+            this.index = index;
             this.stats = stats;
             this.arrays = new float[capacity][];
         }
@@ -197,8 +220,16 @@ public final class FloatArrayCache implements MarlinConst {
             if (tail != 0) {
                 final float[] array = arrays[--tail];
                 arrays[tail] = null;
+                ref.remove(sizeOf(array));
                 return array;
             }
+            // borrow from the shared pool:
+            if (shared != null) {
+                final float[] array = (float[]) shared.poll(index);
+                if (array != null) {
+                    return array;
+                }
+            }
             if (DO_STATS) {
                 stats.createOp++;
             }
@@ -215,12 +246,20 @@ public final class FloatArrayCache implements MarlinConst {
             if (DO_STATS) {
                 stats.returnOp++;
             }
+            if (shared != null) {
+                // return to the shared pool (dropped if full):
+                shared.offer(index, array);
+                return;
+            }
             // fill cache:
             if (arrays.length > tail) {
-                arrays[tail++] = array;
+                // within the global budget (see ArrayCacheManager):
+                if (ref.add(sizeOf(array))) {
+                    arrays[tail++] = array;
 
-                if (DO_STATS) {
-                    stats.updateMaxSize(tail);
+                    if (DO_STATS) {
+                        stats.updateMaxSize(tail);
+                    }
                 }
             } else if (DO_CHECKS) {
                 logInfo(getLogPrefix(clean) + "FloatArrayCache: "
@@ -0,0 +1,353 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package com.sun.marlin;
+
+import com.sun.javafx.geom.Path2D;
+import com.sun.javafx.geom.Rectangle;
+import com.sun.javafx.geom.transform.BaseTransform;
+import java.util.Arrays;
+
+/**
+ * Renderer state saved after processing an append-only path (canvas path
+ * growing between frames) to rasterize it incrementally: if the next path
+ * starts with the same segments (same transform, clip, winding rule and
+ * renderer), the renderer edges are restored and only the appended segments
+ * are processed.
+ *
+ * Renderer edges are saved off-heap: after a restore, only the edges of the
+ * appended segments are copied back into this state.
+ *
+ * Shared by float and double pipelines (values stored as double).
+ */
+public final class IncrementalPath {
+
+    // number of coordinates per segment type:
+    private static final int[] NUM_COORDS = {2, 2, 4, 6, 0};
+
+    // processed path (copy):
+    private byte[] types = new byte[64];
+    private float[] coords = new float[128];
+    private int numTypes = -1; // invalid
+    private int numCoords = 0;
+    private boolean subpathStarted = false;
+
+    // processing settings:
+    private double mxx, mxy, myx, myy, mxt, myt;
+    private int clipX, clipY, clipW, clipH;
+    private int windingRule;
+    private Class<?> rendererClass;
+
+    // renderer state (see MarlinRenderer.saveState):
+    private OffHeapArray edgeData = null;
+    int edgesUsed;
+    // length of the renderer edges restored from this state (unchanged prefix)
+    private int edgesRestored = 0;
+    int[] edgeBuckets = new int[0];
+    int[] edgeBucketCounts = new int[0];
+    int bucketsFrom;
+    int bucketsLength;
+    int[] edgeWindings = new int[0];
+    int leftEdgeCount;
+    int edgeMinY, edgeMaxY;
+    double edgeMinX, edgeMaxX;
+    double x0, y0, sx0, sy0;
+
+    // initial off-heap edge capacity in bytes:
+    private static final int INITIAL_SIZE = 1024;
+
+    IncrementalPath() {
+        // no-op
+    }
+
+    /**
+     * @return number of processed segments
+     */
+    public int getNumCommands() {
+        return numTypes;
+    }
+
+    /**
+     * @return number of coordinates of processed segments
+     */
+    public int getNumCoords() {
+        return numCoords;
+    }
+
+    public boolean isSubpathStarted() {
+        return subpathStarted;
+    }
+
+    /**
+     * Invalidate this state (exception during processing)
+     */
+    public void invalidate() {
+        numTypes = -1;
+        rendererClass = null;
+    }
+
+    private void reset() {
+        invalidate();
+        edgesRestored = 0;
+    }
+
+    /**
+     * Test if the processed path is a prefix of the given path and if the
+     * processing settings are the same
+     * @param p2d path to render
+     * @param tf transform (null means identity)
+     * @param clip clip rectangle
+     * @param windingRule renderer winding rule
+     * @param renderer renderer
+     * @return true if the saved renderer state can be reused
+     */
+    public boolean isPrefixOf(final Path2D p2d, final BaseTransform tf,
+                              final Rectangle clip, final int windingRule,
+                              final Object renderer)
+    {
+        if ((numTypes < 0) || (renderer.getClass() != rendererClass)
+            || (windingRule != this.windingRule)
+            || (clip.x != clipX) || (clip.y != clipY)
+            || (clip.width != clipW) || (clip.height != clipH)
+            || (p2d.getNumCommands() < numTypes))
+        {
+            return false;
+        }
+        if (tf == null) {
+            if ((mxx != 1.0d) || (mxy != 0.0d) || (mxt != 0.0d)
+                || (myx != 0.0d) || (myy != 1.0d) || (myt != 0.0d))
+            {
+                return false;
+            }
+        } else if ((tf.getMxx() != mxx) || (tf.getMxy() != mxy)
+            || (tf.getMxt() != mxt) || (tf.getMyx() != myx)
+            || (tf.getMyy() != myy) || (tf.getMyt() != myt))
+        {
+            return false;
+        }
+        final byte[] pTypes = p2d.getCommandsNoClone();
+        final float[] pCoords = p2d.getFloatCoordsNoClone();
+        // cheap rejection first: the last processed segment
+        if (((numTypes != 0) && (pTypes[numTypes - 1] != types[numTypes - 1]))
+            || ((numCoords != 0) && (pCoords[numCoords - 1] != coords[numCoords - 1])))
+        {
+            return false;
+        }
+        for (int i = 0, n = numTypes; i < n; i++) {
+            if (pTypes[i] != types[i]) {
+                return false;
+            }
+        }
+        for (int i = 0, n = numCoords; i < n; i++) {
+            if (pCoords[i] != coords[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Record the processed path and settings (renderer state saved apart)
+     * @param p2d processed path
+     * @param fromSeg first segment not yet recorded
+     * @param tf transform (null means identity)
+     * @param clip clip rectangle
+     * @param windingRule renderer winding rule
+     * @param renderer renderer
+     * @param subpathStarted true if a subpath is started
+     */
+    public void update(final Path2D p2d, final int fromSeg,
+                       final BaseTransform tf,
+                       final Rectangle clip, final int windingRule,
+                       final Object renderer, final boolean subpathStarted)
+    {
+        final int nTypes = p2d.getNumCommands();
+        final byte[] pTypes = p2d.getCommandsNoClone();
+
+        int nCoords = (fromSeg == 0) ? 0 : numCoords;
+        for (int i = fromSeg; i < nTypes; i++) {
+            nCoords += NUM_COORDS[pTypes[i]];
+        }
+
+        if (types.length < nTypes) {
+            types = Arrays.copyOf(types, ArrayCacheConst.getNewSize(types.length, nTypes));
+        }
+        System.arraycopy(pTypes, fromSeg, types, fromSeg, nTypes - fromSeg);
+
+        final int cFrom = (fromSeg == 0) ? 0 : numCoords;
+        if (coords.length < nCoords) {
+            coords = Arrays.copyOf(coords, ArrayCacheConst.getNewSize(coords.length, nCoords));
+        }
+        System.arraycopy(p2d.getFloatCoordsNoClone(), cFrom, coords, cFrom, nCoords - cFrom);
+
+        this.numTypes = nTypes;
+        this.numCoords = nCoords;
+        this.subpathStarted = subpathStarted;
+
+        if (tf == null) {
+            mxx = 1.0d; mxy = 0.0d; mxt = 0.0d;
+            myx = 0.0d; myy = 1.0d; myt = 0.0d;
+        } else {
+            mxx = tf.getMxx(); mxy = tf.getMxy(); mxt = tf.getMxt();
+            myx = tf.getMyx(); myy = tf.getMyy(); myt = tf.getMyt();
+        }
+        this.clipX = clip.x;
+        this.clipY = clip.y;
+        this.clipW = clip.width;
+        this.clipH = clip.height;
+        this.windingRule = windingRule;
+        this.rendererClass = renderer.getClass();
+    }
+
+    void saveEdges(final OffHeapArray edges, final int used) {
+        if (edgeData == null) {
+            // note: may throw OOME:
+            edgeData = new OffHeapArray(this, Math.max(used, INITIAL_SIZE));
+        } else if (edgeData.length < used) {
+            // note: may throw OOME:
+            edgeData.resize(ArrayCacheConst.getNewLargeSize(edgeData.length, used));
+        }
+        // renderer edges are only appended after restoreEdges():
+        final int from = FloatMath.min(edgesRestored, used);
+        OffHeapArray.UNSAFE.copyMemory(edges.address + from,
+            edgeData.address + from, used - from);
+        edgeData.used = used;
+        edgesUsed = used;
+        edgesRestored = 0;
+    }
+
+    void restoreEdges(final OffHeapArray edges) {
+        final int used = edgesUsed;
+        if (edges.length < used) {
+            // note: may throw OOME:
+            edges.resize(ArrayCacheConst.getNewLargeSize(edges.length, used));
+        }
+        OffHeapArray.UNSAFE.copyMemory(edgeData.address, edges.address, used);
+        edges.used = used;
+        edgesRestored = used;
+    }
+
+    void saveBuckets(final int[] buckets, final int[] bucketCounts,
+                     final int from, final int length)
+    {
+        if (edgeBuckets.length < length) {
+            final int newSize = ArrayCacheConst.getNewSize(edgeBuckets.length, length);
+            edgeBuckets = new int[newSize];
+            edgeBucketCounts = new int[newSize];
+        }
+        System.arraycopy(buckets, from, edgeBuckets, 0, length);
+        System.arraycopy(bucketCounts, from, edgeBucketCounts, 0, length);
+        bucketsFrom = from;
+        bucketsLength = length;
+    }
+
+    void restoreBuckets(final int[] buckets, final int[] bucketCounts) {
+        System.arraycopy(edgeBuckets, 0, buckets, bucketsFrom, bucketsLength);
+        System.arraycopy(edgeBucketCounts, 0, bucketCounts, bucketsFrom, bucketsLength);
+    }
+
+    // note: same range as buckets
+    void saveWindings(final int[] windings, final int from, final int length) {
+        if (edgeWindings.length < length) {
+            edgeWindings = new int[ArrayCacheConst.getNewSize(edgeWindings.length, length)];
+        }
+        System.arraycopy(windings, from, edgeWindings, 0, length);
+    }
+
+    void restoreWindings(final int[] windings) {
+        System.arraycopy(edgeWindings, 0, windings, bucketsFrom, bucketsLength);
+    }
+
+    /**
+     * States of the append sequences rendered with the same path object (a
+     * canvas reuses its path for all the paths it renders): each sequence
+     * gets its own state, the least recently used one is recycled.
+     */
+    public static final class States {
+
+        // maximum number of states per path:
+        private static final int MAX_STATES = 8;
+
+        // states in use order (most recently used first):
+        private final IncrementalPath[] states = new IncrementalPath[MAX_STATES];
+        private int numStates = 0;
+
+        public States() {
+            // no-op
+        }
+
+        /**
+         * Return the state having the longest processed path that is a
+         * prefix of the given path with the same processing settings
+         * (see isPrefixOf)
+         * @param p2d path to render
+         * @param tf transform (null means identity)
+         * @param clip clip rectangle
+         * @param windingRule renderer winding rule
+         * @param renderer renderer
+         * @return the matching state or null if none
+         */
+        public IncrementalPath find(final Path2D p2d, final BaseTransform tf,
+                                    final Rectangle clip, final int windingRule,
+                                    final Object renderer)
+        {
+            int found = -1;
+            for (int i = 0, max = -1; i < numStates; i++) {
+                final IncrementalPath state = states[i];
+                if ((state.numTypes > max)
+                    && state.isPrefixOf(p2d, tf, clip, windingRule, renderer))
+                {
+                    found = i;
+                    max = state.numTypes;
+                }
+            }
+            if (found == -1) {
+                return null;
+            }
+            return moveToFront(found);
+        }
+
+        /**
+         * Return a new (or recycled) state to record an unknown path
+         * @return invalid state
+         */
+        public IncrementalPath recycle() {
+            if (numStates < MAX_STATES) {
+                states[numStates] = new IncrementalPath();
+                return moveToFront(numStates++);
+            }
+            final IncrementalPath state = moveToFront(MAX_STATES - 1);
+            state.reset();
+            return state;
+        }
+
+        private IncrementalPath moveToFront(final int i) {
+            final IncrementalPath state = states[i];
+            System.arraycopy(states, 0, states, 1, i);
+            states[0] = state;
+            return state;
+        }
+    }
+}
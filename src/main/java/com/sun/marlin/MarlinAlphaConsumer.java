@@ -31,6 +31,12 @@ public interface MarlinAlphaConsumer extends AlphaConsumer {
 
     public boolean supportBlockFlags();
 
+    /**
+     * @return true if distinct pixel rows can be written concurrently
+     * (parallel bands)
+     */
+    public boolean supportParallelBands();
+
     public void clearAlphas(final int pix_y);
 
     public void setAndClearRelativeAlphas(int[] blkFlags, int alphaDeltas[], int pix_y,
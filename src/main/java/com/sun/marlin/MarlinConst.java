@@ -74,14 +74,58 @@ public interface MarlinConst {
     // do clean dirty array
     static final boolean DO_CLEAN_DIRTY = false;
 
+    // flag to use the analytic coverage renderer (exact area) for antialiasing
+    static final boolean USE_ANALYTIC_AA = MarlinProperties.isUseAnalyticAA();
+
+    // crossing sort strategy (merge, radix or adaptive):
+    static final String CROSSING_SORT = MarlinProperties.getCrossingSort();
+    static final boolean USE_RADIX_SORT = !"merge".equals(CROSSING_SORT);
+    static final boolean FORCE_RADIX_SORT = "radix".equals(CROSSING_SORT);
+    // minimum number of crossings to use the radix sort:
+    static final int RADIX_SORT_THRESHOLD = MarlinProperties.getRadixSortThreshold();
+    // number of scanlines using radix sort before probing insertion sort again:
+    static final int RADIX_SORT_ROWS = 7;
+
+    // flag to fold edges on the left side of the clip into winding deltas
+    static final boolean FOLD_LEFT_EDGES = MarlinProperties.isFoldLeftEdges();
+
+    // flag to rasterize axis-aligned rectangles, round rectangles and ellipses
+    // from their analytic outline (approximation, off by default; not with the
+    // analytic coverage renderer)
+    static final boolean USE_PRIMITIVES = MarlinProperties.isUsePrimitives()
+                                          && !USE_ANALYTIC_AA;
+
+    // flag to rasterize antialiased strokes no wider than 1 pixel from their
+    // center line (hairlines) instead of stroking them (approximation, off by
+    // default)
+    static final boolean USE_HAIRLINES = MarlinProperties.isUseHairlines();
+
+    // flag to reuse curve flattenings of repeated curves (see FlatteningCache)
+    static final boolean USE_FLATTENING_CACHE = MarlinProperties.isUseFlatteningCache();
+
     // flag to use collinear simplifier
     static final boolean USE_SIMPLIFIER = MarlinProperties.isUseSimplifier();
 
     // flag to use path simplifier
     static final boolean USE_PATH_SIMPLIFIER = MarlinProperties.isUsePathSimplifier();
 
+    // flag to decimate dense stroked open polylines (min / max per pixel
+    // column) before the stroker (lossy, off by default)
+    static final boolean USE_DECIMATOR = MarlinProperties.isUseDecimator();
+
+    // flag to share large cached arrays across contexts (see SharedArrayPool)
+    static final boolean USE_SHARED_ARRAY_POOL = MarlinProperties.isUseSharedArrayPool();
+
     static final boolean DO_CLIP_SUBDIVIDER = MarlinProperties.isDoClipSubdivider();
 
+    // flag to sweep large masks by horizontal bands on the common ForkJoinPool
+    static final boolean USE_PARALLEL_BANDS = MarlinProperties.isUseParallelBands();
+    // minimum mask area (pixels) to use parallel bands
+    static final int PARALLEL_BANDS_MIN_AREA = MarlinProperties.getParallelBandsMinArea();
+
+    // flag to rasterize append-only canvas paths incrementally
+    static final boolean USE_INCREMENTAL_PATH = MarlinProperties.isUseIncrementalPath();
+
     // flag to enable logs related to bounds checks
     static final boolean DO_LOG_BOUNDS = ENABLE_LOGS && false;
 
@@ -142,6 +186,9 @@ public interface MarlinConst {
     public static final int BLOCK_SIZE_LG = MarlinProperties.getBlockSize_Log2();
     public static final int BLOCK_SIZE    = 1 << BLOCK_SIZE_LG;
 
+    // tile size (streaming output)
+    public static final int TILE_SIZE_LG = MarlinProperties.getTileSize_Log2();
+
     static final boolean ENABLE_BLOCK_FLAGS = MarlinProperties.isUseTileFlags();
     static final boolean ENABLE_BLOCK_FLAGS_HEURISTICS = MarlinProperties.isUseTileFlagsWithHeuristics();
 
@@ -151,6 +198,9 @@ public interface MarlinConst {
     static final int RLE_MIN_WIDTH
         = Math.max(BLOCK_SIZE, MarlinProperties.getRLEMinWidth());
 
+    // flag to write mask rows by 8-byte words (SWAR) instead of bytes
+    static final boolean USE_WIDE_STORES = MarlinProperties.isUseWideStores();
+
     // Constants
     public static final int WIND_EVEN_ODD = 0;
     public static final int WIND_NON_ZERO = 1;
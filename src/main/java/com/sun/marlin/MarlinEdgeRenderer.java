@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package com.sun.marlin;
+
+/**
+ * Renderer storing its path as edges (scanline renderers): its edges can be
+ * saved and restored (incremental paths) or compiled and replayed (compiled
+ * shapes).
+ */
+public interface MarlinEdgeRenderer extends MarlinRenderer {
+
+    /**
+     * Saves the edges and the current position into the given state
+     * (path not closed) to rasterize the same path prefix later
+     */
+    public void saveState(IncrementalPath state);
+
+    /**
+     * Restores the edges and the current position from the given state
+     * (after init() with the same bounds and winding rule)
+     */
+    public void restoreState(IncrementalPath state);
+
+    /**
+     * Copies the edges into the given compiled shape (after pathDone())
+     * to rasterize the same shape later without recomputing its edges
+     */
+    public void compileEdges(CompiledShape cs);
+
+    /**
+     * Adds the edges of the given compiled shape translated by the given
+     * pixel offsets (after init() with the compiled winding rule) and
+     * determines the boundaries, like pathDone()
+     */
+    public void replayEdges(CompiledShape cs, int dx, int dy);
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package com.sun.marlin;
+
+/**
+ * Optional event sink of the runtime metrics (JFR events): jdk.jfr is missing
+ * from JDK 8 before 8u262 and from runtimes built without it, so the
+ * implementation (JfrMarlinEvents in src/main/jfr, built by the jfr maven
+ * profiles when the JDK provides jdk.jfr) is only loaded by reflection in
+ * MarlinMetrics.
+ */
+interface MarlinEvents {
+
+    /**
+     * @return true if the slow rasterization event is enabled by a recording
+     */
+    boolean isSlowRasterizationEnabled();
+
+    /**
+     * Emit a sampled rendering event (if enabled)
+     * @param renderingTime endRendering time (ns)
+     * @param edges number of edges
+     * @param width bounding box width
+     * @param height bounding box height
+     * @param rows number of timed copyAARow calls
+     * @param copyRowsTime total time of copyAARow calls (ns)
+     */
+    void rendering(long renderingTime, int edges, int width, int height,
+                   int rows, long copyRowsTime);
+
+    /**
+     * Emit a slow rasterization event
+     * @param timer timer giving the stage times
+     * @param elapsed rasterization time (ns)
+     * @param renderer renderer class name
+     * @param width mask width
+     * @param height mask height
+     * @param antialiased true if antialiased
+     * @param strokeWidth stroke width or 0 for fills
+     * @param dashed true if the stroke is dashed
+     * @param clipped true if path clipping was enabled
+     */
+    void slowRasterization(RasterizationTimer timer, long elapsed,
+                           String renderer, int width, int height,
+                           boolean antialiased, float strokeWidth,
+                           boolean dashed, boolean clipped);
+}
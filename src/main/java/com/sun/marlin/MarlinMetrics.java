@@ -0,0 +1,281 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package com.sun.marlin;
+
+import java.lang.management.ManagementFactory;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.ObjectName;
+import static com.sun.marlin.MarlinUtils.logException;
+
+/**
+ * Low-overhead runtime metrics, available in production unlike the
+ * RendererStats (DO_STATS) debugging statistics: renderers count renderings,
+ * edges and mask pixels into striped counters (LongAdder) and time 1
+ * rendering every N (endRendering scanline sweep and its copyAARow calls).
+ *
+ * Metrics are published by the MarlinMetricsMBean (collection can be enabled
+ * at runtime) and sampled renderings also emit com.sun.marlin.Rendering JFR
+ * events if the JFR event sink (jfr profile) and jdk.jfr are available.
+ */
+public final class MarlinMetrics implements MarlinMetricsMBean {
+
+    static final String OBJECT_NAME = "com.sun.marlin:type=MarlinMetrics";
+
+    private static final MarlinMetrics INSTANCE = new MarlinMetrics();
+
+    // collection flag (toggled at runtime):
+    private static volatile boolean enabled
+        = MarlinProperties.isMetricsEnabled();
+    // sampling mask (rate - 1):
+    private static volatile int sampleMask
+        = MarlinProperties.getMetricsSampleRate() - 1;
+
+    // optional JFR event sink (null if unavailable):
+    static final MarlinEvents EVENTS = loadEvents();
+
+    // true once the MBean is registered:
+    private static boolean registered = false;
+
+    // counters
+    private final LongAdder renderings = new LongAdder();
+    private final LongAdder edges = new LongAdder();
+    private final LongAdder maskPixels = new LongAdder();
+    // sampled timings
+    private final LongAdder samples = new LongAdder();
+    private final LongAdder sampleNanos = new LongAdder();
+    private final LongAccumulator sampleMaxNanos
+        = new LongAccumulator(Math::max, 0L);
+    private final LongAdder rows = new LongAdder();
+    private final LongAdder rowNanos = new LongAdder();
+
+    private MarlinMetrics() {
+        // singleton
+    }
+
+    public static MarlinMetrics getInstance() {
+        return INSTANCE;
+    }
+
+    // --- renderer hooks ---
+
+    /**
+     * @return true if metrics are collected
+     */
+    static boolean isActive() {
+        return enabled;
+    }
+
+    /**
+     * Return the start time of a sampled rendering
+     * @param count rendering counter of the caller
+     * @return System.nanoTime() if this rendering is sampled, 0 otherwise
+     */
+    static long startSample(final int count) {
+        return ((count & sampleMask) == 0) ? System.nanoTime() : 0L;
+    }
+
+    /**
+     * Count one rendering
+     * @param edgeCount number of edges
+     * @param pixels number of pixels in the rendering bounding box
+     */
+    static void addRendering(final int edgeCount, final long pixels) {
+        final MarlinMetrics m = INSTANCE;
+        m.renderings.increment();
+        m.edges.add(edgeCount);
+        m.maskPixels.add(pixels);
+    }
+
+    /**
+     * Record one sampled rendering
+     * @param start start time given by startSample()
+     * @param edgeCount number of edges
+     * @param width bounding box width
+     * @param height bounding box height
+     * @param rowCount number of timed copyAARow calls
+     * @param rowTime total time of copyAARow calls (ns)
+     */
+    static void addSample(final long start, final int edgeCount,
+                          final int width, final int height,
+                          final int rowCount, final long rowTime)
+    {
+        final long elapsed = System.nanoTime() - start;
+
+        final MarlinMetrics m = INSTANCE;
+        m.samples.increment();
+        m.sampleNanos.add(elapsed);
+        m.sampleMaxNanos.accumulate(elapsed);
+        if (rowCount != 0) {
+            m.rows.add(rowCount);
+            m.rowNanos.add(rowTime);
+        }
+        final MarlinEvents events = EVENTS;
+        if (events != null) {
+            events.rendering(elapsed, edgeCount, width, height,
+                             rowCount, rowTime);
+        }
+    }
+
+    // --- MarlinMetricsMBean ---
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void setEnabled(final boolean enabled) {
+        MarlinMetrics.enabled = enabled;
+    }
+
+    @Override
+    public int getSampleRate() {
+        return sampleMask + 1;
+    }
+
+    @Override
+    public void setSampleRate(final int rate) {
+        sampleMask = Integer.highestOneBit(
+            Math.max(1, Math.min(rate, 64 * 1024))) - 1;
+    }
+
+    @Override
+    public boolean isJfrAvailable() {
+        return (EVENTS != null);
+    }
+
+    @Override
+    public long getRenderingCount() {
+        return renderings.sum();
+    }
+
+    @Override
+    public long getEdgeCount() {
+        return edges.sum();
+    }
+
+    @Override
+    public long getMaskPixelCount() {
+        return maskPixels.sum();
+    }
+
+    @Override
+    public long getSampledRenderingCount() {
+        return samples.sum();
+    }
+
+    @Override
+    public double getEndRenderingMeanMicros() {
+        final long n = samples.sum();
+        return (n != 0L) ? (1e-3d * sampleNanos.sum()) / n : 0d;
+    }
+
+    @Override
+    public double getEndRenderingMaxMicros() {
+        return 1e-3d * sampleMaxNanos.get();
+    }
+
+    @Override
+    public long getCopyAARowCount() {
+        return rows.sum();
+    }
+
+    @Override
+    public double getCopyAARowMeanNanos() {
+        final long n = rows.sum();
+        return (n != 0L) ? ((double) rowNanos.sum()) / n : 0d;
+    }
+
+    @Override
+    public void reset() {
+        renderings.reset();
+        edges.reset();
+        maskPixels.reset();
+        samples.reset();
+        sampleNanos.reset();
+        sampleMaxNanos.reset();
+        rows.reset();
+        rowNanos.reset();
+    }
+
+    @Override
+    public long getArrayCacheBytes() {
+        return ArrayCacheManager.getCachedBytes();
+    }
+
+    @Override
+    public void trimArrayCaches() {
+        ArrayCacheManager.trim();
+    }
+
+    @Override
+    public String toString() {
+        return "MarlinMetrics[enabled=" + enabled
+            + " renderings=" + getRenderingCount()
+            + " edges=" + getEdgeCount()
+            + " maskPixels=" + getMaskPixelCount()
+            + " samples=" + getSampledRenderingCount()
+            + " endRendering(mean/max)=" + getEndRenderingMeanMicros()
+            + " / " + getEndRenderingMaxMicros() + " us"
+            + " copyAARow(mean)=" + getCopyAARowMeanNanos() + " ns]";
+    }
+
+    private static MarlinEvents loadEvents() {
+        try {
+            // JfrMarlinEvents is only built when the JDK provides jdk.jfr:
+            return (MarlinEvents) Class.forName("com.sun.marlin.JfrMarlinEvents")
+                                       .getDeclaredConstructor().newInstance();
+        } catch (Throwable th) {
+            // missing class or JDK without jdk.jfr:
+            return null;
+        }
+    }
+
+    /**
+     * Register the MarlinMetricsMBean in the platform MBean server (once)
+     */
+    static synchronized void register() {
+        if (registered) {
+            return;
+        }
+        registered = true;
+
+        AccessController.doPrivileged((PrivilegedAction<Void>) () -> {
+            try {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(
+                    INSTANCE, new ObjectName(OBJECT_NAME));
+            } catch (Throwable th) {
+                // management may be unavailable or already registered:
+                logException("MarlinMetrics: unable to register the MBean "
+                             + OBJECT_NAME, th);
+            }
+            return null;
+        });
+    }
+}
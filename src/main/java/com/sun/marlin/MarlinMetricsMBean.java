@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package com.sun.marlin;
+
+/**
+ * Management interface of the Marlin runtime metrics (see MarlinMetrics)
+ * registered as "com.sun.marlin:type=MarlinMetrics" in the platform MBean
+ * server.
+ */
+public interface MarlinMetricsMBean {
+
+    /**
+     * @return true if metrics are collected
+     */
+    boolean isEnabled();
+
+    /**
+     * Enable or disable the metrics collection at runtime
+     * @param enabled true to collect metrics
+     */
+    void setEnabled(boolean enabled);
+
+    /**
+     * @return sampling rate: 1 timed rendering every N renderings
+     */
+    int getSampleRate();
+
+    /**
+     * Set the sampling rate (rounded down to a power of two)
+     * @param rate 1 timed rendering every N renderings (1 to 65536)
+     */
+    void setSampleRate(int rate);
+
+    /**
+     * @return true if custom JFR events (com.sun.marlin.Rendering) may be
+     * emitted for sampled renderings
+     */
+    boolean isJfrAvailable();
+
+    /**
+     * @return number of renderings
+     */
+    long getRenderingCount();
+
+    /**
+     * @return total number of edges
+     */
+    long getEdgeCount();
+
+    /**
+     * @return total number of mask pixels (bounding boxes)
+     */
+    long getMaskPixelCount();
+
+    /**
+     * @return number of timed (sampled) renderings
+     */
+    long getSampledRenderingCount();
+
+    /**
+     * @return mean time (microseconds) of sampled renderings
+     * (endRendering scanline sweep)
+     */
+    double getEndRenderingMeanMicros();
+
+    /**
+     * @return max time (microseconds) of sampled renderings
+     */
+    double getEndRenderingMaxMicros();
+
+    /**
+     * @return number of timed pixel rows (copyAARow) in sampled renderings
+     */
+    long getCopyAARowCount();
+
+    /**
+     * @return mean time (nanoseconds) of copyAARow in sampled renderings
+     */
+    double getCopyAARowMeanNanos();
+
+    /**
+     * Reset all counters
+     */
+    void reset();
+
+    /**
+     * @return bytes of arrays kept in all array caches
+     */
+    long getArrayCacheBytes();
+
+    /**
+     * Release all array caches (renderer contexts)
+     */
+    void trimArrayCaches();
+}
@@ -49,6 +49,53 @@ public final class MarlinProperties {
         return getBoolean("prism.marlin.useThreadLocal", "true");
     }
 
+    /**
+     * Return the RendererContext provider type among "tl" (ThreadLocal),
+     * "clq" (ConcurrentLinkedQueue) or "striped" (bounded pool suited to
+     * virtual threads); defaults to "tl" or "clq" depending on
+     * prism.marlin.useThreadLocal (also used if the value is invalid)
+     *
+     * @return provider type
+     */
+    public static String getContextProvider() {
+        final String def = isUseThreadLocal() ? "tl" : "clq";
+        final String value = getString("prism.marlin.contextProvider", def);
+        switch (value) {
+            case "tl":
+            case "clq":
+            case "striped":
+                return value;
+            default:
+                logInfo("Invalid value for prism.marlin.contextProvider = "
+                        + value + "; expected tl, clq or striped !");
+                return def;
+        }
+    }
+
+    /**
+     * Return the capacity of the striped RendererContext pool ie the maximum
+     * number of contexts in use at the same time
+     *
+     * @return 1 <= capacity <= 1024 (carrier threads of virtual threads
+     * ie available processors by default)
+     */
+    public static int getContextPoolCapacity() {
+        final int carriers = getInteger("jdk.virtualThreadScheduler.parallelism",
+                                        Runtime.getRuntime().availableProcessors(),
+                                        1, 1024);
+        return getInteger("prism.marlin.contextPool.capacity", carriers, 1, 1024);
+    }
+
+    /**
+     * Return the maximum time (ms) to wait for a released RendererContext
+     * in the striped pool before using an extra context
+     *
+     * @return 0 <= max wait <= 60000 (5 by default)
+     */
+    public static int getContextPoolMaxWait() {
+        return getInteger("prism.marlin.contextPool.maxWait", 5, 0, 60000);
+    }
+
     /**
      * Return the initial edge capacity used to define initial arrays
      * (edges, polystack, crossings)
@@ -136,6 +183,17 @@ public final class MarlinProperties {
         return getInteger("prism.marlin.blockSize_log2", 5, 3, 8);
     }
 
+    /**
+     * Return the log(2) corresponding to the tile size in pixels
+     * (tile streaming output)
+     *
+     * @return 5 (32 pixels) < tile size < 6 (64 pixels)
+     * (5 by default ie 32 pixels)
+     */
+    public static int getTileSize_Log2() {
+        return getInteger("prism.marlin.tileSize_log2", 5, 5, 6);
+    }
+
     // RLE / blockFlags settings
 
     public static boolean isForceRLE() {
@@ -155,12 +213,68 @@ public final class MarlinProperties {
         && getBoolean("prism.marlin.useTileFlags.useHeuristics", "true");
     }
 
+    public static boolean isUseAnalyticAA() {
+        return getBoolean("prism.marlin.analytic", "false");
+    }
+
+    public static boolean isUseWideStores() {
+        return getBoolean("prism.marlin.useWideStores", "true");
+    }
+
     public static int getRLEMinWidth() {
         return getInteger("prism.marlin.rleMinWidth", 64, 0, Integer.MAX_VALUE);
     }
 
     // optimisation parameters
 
+    /**
+     * Return the crossing sort strategy:
+     * "adaptive" (default), "merge" or "radix"
+     * @return crossing sort strategy
+     */
+    public static String getCrossingSort() {
+        final String sort = getString("prism.marlin.crossingSort", "adaptive");
+        if ("merge".equals(sort) || "radix".equals(sort)) {
+            return sort;
+        }
+        return "adaptive";
+    }
+
+    public static int getRadixSortThreshold() {
+        return getInteger("prism.marlin.radixSort.threshold", 256, 40, Integer.MAX_VALUE);
+    }
+
+    public static boolean isFoldLeftEdges() {
+        return getBoolean("prism.marlin.foldLeftEdges", "true");
+    }
+
+    /**
+     * Return true to rasterize axis-aligned rectangles, round rectangles,
+     * ellipses and stroked axis-aligned lines / polylines from their outline:
+     * faster but not identical to the path pipeline (curved outlines, round
+     * joins and caps differ on edge pixels, only filled rectangles are exact)
+     *
+     * @return true if enabled (false by default)
+     */
+    public static boolean isUsePrimitives() {
+        return getBoolean("prism.marlin.primitives", "false");
+    }
+
+    /**
+     * Return true to rasterize antialiased strokes no wider than 1 pixel from
+     * their center line: faster but not identical to the stroked outline
+     * (joins are not drawn, dashes are not clipped)
+     *
+     * @return true if enabled (false by default)
+     */
+    public static boolean isUseHairlines() {
+        return getBoolean("prism.marlin.hairlines", "false");
+    }
+
+    public static boolean isUseFlatteningCache() {
+        return getBoolean("prism.marlin.flatteningCache", "false");
+    }
+
     public static boolean isUseSimplifier() {
         return getBoolean("prism.marlin.useSimplifier", "false");
     }
@@ -169,6 +283,17 @@ public final class MarlinProperties {
         return getBoolean("prism.marlin.usePathSimplifier", "false");
     }
 
+    /**
+     * Return true to decimate dense stroked open polylines (time series)
+     * before the stroker: lossy within pixel columns (joins and horizontal
+     * positions may change)
+     *
+     * @return true if enabled (false by default)
+     */
+    public static boolean isUseDecimator() {
+        return getBoolean("prism.marlin.decimate", "false");
+    }
+
     public static float getPathSimplifierPixelTolerance() {
         // default: MIN_PEN_SIZE or less ?
         return getFloat("prism.marlin.pathSimplifier.pixTol",
@@ -177,6 +302,36 @@ public final class MarlinProperties {
                 10.0f);
     }
 
+    // parallel band rasterization
+
+    /**
+     * Return true to sweep large masks by horizontal bands on the common
+     * ForkJoinPool; only the subpixel Renderer supports it (the analytic
+     * AreaRenderer always sweeps rows sequentially)
+     *
+     * @return true if enabled (false by default)
+     */
+    public static boolean isUseParallelBands() {
+        return getBoolean("prism.marlin.parallelBands", "false");
+    }
+
+    /**
+     * Return the minimum mask area (in pixels) to rasterize bands in parallel
+     *
+     * @return 4096 <= minimum area <= Integer.MAX_VALUE (262144 by default
+     * ie 512 x 512)
+     */
+    public static int getParallelBandsMinArea() {
+        return getInteger("prism.marlin.parallelBands.minArea", 512 * 512,
+                          64 * 64, Integer.MAX_VALUE);
+    }
+
+    // incremental rasterization of append-only (canvas) paths
+
+    public static boolean isUseIncrementalPath() {
+        return getBoolean("prism.marlin.incremental", "false");
+    }
+
     public static boolean isDoClip() {
         return getBoolean("prism.marlin.clip", "true");
     }
@@ -197,6 +352,92 @@ public final class MarlinProperties {
         return getFloat("prism.marlin.clip.subdivider.minLength", 100.0f, Float.NEGATIVE_INFINITY, Float.POSITIVE_INFINITY);
     }
 
+    // array cache memory (see ArrayCacheManager)
+
+    /**
+     * Return the global budget of arrays kept in all array caches
+     * @return 0 to Integer.MAX_VALUE bytes (64M by default)
+     */
+    public static int getArrayCacheBudget() {
+        return getInteger("prism.marlin.arrayCache.budget", 64 * 1024 * 1024,
+                          0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Return the idle time before releasing unused array caches
+     * @return 0 (disabled) to 86400 seconds (30 by default)
+     */
+    public static int getArrayCacheIdleTime() {
+        return getInteger("prism.marlin.arrayCache.idleTime", 30, 0, 24 * 3600);
+    }
+
+    /**
+     * Return the old generation usage ratio (after GC) installed as collection
+     * usage threshold (on pools without one) to release array caches
+     * @return 0 (disabled by default) to 1
+     */
+    public static float getArrayCacheHeapPressure() {
+        return getFloat("prism.marlin.arrayCache.heapPressure", 0.0f, 0.0f, 1.0f);
+    }
+
+    public static boolean isUseSharedArrayPool() {
+        return getBoolean("prism.marlin.arrayCache.shared", "false");
+    }
+
+    /**
+     * Return the array length above which cached arrays are only kept in the
+     * shared pool (all contexts) instead of per-context caches
+     * @return 4096 to Integer.MAX_VALUE (64K by default)
+     */
+    public static int getSharedArrayMinSize() {
+        return getInteger("prism.marlin.arrayCache.sharedMinSize", 64 * 1024,
+                          4096, Integer.MAX_VALUE);
+    }
+
+    // edge storage (see OffHeapArray)
+
+    /**
+     * Return the edge storage size above which edges are stored in a
+     * memory-mapped temporary file instead of native memory
+     * @return 0 (disabled) to Integer.MAX_VALUE bytes (0 by default)
+     */
+    public static int getEdgesSpillSize() {
+        return getInteger("prism.marlin.edges.spillSize", 0, 0, Integer.MAX_VALUE);
+    }
+
+    public static String getEdgesSpillDir() {
+        return getString("prism.marlin.edges.spillDir",
+                         getString("java.io.tmpdir", "."));
+    }
+
+    // runtime metrics (see MarlinMetrics)
+
+    public static boolean isMetricsEnabled() {
+        return getBoolean("prism.marlin.metrics", "false");
+    }
+
+    public static boolean isMetricsJMX() {
+        return getBoolean("prism.marlin.metrics.jmx", "true");
+    }
+
+    /**
+     * Return the metrics sampling rate (1 timed rendering every N renderings)
+     * rounded to a power of two
+     * @return 1 to 65536 (64 by default)
+     */
+    public static int getMetricsSampleRate() {
+        return Integer.highestOneBit(
+            getInteger("prism.marlin.metrics.sampleRate", 64, 1, 64 * 1024));
+    }
+
+    /**
+     * Return the threshold of SlowRasterization JFR events
+     * @return threshold in milliseconds (20 by default)
+     */
+    public static int getMetricsSlowThreshold() {
+        return getInteger("prism.marlin.metrics.slowThreshold", 20, 0, Integer.MAX_VALUE);
+    }
+
     // debugging parameters
 
     public static boolean isDoStats() {
@@ -29,6 +29,7 @@ import java.security.AccessController;
 import static com.sun.marlin.MarlinUtils.logInfo;
 import com.sun.util.reentrant.ReentrantContextProvider;
 import com.sun.util.reentrant.ReentrantContextProviderCLQ;
+import com.sun.util.reentrant.ReentrantContextProviderStriped;
 import com.sun.util.reentrant.ReentrantContextProviderTL;
 import com.sun.javafx.geom.PathIterator;
 import com.sun.prism.BasicStroke;
@@ -63,15 +64,19 @@ public final class MarlinRenderingEngine implements MarlinConst
     // use ThreadLocal or ConcurrentLinkedQueue to get one RendererContext
     private static final boolean USE_THREAD_LOCAL;
 
+    // provider type: tl, clq or striped (virtual threads)
+    private static final String CONTEXT_PROVIDER;
+
     // reference type stored in either TL or CLQ
     static final int REF_TYPE;
 
     // Per-thread RendererContext
     private static final ReentrantContextProvider<RendererContext> RDR_CTX_PROVIDER;
 
-    // Static initializer to use TL or CLQ mode
+    // Static initializer to use TL, CLQ or striped pool mode
     static {
         USE_THREAD_LOCAL = MarlinProperties.isUseThreadLocal();
+        CONTEXT_PROVIDER = MarlinProperties.getContextProvider();
 
         // Soft reference by default:
         final String refType = AccessController.doPrivileged(
@@ -92,25 +97,44 @@ public final class MarlinRenderingEngine implements MarlinConst
                 break;
         }
 
-        if (USE_THREAD_LOCAL) {
-            RDR_CTX_PROVIDER = new ReentrantContextProviderTL<RendererContext>(REF_TYPE)
-                {
-                    @Override
-                    protected RendererContext newContext() {
-                        return RendererContext.createContext();
-                    }
-                };
-        } else {
-            RDR_CTX_PROVIDER = new ReentrantContextProviderCLQ<RendererContext>(REF_TYPE)
-                {
-                    @Override
-                    protected RendererContext newContext() {
-                        return RendererContext.createContext();
-                    }
-                };
+        switch (CONTEXT_PROVIDER) {
+            default:
+            case "tl":
+                RDR_CTX_PROVIDER = new ReentrantContextProviderTL<RendererContext>(REF_TYPE)
+                    {
+                        @Override
+                        protected RendererContext newContext() {
+                            return RendererContext.createContext();
+                        }
+                    };
+                break;
+            case "clq":
+                RDR_CTX_PROVIDER = new ReentrantContextProviderCLQ<RendererContext>(REF_TYPE)
+                    {
+                        @Override
+                        protected RendererContext newContext() {
+                            return RendererContext.createContext();
+                        }
+                    };
+                break;
+            case "striped":
+                RDR_CTX_PROVIDER = new ReentrantContextProviderStriped<RendererContext>(REF_TYPE,
+                        MarlinProperties.getContextPoolCapacity(),
+                        MarlinProperties.getContextPoolMaxWait())
+                    {
+                        @Override
+                        protected RendererContext newContext() {
+                            return RendererContext.createContext();
+                        }
+                    };
+                break;
         }
 
         logSettings(Renderer.class.getName());
+
+        if (MarlinProperties.isMetricsJMX()) {
+            MarlinMetrics.register();
+        }
     }
 
     private static boolean SETTINGS_LOGGED = !ENABLE_LOGS;
@@ -146,6 +170,12 @@ public final class MarlinRenderingEngine implements MarlinConst
                 + reClass);
         logInfo("prism.marlin.useThreadLocal   = "
                 + USE_THREAD_LOCAL);
+        logInfo("prism.marlin.contextProvider  = "
+                + CONTEXT_PROVIDER);
+        logInfo("prism.marlin.contextPool.capacity = "
+                + MarlinProperties.getContextPoolCapacity());
+        logInfo("prism.marlin.contextPool.maxWait = "
+                + MarlinProperties.getContextPoolMaxWait());
         logInfo("prism.marlin.useRef           = "
                 + refType);
 
@@ -155,6 +185,20 @@ public final class MarlinRenderingEngine implements MarlinConst
                 + MarlinConst.INITIAL_PIXEL_WIDTH);
         logInfo("prism.marlin.pixelHeight      = "
                 + MarlinConst.INITIAL_PIXEL_HEIGHT);
+        logInfo("prism.marlin.arrayCache.budget = "
+                + MarlinProperties.getArrayCacheBudget());
+        logInfo("prism.marlin.arrayCache.idleTime = "
+                + MarlinProperties.getArrayCacheIdleTime());
+        logInfo("prism.marlin.arrayCache.heapPressure = "
+                + MarlinProperties.getArrayCacheHeapPressure());
+        logInfo("prism.marlin.arrayCache.shared = "
+                + MarlinConst.USE_SHARED_ARRAY_POOL);
+        logInfo("prism.marlin.arrayCache.sharedMinSize = "
+                + MarlinProperties.getSharedArrayMinSize());
+        logInfo("prism.marlin.edges.spillSize  = "
+                + MarlinProperties.getEdgesSpillSize());
+        logInfo("prism.marlin.edges.spillDir   = "
+                + MarlinProperties.getEdgesSpillDir());
 
         logInfo("prism.marlin.profile          = "
                 + (MarlinProperties.isProfileQuality() ?
@@ -167,6 +211,8 @@ public final class MarlinRenderingEngine implements MarlinConst
 
         logInfo("prism.marlin.blockSize_log2   = "
                 + MarlinConst.BLOCK_SIZE_LG);
+        logInfo("prism.marlin.tileSize_log2    = "
+                + MarlinConst.TILE_SIZE_LG);
 
         // RLE / blockFlags settings
 
@@ -180,14 +226,39 @@ public final class MarlinRenderingEngine implements MarlinConst
                 + MarlinProperties.isUseTileFlagsWithHeuristics());
         logInfo("prism.marlin.rleMinWidth      = "
                 + MarlinConst.RLE_MIN_WIDTH);
+        logInfo("prism.marlin.analytic         = "
+                + MarlinConst.USE_ANALYTIC_AA);
+        logInfo("prism.marlin.useWideStores    = "
+                + MarlinConst.USE_WIDE_STORES);
 
         // optimisation parameters
+        logInfo("prism.marlin.crossingSort     = "
+                + MarlinConst.CROSSING_SORT);
+        logInfo("prism.marlin.radixSort.threshold = "
+                + MarlinConst.RADIX_SORT_THRESHOLD);
+        logInfo("prism.marlin.foldLeftEdges    = "
+                + MarlinConst.FOLD_LEFT_EDGES);
+        logInfo("prism.marlin.primitives       = "
+                + MarlinConst.USE_PRIMITIVES);
+        logInfo("prism.marlin.hairlines        = "
+                + MarlinConst.USE_HAIRLINES);
+        logInfo("prism.marlin.flatteningCache  = "
+                + MarlinConst.USE_FLATTENING_CACHE);
         logInfo("prism.marlin.useSimplifier    = "
                 + MarlinConst.USE_SIMPLIFIER);
         logInfo("prism.marlin.usePathSimplifier= "
                 + MarlinConst.USE_PATH_SIMPLIFIER);
         logInfo("prism.marlin.pathSimplifier.pixTol = "
                 + MarlinProperties.getPathSimplifierPixelTolerance());
+        logInfo("prism.marlin.decimate         = "
+                + MarlinConst.USE_DECIMATOR);
+
+        logInfo("prism.marlin.parallelBands    = "
+                + MarlinConst.USE_PARALLEL_BANDS);
+        logInfo("prism.marlin.parallelBands.minArea = "
+                + MarlinConst.PARALLEL_BANDS_MIN_AREA);
+        logInfo("prism.marlin.incremental      = "
+                + MarlinConst.USE_INCREMENTAL_PATH);
 
         logInfo("prism.marlin.clip             = "
                 + MarlinProperties.isDoClip());
@@ -199,6 +270,16 @@ public final class MarlinRenderingEngine implements MarlinConst
         logInfo("prism.marlin.clip.subdivider.minLength = "
                 + MarlinProperties.getSubdividerMinLength());
 
+        // runtime metrics
+        logInfo("prism.marlin.metrics          = "
+                + MarlinProperties.isMetricsEnabled());
+        logInfo("prism.marlin.metrics.jmx      = "
+                + MarlinProperties.isMetricsJMX());
+        logInfo("prism.marlin.metrics.sampleRate = "
+                + MarlinProperties.getMetricsSampleRate());
+        logInfo("prism.marlin.metrics.slowThreshold = "
+                + MarlinProperties.getMetricsSlowThreshold());
+
         // debugging parameters
         logInfo("prism.marlin.doStats          = "
                 + MarlinConst.DO_STATS);
@@ -241,6 +322,16 @@ public final class MarlinRenderingEngine implements MarlinConst
                 + "=====================");
     }
 
+    /**
+     * Return the RendererContext pool statistics (acquire count and wait times)
+     * for monitoring purposes; only the striped provider collects them
+     * @return statistics as a string or null if the provider is tl or clq
+     */
+    public static String getContextProviderStatistics() {
+        return (RDR_CTX_PROVIDER instanceof ReentrantContextProviderStriped)
+                ? RDR_CTX_PROVIDER.toString() : null;
+    }
+
     /**
      * Get the RendererContext instance dedicated to the current thread
      * @return RendererContext instance
@@ -27,10 +27,26 @@ package com.sun.marlin;
 
 import com.sun.prism.impl.shape.MaskData;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.Arrays;
 import sun.misc.Unsafe;
 
 public final class MaskMarlinAlphaConsumer implements MarlinAlphaConsumer {
+
+    // word-at-a-time (SWAR) stores into the alphas array:
+    static final boolean WIDE_STORES = MarlinConst.USE_WIDE_STORES
+        // 8-byte aligned array base offset (word alignment):
+        && ((Unsafe.ARRAY_BYTE_BASE_OFFSET & 7) == 0)
+        && (Unsafe.ARRAY_BYTE_INDEX_SCALE == 1);
+
+    static final boolean BIG_ENDIAN
+        = (ByteOrder.nativeOrder() == ByteOrder.BIG_ENDIAN);
+
+    // minimum span length to use word stores:
+    static final int WIDE_THRESHOLD = 16;
+
+    static final long LONG_BYTES_ONE = 0x0101010101010101L;
+
     int x, y, width, height;
     final byte alphas[];
     final ByteBuffer alphabuffer;
@@ -143,13 +159,19 @@ public final class MaskMarlinAlphaConsumer implements MarlinAlphaConsumer {
         return true;
     }
 
+    @Override
+    public boolean supportParallelBands() {
+        // rows are independent slices of the alphas array:
+        return true;
+    }
+
     @Override
     public void clearAlphas(final int pix_y) {
         final int w = width;
         final int off = (pix_y - y) * w;
 
         // Clear complete row:
-       Arrays.fill(this.alphas, off, off + w, (byte)0);
+        fill(this.alphas, off, off + w, (byte)0);
     }
 
     @Override
@@ -175,7 +197,14 @@ public final class MaskMarlinAlphaConsumer implements MarlinAlphaConsumer {
         // fast fill ?
         final boolean fast = useFastFill && ((ato - from) < fastFillThreshold);
 
-        if (fast) {
+        if (WIDE_STORES && (ato - from >= WIDE_THRESHOLD)) {
+            // Zero-fill pixels on both sides:
+            fill(out, off, off + from, (byte) 0);
+            fill(out, off + ato, off + w, (byte) 0);
+
+            accumulateWide(out, off, alphaDeltas, from, ato, addr_alpha);
+
+        } else if (fast) {
             // Zero-fill complete row:
             Arrays.fill(out, off, off + w, (byte) 0);
 
@@ -258,7 +287,7 @@ public final class MaskMarlinAlphaConsumer implements MarlinAlphaConsumer {
             int i = from;
 
             // Zero-fill complete row:
-            Arrays.fill(out, off, off + w, (byte) 0);
+            fill(out, off, off + w, (byte) 0);
 
             for (int t = blkW, blk_x0, blk_x1, cx, delta; t <= blkE; t++) {
                 if (blkFlags[t] != 0) {
@@ -288,10 +317,8 @@ public final class MaskMarlinAlphaConsumer implements MarlinAlphaConsumer {
                                     i = cx;
                                 } else {
                                     val = _unsafe.getByte(addr_alpha + curAlpha);
-                                    do {
-                                        out[off + i] = val;
-                                        i++;
-                                    } while (i < cx);
+                                    fillSpan(out, off + i, off + cx, val);
+                                    i = cx;
                                 }
                             }
 
@@ -305,19 +332,14 @@ public final class MaskMarlinAlphaConsumer implements MarlinAlphaConsumer {
             // Process remaining span:
             if (curAlpha != 0) {
                 val = _unsafe.getByte(addr_alpha + curAlpha);
-                while (i < ato) {
-                    out[off + i] = val;
-                    i++;
-                }
+                fillSpan(out, off + i, off + ato, val);
+                i = ato;
             }
 
         } else {
-            int i = 0;
+            fill(out, off, off + from, (byte) 0);
 
-            while (i < from) {
-                out[off + i] = 0;
-                i++;
-            }
+            int i = from;
 
             for (int t = blkW, blk_x0, blk_x1, cx, delta; t <= blkE; t++) {
                 if (blkFlags[t] != 0) {
@@ -343,10 +365,8 @@ public final class MaskMarlinAlphaConsumer implements MarlinAlphaConsumer {
                             // fill span:
                             if (cx != i) {
                                 val = _unsafe.getByte(addr_alpha + curAlpha);
-                                do {
-                                    out[off + i] = val;
-                                    i++;
-                                } while (i < cx);
+                                fillSpan(out, off + i, off + cx, val);
+                                i = cx;
                             }
 
                             // alpha value = running sum of coverage delta:
@@ -359,16 +379,11 @@ public final class MaskMarlinAlphaConsumer implements MarlinAlphaConsumer {
             // Process remaining span:
             if (curAlpha != 0) {
                 val = _unsafe.getByte(addr_alpha + curAlpha);
-                while (i < ato) {
-                    out[off + i] = val;
-                    i++;
-                }
+                fillSpan(out, off + i, off + ato, val);
+                i = ato;
             }
 
-            while (i < w) {
-                out[off + i] = 0;
-                i++;
-            }
+            fill(out, off + i, off + w, (byte) 0);
         }
 
         // Clear alpha row for reuse:
@@ -379,4 +394,110 @@ public final class MaskMarlinAlphaConsumer implements MarlinAlphaConsumer {
             IntArrayCache.check(alphaDeltas, from, to + 1, 0);
         }
     }
+
+    /**
+     * Fill the given range [from; to[ with the given byte value, using
+     * 8-byte word stores if enabled
+     */
+    static void fill(final byte[] out, final int from, final int to,
+                     final byte val)
+    {
+        if (WIDE_STORES && (to - from >= WIDE_THRESHOLD)) {
+            fillWide(out, from, to, val);
+        } else {
+            Arrays.fill(out, from, to, val);
+        }
+    }
+
+    private static void fillSpan(final byte[] out, final int from, final int to,
+                                 final byte val)
+    {
+        if (WIDE_STORES && (to - from >= WIDE_THRESHOLD)) {
+            fillWide(out, from, to, val);
+        } else {
+            for (int i = from; i < to; i++) {
+                out[i] = val;
+            }
+        }
+    }
+
+    private static void fillWide(final byte[] out, int i, final int to,
+                                 final byte val)
+    {
+        final Unsafe _unsafe = OffHeapArray.UNSAFE;
+
+        // leading bytes up to the next word boundary:
+        for (final int end = Math.min((i + 7) & ~7, to); i < end; i++) {
+            out[i] = val;
+        }
+
+        // replicate the byte in all lanes:
+        final long word = (val & 0xFFL) * LONG_BYTES_ONE;
+
+        // word stores (aligned):
+        for (long addr = Unsafe.ARRAY_BYTE_BASE_OFFSET + i,
+                  end = Unsafe.ARRAY_BYTE_BASE_OFFSET + (to & ~7);
+             addr < end; addr += 8L)
+        {
+            _unsafe.putLong(out, addr, word);
+        }
+        i = Math.max(i, to & ~7);
+
+        // trailing bytes:
+        for (; i < to; i++) {
+            out[i] = val;
+        }
+    }
+
+    /**
+     * Prefix-sum the alpha deltas in [from; to[, map coverage to alpha
+     * values and pack 8 alphas per word store into out[off + from ...]
+     */
+    private static void accumulateWide(final byte[] out, final int off,
+                                       final int[] alphaDeltas,
+                                       final int from, final int to,
+                                       final long addr_alpha)
+    {
+        final Unsafe _unsafe = OffHeapArray.UNSAFE;
+
+        int i = from;
+        int curAlpha = 0;
+
+        // leading pixels up to the next word boundary:
+        for (final int end = Math.min(((off + i + 7) & ~7) - off, to); i < end; i++) {
+            curAlpha += alphaDeltas[i];
+            out[off + i] = _unsafe.getByte(addr_alpha + curAlpha);
+        }
+
+        long addr = Unsafe.ARRAY_BYTE_BASE_OFFSET + off + i;
+        long word;
+
+        // 8 pixels per word (aligned), byte k at the lowest address first:
+        for (final int end = to - 7; i < end; i += 8, addr += 8L) {
+            curAlpha += alphaDeltas[i    ];
+            word  =  (_unsafe.getByte(addr_alpha + curAlpha) & 0xFFL);
+            curAlpha += alphaDeltas[i + 1];
+            word |= ((_unsafe.getByte(addr_alpha + curAlpha) & 0xFFL) <<  8);
+            curAlpha += alphaDeltas[i + 2];
+            word |= ((_unsafe.getByte(addr_alpha + curAlpha) & 0xFFL) << 16);
+            curAlpha += alphaDeltas[i + 3];
+            word |= ((_unsafe.getByte(addr_alpha + curAlpha) & 0xFFL) << 24);
+            curAlpha += alphaDeltas[i + 4];
+            word |= ((_unsafe.getByte(addr_alpha + curAlpha) & 0xFFL) << 32);
+            curAlpha += alphaDeltas[i + 5];
+            word |= ((_unsafe.getByte(addr_alpha + curAlpha) & 0xFFL) << 40);
+            curAlpha += alphaDeltas[i + 6];
+            word |= ((_unsafe.getByte(addr_alpha + curAlpha) & 0xFFL) << 48);
+            curAlpha += alphaDeltas[i + 7];
+            word |= ((_unsafe.getByte(addr_alpha + curAlpha) & 0xFFL) << 56);
+
+            _unsafe.putLong(out, addr, (BIG_ENDIAN) ? Long.reverseBytes(word) : word);
+        }
+
+        // trailing pixels:
+        for (; i < to; i++) {
+            curAlpha += alphaDeltas[i];
+            out[off + i] = _unsafe.getByte(addr_alpha + curAlpha);
+        }
+    }
 }
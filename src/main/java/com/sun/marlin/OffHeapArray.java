@@ -25,17 +25,33 @@
 
 package com.sun.marlin;
 
+import java.io.IOException;
 import java.lang.ref.PhantomReference;
 import java.lang.ref.ReferenceQueue;
 import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.security.AccessController;
 import java.security.PrivilegedAction;
 import java.util.Vector;
+import static com.sun.marlin.MarlinConst.INITIAL_EDGES_CAPACITY;
 import static com.sun.marlin.MarlinConst.LOG_UNSAFE_MALLOC;
 import sun.misc.Unsafe;
 
 /**
+ * Off-heap memory block accessed by address.
  *
+ * When resized above the spill size (prism.marlin.edges.spillSize), the
+ * block is moved into a memory-mapped temporary file so that gigantic edge
+ * lists are paged by the OS (bounded RSS) instead of exhausting native
+ * memory; it goes back to native memory when resized below the spill size.
  */
 final class OffHeapArray  {
 
@@ -44,6 +60,16 @@ final class OffHeapArray  {
     // size of int / float
     static final int SIZE_INT;
 
+    // spill size in bytes (0 means disabled)
+    static final long SPILL_SIZE = MarlinProperties.getEdgesSpillSize();
+    // spill directory
+    static final String SPILL_DIR = MarlinProperties.getEdgesSpillDir();
+
+    // Buffer.address field offset:
+    private static final long BUFFER_ADDRESS_OFFSET;
+    // unmap method: Unsafe.invokeCleaner(ByteBuffer) (jdk9+) or null
+    private static final Method INVOKE_CLEANER;
+
     static {
         UNSAFE = AccessController.doPrivileged(new PrivilegedAction<Unsafe>() {
             @Override
@@ -62,6 +88,24 @@ final class OffHeapArray  {
 
         SIZE_INT = Unsafe.ARRAY_INT_INDEX_SCALE;
 
+        BUFFER_ADDRESS_OFFSET = AccessController.doPrivileged(
+            (PrivilegedAction<Long>) () -> {
+                try {
+                    final Field field = Buffer.class.getDeclaredField("address");
+                    return UNSAFE.objectFieldOffset(field);
+                } catch (Exception e) {
+                    throw new InternalError("Unable to get Buffer.address field", e);
+                }
+            });
+
+        Method m = null;
+        try {
+            m = Unsafe.class.getMethod("invokeCleaner", ByteBuffer.class);
+        } catch (NoSuchMethodException nsme) {
+            // jdk8: use DirectBuffer.cleaner()
+        }
+        INVOKE_CLEANER = m;
+
         // Mimics Java2D Disposer:
         AccessController.doPrivileged(
             (PrivilegedAction<Void>) () -> {
@@ -87,6 +131,9 @@ final class OffHeapArray  {
     long address;
     long length;
     int  used;
+    // spill file channel and mapping (null when in native memory)
+    private FileChannel spillChannel = null;
+    private MappedByteBuffer spillBuffer = null;
 
     OffHeapArray(final Object parent, final long len) {
         // note: may throw OOME:
@@ -109,6 +156,28 @@ final class OffHeapArray  {
      * @throws OutOfMemoryError if the allocation is refused by the system
      */
     void resize(final long len) {
+        if ((SPILL_SIZE != 0L) && (len > SPILL_SIZE)
+                && (len > INITIAL_EDGES_CAPACITY))
+        {
+            // note: may throw OOME:
+            spill(len);
+            return;
+        }
+        if (spillBuffer != null) {
+            // back to native memory:
+            // note: may throw OOME:
+            final long addr = UNSAFE.allocateMemory(len);
+            UNSAFE.copyMemory(this.address, addr, Math.min(this.length, len));
+            unspill();
+            this.address = addr;
+            this.length  = len;
+            if (LOG_UNSAFE_MALLOC) {
+                MarlinUtils.logInfo(System.currentTimeMillis()
+                                    + ": OffHeapArray.unspill =          "
+                                    + len + " to addr = " + this.address);
+            }
+            return;
+        }
         // note: may throw OOME:
         this.address = UNSAFE.reallocateMemory(address, len);
         this.length  = len;
@@ -119,7 +188,109 @@ final class OffHeapArray  {
         }
     }
 
+    /*
+     * Map the given length of the spill file (created if needed) and move
+     * the current content into it
+     * @param len new array length
+     * @throws OutOfMemoryError if the file can not be created or mapped
+     */
+    private void spill(final long len) {
+        FileChannel channel = spillChannel;
+        try {
+            if (channel == null) {
+                channel = AccessController.doPrivileged(
+                    (PrivilegedAction<FileChannel>) () -> {
+                        try {
+                            final Path file = Files.createTempFile(
+                                Paths.get(SPILL_DIR), "marlin-edges", ".tmp");
+                            return FileChannel.open(file,
+                                StandardOpenOption.READ,
+                                StandardOpenOption.WRITE,
+                                StandardOpenOption.DELETE_ON_CLOSE);
+                        } catch (IOException ioe) {
+                            throw new IllegalStateException(ioe);
+                        }
+                    });
+            }
+            // the mapping grows the file (sparse) as needed:
+            final MappedByteBuffer buffer
+                = channel.map(FileChannel.MapMode.READ_WRITE, 0L, len);
+            final long addr = UNSAFE.getLong(buffer, BUFFER_ADDRESS_OFFSET);
+
+            if (spillBuffer != null) {
+                // file content is shared by both mappings:
+                unmap(spillBuffer);
+            } else {
+                UNSAFE.copyMemory(this.address, addr, Math.min(this.length, len));
+                UNSAFE.freeMemory(this.address);
+            }
+            this.spillChannel = channel;
+            this.spillBuffer  = buffer;
+            this.address = addr;
+            this.length  = len;
+
+            if (LOG_UNSAFE_MALLOC) {
+                MarlinUtils.logInfo(System.currentTimeMillis()
+                                    + ": OffHeapArray.spill =            "
+                                    + len + " to addr = " + this.address);
+            }
+        } catch (IOException | RuntimeException e) {
+            if ((channel != null) && (spillChannel == null)) {
+                try {
+                    channel.close();
+                } catch (IOException ioe) {
+                    // ignore
+                }
+            }
+            final OutOfMemoryError oome = new OutOfMemoryError(
+                "Unable to map " + len + " bytes in " + SPILL_DIR);
+            oome.initCause((e.getCause() != null) ? e.getCause() : e);
+            throw oome;
+        }
+    }
+
+    private void unspill() {
+        unmap(spillBuffer);
+        spillBuffer = null;
+        try {
+            // deletes the spill file:
+            spillChannel.close();
+        } catch (IOException ioe) {
+            MarlinUtils.logException("OffHeapArray: unable to close spill file:",
+                                     ioe);
+        }
+        spillChannel = null;
+    }
+
+    private static void unmap(final MappedByteBuffer buffer) {
+        try {
+            if (INVOKE_CLEANER != null) {
+                INVOKE_CLEANER.invoke(UNSAFE, buffer);
+            } else {
+                final Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+                cleanerMethod.setAccessible(true);
+                final Object cleaner = cleanerMethod.invoke(buffer);
+                cleaner.getClass().getMethod("clean").invoke(cleaner);
+            }
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // the mapping will be released once the buffer is collected:
+            MarlinUtils.logException("OffHeapArray: unable to unmap spill file:",
+                                     e);
+        }
+    }
+
     void free() {
+        if (spillBuffer != null) {
+            unspill();
+            if (LOG_UNSAFE_MALLOC) {
+                MarlinUtils.logInfo(System.currentTimeMillis()
+                                    + ": OffHeapArray.unmap =            "
+                                    + this.length
+                                    + " at addr = " + this.address);
+            }
+            this.address = 0L;
+            return;
+        }
         UNSAFE.freeMemory(this.address);
         if (LOG_UNSAFE_MALLOC) {
             MarlinUtils.logInfo(System.currentTimeMillis()
@@ -0,0 +1,913 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package com.sun.marlin;
+
+import com.sun.javafx.geom.PathIterator;
+import java.util.Arrays;
+
+/**
+ * Renderer of axis-aligned primitives (rectangles, round rectangles and
+ * ellipses, optionally minus an inner primitive to stroke them) computing
+ * spans directly from their analytic outline at each subpixel scanline:
+ * no edge list, curve flattening nor crossing sort.
+ *
+ * It also renders the union of rectangles (stroked axis-aligned lines and
+ * polylines): rectangles are sorted by their left edge once, then merged
+ * spans are computed once per band of subpixel rows covered by the same
+ * rectangles.
+ *
+ * Sampling matches the Renderer (AA) and RendererNoAA: a subpixel is covered
+ * if its center lies in the outline (crossings at ceil(x - 0.5)).
+ */
+public final class PrimitiveRenderer implements MarlinConst {
+
+    // valid coordinate range (like MarlinPrismUtils):
+    static final float UPPER_BND = Float.MAX_VALUE / 2.0f;
+    static final float LOWER_BND = -UPPER_BND;
+
+    // outline (pixels): bounds [x0 x1[ [y0 y1[ and corner radii:
+    private double ox0, oy0, ox1, oy1, orx, ory;
+    // optional hole:
+    private boolean hasHole;
+    private double hx0, hy0, hx1, hy1, hrx, hry;
+
+    // subpixel settings (AA or not):
+    private int lgX, lgY, maskX, maskY, posX;
+    private double scaleX, scaleY;
+    private int maxAlpha;
+
+    // clip bounds (subpixels):
+    private int boundsMinX, boundsMinY, boundsMaxX, boundsMaxY;
+
+    // subpixel bounding box [spminX spmaxX[ [spminY spmaxY[:
+    private int bbox_spminX, bbox_spmaxX, bbox_spminY, bbox_spmaxY;
+
+    // subpixel rows of the outline and its straight part [0 1[:
+    private int oRow0, oRow1, oStraight0, oStraight1;
+    // subpixel rows of the hole and its straight part [0 1[:
+    private int hRow0, hRow1, hStraight0, hStraight1;
+
+    // output pixel bounding box:
+    private int bboxX0, bboxX1, bboxY0, bboxY1;
+
+    // rectangle list (subpixels) as [x0 y0 x1 y1[ quads:
+    // rectangle fields: x0, y0, x1, y1 (subpixels) and the link of the
+    // active rectangle list (see produceRectAlphas):
+    private static final int RECT_SIZE = 5;
+
+    private final IntArrayCache.Reference rects_ref;
+    private int[] rects;
+    private int numRects;
+    // union of rectangles (subpixels):
+    private int rectsMinX, rectsMinY, rectsMaxX, rectsMaxY;
+
+    // sort arrays (dirty, shared with the Renderer crossings):
+    private final IntArrayCache.Reference keys_ref;
+    private final IntArrayCache.Reference order_ref;
+    private final IntArrayCache.Reference aux_keys_ref;
+    private final IntArrayCache.Reference aux_order_ref;
+    private int[] keys;
+    private int[] order;
+    private int[] aux_keys;
+    private int[] aux_order;
+    // rectangle ranks (left edge order) sorted by top edge (dirty):
+    private final IntArrayCache.Reference ranks_ref;
+    private int[] ranks;
+
+    // alphaLine ref (clean, shared with other renderers)
+    private final IntArrayCache.Reference alphaLine_ref;
+    private int[] alphaLine;
+
+    // blkFlags ref (clean, shared with other renderers)
+    private final IntArrayCache.Reference blkFlags_ref;
+    private int[] blkFlags;
+
+    // true if the alpha line may be dirty (interrupted rendering):
+    private boolean dirty = false;
+
+    PrimitiveRenderer(final IntArrayCache.Reference alphaLine_ref,
+                      final IntArrayCache.Reference blkFlags_ref,
+                      final IntArrayCache.Reference rects_ref,
+                      final IntArrayCache.Reference keys_ref,
+                      final IntArrayCache.Reference order_ref,
+                      final IntArrayCache.Reference aux_keys_ref,
+                      final IntArrayCache.Reference aux_order_ref,
+                      final IntArrayCache.Reference ranks_ref)
+    {
+        this.alphaLine_ref = alphaLine_ref;
+        this.alphaLine = alphaLine_ref.initial;
+        this.blkFlags_ref = blkFlags_ref;
+        this.blkFlags = blkFlags_ref.initial;
+
+        this.rects_ref = rects_ref;
+        this.rects = rects_ref.initial;
+
+        this.keys_ref      = keys_ref;
+        this.order_ref     = order_ref;
+        this.aux_keys_ref  = aux_keys_ref;
+        this.aux_order_ref = aux_order_ref;
+        this.keys      = keys_ref.initial;
+        this.order     = order_ref.initial;
+        this.aux_keys  = aux_keys_ref.initial;
+        this.aux_order = aux_order_ref.initial;
+        this.ranks_ref = ranks_ref;
+        this.ranks     = ranks_ref.initial;
+    }
+
+    /**
+     * Initialize the renderer with the given clip bounds (pixels)
+     * @param antialiased true to use subpixel positions (Renderer) or only
+     * pixel centers (RendererNoAA)
+     */
+    public void init(final int pix_boundsX, final int pix_boundsY,
+                     final int pix_boundsWidth, final int pix_boundsHeight,
+                     final boolean antialiased)
+    {
+        if (antialiased) {
+            lgX = SUBPIXEL_LG_POSITIONS_X;
+            lgY = SUBPIXEL_LG_POSITIONS_Y;
+            maxAlpha = MAX_AA_ALPHA;
+        } else {
+            lgX = 0;
+            lgY = 0;
+            maxAlpha = 1;
+        }
+        posX = 1 << lgX;
+        maskX = posX - 1;
+        maskY = (1 << lgY) - 1;
+        scaleX = posX;
+        scaleY = 1 << lgY;
+
+        boundsMinX =  pix_boundsX << lgX;
+        boundsMaxX = (pix_boundsX + pix_boundsWidth) << lgX;
+        boundsMinY =  pix_boundsY << lgY;
+        boundsMaxY = (pix_boundsY + pix_boundsHeight) << lgY;
+
+        hasHole = false;
+        numRects = 0;
+        bboxX0 = bboxX1 = bboxY0 = bboxY1 = 0;
+    }
+
+    /**
+     * Set the outline as the round rectangle [x0 x1] x [y0 y1] with the
+     * given corner radii (0 means a rectangle, half extents an ellipse)
+     */
+    public void setOutline(final double x0, final double y0,
+                           final double x1, final double y1,
+                           final double rx, final double ry)
+    {
+        ox0 = x0;
+        oy0 = y0;
+        ox1 = x1;
+        oy1 = y1;
+        orx = rx;
+        ory = ry;
+
+        oRow0 = crossing(y0 * scaleY);
+        oRow1 = crossing(y1 * scaleY);
+        oStraight0 = crossing((y0 + ry) * scaleY);
+        oStraight1 = crossing((y1 - ry) * scaleY);
+
+        // bounds as half-open intervals within clip bounds:
+        final int spminX = FloatMath.max(crossing(x0 * scaleX), boundsMinX);
+        final int spmaxX = FloatMath.min(crossing(x1 * scaleX), boundsMaxX);
+        final int spminY = FloatMath.max(oRow0, boundsMinY);
+        final int spmaxY = FloatMath.min(oRow1, boundsMaxY);
+
+        if ((spminX >= spmaxX) || (spminY >= spmaxY)) {
+            // empty:
+            bboxX0 = bboxX1 = bboxY0 = bboxY1 = 0;
+            return;
+        }
+        setBounds(spminX, spmaxX, spminY, spmaxY);
+    }
+
+    private void setBounds(final int spminX, final int spmaxX,
+                           final int spminY, final int spmaxY)
+    {
+        bboxX0 =  spminX          >> lgX;
+        bboxX1 = (spmaxX + maskX) >> lgX;
+        bboxY0 =  spminY          >> lgY;
+        bboxY1 = (spmaxY + maskY) >> lgY;
+
+        // pixel boundaries to have correct coverage computation:
+        bbox_spminX = bboxX0 << lgX;
+        bbox_spmaxX = bboxX1 << lgX;
+        bbox_spminY = spminY;
+        bbox_spmaxY = spmaxY;
+    }
+
+    /**
+     * Set the hole (inner outline excluded from coverage) as the round
+     * rectangle [x0 x1] x [y0 y1] with the given corner radii
+     */
+    public void setHole(final double x0, final double y0,
+                        final double x1, final double y1,
+                        final double rx, final double ry)
+    {
+        hasHole = true;
+        hx0 = x0;
+        hy0 = y0;
+        hx1 = x1;
+        hy1 = y1;
+        hrx = rx;
+        hry = ry;
+
+        hRow0 = crossing(y0 * scaleY);
+        hRow1 = crossing(y1 * scaleY);
+        hStraight0 = crossing((y0 + ry) * scaleY);
+        hStraight1 = crossing((y1 - ry) * scaleY);
+    }
+
+    /**
+     * Add the rectangle [x0 x1] x [y0 y1] to the rectangle list (union)
+     */
+    public void addRect(final double x0, final double y0,
+                        final double x1, final double y1)
+    {
+        // bounds as half-open intervals within clip bounds:
+        final int spminX = FloatMath.max(crossing(x0 * scaleX), boundsMinX);
+        final int spmaxX = FloatMath.min(crossing(x1 * scaleX), boundsMaxX);
+        final int spminY = FloatMath.max(crossing(y0 * scaleY), boundsMinY);
+        final int spmaxY = FloatMath.min(crossing(y1 * scaleY), boundsMaxY);
+
+        if ((spminX >= spmaxX) || (spminY >= spmaxY)) {
+            // empty or outside clip:
+            return;
+        }
+        if (numRects == 0) {
+            rectsMinX = spminX;
+            rectsMaxX = spmaxX;
+            rectsMinY = spminY;
+            rectsMaxY = spmaxY;
+        } else {
+            rectsMinX = FloatMath.min(rectsMinX, spminX);
+            rectsMaxX = FloatMath.max(rectsMaxX, spmaxX);
+            rectsMinY = FloatMath.min(rectsMinY, spminY);
+            rectsMaxY = FloatMath.max(rectsMaxY, spmaxY);
+        }
+        final int off = numRects * RECT_SIZE;
+        if (rects.length < off + RECT_SIZE) {
+            rects = rects_ref.widenArray(rects, off, off + RECT_SIZE);
+        }
+        final int[] _rects = rects;
+        _rects[off    ] = spminX;
+        _rects[off + 1] = spminY;
+        _rects[off + 2] = spmaxX;
+        _rects[off + 3] = spmaxY;
+        numRects++;
+
+        setBounds(rectsMinX, rectsMaxX, rectsMinY, rectsMaxY);
+    }
+
+    /**
+     * Add the rectangles covered by the centered stroke of the given path
+     * (Path2D commands and coordinates transformed by the given scale and
+     * translation) made of axis-aligned line segments only, with butt or
+     * square caps and right-angle miter joins.
+     * @param hw half line width (pixels)
+     * @param capExt segment extension at caps (0 for butt, hw for square)
+     * @param miterJoin true if right-angle joins are mitered
+     * @return false if the path is not supported (curves, diagonal or empty
+     * segments, U-turns, invalid coordinates...): the renderer must be
+     * disposed as rectangles may have been added (curves, diagonal and
+     * empty segments are rejected before adding any rectangle)
+     */
+    public boolean addStrokedPolylines(final float[] coords,
+                                       final byte[] types, final int numTypes,
+                                       final double sx, final double sy,
+                                       final double tx, final double ty,
+                                       final double hw, final double capExt,
+                                       final boolean miterJoin)
+    {
+        // reject curves and diagonal or empty line segments before adding
+        // any rectangle (joins are checked below):
+        for (int i = 0, off = 0; i < numTypes; i++) {
+            switch (types[i]) {
+                case PathIterator.SEG_MOVETO:
+                    off += 2;
+                    break;
+                case PathIterator.SEG_LINETO:
+                    if ((off == 0) || ((coords[off    ] != coords[off - 2])
+                                    == (coords[off + 1] != coords[off - 1])))
+                    {
+                        return false;
+                    }
+                    off += 2;
+                    break;
+                case PathIterator.SEG_CLOSE:
+                    break;
+                default:
+                    // curves:
+                    return false;
+            }
+        }
+
+        // subpath start and current point:
+        float mx = 0.0f, my = 0.0f, cx = 0.0f, cy = 0.0f;
+        // first segment of the subpath (emitted once the subpath is done):
+        float fx0 = 0.0f, fy0 = 0.0f, fx1 = 0.0f, fy1 = 0.0f;
+        double fEnd = 0.0d;
+        // previous segment (emitted once its end join is known):
+        float px0 = 0.0f, py0 = 0.0f, px1 = 0.0f, py1 = 0.0f;
+        double pStart = 0.0d;
+        // number of segments in the current subpath:
+        int n = 0;
+        boolean started = false, closed = false;
+
+        for (int i = 0, off = 0; i <= numTypes; i++) {
+            float x = 0.0f, y = 0.0f;
+            final int type = (i < numTypes) ? types[i] : -1;
+
+            switch (type) {
+                case PathIterator.SEG_MOVETO:
+                case PathIterator.SEG_LINETO:
+                    x = (float) (sx * coords[off    ] + tx);
+                    y = (float) (sy * coords[off + 1] + ty);
+                    off += 2;
+                    if (!(x > LOWER_BND && x < UPPER_BND
+                          && y > LOWER_BND && y < UPPER_BND))
+                    {
+                        // invalid coordinates (NaN / Infinity):
+                        return false;
+                    }
+                    break;
+                case PathIterator.SEG_CLOSE:
+                    if (!started || closed || (n == 0)) {
+                        return false;
+                    }
+                    // implicit closing segment:
+                    x = mx;
+                    y = my;
+                    break;
+                case -1:
+                    // path done
+                    break;
+                default:
+                    // curves:
+                    return false;
+            }
+
+            if ((type == PathIterator.SEG_LINETO)
+                || ((type == PathIterator.SEG_CLOSE) && (x != cx || y != cy)))
+            {
+                if (!started || closed) {
+                    return false;
+                }
+                if ((x != cx) == (y != cy)) {
+                    // diagonal or empty segment:
+                    return false;
+                }
+                if (n == 0) {
+                    fx0 = cx; fy0 = cy; fx1 = x; fy1 = y;
+                } else {
+                    final double ext = joinExt(px1 - px0, py1 - py0,
+                                               x - cx, y - cy, hw, miterJoin);
+                    if (ext < 0.0d) {
+                        return false;
+                    }
+                    addMiterCorner(cx, cy, px1 - px0, py1 - py0,
+                                   x - cx, y - cy, hw);
+                    if (n == 1) {
+                        fEnd = ext;
+                    } else {
+                        addSegment(px0, py0, px1, py1, pStart, ext, hw);
+                    }
+                    pStart = ext;
+                }
+                px0 = cx; py0 = cy; px1 = x; py1 = y;
+                cx = x;
+                cy = y;
+                n++;
+            }
+
+            if (type == PathIterator.SEG_CLOSE) {
+                // join the last and first segments:
+                final double ext = joinExt(px1 - px0, py1 - py0,
+                                           fx1 - fx0, fy1 - fy0, hw, miterJoin);
+                if ((ext < 0.0d) || (n < 2)) {
+                    return false;
+                }
+                addMiterCorner(fx0, fy0, px1 - px0, py1 - py0,
+                               fx1 - fx0, fy1 - fy0, hw);
+                addSegment(fx0, fy0, fx1, fy1, ext, fEnd, hw);
+                addSegment(px0, py0, px1, py1, pStart, ext, hw);
+                n = 0;
+                closed = true;
+            } else if (type != PathIterator.SEG_LINETO) {
+                // moveTo or path done: cap the opened subpath
+                if (n == 1) {
+                    addSegment(fx0, fy0, fx1, fy1, capExt, capExt, hw);
+                } else if (n != 0) {
+                    addSegment(fx0, fy0, fx1, fy1, capExt, fEnd, hw);
+                    addSegment(px0, py0, px1, py1, pStart, capExt, hw);
+                }
+                n = 0;
+                mx = cx = x;
+                my = cy = y;
+                started = true;
+                closed = false;
+            }
+        }
+        return true;
+    }
+
+    // segment extension at the join of the given segments (directions)
+    // or -1 if not supported:
+    private static double joinExt(final double dx0, final double dy0,
+                                  final double dx1, final double dy1,
+                                  final double hw, final boolean miterJoin)
+    {
+        if ((dx0 == 0.0d) == (dx1 == 0.0d)) {
+            // collinear segments: same direction only (no U-turn)
+            return ((dx0 > 0.0d) == (dx1 > 0.0d) && (dy0 > 0.0d) == (dy1 > 0.0d))
+                    ? 0.0d : -1.0d;
+        }
+        // right angle: the miter fills the outer corner (see addMiterCorner)
+        return (miterJoin) ? 0.0d : -1.0d;
+    }
+
+    // outer square of the right angle join at (x, y) between the given
+    // segments (directions): extending the segments instead would also cover
+    // the inner side of a segment shorter than the half width
+    private void addMiterCorner(final float x, final float y,
+                                final double dx0, final double dy0,
+                                final double dx1, final double dy1,
+                                final double hw)
+    {
+        if ((dx0 == 0.0d) == (dx1 == 0.0d)) {
+            // collinear segments
+            return;
+        }
+        // outer side: ahead of the first segment, behind the second one:
+        final double ox = Math.signum(dx0) - Math.signum(dx1);
+        final double oy = Math.signum(dy0) - Math.signum(dy1);
+        addRect(Math.min(x, x + ox * hw), Math.min(y, y + oy * hw),
+                Math.max(x, x + ox * hw), Math.max(y, y + oy * hw));
+    }
+
+    private void addSegment(final float x0, final float y0,
+                            final float x1, final float y1,
+                            final double ext0, final double ext1,
+                            final double hw)
+    {
+        if (y0 == y1) {
+            // horizontal:
+            if (x0 < x1) {
+                addRect(x0 - ext0, y0 - hw, x1 + ext1, y0 + hw);
+            } else {
+                addRect(x1 - ext1, y0 - hw, x0 + ext0, y0 + hw);
+            }
+        } else {
+            // vertical:
+            if (y0 < y1) {
+                addRect(x0 - hw, y0 - ext0, x0 + hw, y1 + ext1);
+            } else {
+                addRect(x0 - hw, y1 - ext1, x0 + hw, y0 + ext0);
+            }
+        }
+    }
+
+    // index of the first subpixel whose center is on the right of x:
+    private static int crossing(final double x) {
+        return FloatMath.ceil_int(x - 0.5d);
+    }
+
+    // horizontal inset of the round rectangle outline at the given y:
+    private static double inset(final double y, final double y0, final double y1,
+                                final double rx, final double ry)
+    {
+        if (rx <= 0.0d || ry <= 0.0d) {
+            return 0.0d;
+        }
+        double t;
+        if (y < y0 + ry) {
+            t = (y0 + ry - y) / ry;
+        } else if (y > y1 - ry) {
+            t = (y - (y1 - ry)) / ry;
+        } else {
+            return 0.0d;
+        }
+        t = 1.0d - t * t;
+        return (t > 0.0d) ? rx * (1.0d - Math.sqrt(t)) : rx;
+    }
+
+    public void produceAlphas(final MarlinAlphaConsumer ac) {
+        ac.setMaxAlpha(maxAlpha);
+
+        if ((bboxX1 <= bboxX0) || (bboxY1 <= bboxY0)) {
+            return;
+        }
+
+        // Prepare alpha line:
+        // add 2 to better deal with the last pixel in a pixel row.
+        final int width = (bboxX1 - bboxX0) + 2;
+        if (width > INITIAL_AA_ARRAY) {
+            alphaLine = alphaLine_ref.getArray(width);
+        }
+        // use block flags for large spans (like the Renderer):
+        final boolean useBlkFlags = ENABLE_BLOCK_FLAGS && !FORCE_NO_RLE
+                                    && ac.supportBlockFlags()
+                                    && (FORCE_RLE || (width - 2) > RLE_MIN_WIDTH);
+        if (useBlkFlags) {
+            // note: +2 to ensure enough space left at end
+            final int blkLen = ((width - 2) >> BLOCK_SIZE_LG) + 2;
+            if (blkLen > INITIAL_ARRAY) {
+                blkFlags = blkFlags_ref.getArray(blkLen);
+            }
+        }
+        dirty = true;
+
+        final int[] _alpha = alphaLine;
+        final int[] _blkFlags = (useBlkFlags) ? blkFlags : null;
+        if (numRects != 0) {
+            produceRectAlphas(ac, _alpha, _blkFlags);
+        } else {
+            produceOutlineAlphas(ac, _alpha, _blkFlags);
+        }
+        dirty = false;
+    }
+
+    private void produceOutlineAlphas(final MarlinAlphaConsumer ac,
+                                      final int[] _alpha,
+                                      final int[] _blkFlags)
+    {
+        final int _lgY = lgY;
+        final int _maskY = maskY;
+        final double _scaleX = scaleX;
+        final double _invScaleY = 1.0d / scaleY;
+
+        final int bboxx0 = bbox_spminX;
+        final int bboxx1 = bbox_spmaxX;
+        final int ymax = bbox_spmaxY;
+
+        final boolean _hasHole = hasHole;
+
+        int minX = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE;
+
+        for (int y = bbox_spminY, n, rowEnd; y < ymax; y += n) {
+            // end of the pixel row (subpixels):
+            rowEnd = FloatMath.min(((y >> _lgY) + 1) << _lgY, ymax);
+            n = 1;
+
+            if ((y >= oRow0) && (y < oRow1)) {
+                // subpixel center (pixels):
+                final double yc = (y + 0.5d) * _invScaleY;
+
+                final double oin = inset(yc, oy0, oy1, orx, ory);
+                final int cx0 = crossing((ox0 + oin) * _scaleX);
+                final int cx1 = crossing((ox1 - oin) * _scaleX);
+
+                // same spans on next subpixel rows within straight parts:
+                int runEnd = ((y >= oStraight0) && (y < oStraight1)) ? oStraight1 : y + 1;
+
+                int hx0c = 0, hx1c = 0;
+                if (_hasHole) {
+                    if (y < hRow0) {
+                        runEnd = FloatMath.min(runEnd, hRow0);
+                    } else if (y < hRow1) {
+                        final double hin = inset(yc, hy0, hy1, hrx, hry);
+                        hx0c = crossing((hx0 + hin) * _scaleX);
+                        hx1c = crossing((hx1 - hin) * _scaleX);
+
+                        runEnd = FloatMath.min(runEnd,
+                            ((y >= hStraight0) && (y < hStraight1)) ? hStraight1 : y + 1);
+                    }
+                }
+                n = FloatMath.max(FloatMath.min(runEnd, rowEnd) - y, 1);
+
+                if (hx0c < hx1c) {
+                    // 2 spans: [cx0 hx0c[ [hx1c cx1[
+                    addSpan(_alpha, _blkFlags, cx0, FloatMath.min(hx0c, cx1),
+                            bboxx0, bboxx1, n);
+                    addSpan(_alpha, _blkFlags, FloatMath.max(hx1c, cx0), cx1,
+                            bboxx0, bboxx1, n);
+                } else {
+                    addSpan(_alpha, _blkFlags, cx0, cx1, bboxx0, bboxx1, n);
+                }
+                // update pixel row bounds (subpixels):
+                if (cx0 < minX) {
+                    minX = cx0;
+                }
+                if (cx1 > maxX) {
+                    maxX = cx1;
+                }
+            } else if (y < oRow0) {
+                // skip rows above:
+                n = FloatMath.min(oRow0, rowEnd) - y;
+            } else {
+                // skip rows below:
+                n = rowEnd - y;
+            }
+
+            if ((y + n == rowEnd) && (((rowEnd - 1) & _maskY) == _maskY || rowEnd == ymax)) {
+                emitRow(_alpha, _blkFlags, (rowEnd - 1) >> _lgY, minX, maxX, ac);
+                minX = Integer.MAX_VALUE;
+                maxX = Integer.MIN_VALUE;
+            }
+        }
+    }
+
+    /*
+     * Rectangles are activated in top edge order and kept in a list sorted by
+     * left edge (linked through the rectangle records) while they cover the
+     * current row: each band (rows covered by the same rectangles) only visits
+     * the active rectangles, so the sweep costs O(n log n + bands x active)
+     * instead of O(bands x n) for staircases or long step polylines.
+     */
+    private void produceRectAlphas(final MarlinAlphaConsumer ac,
+                                   final int[] _alpha,
+                                   final int[] _blkFlags)
+    {
+        final int n = numRects;
+        final int[] _rects = rects;
+
+        if (keys.length < n) {
+            keys      = keys_ref.widenArray(keys, 0, n);
+            order     = order_ref.widenArray(order, 0, n);
+            aux_keys  = aux_keys_ref.widenArray(aux_keys, 0, n);
+            aux_order = aux_order_ref.widenArray(aux_order, 0, n);
+        }
+        if (ranks.length < n) {
+            ranks = ranks_ref.widenArray(ranks, 0, n);
+        }
+        final int[] _keys = keys;
+        final int[] _order = order;
+        final int[] _ranks = ranks;
+
+        // sort rectangles by their left edge (rank -> rectangle):
+        for (int i = 0; i < n; i++) {
+            _keys[i]  = _rects[i * RECT_SIZE];
+            _order[i] = i * RECT_SIZE;
+        }
+        MergeSort.mergeSortNoCopy(_keys, _order, aux_keys, aux_order, n, 0);
+
+        // sort ranks by top edge:
+        for (int i = 0; i < n; i++) {
+            _keys[i]  = _rects[_order[i] + 1];
+            _ranks[i] = i;
+        }
+        MergeSort.mergeSortNoCopy(_keys, _ranks, aux_keys, aux_order, n, 0);
+
+        // ranks of rectangles sharing the same top edge in ascending order
+        // (merge sort is not stable):
+        for (int i = 0, j; i < n; i = j) {
+            for (j = i + 1; (j < n) && (_keys[j] == _keys[i]); j++) {
+                // same top edge
+            }
+            if (j - i > 1) {
+                Arrays.sort(_ranks, i, j);
+            }
+        }
+
+        // merged spans of the current band (auxiliary arrays are free now):
+        final int[] _spanX0 = aux_keys;
+        final int[] _spanX1 = aux_order;
+        int numSpans = 0;
+
+        final int _lgY = lgY;
+        final int bboxx0 = bbox_spminX;
+        final int bboxx1 = bbox_spmaxX;
+        final int ymax = bbox_spmaxY;
+
+        // active list (ranks in ascending order, -1 terminated) and the
+        // next rectangle to activate (top edge order):
+        int head = -1;
+        int next = 0;
+
+        int minX = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE;
+
+        for (int y = bbox_spminY, bandEnd = y, rowEnd, cnt; y < ymax; y += cnt) {
+            if (y >= bandEnd) {
+                // activate rectangles starting at this row:
+                int last = next;
+                while ((last < n) && (_keys[last] <= y)) {
+                    last++;
+                }
+                bandEnd = (last < n) ? FloatMath.min(_keys[last], ymax) : ymax;
+                numSpans = 0;
+
+                // merge them into the active list, drop rectangles ending
+                // above this row and merge spans of the covering ones:
+                for (int prev = -1, cur = head, rank, r, ry1, rx0, rx1;
+                     (cur != -1) || (next < last); )
+                {
+                    if ((next < last) && ((cur == -1) || (_ranks[next] < cur))) {
+                        rank = _ranks[next++];
+                        r = _order[rank];
+                        if (y >= _rects[r + 3]) {
+                            continue;
+                        }
+                        // insert before cur:
+                        _rects[r + 4] = cur;
+                    } else {
+                        rank = cur;
+                        r = _order[rank];
+                        cur = _rects[r + 4];
+                        if (y >= _rects[r + 3]) {
+                            // unlink:
+                            if (prev == -1) {
+                                head = cur;
+                            } else {
+                                _rects[_order[prev] + 4] = cur;
+                            }
+                            continue;
+                        }
+                    }
+                    if (prev == -1) {
+                        head = rank;
+                    } else {
+                        _rects[_order[prev] + 4] = rank;
+                    }
+                    prev = rank;
+
+                    ry1 = _rects[r + 3];
+                    if (ry1 < bandEnd) {
+                        bandEnd = ry1;
+                    }
+                    rx0 = _rects[r];
+                    rx1 = _rects[r + 2];
+
+                    if ((numSpans != 0) && (rx0 <= _spanX1[numSpans - 1])) {
+                        // overlapping spans:
+                        if (rx1 > _spanX1[numSpans - 1]) {
+                            _spanX1[numSpans - 1] = rx1;
+                        }
+                    } else {
+                        _spanX0[numSpans] = rx0;
+                        _spanX1[numSpans] = rx1;
+                        numSpans++;
+                    }
+                }
+            }
+            // end of the pixel row (subpixels):
+            rowEnd = FloatMath.min(((y >> _lgY) + 1) << _lgY, ymax);
+            // identical subpixel rows:
+            cnt = FloatMath.min(bandEnd, rowEnd) - y;
+
+            if (numSpans != 0) {
+                for (int i = 0; i < numSpans; i++) {
+                    addSpan(_alpha, _blkFlags, _spanX0[i], _spanX1[i],
+                            bboxx0, bboxx1, cnt);
+                }
+                // update pixel row bounds (subpixels):
+                if (_spanX0[0] < minX) {
+                    minX = _spanX0[0];
+                }
+                if (_spanX1[numSpans - 1] > maxX) {
+                    maxX = _spanX1[numSpans - 1];
+                }
+            }
+            if (y + cnt == rowEnd) {
+                emitRow(_alpha, _blkFlags, (rowEnd - 1) >> _lgY, minX, maxX, ac);
+                minX = Integer.MAX_VALUE;
+                maxX = Integer.MIN_VALUE;
+            }
+        }
+    }
+
+    private void addSpan(final int[] _alpha, final int[] _blkFlags,
+                         int x0, int x1,
+                         final int bboxx0, final int bboxx1,
+                         final int n)
+    {
+        if (x0 < bboxx0) {
+            x0 = bboxx0;
+        }
+        if (x1 > bboxx1) {
+            x1 = bboxx1;
+        }
+        if (x0 >= x1) {
+            return;
+        }
+        x0 -= bboxx0; // turn x0, x1 from coords to indices
+        x1 -= bboxx0; // in the alpha array.
+
+        final int _lgX = lgX;
+        final int pix_x      =  x0      >> _lgX;
+        final int pix_xmaxm1 = (x1 - 1) >> _lgX;
+        int tmp;
+
+        if (pix_x == pix_xmaxm1) {
+            // Start and end in same pixel
+            tmp = (x1 - x0) * n; // number of subpixels
+            _alpha[pix_x    ] += tmp;
+            _alpha[pix_x + 1] -= tmp;
+
+            if (_blkFlags != null) {
+                // flag used blocks:
+                // note: block processing handles extra pixel:
+                _blkFlags[pix_x >> BLOCK_SIZE_LG] = 1;
+            }
+        } else {
+            final int _posX = posX;
+            final int _maskX = maskX;
+
+            tmp = (x0 & _maskX);
+            _alpha[pix_x    ] += (_posX - tmp) * n;
+            _alpha[pix_x + 1] += tmp * n;
+
+            final int pix_xmax = x1 >> _lgX;
+
+            tmp = (x1 & _maskX);
+            _alpha[pix_xmax    ] -= (_posX - tmp) * n;
+            _alpha[pix_xmax + 1] -= tmp * n;
+
+            if (_blkFlags != null) {
+                // flag used blocks:
+                // note: block processing handles extra pixel:
+                _blkFlags[pix_x    >> BLOCK_SIZE_LG] = 1;
+                _blkFlags[pix_xmax >> BLOCK_SIZE_LG] = 1;
+            }
+        }
+    }
+
+    private void emitRow(final int[] _alpha, final int[] _blkFlags,
+                         final int pix_y, int minX, int maxX,
+                         final MarlinAlphaConsumer ac)
+    {
+        // convert subpixel to pixel coordinate within boundaries:
+        minX = FloatMath.max(minX, bbox_spminX) >> lgX;
+        maxX = FloatMath.min(maxX, bbox_spmaxX) >> lgX;
+
+        if (maxX >= minX) {
+            // +1 because alpha [pix_minX; pix_maxX[
+            if (_blkFlags != null) {
+                ac.setAndClearRelativeAlphas(_blkFlags, _alpha, pix_y, minX, maxX + 1);
+            } else {
+                ac.setAndClearRelativeAlphas(_alpha, pix_y, minX, maxX + 1);
+            }
+        } else {
+            ac.clearAlphas(pix_y);
+        }
+    }
+
+    public void dispose() {
+        if (dirty) {
+            // interrupted rendering: clear the whole alpha line and flags
+            IntArrayCache.fill(alphaLine, 0, alphaLine.length, 0);
+            IntArrayCache.fill(blkFlags, 0, blkFlags.length, 0);
+            dirty = false;
+        }
+        if (alphaLine != alphaLine_ref.initial) {
+            alphaLine = alphaLine_ref.putArray(alphaLine, 0, 0); // already zero filled
+        }
+        if (blkFlags != blkFlags_ref.initial) {
+            blkFlags = blkFlags_ref.putArray(blkFlags, 0, 0); // already zero filled
+        }
+        numRects = 0;
+        if (rects != rects_ref.initial) {
+            rects = rects_ref.putArray(rects);
+        }
+        if (keys != keys_ref.initial) {
+            keys      = keys_ref.putArray(keys);
+            order     = order_ref.putArray(order);
+            aux_keys  = aux_keys_ref.putArray(aux_keys);
+            aux_order = aux_order_ref.putArray(aux_order);
+        }
+        if (ranks != ranks_ref.initial) {
+            ranks = ranks_ref.putArray(ranks);
+        }
+    }
+
+    public int getOutpixMinX() {
+        return bboxX0;
+    }
+
+    public int getOutpixMaxX() {
+        return bboxX1;
+    }
+
+    public int getOutpixMinY() {
+        return bboxY0;
+    }
+
+    public int getOutpixMaxY() {
+        return bboxY1;
+    }
+}
@@ -0,0 +1,311 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package com.sun.marlin;
+
+import java.util.Arrays;
+
+/**
+ * Alpha consumer producing a sparse run-length encoded mask: each row is a
+ * list of runs (x, length, alpha) where transparent spans are omitted and
+ * opaque spans are explicit full coverage runs (alpha = RUN_FULL).
+ *
+ * Runs are stored as 2 ints: x (relative to the origin) and
+ * (length &lt;&lt; 8 | alpha). Rows with large spans benefit from the renderer
+ * block flags (see Renderer.initConsumer) as only flagged blocks are
+ * traversed.
+ */
+public final class RLEMarlinAlphaConsumer implements MarlinAlphaConsumer {
+
+    // full coverage run alpha:
+    public static final int RUN_FULL = 0xFF;
+
+    private static final int INITIAL_RUNS = 1024;
+
+    int x, y, width, height;
+
+    // run pairs (x, length << 8 | alpha)
+    private int[] runs = new int[INITIAL_RUNS << 1];
+    // number of used ints in runs
+    private int used = 0;
+    // row start indices (in runs) + 1 end marker
+    private int[] rowStarts = new int[INITIAL_RUNS + 1];
+
+    // alpha map (coverage to alpha) of the current renderer
+    private byte[] alphaMap = MaskMarlinAlphaConsumer.ALPHA_MAP;
+
+    public RLEMarlinAlphaConsumer() {
+        // no-op
+    }
+
+    public void setBoundsNoClone(final int x, final int y, final int w, final int h) {
+        this.x = x;
+        this.y = y;
+        this.width = w;
+        this.height = h;
+
+        if (h >= rowStarts.length) {
+            rowStarts = new int[h + 1];
+        }
+        used = 0;
+        rowStarts[0] = 0;
+    }
+
+    @Override
+    public int getOriginX() {
+        return x;
+    }
+
+    @Override
+    public int getOriginY() {
+        return y;
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * @return number of runs (all rows)
+     */
+    public int getRunCount() {
+        return used >> 1;
+    }
+
+    /**
+     * @param row row index in [0; height[
+     * @return index of the first run of the given row
+     */
+    public int getRowStart(final int row) {
+        return rowStarts[row];
+    }
+
+    /**
+     * @param row row index in [0; height[
+     * @return index of the last run of the given row (exclusive)
+     */
+    public int getRowEnd(final int row) {
+        return rowStarts[row + 1];
+    }
+
+    public int getRunX(final int run) {
+        return runs[run << 1];
+    }
+
+    public int getRunLength(final int run) {
+        return runs[(run << 1) + 1] >>> 8;
+    }
+
+    public int getRunAlpha(final int run) {
+        return runs[(run << 1) + 1] & 0xFF;
+    }
+
+    public boolean isFullRun(final int run) {
+        return (runs[(run << 1) + 1] & 0xFF) == RUN_FULL;
+    }
+
+    /**
+     * Expand this mask into the given (dense) alpha array
+     * @param out alpha array
+     * @param offset index of the top-left pixel
+     * @param stride row stride
+     */
+    public void expand(final byte[] out, final int offset, final int stride) {
+        final int[] _runs = runs;
+        final int w = width;
+
+        for (int row = 0, off = offset, i, end, px, rx, run; row < height;
+             row++, off += stride)
+        {
+            px = 0;
+            for (i = rowStarts[row] << 1, end = rowStarts[row + 1] << 1;
+                 i < end; i += 2)
+            {
+                rx  = _runs[i];
+                run = _runs[i + 1];
+                Arrays.fill(out, off + px, off + rx, (byte) 0);
+                px  = rx + (run >>> 8);
+                Arrays.fill(out, off + rx, off + px, (byte) run);
+            }
+            Arrays.fill(out, off + px, off + w, (byte) 0);
+        }
+    }
+
+    @Override
+    public void setMaxAlpha(final int maxalpha) {
+        alphaMap = (maxalpha == 1) ? MaskMarlinAlphaConsumer.ALPHA_MAP_NO_AA
+                                   : MaskMarlinAlphaConsumer.ALPHA_MAP;
+    }
+
+    @Override
+    public boolean supportBlockFlags() {
+        return true;
+    }
+
+    @Override
+    public boolean supportParallelBands() {
+        // rows are encoded in sequence:
+        return false;
+    }
+
+    @Override
+    public void clearAlphas(final int pix_y) {
+        // empty row:
+        rowStarts[pix_y - y + 1] = used >> 1;
+    }
+
+    private void addRun(final int rx, final int len, final int alpha) {
+        if (used + 2 > runs.length) {
+            runs = Arrays.copyOf(runs, ArrayCacheConst.getNewSize(used, used + 2));
+        }
+        runs[used    ] = rx;
+        runs[used + 1] = (len << 8) | alpha;
+        used += 2;
+    }
+
+    @Override
+    public void setAndClearRelativeAlphas(final int[] alphaDeltas, final int pix_y,
+                                          final int pix_from, final int pix_to)
+    {
+        final byte[] _alphaMap = alphaMap;
+
+        final int from = pix_from - x;
+
+        // skip useless pixels above boundary
+        final int to = pix_to - x;
+        final int ato = Math.min(to, width);
+
+        int curAlpha = 0;
+        int runX = from;
+        int runAlpha = 0;
+
+        for (int i = from, delta, a; i < ato; i++) {
+            if ((delta = alphaDeltas[i]) != 0) {
+                // alpha value = running sum of coverage delta:
+                curAlpha += delta;
+
+                a = _alphaMap[curAlpha] & 0xFF;
+                if (a != runAlpha) {
+                    if (runAlpha != 0) {
+                        addRun(runX, i - runX, runAlpha);
+                    }
+                    runX = i;
+                    runAlpha = a;
+                }
+            }
+        }
+        if (runAlpha != 0) {
+            addRun(runX, ato - runX, runAlpha);
+        }
+        rowStarts[pix_y - y + 1] = used >> 1;
+
+        // Clear alpha row for reuse:
+        IntArrayCache.fill(alphaDeltas, from, to + 1, 0);
+    }
+
+    @Override
+    public void setAndClearRelativeAlphas(final int[] blkFlags, final int[] alphaDeltas,
+                                          final int pix_y,
+                                          final int pix_from, final int pix_to)
+    {
+        final byte[] _alphaMap = alphaMap;
+
+        final int from = pix_from - x;
+
+        // skip useless pixels above boundary
+        final int to = pix_to - x;
+        final int ato = Math.min(to, width);
+
+        final int _BLK_SIZE_LG  = MarlinConst.BLOCK_SIZE_LG;
+
+        // traverse flagged blocks:
+        final int blkW = (from >> _BLK_SIZE_LG);
+        final int blkE = (ato   >> _BLK_SIZE_LG) + 1;
+        // ensure last block flag = 0 to process final block:
+        blkFlags[blkE] = 0;
+
+        final int _MAX_VALUE = Integer.MAX_VALUE;
+        int last_t0 = _MAX_VALUE;
+
+        int curAlpha = 0;
+        int runX = from;
+        int runAlpha = 0;
+
+        for (int t = blkW, blk_x0, blk_x1, cx, delta, a; t <= blkE; t++) {
+            if (blkFlags[t] != 0) {
+                blkFlags[t] = 0;
+
+                if (last_t0 == _MAX_VALUE) {
+                    last_t0 = t;
+                }
+                continue;
+            }
+            if (last_t0 != _MAX_VALUE) {
+                // emit blocks:
+                blk_x0 = FloatMath.max(last_t0 << _BLK_SIZE_LG, from);
+                last_t0 = _MAX_VALUE;
+
+                // (last block pixel+1) inclusive => +1
+                blk_x1 = FloatMath.min((t << _BLK_SIZE_LG) + 1, ato);
+
+                for (cx = blk_x0; cx < blk_x1; cx++) {
+                    if ((delta = alphaDeltas[cx]) != 0) {
+                        alphaDeltas[cx] = 0;
+
+                        // alpha value = running sum of coverage delta:
+                        curAlpha += delta;
+
+                        a = _alphaMap[curAlpha] & 0xFF;
+                        if (a != runAlpha) {
+                            if (runAlpha != 0) {
+                                addRun(runX, cx - runX, runAlpha);
+                            }
+                            runX = cx;
+                            runAlpha = a;
+                        }
+                    }
+                }
+            }
+        }
+        if (runAlpha != 0) {
+            addRun(runX, ato - runX, runAlpha);
+        }
+        rowStarts[pix_y - y + 1] = used >> 1;
+
+        // Clear alpha row for reuse:
+        alphaDeltas[ato] = 0;
+
+        if (MarlinConst.DO_CHECKS) {
+            IntArrayCache.check(blkFlags, blkW, blkE, 0);
+            IntArrayCache.check(alphaDeltas, from, to + 1, 0);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package com.sun.marlin;
+
+import java.util.Arrays;
+
+/**
+ * LSD radix sort on crossings (x) swapping edge pointers (y) at the same time
+ * and using external auxiliary storage for temporary arrays.
+ *
+ * Keys are offset by their minimum value so only significant 8-bit digits
+ * are processed (2 passes for crossings spanning less than 65536 subpixels).
+ */
+final class RadixSort {
+
+    // digit size in bits
+    static final int DIGIT_BITS = 8;
+    static final int DIGIT_SIZE = 1 << DIGIT_BITS;
+    static final int DIGIT_MASK = DIGIT_SIZE - 1;
+
+    private RadixSort() {
+        // no instance
+    }
+
+    /**
+     * Stable radix sort of x/y arrays in [0; toIndex[ using auxiliary storage
+     * (auxX/auxY) and the given counts array (DIGIT_SIZE + 1 length).
+     * Outputs are stored in x/y arrays
+     */
+    static void radixSort(final int[] x, final int[] y,
+                          final int[] auxX, final int[] auxY,
+                          final int[] counts,
+                          final int toIndex)
+    {
+        if ((toIndex > x.length) || (toIndex > y.length)
+                || (toIndex > auxX.length) || (toIndex > auxY.length)
+                || (counts.length <= DIGIT_SIZE)) {
+            // explicit check to avoid bound checks within hot loops (below):
+            throw new ArrayIndexOutOfBoundsException("bad arguments: toIndex="
+                                                     + toIndex);
+        }
+        if (toIndex <= 1) {
+            return;
+        }
+
+        // key range:
+        int min = x[0];
+        int max = min;
+        for (int i = 1, v; i < toIndex; i++) {
+            v = x[i];
+            if (v < min) {
+                min = v;
+            } else if (v > max) {
+                max = v;
+            }
+        }
+        if (min == max) {
+            return;
+        }
+        // note: unsigned range (no overflow):
+        final int range = max - min;
+
+        int[] srcX = x, srcY = y;
+        int[] dstX = auxX, dstY = auxY;
+        int[] tmp;
+
+        for (int shift = 0; shift < Integer.SIZE
+                 && (range >>> shift) != 0; shift += DIGIT_BITS)
+        {
+            // histogram of digits:
+            Arrays.fill(counts, 0, DIGIT_SIZE + 1, 0);
+
+            for (int i = 0; i < toIndex; i++) {
+                counts[(((srcX[i] - min) >>> shift) & DIGIT_MASK) + 1]++;
+            }
+
+            // skip this pass if all keys share the same digit:
+            if (counts[(((srcX[0] - min) >>> shift) & DIGIT_MASK) + 1] == toIndex) {
+                continue;
+            }
+
+            // exclusive prefix sum gives output positions:
+            for (int d = 1; d <= DIGIT_SIZE; d++) {
+                counts[d] += counts[d - 1];
+            }
+
+            // stable scatter:
+            for (int i = 0, v, p; i < toIndex; i++) {
+                v = srcX[i];
+                p = counts[((v - min) >>> shift) & DIGIT_MASK]++;
+                dstX[p] = v;
+                dstY[p] = srcY[i];
+            }
+
+            // swap buffers:
+            tmp = srcX; srcX = dstX; dstX = tmp;
+            tmp = srcY; srcY = dstY; dstY = tmp;
+        }
+
+        if (srcX != x) {
+            // odd number of passes: copy back data into (x, y):
+            System.arraycopy(srcX, 0, x, 0, toIndex);
+            System.arraycopy(srcY, 0, y, 0, toIndex);
+        }
+    }
+}
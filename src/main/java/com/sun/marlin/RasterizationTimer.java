@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package com.sun.marlin;
+
+import com.sun.prism.BasicStroke;
+
+/**
+ * Per-context timer of the rasterization stages, reported by
+ * com.sun.marlin.SlowRasterization JFR events when a rasterization exceeds
+ * prism.marlin.metrics.slowThreshold. Time stamps are taken once the renderer
+ * context is acquired (start), around produceAlphas (endRendering_Y) and
+ * copyAARow, and only while the event is enabled in a recording: the event
+ * itself is only allocated once the threshold is exceeded.
+ * All rasterizer outputs are timed (masks, tiles, RLE and direct masks, atlas
+ * entries and compiled shape replays); the tile sweep time includes the tile
+ * handler. Every start() is followed by end() or cancel().
+ */
+public final class RasterizationTimer {
+
+    // slow rasterization threshold (ns)
+    static final long SLOW_THRESHOLD
+        = MarlinProperties.getMetricsSlowThreshold() * 1000000L;
+
+    // true if the current rasterization is timed
+    boolean enabled = false;
+    // renderer data (set by produceAlphas):
+    int edges;
+    int curves;
+    long copyNanos;
+    // stage time stamps:
+    long start, sweepStart, sweepEnd;
+
+    RasterizationTimer() {
+        // only created by renderer contexts
+    }
+
+    /**
+     * Start timing a rasterization if the SlowRasterization event is
+     * enabled (jdk.jfr events available and enabled by a recording)
+     */
+    public void start() {
+        final MarlinEvents events = MarlinMetrics.EVENTS;
+        if ((events != null) && events.isSlowRasterizationEnabled()) {
+            enabled = true;
+            edges = 0;
+            curves = 0;
+            copyNanos = 0L;
+            sweepStart = 0L;
+            sweepEnd = 0L;
+            start = System.nanoTime();
+        }
+    }
+
+    public void startSweep() {
+        if (enabled) {
+            sweepStart = System.nanoTime();
+        }
+    }
+
+    public void endSweep() {
+        if (enabled) {
+            sweepEnd = System.nanoTime();
+        }
+    }
+
+    /**
+     * Emit the event if this rasterization exceeded the threshold
+     * @param renderer renderer used (MarlinRenderer or DMarlinRenderer)
+     * @param width mask width
+     * @param height mask height
+     * @param antialiased true if antialiased
+     * @param stroke stroke or null (fill)
+     * @param clipped true if path clipping was enabled
+     */
+    public void end(final Object renderer,
+                    final int width, final int height,
+                    final boolean antialiased,
+                    final BasicStroke stroke,
+                    final boolean clipped)
+    {
+        if (!enabled) {
+            return;
+        }
+        enabled = false;
+
+        final long elapsed = System.nanoTime() - start;
+        if (elapsed >= SLOW_THRESHOLD) {
+            MarlinMetrics.EVENTS.slowRasterization(this, elapsed,
+                renderer.getClass().getSimpleName(), width, height,
+                antialiased,
+                (stroke != null) ? stroke.getLineWidth() : 0.0f,
+                (stroke != null) && stroke.isDashed(), clipped);
+        }
+    }
+
+    /**
+     * Stop timing without emitting any event (empty masks, failures)
+     */
+    public void cancel() {
+        enabled = false;
+    }
+}
@@ -26,9 +26,13 @@
 package com.sun.marlin;
 
 import static com.sun.marlin.OffHeapArray.SIZE_INT;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
 import sun.misc.Unsafe;
 
-public final class Renderer implements MarlinRenderer, MarlinConst {
+public final class Renderer implements MarlinEdgeRenderer, MarlinConst {
 
     static final boolean DISABLE_RENDER = false;
 
@@ -46,6 +50,9 @@ public final class Renderer implements MarlinRenderer, MarlinConst {
     private static final float RDR_OFFSET_X = 0.5f / SUBPIXEL_SCALE_X;
     private static final float RDR_OFFSET_Y = 0.5f / SUBPIXEL_SCALE_Y;
 
+    // minimum band height (pixels) for parallel bands:
+    private static final int BAND_MIN_HEIGHT = 32;
+
     // common to all types of input path segments.
     // OFFSET as bytes
     // only integer values:
@@ -126,6 +133,9 @@ public final class Renderer implements MarlinRenderer, MarlinConst {
     // auxiliary storage for edge pointers (merge sort)
     private int[] aux_edgePtrs;
 
+    // radix sort digit counts
+    private final int[] radixCounts = new int[RadixSort.DIGIT_SIZE + 1];
+
     // max used for both edgePtrs and crossings (stats only)
     private int activeEdgeMaxUsed;
 
@@ -161,6 +171,14 @@ public final class Renderer implements MarlinRenderer, MarlinConst {
     // edgeBucketCounts ref (clean)
     private final IntArrayCache.Reference edgeBucketCounts_ref;
 
+    // winding deltas per subpixel row of the edges folded on the left side:
+    // these edges only shift the winding count of visible crossings
+    private int[] edgeWindings;
+    // edgeWindings ref (clean)
+    private final IntArrayCache.Reference edgeWindings_ref;
+    // number of folded left edges
+    private int leftEdgeCount;
+
     boolean useRLE = false;
 
     // Flattens using adaptive forward differencing. This only carries out
@@ -170,6 +188,13 @@ public final class Renderer implements MarlinRenderer, MarlinConst {
                                           final Curve c,
                                           final float x2, final float y2)
     {
+        if (USE_FLATTENING_CACHE) {
+            final int off = flatCache.quad(c);
+            if (off >= 0) {
+                addCachedLines(x0, y0, off, x2, y2);
+                return;
+            }
+        }
         int count = 1; // dt = 1 / count
 
         // maximum(ddX|Y) = norm(dbx, dby) * dt^2 (= 1)
@@ -224,6 +249,13 @@ public final class Renderer implements MarlinRenderer, MarlinConst {
                                            final Curve c,
                                            final float x3, final float y3)
     {
+        if (USE_FLATTENING_CACHE) {
+            final int off = flatCache.cubic(c);
+            if (off >= 0) {
+                addCachedLines(x0, y0, off, x3, y3);
+                return;
+            }
+        }
         int count           = CUB_COUNT;
         final float icount  = CUB_INV_COUNT;   // dt
         final float icount2 = CUB_INV_COUNT_2; // dt^2
@@ -302,6 +334,31 @@ public final class Renderer implements MarlinRenderer, MarlinConst {
         }
     }
 
+    // adds the lines of a cached curve flattening (relative points) starting
+    // at x0, y0 and ending at xe, ye
+    private void addCachedLines(final float x0, final float y0, int off,
+                                final float xe, final float ye)
+    {
+        final float[] _points = flatCache.points;
+        final int n = flatCache.count;
+
+        float px = x0, py = y0, x1, y1;
+
+        for (final int end = off + 2 * n; off < end; off += 2) {
+            x1 = x0 + _points[off];
+            y1 = y0 + _points[off + 1];
+
+            addLine(px, py, x1, y1);
+            px = x1;
+            py = y1;
+        }
+        addLine(px, py, xe, ye);
+
+        if (DO_STATS) {
+            rdrCtx.stats.stat_rdr_curveBreak.add(n + 1);
+        }
+    }
+
     private void addLine(float x1, float y1, float x2, float y2) {
         if (DO_MONITORS) {
             rdrCtx.stats.mon_rdr_addLine.start();
@@ -375,6 +432,17 @@ public final class Renderer implements MarlinRenderer, MarlinConst {
             }
         }
 
+        /* edges on the left side have all crossings <= boundsMinX:
+           they only contribute to the winding count of next crossings */
+        if (FOLD_LEFT_EDGES && (x1 <= boundsMinX) && (x2 <= boundsMinX)) {
+            addLeftEdge(firstCrossing, lastCrossing, (or << 1) - 1);
+
+            if (DO_MONITORS) {
+                rdrCtx.stats.mon_rdr_addLine.stop();
+            }
+            return;
+        }
+
         // local variables for performance:
         final int _SIZEOF_EDGE_BYTES = SIZEOF_EDGE_BYTES;
 
@@ -475,6 +543,32 @@ public final class Renderer implements MarlinRenderer, MarlinConst {
         }
     }
 
+    private void addLeftEdge(final int firstCrossing, final int lastCrossing,
+                             final int orientation)
+    {
+        if (leftEdgeCount == 0) {
+            ensureEdgeWindings();
+        }
+        leftEdgeCount++;
+
+        // winding delta on [firstCrossing; lastCrossing[:
+        edgeWindings[firstCrossing - boundsMinY] += orientation;
+        edgeWindings[lastCrossing  - boundsMinY] -= orientation;
+    }
+
+    private void ensureEdgeWindings() {
+        // see initEdges(): +1 for lastCrossing
+        final int edgeWindingsLength = (boundsMaxY - boundsMinY) + 1;
+
+        if (edgeWindings.length < edgeWindingsLength) {
+            if (DO_STATS) {
+                rdrCtx.stats.stat_array_renderer_edgeWindings
+                    .add(edgeWindingsLength);
+            }
+            edgeWindings = edgeWindings_ref.getArray(edgeWindingsLength);
+        }
+    }
+
 // END EDGE LIST
 //////////////////////////////////////////////////////////////////////////////
 
@@ -494,6 +588,8 @@ public final class Renderer implements MarlinRenderer, MarlinConst {
     final RendererContext rdrCtx;
     // dirty curve
     private final Curve curve;
+    // curve flattening cache (if enabled)
+    private final FlatteningCache flatCache;
 
     // clean alpha array (zero filled)
     private int[] alphaLine;
@@ -513,6 +609,8 @@ public final class Renderer implements MarlinRenderer, MarlinConst {
     Renderer(final RendererContext rdrCtx) {
         this.rdrCtx = rdrCtx;
         this.curve = rdrCtx.curve;
+        this.flatCache = (USE_FLATTENING_CACHE) ?
+            new FlatteningCache(CUB_DEC_BND, CUB_INC_BND, QUAD_DEC_BND, SCALE_DY) : null;
 
         this.edges = rdrCtx.rdrMem.edges;
 
@@ -522,6 +620,9 @@ public final class Renderer implements MarlinRenderer, MarlinConst {
         edgeBuckets      = edgeBuckets_ref.initial;
         edgeBucketCounts = edgeBucketCounts_ref.initial;
 
+        edgeWindings_ref = rdrCtx.rdrMem.edgeWindings_ref;
+        edgeWindings     = edgeWindings_ref.initial;
+
         alphaLine_ref = rdrCtx.rdrMem.alphaLine_ref;
         alphaLine     = alphaLine_ref.initial;
 
@@ -559,6 +660,12 @@ public final class Renderer implements MarlinRenderer, MarlinConst {
                                 + boundsMaxY + "[");
         }
 
+        initEdges();
+
+        return this; // fluent API
+    }
+
+    private void initEdges() {
         // see addLine: ceil(boundsMaxY) => boundsMaxY + 1
         // +1 for edgeBucketCounts
         final int edgeBucketsLength = (boundsMaxY - boundsMinY) + 1;
@@ -581,14 +688,14 @@ public final class Renderer implements MarlinRenderer, MarlinConst {
 
         // reset used mark:
         edgeCount = 0;
+        curveCount = 0;
         activeEdgeMaxUsed = 0;
         edges.used = 0;
+        leftEdgeCount = 0;
 
         // reset bbox:
         bboxX0 = 0;
         bboxX1 = 0;
-
-        return this; // fluent API
     }
 
     /**
@@ -600,6 +707,7 @@ public final class Renderer implements MarlinRenderer, MarlinConst {
             rdrCtx.stats.stat_rdr_edges.add(edges.used);
             rdrCtx.stats.stat_rdr_edges_count.add(edges.used / SIZEOF_EDGE_BYTES);
             rdrCtx.stats.hist_rdr_edges_count.add(edges.used / SIZEOF_EDGE_BYTES);
+            rdrCtx.stats.stat_rdr_edges_left.add(leftEdgeCount);
             rdrCtx.stats.totalOffHeap += edges.length;
         }
         // Return arrays:
@@ -626,6 +734,13 @@ public final class Renderer implements MarlinRenderer, MarlinConst {
             edgeBucketCounts = edgeBucketCounts_ref.putArray(edgeBucketCounts,
                                                              buckets_minY,
                                                              buckets_maxY + 1);
+            if (leftEdgeCount != 0) {
+                // same range as edgeBucketCounts (see addLeftEdge):
+                edgeWindings = edgeWindings_ref.putArray(edgeWindings,
+                                                         buckets_minY,
+                                                         buckets_maxY + 1);
+                leftEdgeCount = 0;
+            }
         } else {
             // unused arrays
             edgeBuckets = edgeBuckets_ref.putArray(edgeBuckets, 0, 0);
@@ -687,6 +802,7 @@ public final class Renderer implements MarlinRenderer, MarlinConst {
                 tosubpixx(pix_x2), tosubpixy(pix_y2),
                 xe, ye);
         curveBreakIntoLinesAndAdd(x0, y0, curve, xe, ye);
+        curveCount++;
         x0 = xe;
         y0 = ye;
     }
@@ -701,6 +817,7 @@ public final class Renderer implements MarlinRenderer, MarlinConst {
                 tosubpixx(pix_x1), tosubpixy(pix_y1),
                 xe, ye);
         quadBreakIntoLinesAndAdd(x0, y0, curve, xe, ye);
+        curveCount++;
         x0 = xe;
         y0 = ye;
     }
@@ -722,6 +839,157 @@ public final class Renderer implements MarlinRenderer, MarlinConst {
         endRendering();
     }
 
+    @Override
+    public void saveState(final IncrementalPath state) {
+        state.saveEdges(edges, edges.used);
+
+        if (edgeMinY != Integer.MAX_VALUE) {
+            // see addLine(): used buckets in [edgeMinY; edgeMaxY]
+            state.saveBuckets(edgeBuckets, edgeBucketCounts,
+                              edgeMinY - boundsMinY, edgeMaxY - edgeMinY + 1);
+        } else {
+            state.bucketsLength = 0;
+        }
+        if (leftEdgeCount != 0) {
+            // same range as buckets:
+            state.saveWindings(edgeWindings, edgeMinY - boundsMinY,
+                               edgeMaxY - edgeMinY + 1);
+        }
+        state.leftEdgeCount = leftEdgeCount;
+        state.edgeMinY = edgeMinY;
+        state.edgeMaxY = edgeMaxY;
+        state.edgeMinX = edgeMinX;
+        state.edgeMaxX = edgeMaxX;
+        state.x0  = x0;
+        state.y0  = y0;
+        state.sx0 = sx0;
+        state.sy0 = sy0;
+    }
+
+    @Override
+    public void restoreState(final IncrementalPath state) {
+        if (DO_STATS) {
+            rdrCtx.stats.stat_rdr_incremental_edges.add(state.edgesUsed / SIZEOF_EDGE_BYTES);
+        }
+        state.restoreEdges(edges);
+        state.restoreBuckets(edgeBuckets, edgeBucketCounts);
+
+        if (state.leftEdgeCount != 0) {
+            ensureEdgeWindings();
+            state.restoreWindings(edgeWindings);
+        }
+        leftEdgeCount = state.leftEdgeCount;
+
+        edgeMinY = state.edgeMinY;
+        edgeMaxY = state.edgeMaxY;
+        edgeMinX = (float) state.edgeMinX;
+        edgeMaxX = (float) state.edgeMaxX;
+        x0  = (float) state.x0;
+        y0  = (float) state.y0;
+        sx0 = (float) state.sx0;
+        sy0 = (float) state.sy0;
+    }
+
+    @Override
+    public void compileEdges(final CompiledShape cs) {
+        if (leftEdgeCount != 0) {
+            // compiled shapes are rendered within their own bounds:
+            throw new IllegalStateException("Unsupported edges on the left side");
+        }
+        cs.init(this, windingRule, edges.used);
+
+        if (edgeMinY == Integer.MAX_VALUE) {
+            return; // no edge
+        }
+        // local vars (performance):
+        final Unsafe _unsafe = OffHeapArray.UNSAFE;
+        final long addr0 = edges.address;
+        final int[] _edgeBuckets = edgeBuckets;
+        final int[] _edgeBucketCounts = edgeBucketCounts;
+        final int _boundsMinY = boundsMinY;
+
+        long addr = cs.edges.address;
+
+        for (int bucket = edgeMinY - _boundsMinY, bucketEnd = edgeMaxY - _boundsMinY,
+             count, ecur; bucket < bucketEnd; bucket++)
+        {
+            // number of new edges in this bucket:
+            count = _edgeBucketCounts[bucket] >> 1;
+
+            for (ecur = _edgeBuckets[bucket]; count > 0; count--) {
+                // copy CURX_OR, ERROR, BUMP_X and BUMP_ERR:
+                _unsafe.copyMemory(addr0 + ecur, addr, OFF_NEXT);
+                // replace NEXT by the first crossing:
+                _unsafe.putInt(addr + OFF_NEXT, bucket + _boundsMinY);
+                _unsafe.putInt(addr + OFF_YMAX,
+                               _unsafe.getInt(addr0 + ecur + OFF_YMAX));
+                addr += SIZEOF_EDGE_BYTES;
+
+                ecur = _unsafe.getInt(addr0 + ecur + OFF_NEXT);
+            }
+        }
+        cs.edges.used = (int) (addr - cs.edges.address);
+        cs.numEdges   = cs.edges.used / SIZEOF_EDGE_BYTES;
+
+        cs.edgeMinY = edgeMinY;
+        cs.edgeMaxY = edgeMaxY;
+        cs.edgeMinX = edgeMinX;
+        cs.edgeMaxX = edgeMaxX;
+
+        cs.minX = bboxX0;
+        cs.minY = bboxY0;
+        cs.maxX = bboxX1;
+        cs.maxY = bboxY1;
+    }
+
+    @Override
+    public void replayEdges(final CompiledShape cs, final int dx, final int dy) {
+        cs.checkCompiledBy(this);
+
+        if (cs.numEdges != 0) {
+            // integer translation in subpixel space:
+            final int dxs = dx << SUBPIXEL_LG_POSITIONS_X;
+            final int dys = dy << SUBPIXEL_LG_POSITIONS_Y;
+
+            final int ymin = FloatMath.max(cs.edgeMinY + dys, boundsMinY);
+            final int ymax = FloatMath.min(cs.edgeMaxY + dys, boundsMaxY);
+
+            if (ymin < ymax) {
+                if (DO_STATS) {
+                    rdrCtx.stats.stat_rdr_compiled_edges.add(cs.numEdges);
+                }
+                // local vars (performance):
+                final Unsafe _unsafe = OffHeapArray.UNSAFE;
+                final int _boundsMinY = boundsMinY;
+                final int _boundsMaxY = boundsMaxY;
+                // CURX_OR stores the orientation bit as LSB:
+                final int dcurx = dxs << 1;
+
+                int firstCrossing, lastCrossing;
+
+                for (long addr = cs.edges.address, end = addr + cs.edges.used;
+                     addr < end; addr += SIZEOF_EDGE_BYTES)
+                {
+                    firstCrossing = _unsafe.getInt(addr + OFF_NEXT) + dys;
+                    lastCrossing  = _unsafe.getInt(addr + OFF_YMAX) + dys;
+
+                    // skip edges out of y range [boundsMinY; boundsMaxY]:
+                    if ((lastCrossing > _boundsMinY) && (firstCrossing < _boundsMaxY)) {
+                        copyEdge(addr, firstCrossing, lastCrossing, dcurx, edges,
+                                 edgeBuckets, edgeBucketCounts,
+                                 _boundsMinY, _boundsMaxY, rdrCtx.stats);
+                    }
+                }
+                edgeMinY = ymin;
+                edgeMaxY = ymax;
+                edgeMinX = (float) (cs.edgeMinX + dxs);
+                edgeMaxX = (float) (cs.edgeMaxX + dxs);
+            }
+        }
+        // call endRendering() to determine the boundaries:
+        endRendering();
+    }
+
     private void _endRendering(final int ymin, final int ymax,
                                final MarlinAlphaConsumer ac)
     {
@@ -786,6 +1054,18 @@ public final class Renderer implements MarlinRenderer, MarlinConst {
         int y = ymin;
         int bucket = y - boundsMinY;
 
+        // winding count of folded left edges:
+        final boolean _hasLeftEdges = (leftEdgeCount != 0);
+        final int[] _edgeWindings = edgeWindings;
+        int leftWinding = 0;
+
+        if (_hasLeftEdges) {
+            // left edges crossing rows before ymin:
+            for (int b = buckets_minY; b < bucket; b++) {
+                leftWinding += _edgeWindings[b];
+            }
+        }
+
         int numCrossings = this.edgeCount;
         int edgePtrsLen = _edgePtrs.length;
         int crossingsLen = _crossings.length;
@@ -800,6 +1080,14 @@ public final class Renderer implements MarlinRenderer, MarlinConst {
         int low, high, mid, prevNumCrossings;
         boolean useBinarySearch;
 
+        // radix sort counts:
+        final int[] _radixCounts = radixCounts;
+        // insertion sort moves on the previous scanline:
+        int numMoves = 0;
+        // remaining scanlines using radix sort before probing insertion sort:
+        int radixRows = 0;
+        boolean useRadixSort = false;
+
         final int[] _blkFlags = blkFlags;
         final int _BLK_SIZE_LG = BLOCK_SIZE_LG;
         final int _BLK_SIZE = BLOCK_SIZE;
@@ -820,6 +1108,10 @@ public final class Renderer implements MarlinRenderer, MarlinConst {
             // --- from former ScanLineIterator.next()
             bucketcount = _edgeBucketCounts[bucket];
 
+            if (_hasLeftEdges) {
+                leftWinding += _edgeWindings[bucket];
+            }
+
             // marker on previously sorted edges:
             prevNumCrossings = numCrossings;
 
@@ -929,10 +1221,77 @@ public final class Renderer implements MarlinRenderer, MarlinConst {
 
             if (numCrossings != 0) {
                 /*
-                 * thresholds to switch to optimized merge sort
-                 * for newly added edges + final merge pass.
+                 * adaptive selection of radix sort for dense scanlines:
+                 * insertion sort is linear when crossings keep their order
+                 * but costly when edges move far (many moves per crossing)
+                 * and merge sort is costly for many new edges.
                  */
-                if ((ptrLen < 10) || (numCrossings < 40)) {
+                if (USE_RADIX_SORT && (numCrossings >= RADIX_SORT_THRESHOLD)) {
+                    if (FORCE_RADIX_SORT || ((ptrLen << 1) >= numCrossings)) {
+                        useRadixSort = true;
+                    } else if (radixRows > 0) {
+                        radixRows--;
+                        useRadixSort = true;
+                    } else if (numMoves >= (numCrossings << 2)) {
+                        // use radix sort for next scanlines before probing:
+                        radixRows = RADIX_SORT_ROWS;
+                        useRadixSort = true;
+                    } else {
+                        useRadixSort = false;
+                    }
+                } else {
+                    useRadixSort = false;
+                }
+                numMoves = 0;
+
+                if (useRadixSort) {
+                    if (DO_STATS) {
+                        rdrCtx.stats.stat_rdr_crossings_rsorts.add(numCrossings);
+                        rdrCtx.stats.hist_rdr_crossings_rsorts.add(numCrossings);
+                    }
+                    for (i = 0; i < numCrossings; i++) {
+                        // get the pointer to the edge
+                        ecur = _edgePtrs[i];
+
+                        // random access so use unsafe:
+                        addr = addr0 + ecur; // ecur + OFF_F_CURX
+
+                        // get current crossing:
+                        curx = _unsafe.getInt(addr);
+
+                        // update crossing with orientation at last bit:
+                        cross = curx;
+
+                        // Increment x using DDA (fixed point):
+                        curx += _unsafe.getInt(addr + _OFF_BUMP_X);
+
+                        // Increment error:
+                        err  =  _unsafe.getInt(addr + _OFF_ERROR)
+                              + _unsafe.getInt(addr + _OFF_BUMP_ERR);
+
+                        // Manual carry handling:
+                        // keep sign and carry bit only and ignore last bit (preserve orientation):
+                        _unsafe.putInt(addr,               curx - ((err >> 30) & _ALL_BUT_LSB));
+                        _unsafe.putInt(addr + _OFF_ERROR, (err & _ERR_STEP_MAX));
+
+                        if (DO_STATS) {
+                            rdrCtx.stats.stat_rdr_crossings_updates.add(numCrossings);
+                        }
+
+                        // store crossing as edgePtrs is in-place:
+                        _crossings[i] = cross;
+                    }
+
+                    // radix sort using auxiliary arrays:
+                    RadixSort.radixSort(_crossings,     _edgePtrs,
+                                        _aux_crossings, _aux_edgePtrs,
+                                        _radixCounts,   numCrossings);
+
+                } else if ((ptrLen < 10) || (numCrossings < 40)) {
+                    /*
+                     * thresholds to switch to optimized merge sort
+                     * for newly added edges + final merge pass.
+                     */
                     if (DO_STATS) {
                         rdrCtx.stats.hist_rdr_crossings.add(numCrossings);
                         rdrCtx.stats.hist_rdr_crossings_adds.add(ptrLen);
@@ -1014,6 +1373,7 @@ public final class Renderer implements MarlinRenderer, MarlinConst {
                                 }
                                 _crossings[low] = cross;
                                 _edgePtrs [low] = ecur;
+                                numMoves += i - low;
 
                             } else {
                                 j = i - 1;
@@ -1026,6 +1386,7 @@ public final class Renderer implements MarlinRenderer, MarlinConst {
                                 }
                                 _crossings[j + 1] = cross;
                                 _edgePtrs [j + 1] = ecur;
+                                numMoves += i - j - 1;
                             }
 
                         } else {
@@ -1102,6 +1463,7 @@ public final class Renderer implements MarlinRenderer, MarlinConst {
                             }
                             _aux_crossings[j + 1] = cross;
                             _aux_edgePtrs [j + 1] = ecur;
+                            numMoves += i - j - 1;
 
                         } else {
                             // auxiliary storage:
@@ -1144,10 +1506,19 @@ public final class Renderer implements MarlinRenderer, MarlinConst {
                 crorientation = ((curxo & 0x1) << 1) - 1;
 
                 if (windingRuleEvenOdd) {
-                    sum = crorientation;
+                    if ((leftWinding & 0x1) != 0) {
+                        // left edges cover the span [bboxx0; x0[:
+                        sum = 1;
+                        prev = bboxx0;
+                        minX = bboxx0;
+                        i = 0;
+                    } else {
+                        sum = crorientation;
+                        i = 1;
+                    }
 
                     // Even Odd winding rule: take care of mask ie sum(orientations)
-                    for (i = 1; i < numCrossings; i++) {
+                    for (; i < numCrossings; i++) {
                         curxo = _crossings[i];
                         curx  =  curxo >> 1;
                         // to turn {0, 1} into {-1, 1}, multiply by 2 and subtract 1.
@@ -1214,9 +1585,14 @@ public final class Renderer implements MarlinRenderer, MarlinConst {
                         prev = curx;
                     }
                 } else {
+                    if (leftWinding != 0) {
+                        // left edges cover the span [bboxx0; x0[:
+                        prev = bboxx0;
+                        minX = bboxx0;
+                    }
                     // Non-zero winding rule: optimize that case (default)
                     // and avoid processing intermediate crossings
-                    for (i = 1, sum = 0;; i++) {
+                    for (i = 1, sum = leftWinding;; i++) {
                         sum += crorientation;
 
                         if (sum != 0) {
@@ -1502,13 +1878,302 @@ public final class Renderer implements MarlinRenderer, MarlinConst {
         if (DO_MONITORS) {
             rdrCtx.stats.mon_rdr_endRendering_Y.start();
         }
-
-        // Process all scan lines:
-        _endRendering(bbox_spminY, bbox_spmaxY, ac);
+        // time 1 rendering every N (runtime metrics) and copyAARow calls
+        // if sampled or if the context is timed (slow rasterization):
+        metricsStart = (MarlinMetrics.isActive()) ?
+                           MarlinMetrics.startSample(++metricsCount) : 0L;
+        timeRows = (metricsStart != 0L) || rdrCtx.timer.enabled;
+        metricsRows = 0;
+        metricsRowNanos = 0L;
+
+        final int nBands = (USE_PARALLEL_BANDS && ac.supportParallelBands()) ?
+                               getParallelBandCount() : 1;
+
+        if (nBands > 1) {
+            produceAlphasInBands(ac, nBands);
+        } else {
+            // Process all scan lines:
+            _endRendering(bbox_spminY, bbox_spmaxY, ac);
+        }
 
         if (DO_MONITORS) {
             rdrCtx.stats.mon_rdr_endRendering_Y.stop();
         }
+        if (MarlinMetrics.isActive()) {
+            addMetrics();
+        }
+        final RasterizationTimer timer = rdrCtx.timer;
+        if (timer.enabled) {
+            timer.edges = edges.used / SIZEOF_EDGE_BYTES;
+            timer.curves = curveCount;
+            timer.copyNanos = metricsRowNanos;
+        }
+    }
+
+    private void addMetrics() {
+        final int width  = bboxX1 - bboxX0;
+        final int height = bboxY1 - bboxY0;
+        final int edgeCount = edges.used / SIZEOF_EDGE_BYTES;
+
+        MarlinMetrics.addRendering(edgeCount, ((long) width) * height);
+
+        if (metricsStart != 0L) {
+            MarlinMetrics.addSample(metricsStart, edgeCount, width, height,
+                                    metricsRows, metricsRowNanos);
+            metricsStart = 0L;
+        }
+    }
+
+    private int getParallelBandCount() {
+        final int height = bboxY1 - bboxY0;
+
+        if (((long) (bboxX1 - bboxX0)) * height < PARALLEL_BANDS_MIN_AREA) {
+            return 1;
+        }
+        final int parallelism = ForkJoinPool.getCommonPoolParallelism();
+        if (parallelism <= 1) {
+            return 1;
+        }
+        // 2 bands per thread (workers + caller) to balance uneven bands:
+        return FloatMath.min(2 * (parallelism + 1), height / BAND_MIN_HEIGHT);
+    }
+
+    private void produceAlphasInBands(final MarlinAlphaConsumer ac,
+                                      final int nBands)
+    {
+        if (DO_STATS) {
+            rdrCtx.stats.stat_rdr_parallel_bands.add(nBands);
+        }
+        final int height = bboxY1 - bboxY0;
+        final int[] bandY = new int[nBands + 1];
+
+        // band boundaries are pixel rows except bbox first / last subpixels:
+        bandY[0] = bbox_spminY;
+        for (int i = 1; i < nBands; i++) {
+            bandY[i] = (bboxY0 + (height * i) / nBands) << SUBPIXEL_LG_POSITIONS_Y;
+        }
+        bandY[nBands] = bbox_spmaxY;
+
+        // one task per worker (and the caller) sweeping bands in turn so that
+        // every worker acquires a single RendererContext:
+        final int nTasks = FloatMath.min(nBands,
+                               ForkJoinPool.getCommonPoolParallelism() + 1);
+        final AtomicInteger nextBand = new AtomicInteger();
+
+        final BandTask[] tasks = new BandTask[nTasks];
+        for (int i = 0; i < nTasks; i++) {
+            tasks[i] = new BandTask(this, ac, bandY, nextBand);
+        }
+        ForkJoinTask.invokeAll(tasks);
+    }
+
+    /**
+     * Initializes this renderer to sweep the subpixel rows [y0; y1[ of the
+     * given renderer: edges crossing this band are copied and advanced to y0
+     * as the DDA updates edges in-place.
+     */
+    Renderer initBand(final Renderer master, final int y0, final int y1) {
+        this.windingRule = master.windingRule;
+
+        // same X bounds to get the same bbox (alpha indices):
+        this.boundsMinX = master.boundsMinX;
+        this.boundsMaxX = master.boundsMaxX;
+        this.boundsMinY = y0;
+        this.boundsMaxY = y1;
+
+        initEdges();
+
+        // sweep all band rows, even empty ones, to clear them:
+        edgeMinY = y0;
+        edgeMaxY = y1;
+        edgeMinX = master.edgeMinX;
+        edgeMaxX = master.edgeMaxX;
+
+        copyBandEdges(master, y0, y1);
+
+        if (master.leftEdgeCount != 0) {
+            copyBandWindings(master, y0, y1);
+        }
+
+        // determine bbox, alpha line and block flags as the master renderer:
+        endRendering();
+
+        enableBlkFlags  = master.enableBlkFlags;
+        prevUseBlkFlags = master.prevUseBlkFlags;
+
+        return this; // fluent API
+    }
+
+    private void copyBandEdges(final Renderer master, final int y0, final int y1) {
+        // local vars (performance):
+        final Unsafe _unsafe = OffHeapArray.UNSAFE;
+        final long addr0 = master.edges.address;
+        final int[] _edgeBuckets = master.edgeBuckets;
+        final int[] _edgeBucketCounts = master.edgeBucketCounts;
+        final int _boundsMinY = master.boundsMinY;
+
+        // edges starting after y1 do not cross this band:
+        final int bucketEnd = FloatMath.min(y1, master.edgeMaxY) - _boundsMinY;
+
+        for (int bucket = master.buckets_minY, count, ecur, ymax;
+             bucket < bucketEnd; bucket++)
+        {
+            // number of new edges in this bucket:
+            count = _edgeBucketCounts[bucket] >> 1;
+
+            for (ecur = _edgeBuckets[bucket]; count > 0; count--) {
+                ymax = _unsafe.getInt(addr0 + ecur + OFF_YMAX);
+
+                if (ymax > y0) {
+                    copyEdge(addr0 + ecur, bucket + _boundsMinY, ymax, 0, edges,
+                             edgeBuckets, edgeBucketCounts,
+                             boundsMinY, boundsMaxY, rdrCtx.stats);
+                }
+                ecur = _unsafe.getInt(addr0 + ecur + OFF_NEXT);
+            }
+        }
+    }
+
+    private void copyBandWindings(final Renderer master, final int y0, final int y1) {
+        final int[] _edgeWindings = master.edgeWindings;
+        final int from = y0 - master.boundsMinY;
+
+        // winding of left edges crossing rows before y0:
+        int winding = 0;
+        for (int b = master.buckets_minY; b < from; b++) {
+            winding += _edgeWindings[b];
+        }
+
+        ensureEdgeWindings();
+        System.arraycopy(_edgeWindings, from, edgeWindings, 0, y1 - y0);
+        edgeWindings[0] += winding;
+
+        leftEdgeCount = master.leftEdgeCount;
+    }
+
+    /**
+     * Copy the given edge (translated by dcurx) into the given edge list and
+     * buckets, advancing its DDA to boundsMinY and clamping its last crossing
+     * to boundsMaxY. Shared by band renderers and compiled shape replay (see
+     * RendererNoAA.replayEdges) as they use the same edge layout.
+     */
+    static void copyEdge(final long srcAddr, int firstCrossing, int lastCrossing,
+                         final int dcurx,
+                         final OffHeapArray edges,
+                         final int[] edgeBuckets, final int[] edgeBucketCounts,
+                         final int boundsMinY, final int boundsMaxY,
+                         final RendererStats stats)
+    {
+        final Unsafe _unsafe = OffHeapArray.UNSAFE;
+
+        int curx      = _unsafe.getInt(srcAddr) + dcurx;
+        int err       = _unsafe.getInt(srcAddr + OFF_ERROR);
+        final int bumpx   = _unsafe.getInt(srcAddr + OFF_BUMP_X);
+        final int bumperr = _unsafe.getInt(srcAddr + OFF_BUMP_ERR);
+
+        if (firstCrossing < boundsMinY) {
+            // advance the DDA by n scanlines using 31-bits fixed point values:
+            final long n = boundsMinY - firstCrossing;
+            final long x_fixed = (((long) (curx >> 1)) << 31L) + err
+                + n * ((((long) (bumpx >> 1)) << 31L) + bumperr);
+
+            // keep the orientation bit:
+            curx = (((int) (x_fixed >> 31L)) << 1) | (curx & 0x1);
+            err  = ((int) x_fixed) & ERR_STEP_MAX;
+
+            firstCrossing = boundsMinY;
+        }
+        if (lastCrossing > boundsMaxY) {
+            lastCrossing = boundsMaxY;
+        }
+
+        final OffHeapArray _edges = edges;
+
+        // get free pointer (ie length in bytes)
+        final int edgePtr = _edges.used;
+
+        // use substraction to avoid integer overflow:
+        if (_edges.length - edgePtr < SIZEOF_EDGE_BYTES) {
+            final long edgeNewSize = ArrayCacheConst.getNewLargeSize(
+                                        _edges.length,
+                                        edgePtr + SIZEOF_EDGE_BYTES);
+
+            if (DO_STATS) {
+                stats.stat_rdr_edges_resizes.add(edgeNewSize);
+            }
+            _edges.resize(edgeNewSize);
+        }
+
+        final int bucketIdx = firstCrossing - boundsMinY;
+        final long addr = _edges.address + edgePtr;
+
+        _unsafe.putInt(addr,                curx);
+        _unsafe.putInt(addr + OFF_ERROR,    err);
+        _unsafe.putInt(addr + OFF_BUMP_X,   bumpx);
+        _unsafe.putInt(addr + OFF_BUMP_ERR, bumperr);
+        _unsafe.putInt(addr + OFF_NEXT,     edgeBuckets[bucketIdx]);
+        _unsafe.putInt(addr + OFF_YMAX,     lastCrossing);
+
+        // Update buckets:
+        edgeBuckets[bucketIdx]       = edgePtr;
+        edgeBucketCounts[bucketIdx] += 2; // 1 << 1
+        // last bit means edge end
+        edgeBucketCounts[lastCrossing - boundsMinY] |= 0x1;
+
+        // update free pointer (ie length in bytes)
+        _edges.used += SIZEOF_EDGE_BYTES;
+    }
+
+    /**
+     * Band sweeps using the renderer of the executing thread's context:
+     * bands are taken in turn until all bands are done
+     */
+    static final class BandTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final transient Renderer master;
+        private final transient MarlinAlphaConsumer ac;
+        private final int[] bandY;
+        private final AtomicInteger nextBand;
+
+        BandTask(final Renderer master, final MarlinAlphaConsumer ac,
+                 final int[] bandY, final AtomicInteger nextBand)
+        {
+            this.master = master;
+            this.ac = ac;
+            this.bandY = bandY;
+            this.nextBand = nextBand;
+        }
+
+        @Override
+        protected void compute() {
+            final int nBands = bandY.length - 1;
+            int i = nextBand.getAndIncrement();
+            if (i >= nBands) {
+                // all bands already taken by other tasks:
+                return;
+            }
+            final RendererContext rdrCtx = MarlinRenderingEngine.getRendererContext();
+            try {
+                // mark context as DIRTY to clear buckets if any error occurs:
+                rdrCtx.dirty = true;
+
+                for (; i < nBands; i = nextBand.getAndIncrement()) {
+                    final Renderer band = rdrCtx.renderer;
+                    try {
+                        band.initBand(master, bandY[i], bandY[i + 1]);
+                        band._endRendering(bandY[i], bandY[i + 1], ac);
+                    } finally {
+                        band.dispose();
+                    }
+                }
+                // mark context as CLEAN:
+                rdrCtx.dirty = false;
+            } finally {
+                // recycle the RendererContext instance
+                MarlinRenderingEngine.returnRendererContext(rdrCtx);
+            }
+        }
     }
 
     void copyAARow(final int[] alphaRow,
@@ -1519,6 +2184,8 @@ public final class Renderer implements MarlinRenderer, MarlinConst {
         if (DO_MONITORS) {
             rdrCtx.stats.mon_rdr_copyAARow.start();
         }
+        final long start = (timeRows) ? System.nanoTime() : 0L;
+
         if (DO_STATS) {
             rdrCtx.stats.stat_cache_rowAA.add(pix_to - pix_from);
         }
@@ -1534,6 +2201,10 @@ public final class Renderer implements MarlinRenderer, MarlinConst {
             }
             ac.setAndClearRelativeAlphas(alphaRow, pix_y, pix_from, pix_to);
         }
+        if (start != 0L) {
+            metricsRows++;
+            metricsRowNanos += System.nanoTime() - start;
+        }
         if (DO_MONITORS) {
             rdrCtx.stats.mon_rdr_copyAARow.stop();
         }
@@ -1542,6 +2213,18 @@ public final class Renderer implements MarlinRenderer, MarlinConst {
     // output pixel bounding box:
     int bboxX0, bboxX1, bboxY0, bboxY1;
 
+    // runtime metrics (see MarlinMetrics): rendering counter
+    private int metricsCount;
+    // start time of the sampled rendering or 0
+    private long metricsStart;
+    // true to time copyAARow calls (sampled or timed rendering)
+    private boolean timeRows;
+    // timed copyAARow calls
+    private int metricsRows;
+    private long metricsRowNanos;
+    // number of curves (quadTo / curveTo calls)
+    private int curveCount;
+
     @Override
     public int getOutpixMinX() {
         return bboxX0;
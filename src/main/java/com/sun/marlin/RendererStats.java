@@ -95,14 +95,24 @@ public final class RendererStats implements MarlinConst {
         = new StatLong("renderer.activeEdges.adds");
     final StatLong stat_rdr_activeEdges_adds_high
         = new StatLong("renderer.activeEdges.adds_high");
+    final StatLong stat_rdr_edges_left
+        = new StatLong("renderer.edges.left");
     final StatLong stat_rdr_crossings_updates
         = new StatLong("renderer.crossings.updates");
+    final StatLong stat_rdr_parallel_bands
+        = new StatLong("renderer.parallel.bands");
+    final StatLong stat_rdr_incremental_edges
+        = new StatLong("renderer.incremental.edges");
+    final StatLong stat_rdr_compiled_edges
+        = new StatLong("renderer.compiled.edges");
     final StatLong stat_rdr_crossings_sorts
         = new StatLong("renderer.crossings.sorts");
     final StatLong stat_rdr_crossings_bsearch
         = new StatLong("renderer.crossings.bsearch");
     final StatLong stat_rdr_crossings_msorts
         = new StatLong("renderer.crossings.msorts");
+    final StatLong stat_rdr_crossings_rsorts
+        = new StatLong("renderer.crossings.rsorts");
     final StatLong stat_str_polystack_curves
         = new StatLong("stroker.polystack.curves");
     final StatLong stat_str_polystack_types
@@ -132,6 +142,8 @@ public final class RendererStats implements MarlinConst {
         = new StatLong("array.renderer.edgeBuckets.int");
     final StatLong stat_array_renderer_edgeBucketCounts
         = new StatLong("array.renderer.edgeBucketCounts.int");
+    final StatLong stat_array_renderer_edgeWindings
+        = new StatLong("array.renderer.edgeWindings.int");
     final StatLong stat_array_renderer_edgePtrs
         = new StatLong("array.renderer.edgePtrs.int");
     final StatLong stat_array_renderer_aux_edgePtrs
@@ -159,6 +171,8 @@ public final class RendererStats implements MarlinConst {
         = new Histogram("renderer.crossings.msorts");
     final Histogram hist_rdr_crossings_msorts_adds
         = new Histogram("renderer.crossings.msorts.adds");
+    final Histogram hist_rdr_crossings_rsorts
+        = new Histogram("renderer.crossings.rsorts");
     final Histogram hist_str_polystack_curves
         = new Histogram("stroker.polystack.curves");
     final Histogram hist_tile_generator_alpha
@@ -194,10 +208,14 @@ public final class RendererStats implements MarlinConst {
         stat_rdr_activeEdges_updates,
         stat_rdr_activeEdges_adds,
         stat_rdr_activeEdges_adds_high,
+        stat_rdr_edges_left,
         stat_rdr_crossings_updates,
+        stat_rdr_parallel_bands,
+        stat_rdr_incremental_edges,
         stat_rdr_crossings_sorts,
         stat_rdr_crossings_bsearch,
         stat_rdr_crossings_msorts,
+        stat_rdr_crossings_rsorts,
         stat_str_polystack_types,
         stat_str_polystack_curves,
         stat_cpd_polystack_curves,
@@ -209,6 +227,7 @@ public final class RendererStats implements MarlinConst {
         hist_rdr_crossings_adds,
         hist_rdr_crossings_msorts,
         hist_rdr_crossings_msorts_adds,
+        hist_rdr_crossings_rsorts,
         hist_tile_generator_alpha,
         hist_tile_generator_encoding,
         hist_tile_generator_encoding_dist,
@@ -226,6 +245,7 @@ public final class RendererStats implements MarlinConst {
         stat_array_renderer_aux_crossings,
         stat_array_renderer_edgeBuckets,
         stat_array_renderer_edgeBucketCounts,
+        stat_array_renderer_edgeWindings,
         stat_array_renderer_edgePtrs,
         stat_array_renderer_aux_edgePtrs,
         stat_array_str_polystack_curves,
@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package com.sun.marlin;
+
+import static com.sun.marlin.ArrayCacheConst.ARRAY_SIZES;
+import static com.sun.marlin.ArrayCacheConst.BUCKETS;
+import static com.sun.marlin.ArrayCacheConst.SHARED_CAPACITY;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Lock-free pool of large arrays shared by all renderer contexts: second
+ * level of the [Byte/Int/Float/Double]ArrayCache buckets larger than
+ * SHARED_MIN_SIZE, so N rendering threads do not keep N copies of large
+ * arrays rarely used concurrently.
+ *
+ * Each bucket (ARRAY_SIZES) has SHARED_CAPACITY slots: arrays are returned
+ * by CAS into an empty slot and borrowed by getAndSet(null), so neither
+ * locks nor allocations are needed. Pooled arrays are accounted in the
+ * ArrayCacheManager budget and released by its trimming policies.
+ */
+final class SharedArrayPool {
+
+    // slots [bucket * SHARED_CAPACITY ...]
+    private final AtomicReferenceArray<Object> slots
+        = new AtomicReferenceArray<Object>(BUCKETS * SHARED_CAPACITY);
+    // element size in bytes
+    private final long elementSize;
+    // last use epoch (see ArrayCacheManager.epoch)
+    volatile int epoch;
+
+    SharedArrayPool(final long elementSize) {
+        this.elementSize = elementSize;
+        ArrayCacheManager.register(this);
+    }
+
+    /**
+     * Borrow an array of the given bucket
+     * @param bucket bucket index
+     * @return array (clean or dirty like returned ones) or null if none
+     */
+    Object poll(final int bucket) {
+        epoch = ArrayCacheManager.epoch;
+
+        final AtomicReferenceArray<Object> _slots = slots;
+        final int off = bucket * SHARED_CAPACITY;
+
+        for (int i = off, end = off + SHARED_CAPACITY; i < end; i++) {
+            if (_slots.get(i) != null) {
+                final Object array = _slots.getAndSet(i, null);
+                if (array != null) {
+                    ArrayCacheManager.release(elementSize * ARRAY_SIZES[bucket]);
+                    return array;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Return an array of the given bucket
+     * @param bucket bucket index
+     * @param array array of length ARRAY_SIZES[bucket]
+     * @return false if the array was not pooled (full or budget exceeded)
+     */
+    boolean offer(final int bucket, final Object array) {
+        epoch = ArrayCacheManager.epoch;
+
+        final long size = elementSize * ARRAY_SIZES[bucket];
+        if (!ArrayCacheManager.reserve(size)) {
+            return false;
+        }
+        final AtomicReferenceArray<Object> _slots = slots;
+        final int off = bucket * SHARED_CAPACITY;
+
+        for (int i = off, end = off + SHARED_CAPACITY; i < end; i++) {
+            if ((_slots.get(i) == null) && _slots.compareAndSet(i, null, array)) {
+                return true;
+            }
+        }
+        ArrayCacheManager.release(size);
+        return false;
+    }
+
+    /**
+     * Release all pooled arrays
+     */
+    void clear() {
+        final AtomicReferenceArray<Object> _slots = slots;
+
+        for (int i = 0, len = _slots.length(); i < len; i++) {
+            if (_slots.getAndSet(i, null) != null) {
+                ArrayCacheManager.release(elementSize
+                                          * ARRAY_SIZES[i / SHARED_CAPACITY]);
+            }
+        }
+    }
+}
@@ -0,0 +1,242 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package com.sun.marlin;
+
+/**
+ * Alpha consumer streaming the mask as fixed-size tiles (TILE_SIZE x TILE_SIZE)
+ * to a TileHandler as soon as each strip of TILE_SIZE pixel rows is complete,
+ * like the tile generator of the Java2D Marlin renderer (MarlinCache).
+ *
+ * Only one strip (width x TILE_SIZE bytes) is kept in memory and tiles are
+ * classified (TILE_EMPTY, TILE_FULL or TILE_MIXED) so that callers can skip
+ * empty tiles or solid-fill opaque tiles without uploading alpha data.
+ */
+public final class TileMarlinAlphaConsumer implements MarlinAlphaConsumer {
+
+    // tile classification (typical alpha):
+    public static final int TILE_EMPTY = 0x00;
+    public static final int TILE_FULL  = 0xFF;
+    public static final int TILE_MIXED = 0x80;
+
+    public static final int TILE_SIZE_LG = MarlinConst.TILE_SIZE_LG;
+    public static final int TILE_SIZE    = 1 << TILE_SIZE_LG;
+
+    /**
+     * Tile callback
+     */
+    public interface TileHandler {
+
+        /**
+         * Handle a completed tile
+         *
+         * @param x tile origin x (pixels)
+         * @param y tile origin y (pixels)
+         * @param w tile width (TILE_SIZE or less on the right side)
+         * @param h tile height (TILE_SIZE or less on the bottom side)
+         * @param typicalAlpha TILE_EMPTY, TILE_FULL or TILE_MIXED
+         * @param alphas alpha values (only valid during this call)
+         * @param offset index of the tile top-left pixel in alphas
+         * @param stride row stride in alphas
+         */
+        public void handleTile(int x, int y, int w, int h, int typicalAlpha,
+                               byte[] alphas, int offset, int stride);
+    }
+
+    // strip storage (TILE_SIZE rows):
+    private final MaskMarlinAlphaConsumer strip;
+
+    private TileHandler handler = null;
+
+    private int x, y, width, height;
+
+    // current strip origin (pixels)
+    private int stripY;
+    // last pixel row of the current strip (inclusive)
+    private int stripLastY;
+    // written range [minX, maxX[ in the current strip (relative to x):
+    private int stripMinX, stripMaxX;
+
+    public TileMarlinAlphaConsumer(final int width) {
+        this.strip = new MaskMarlinAlphaConsumer(width << TILE_SIZE_LG);
+    }
+
+    /**
+     * @return maximum mask width supported by this instance
+     */
+    public int getMaxWidth() {
+        return strip.getAlphaLength() >> TILE_SIZE_LG;
+    }
+
+    public void init(final int x, final int y, final int w, final int h,
+                     final TileHandler handler)
+    {
+        this.x = x;
+        this.y = y;
+        this.width = w;
+        this.height = h;
+        this.handler = handler;
+
+        initStrip(y);
+    }
+
+    public void dispose() {
+        // do not keep the handler alive:
+        this.handler = null;
+    }
+
+    private void initStrip(final int pix_y) {
+        stripY = pix_y;
+        stripLastY = Math.min(pix_y + TILE_SIZE, y + height) - 1;
+        stripMinX = Integer.MAX_VALUE;
+        stripMaxX = Integer.MIN_VALUE;
+
+        strip.setBoundsNoClone(x, pix_y, width, (stripLastY - pix_y) + 1);
+    }
+
+    @Override
+    public int getOriginX() {
+        return x;
+    }
+
+    @Override
+    public int getOriginY() {
+        return y;
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public void setMaxAlpha(final int maxalpha) {
+        strip.setMaxAlpha(maxalpha);
+    }
+
+    @Override
+    public boolean supportBlockFlags() {
+        return true;
+    }
+
+    @Override
+    public boolean supportParallelBands() {
+        // strips are emitted in sequence:
+        return false;
+    }
+
+    @Override
+    public void clearAlphas(final int pix_y) {
+        strip.clearAlphas(pix_y);
+        rowDone(pix_y);
+    }
+
+    @Override
+    public void setAndClearRelativeAlphas(final int[] alphaDeltas, final int pix_y,
+                                          final int pix_from, final int pix_to)
+    {
+        strip.setAndClearRelativeAlphas(alphaDeltas, pix_y, pix_from, pix_to);
+        markRow(pix_from, pix_to);
+        rowDone(pix_y);
+    }
+
+    @Override
+    public void setAndClearRelativeAlphas(final int[] blkFlags, final int[] alphaDeltas,
+                                          final int pix_y,
+                                          final int pix_from, final int pix_to)
+    {
+        strip.setAndClearRelativeAlphas(blkFlags, alphaDeltas, pix_y, pix_from, pix_to);
+        markRow(pix_from, pix_to);
+        rowDone(pix_y);
+    }
+
+    private void markRow(final int pix_from, final int pix_to) {
+        // pixels outside [from; to[ are zero-filled:
+        final int from = pix_from - x;
+        final int to   = Math.min(pix_to - x, width);
+
+        if (from < stripMinX) {
+            stripMinX = from;
+        }
+        if (to > stripMaxX) {
+            stripMaxX = to;
+        }
+    }
+
+    private void rowDone(final int pix_y) {
+        if (pix_y == stripLastY) {
+            emitStrip();
+
+            if (pix_y + 1 < y + height) {
+                initStrip(pix_y + 1);
+            }
+        }
+    }
+
+    private void emitStrip() {
+        final TileHandler _handler = handler;
+        final byte[] alphas = strip.alphas;
+        final int _TILE_SIZE = TILE_SIZE;
+        final int w = width;
+        final int h = (stripLastY - stripY) + 1;
+
+        for (int tx = 0, tw, typicalAlpha; tx < w; tx += _TILE_SIZE) {
+            tw = Math.min(_TILE_SIZE, w - tx);
+
+            if ((tx + tw <= stripMinX) || (tx >= stripMaxX)) {
+                // no row touched this tile:
+                typicalAlpha = TILE_EMPTY;
+            } else {
+                typicalAlpha = getTypicalAlpha(alphas, tx, tw, h, w);
+            }
+            _handler.handleTile(x + tx, stripY, tw, h, typicalAlpha,
+                                alphas, tx, w);
+        }
+    }
+
+    private static int getTypicalAlpha(final byte[] alphas, final int offset,
+                                       final int w, final int h,
+                                       final int stride)
+    {
+        final byte first = alphas[offset];
+
+        if ((first != 0) && (first != (byte) 0xFF)) {
+            return TILE_MIXED;
+        }
+        for (int j = 0, off = offset, i, end; j < h; j++, off += stride) {
+            for (i = off, end = off + w; i < end; i++) {
+                if (alphas[i] != first) {
+                    return TILE_MIXED;
+                }
+            }
+        }
+        return (first == 0) ? TILE_EMPTY : TILE_FULL;
+    }
+}
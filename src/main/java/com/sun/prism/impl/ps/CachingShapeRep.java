@@ -26,6 +26,7 @@
 package com.sun.prism.impl.ps;
 
 import com.sun.javafx.geom.BaseBounds;
+import com.sun.javafx.geom.Path2D;
 import com.sun.javafx.geom.RectBounds;
 import com.sun.javafx.geom.Shape;
 import com.sun.javafx.geom.transform.BaseTransform;
@@ -42,8 +43,10 @@ import com.sun.prism.impl.ps.BaseShaderContext.MaskType;
 import com.sun.prism.impl.shape.ShapeUtil;
 import com.sun.prism.impl.shape.MaskData;
 import com.sun.prism.ps.Shader;
-import java.util.Arrays;
-import java.util.Comparator;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 
 /**
  * An implementation of ShapeRep that attempts to cache and reuse the
@@ -66,11 +69,18 @@ import java.util.Comparator;
  * sub-pixel translation factors means we're knowingly being a bit sloppy,
  * so when caching is enabled you may see some dancing at the shape edges
  * for slowly animating translations, but otherwise will hopefully not be
- * too noticeable.)
+ * too noticeable. The prism.maskCache.subpixelPhases property bounds
+ * this error: translations are quantized to N x N subpixel phases, each one
+ * having its own pixel-aligned mask, so the position error is at most
+ * 1 / (2 N) pixel.)
  *
  * The current implementation limits the size of the cache (512 pixels in
- * each dimension, and 4 MB in total) so that it doesn't grow without bound.
- * Space is granted on a first come first served basis.
+ * each dimension, and 4 MB in total by default, see the
+ * prism.maskCache.maxDim and prism.maskCache.budget properties)
+ * so that it doesn't grow without bound. Masks are found by content (hash of
+ * the geometry, stroke, transform ignoring translation and AA flag) and
+ * unreferenced masks stay in the cache until evicted in LRU order, so
+ * shapes rendered again in later frames or by other nodes reuse them.
  */
 public class CachingShapeRep implements ShapeRep {
 
@@ -123,6 +133,34 @@ public class CachingShapeRep implements ShapeRep {
             drawState = null;
         }
     }
+
+    /**
+     * Returns the number of mask cache hits (shared masks found)
+     */
+    public static long getMaskCacheHits() {
+        return CachingShapeRepState.getMaskCacheHits();
+    }
+
+    /**
+     * Returns the number of mask cache misses (rasterized masks)
+     */
+    public static long getMaskCacheMisses() {
+        return CachingShapeRepState.getMaskCacheMisses();
+    }
+
+    /**
+     * Returns the number of evicted masks
+     */
+    public static long getMaskCacheEvictions() {
+        return CachingShapeRepState.getMaskCacheEvictions();
+    }
+
+    /**
+     * Returns the size (in bytes) of all cached masks
+     */
+    public static long getMaskCacheBytes() {
+        return CachingShapeRepState.getMaskCacheBytes();
+    }
 }
 
 class CachingShapeRepState {
@@ -136,8 +174,15 @@ class CachingShapeRepState {
         private int maskH;
 
         void adjustOrigin(BaseTransform xform) {
-            float dx = (float)(xform.getMxt()-cacheEntry.xform.getMxt());
-            float dy = (float)(xform.getMyt()-cacheEntry.xform.getMyt());
+            float dx, dy;
+            if (SUBPIXEL_PHASES != 0) {
+                // same subpixel phase: keep the mask pixel-aligned
+                dx = (float)(Math.floor(xform.getMxt())-Math.floor(cacheEntry.xform.getMxt()));
+                dy = (float)(Math.floor(xform.getMyt())-Math.floor(cacheEntry.xform.getMyt()));
+            } else {
+                dx = (float)(xform.getMxt()-cacheEntry.xform.getMxt());
+                dy = (float)(xform.getMyt()-cacheEntry.xform.getMyt());
+            }
             this.maskX = cacheEntry.texData.maskX + dx;
             this.maskY = cacheEntry.texData.maskY + dy;
         }
@@ -174,133 +219,267 @@ class CachingShapeRepState {
         MaskTexData texData;
         boolean antialiasedShape;
         int refCount;
-    }
+        // content hash (geometry, stroke, transform ignoring translation, AA)
+        int hash;
+        // cheap key (see MaskCache.cheapKey)
+        int cheapKey;
+        // true while this entry is in the cache
+        boolean cached;
+        // subpixel phase of the translation (0 if phases are disabled)
+        int phaseX;
+        int phaseY;
+
+        void setPhase(BaseTransform xform) {
+            phaseX = phase(xform.getMxt());
+            phaseY = phase(xform.getMyt());
+        }
 
-    private static class MaskCache {
-        private static final int MAX_MASK_DIM = 512;
-        private static final int MAX_SIZE_IN_PIXELS = 4194304; // 4 MB
-        private static Comparator<CacheEntry> comparator = (o1, o2) -> {
-            int widthCompare = Float.compare(o1.xformBounds.getWidth(), o2.xformBounds.getWidth());
-            if (widthCompare != 0) {
-                return widthCompare;
-            }
-            return Float.compare(o1.xformBounds.getHeight(), o2.xformBounds.getHeight());
-        };
+        boolean isSamePhase(BaseTransform xform) {
+            return (phaseX == phase(xform.getMxt())) &&
+                   (phaseY == phase(xform.getMyt()));
+        }
 
-        private CacheEntry[] entries = new CacheEntry[8];
-        private int entriesSize = 0;
-        private int totalPixels;
+        @Override
+        public int hashCode() {
+            return hash;
+        }
 
-        private CacheEntry tmpKey = new CacheEntry();
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == this) {
+                return true;
+            }
+            if (!(obj instanceof CacheEntry)) {
+                return false;
+            }
+            final CacheEntry other = (CacheEntry) obj;
+            return (hash == other.hash) &&
+                   (antialiasedShape == other.antialiasedShape) &&
+                   (phaseX == other.phaseX) && (phaseY == other.phaseY) &&
+                   equalsIgnoreTranslation(xform, other.xform) &&
+                   (stroke == null ? other.stroke == null : stroke.equals(other.stroke)) &&
+                   shape.equals(other.shape);
+        }
+
+        static int hash(Shape shape, BasicStroke stroke, BaseTransform xform,
+                        boolean antialiasedShape)
         {
-            tmpKey.xformBounds = new RectBounds();
+            int h = shape.hashCode();
+            h = 31 * h + ((stroke != null) ? stroke.hashCode() : 0);
+            // + 0.0 to hash -0.0 as 0.0 (see equalsIgnoreTranslation):
+            h = 31 * h + Double.hashCode(xform.getMxx() + 0.0);
+            h = 31 * h + Double.hashCode(xform.getMxy() + 0.0);
+            h = 31 * h + Double.hashCode(xform.getMyx() + 0.0);
+            h = 31 * h + Double.hashCode(xform.getMyy() + 0.0);
+            h = 31 * h + ((phase(xform.getMxt()) << 5) | phase(xform.getMyt()));
+            return (antialiasedShape) ? h : ~h;
         }
+    }
 
-        private void ensureSize(int size) {
-            if (entries.length < size) {
-                CacheEntry[] newEntries = new CacheEntry[size * 3 / 2];
-                System.arraycopy(entries, 0, newEntries, 0, entries.length);
-                entries = newEntries;
+    /**
+     * Content-addressed cache shared by all shapes: masks are looked up by
+     * geometry, stroke, transform (ignoring translation) and AA flag so that
+     * identical shapes drawn by different nodes share a single mask texture.
+     * Masks no longer referenced are kept across frames until evicted (least
+     * recently used first) to fit in the byte budget.
+     */
+    private static class MaskCache {
+        private static final int MAX_MASK_DIM = getInt("prism.maskCache.maxDim",
+                                                       512, 16, 4096);
+        // alpha masks use 1 byte per pixel:
+        private static final long MAX_SIZE_IN_BYTES = getInt("prism.maskCache.budget",
+                                                             4 * 1024 * 1024,
+                                                             0, Integer.MAX_VALUE);
+        // number of cheap key slots (power of 2):
+        private static final int KEY_SLOTS = 1024;
+
+        // entries in access order (least recently used first):
+        private final LinkedHashMap<CacheEntry, CacheEntry> entries
+            = new LinkedHashMap<>(64, 0.75f, true);
+        private long totalBytes;
+        // size of unreferenced entries (evictable)
+        private long unrefBytes;
+        // number of cached entries per cheap key slot: find() skips the
+        // content hash if no entry has the same cheap key
+        private final int[] keyCounts = new int[KEY_SLOTS];
+
+        // statistics:
+        private long hits;
+        private long misses;
+        private long evictions;
+
+        private final CacheEntry tmpKey = new CacheEntry();
+
+        /**
+         * Returns true if a mask of the given bounds is small enough to be
+         * cached, possibly after evicting unreferenced masks (see evict).
+         * This check does not modify the cache.
+         */
+        boolean hasRoom(RectBounds xformBounds) {
+            int w = (int)(xformBounds.getWidth() + 0.5f);
+            int h = (int)(xformBounds.getHeight() + 0.5f);
+            if (w > MAX_MASK_DIM || h > MAX_MASK_DIM) {
+                return false;
             }
+            // referenced masks can not be evicted:
+            return ((long) w) * h <= MAX_SIZE_IN_BYTES - (totalBytes - unrefBytes);
         }
 
-        private void addEntry(CacheEntry entry) {
-            ensureSize(entriesSize + 1);
-            int pos = Arrays.binarySearch(entries, 0, entriesSize, entry, comparator);
-            if (pos < 0) {
-                pos = ~pos;
+        /**
+         * Evicts unreferenced entries (least recently used first) until the
+         * cache fits in its budget.
+         */
+        void evict() {
+            long needed = totalBytes - MAX_SIZE_IN_BYTES;
+            for (Iterator<CacheEntry> it = entries.keySet().iterator();
+                 it.hasNext() && needed > 0L; )
+            {
+                CacheEntry entry = it.next();
+                if (entry.refCount <= 0) {
+                    it.remove();
+                    removed(entry);
+                    unrefBytes -= size(entry);
+                    needed -= disposeEntry(entry);
+                    evictions++;
+                }
             }
-            System.arraycopy(entries, pos, entries, pos + 1, entriesSize - pos);
-            entries[pos] = entry;
-            ++entriesSize;
         }
 
-        private void removeEntry(CacheEntry entry) {
-            int pos = Arrays.binarySearch(entries, 0, entriesSize, entry, comparator);
-            if (pos < 0) {
-                throw new IllegalStateException("Trying to remove a cached item that's not in the cache");
+        private void removed(CacheEntry entry) {
+            entry.cached = false;
+            keyCounts[entry.cheapKey & (KEY_SLOTS - 1)]--;
+        }
+
+        private static long size(CacheEntry entry) {
+            return ((long) entry.texData.maskW) * entry.texData.maskH;
+        }
+
+        private long disposeEntry(CacheEntry entry) {
+            long size = size(entry);
+            totalBytes -= size;
+            entry.shape = null;
+            entry.stroke = null;
+            entry.xform = null;
+            entry.xformBounds = null;
+            entry.texData.maskTex.dispose();
+            entry.antialiasedShape = false;
+            entry.texData = null;
+            return size;
+        }
+
+        /**
+         * Returns a key derived from constant-time properties only (shape
+         * type, path length, shape bounds, stroke width and AA flag): equal
+         * shapes have equal cheap keys.
+         */
+        private static int cheapKey(Shape shape, RectBounds shapeBounds,
+                                    BasicStroke stroke, boolean antialiasedShape)
+        {
+            int h = shape.getClass().hashCode();
+            if (shape instanceof Path2D) {
+                h = 31 * h + ((Path2D) shape).getNumCommands();
             }
-            if (entries[pos] != entry) {
-                tmpKey.xformBounds.deriveWithNewBounds(0, 0, 0, entry.xformBounds.getWidth(), Math.nextAfter(entry.xformBounds.getHeight(), Float.NEGATIVE_INFINITY), 0);
-                pos = Arrays.binarySearch(entries, 0, entriesSize, tmpKey, comparator);
-                if (pos < 0) {
-                    pos = ~pos;
-                }
-                tmpKey.xformBounds.deriveWithNewBounds(0, 0, 0, entry.xformBounds.getWidth(), Math.nextAfter(entry.xformBounds.getHeight(), Float.POSITIVE_INFINITY), 0);
-                int toPos = Arrays.binarySearch(entries, 0, entriesSize, tmpKey, comparator);
-                if (toPos < 0) {
-                    toPos = ~toPos;
-                }
-                while (entries[pos] != entry && pos < toPos) { ++pos; };
-                if (pos >= toPos) {
-                    throw new IllegalStateException("Trying to remove a cached item that's not in the cache");
-                }
+            // + 0f to hash -0f as 0f:
+            h = 31 * h + Float.floatToIntBits(shapeBounds.getWidth() + 0f);
+            h = 31 * h + Float.floatToIntBits(shapeBounds.getHeight() + 0f);
+            if (stroke != null) {
+                h = 31 * h + Float.floatToIntBits(stroke.getLineWidth());
             }
-            System.arraycopy(entries, pos + 1, entries, pos, entriesSize - pos - 1);
-            --entriesSize;
+            h = (antialiasedShape) ? h : ~h;
+            // spread high bits into the slot index:
+            return h ^ (h >>> 16);
         }
 
-        boolean hasRoom(RectBounds xformBounds) {
-            int w = (int)(xformBounds.getWidth() + 0.5f);
-            int h = (int)(xformBounds.getHeight() + 0.5f);
-            int size = w*h;
-            return
-                w <= MAX_MASK_DIM &&
-                h <= MAX_MASK_DIM &&
-                totalPixels + size <= MAX_SIZE_IN_PIXELS;
-        }
+        /**
+         * Links the given texData to a cached mask matching the given
+         * parameters if any.
+         * @return true if found
+         */
+        boolean find(MaskTexData texData,
+                     Shape shape, RectBounds shapeBounds,
+                     BasicStroke stroke, BaseTransform xform,
+                     boolean antialiasedShape)
+        {
+            if (texData.cacheEntry != null) {
+                throw new InternalError("CacheEntry should already be null");
+            }
+            if (keyCounts[cheapKey(shape, shapeBounds, stroke, antialiasedShape)
+                          & (KEY_SLOTS - 1)] == 0)
+            {
+                // no cached entry may match: skip hashing the shape
+                return false;
+            }
+            tmpKey.shape = shape;
+            tmpKey.stroke = stroke;
+            tmpKey.xform = xform;
+            tmpKey.antialiasedShape = antialiasedShape;
+            tmpKey.setPhase(xform);
+            tmpKey.hash = CacheEntry.hash(shape, stroke, xform, antialiasedShape);
 
-        boolean entryMatches(CacheEntry entry, Shape shape, BasicStroke stroke, BaseTransform xform, boolean antialiasedShape) {
-            return (entry.antialiasedShape == antialiasedShape) && equalsIgnoreTranslation(xform, entry.xform) && entry.shape.equals(shape) &&
-                   (stroke == null ? entry.stroke == null : stroke.equals(entry.stroke));
+            CacheEntry entry = entries.get(tmpKey);
 
+            tmpKey.shape = null;
+            tmpKey.stroke = null;
+            tmpKey.xform = null;
+
+            if (entry == null) {
+                return false;
+            }
+            entry.texData.maskTex.lock();
+            if (entry.texData.maskTex.isSurfaceLost()) {
+                entry.texData.maskTex.unlock();
+                // drop it now; referenced entries are freed by unref()
+                entries.remove(entry);
+                removed(entry);
+                if (entry.refCount <= 0) {
+                    unrefBytes -= size(entry);
+                    disposeEntry(entry);
+                }
+                return false;
+            }
+            // increment ref count for the chosen entry and
+            // link the given texData to it
+            if (entry.refCount++ <= 0) {
+                unrefBytes -= size(entry);
+            }
+            entry.texData.copyInto(texData);
+            texData.cacheEntry = entry;
+            // adjust the maskX/maskY by the delta between the
+            // cached transform and the current transform
+            texData.adjustOrigin(xform);
+            hits++;
+            return true;
         }
 
         void get(BaseShaderContext context,
                  MaskTexData texData,
-                 Shape shape, BasicStroke stroke, BaseTransform xform,
+                 Shape shape, RectBounds shapeBounds,
+                 BasicStroke stroke, BaseTransform xform,
                  RectBounds xformBounds,
                  boolean xformBoundsIsACopy, boolean antialiasedShape)
         {
             if (texData == null) {
                 throw new InternalError("MaskTexData must be non-null");
             }
-            if (texData.cacheEntry != null) {
-                throw new InternalError("CacheEntry should already be null");
-            }
-
-            tmpKey.xformBounds.deriveWithNewBounds(0, 0, 0, xformBounds.getWidth(), Math.nextAfter(xformBounds.getHeight(), Float.NEGATIVE_INFINITY), 0);
-            int i = Arrays.binarySearch(entries, 0, entriesSize, tmpKey, comparator);
-            if (i < 0) {
-                i = ~i;
+            if (find(texData, shape, shapeBounds, stroke, xform, antialiasedShape)) {
+                return;
             }
-
-            tmpKey.xformBounds.deriveWithNewBounds(0, 0, 0, xformBounds.getWidth(), Math.nextAfter(xformBounds.getHeight(), Float.POSITIVE_INFINITY), 0);
-            int toPos = Arrays.binarySearch(entries, 0, entriesSize, tmpKey, comparator);
-            if (toPos < 0) {
-                toPos = ~toPos;
-            }
-            for (;i < toPos; i++) {
-                CacheEntry entry = entries[i];
-
-                if (entryMatches(entry, shape, stroke, xform, antialiasedShape))
-                {
-                    entry.texData.maskTex.lock();
-                    if (entry.texData.maskTex.isSurfaceLost()) {
-                        // Eventually refcount will go to zero and entry will be freed
-                        entry.texData.maskTex.unlock();
-                        continue;
-                    }
-                    // increment ref count for the chosen entry and
-                    // link the given texData to it
-                    entry.refCount++;
-                    entry.texData.copyInto(texData);
-                    texData.cacheEntry = entry;
-                    // adjust the maskX/maskY by the delta between the
-                    // cached transform and the current transform
-                    texData.adjustOrigin(xform);
-                    return;
-                }
+            misses++;
+
+            if (SUBPIXEL_PHASES != 0) {
+                // rasterize at the center of the subpixel phase:
+                final double tx = snap(xform.getMxt());
+                final double ty = snap(xform.getMyt());
+                final float dx = (float) (tx - xform.getMxt());
+                final float dy = (float) (ty - xform.getMyt());
+                xform = BaseTransform.getInstance(xform.getMxx(), xform.getMyx(),
+                                                  xform.getMxy(), xform.getMyy(),
+                                                  tx, ty);
+                xformBounds = new RectBounds(xformBounds.getMinX() + dx,
+                                             xformBounds.getMinY() + dy,
+                                             xformBounds.getMaxX() + dx,
+                                             xformBounds.getMaxY() + dy);
+                xformBoundsIsACopy = true;
             }
 
             // did not find an existing mask; create a new one here
@@ -328,10 +507,19 @@ class CachingShapeRepState {
             entry.xformBounds = xformBoundsIsACopy ? xformBounds : (RectBounds)xformBounds.copy();
             entry.texData = texData.copy();
             entry.antialiasedShape = antialiasedShape;
+            entry.hash = CacheEntry.hash(shape, stroke, xform, antialiasedShape);
+            entry.cheapKey = cheapKey(shape, shapeBounds, stroke, antialiasedShape);
+            entry.setPhase(xform);
             entry.refCount = 1;
+            entry.cached = true;
             texData.cacheEntry = entry;
-            addEntry(entry);
-            totalPixels += mw*mh;
+            entries.put(entry, entry);
+            keyCounts[entry.cheapKey & (KEY_SLOTS - 1)]++;
+            totalBytes += ((long) mw) * mh;
+
+            if (totalBytes > MAX_SIZE_IN_BYTES) {
+                evict();
+            }
         }
 
         void unref(MaskTexData texData) {
@@ -345,18 +533,79 @@ class CachingShapeRepState {
             texData.cacheEntry = null;
             texData.maskTex = null;
             entry.refCount--;
+            // unreferenced entries remain cached until evicted:
             if (entry.refCount <= 0) {
-                removeEntry(entry);
-                entry.shape = null;
-                entry.stroke = null;
-                entry.xform = null;
-                entry.xformBounds = null;
-                entry.texData.maskTex.dispose();
-                entry.antialiasedShape = false;
-                entry.texData = null;
-                totalPixels -= (texData.maskW * texData.maskH);
+                if (entry.cached) {
+                    unrefBytes += size(entry);
+                } else {
+                    disposeEntry(entry);
+                }
+            }
+        }
+    }
+
+    static long getMaskCacheHits() {
+        return maskCache.hits;
+    }
+
+    static long getMaskCacheMisses() {
+        return maskCache.misses;
+    }
+
+    static long getMaskCacheEvictions() {
+        return maskCache.evictions;
+    }
+
+    static long getMaskCacheBytes() {
+        return maskCache.totalBytes;
+    }
+
+    /**
+     * Reads an integer mask cache setting (prism.maskCache.*) as
+     * PrismSettings does: invalid values are reported and ignored.
+     */
+    private static int getInt(final String key, final int def,
+                              final int min, final int max)
+    {
+        final String value = AccessController.doPrivileged(
+                (PrivilegedAction<String>) () -> System.getProperty(key));
+        int result = def;
+        if (value != null) {
+            try {
+                result = Integer.decode(value);
+                if (result < min || result > max) {
+                    System.err.println("Invalid value for " + key + " = " + value
+                        + "; expected value in range[" + min + ", " + max + "]");
+                    result = def;
+                }
+            } catch (NumberFormatException nfe) {
+                System.err.println("Invalid integer value for " + key + " = " + value);
             }
         }
+        if (PrismSettings.verbose) {
+            System.out.println(key + " = " + result);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the subpixel phase of the given translation component in
+     * [0, SUBPIXEL_PHASES[ (or 0 if phases are disabled)
+     */
+    private static int phase(double t) {
+        if (SUBPIXEL_PHASES == 0) {
+            return 0;
+        }
+        int p = (int) ((t - Math.floor(t)) * SUBPIXEL_PHASES);
+        return (p < SUBPIXEL_PHASES) ? p : (SUBPIXEL_PHASES - 1);
+    }
+
+    /**
+     * Returns the given translation component moved to the center of its
+     * subpixel phase
+     */
+    private static double snap(double t) {
+        return Math.floor(t) + (phase(t) + 0.5) / SUBPIXEL_PHASES;
     }
 
     /**
@@ -380,6 +629,10 @@ class CachingShapeRepState {
     private static final BaseTransform IDENT = BaseTransform.IDENTITY_TRANSFORM;
     // NOTE: need separate MaskCache per context?
     private static final MaskCache maskCache = new MaskCache();
+    // Number of subpixel phases (per axis) of cached masks or 0 to reuse
+    // masks whatever the translation is
+    private static final int SUBPIXEL_PHASES = getInt("prism.maskCache.subpixelPhases",
+                                                      0, 0, 16);
     // Number of back to back similar renderings before we cache the mask
     private static final int CACHE_THRESHOLD = 2;
 
@@ -487,14 +740,17 @@ class CachingShapeRepState {
 
         renderCount++;
         if (tryCache == Boolean.FALSE ||
-            renderCount < CACHE_THRESHOLD ||
             (!(g instanceof BaseShaderGraphics)) ||
-            ((BaseShaderGraphics)g).isComplexPaint())
+            ((BaseShaderGraphics)g).isComplexPaint() ||
+            (renderCount < CACHE_THRESHOLD && texData.cacheEntry == null &&
+             !maskCache.find(texData, shape, shapeBounds, stroke, xform,
+                             g.isAntialiasedShape())))
         {
             // render the slow way if:
             //   - the shape size exceeds the threshold, or
             //   - we haven't rendered enough times to get an idea of
-            //     whether it is worth caching the mask, or
+            //     whether it is worth caching the mask (unless an equal
+            //     mask is already cached), or
             //   - there is a complex paint set (note that we could
             //     potentially use the cached mask in this case, but the
             //     complex paint case is not common enough to warrant
@@ -521,6 +777,12 @@ class CachingShapeRepState {
                 }
             }
 
+            if (texData.cacheEntry != null && !texData.cacheEntry.isSamePhase(xform)) {
+                // the subpixel phase has changed: use the mask of the new phase
+                texData.maskTex.unlock();
+                maskCache.unref(texData);
+            }
+
             if (texData.cacheEntry != null) {
                 // in this case, we already have a valid mask texture, but
                 // the transform (translation) has changed since we last used
@@ -530,7 +792,8 @@ class CachingShapeRepState {
                 // the following will locate an existing cached mask that
                 // matches the given parameters, or failing that, will create
                 // a new mask and put it in the cache
-                maskCache.get(context, texData, shape, stroke, xform, xformBounds, boundsCopy, g.isAntialiasedShape());
+                maskCache.get(context, texData, shape, shapeBounds, stroke, xform,
+                              xformBounds, boundsCopy, g.isAntialiasedShape());
             }
         }
 
@@ -26,16 +26,25 @@
 package com.sun.prism.impl.shape;
 
 
+import com.sun.javafx.geom.Ellipse2D;
+import com.sun.javafx.geom.Line2D;
 import com.sun.javafx.geom.PathConsumer2D;
 import com.sun.javafx.geom.PathIterator;
 import com.sun.javafx.geom.Path2D;
 import com.sun.javafx.geom.Rectangle;
+import com.sun.javafx.geom.RoundRectangle2D;
 import com.sun.javafx.geom.Shape;
 import com.sun.javafx.geom.transform.BaseTransform;
+import com.sun.marlin.CompiledShape;
+import com.sun.marlin.HairlineRenderer;
+import com.sun.marlin.IncrementalPath;
 import com.sun.marlin.MarlinConst;
+import com.sun.marlin.MarlinEdgeRenderer;
 import com.sun.marlin.MarlinProperties;
 import com.sun.marlin.MarlinRenderer;
 import com.sun.marlin.MarlinUtils;
+import com.sun.marlin.PathDecimator;
+import com.sun.marlin.PrimitiveRenderer;
 import com.sun.marlin.RendererContext;
 import com.sun.marlin.Stroker;
 import com.sun.marlin.TransformingPathConsumer2D;
@@ -58,6 +67,11 @@ public final class MarlinPrismUtils {
     static final float UPPER_BND = Float.MAX_VALUE / 2.0f;
     static final float LOWER_BND = -UPPER_BND;
 
+    // commands of a single line (Line2D):
+    private static final byte[] LINE_TYPES = new byte[] {
+        PathIterator.SEG_MOVETO, PathIterator.SEG_LINETO
+    };
+
     /**
      * Private constructor to prevent instantiation.
      */
@@ -219,6 +233,35 @@ public final class MarlinPrismUtils {
         return Math.abs(num) < 2.0d * Math.ulp(num);
     }
 
+    /**
+     * Return true if the given path is stroked and is an open polyline (one
+     * moveTo then lineTos only) having many more points than pixel columns in
+     * the given clip (dense polylines like time series) to decimate it before
+     * the stroker. Decimation is lossy within pixel columns so it is never
+     * applied to fills or closed paths.
+     */
+    private static boolean isDense(final Path2D p2d, final BasicStroke stroke,
+                                   final Rectangle clip)
+    {
+        if (!MarlinConst.USE_DECIMATOR || (stroke == null)) {
+            return false;
+        }
+        final int numTypes = p2d.getNumCommands();
+        if (numTypes <= PathDecimator.MIN_DENSITY * (long) clip.width) {
+            return false;
+        }
+        final byte[] types = p2d.getCommandsNoClone();
+        if (types[0] != PathIterator.SEG_MOVETO) {
+            return false;
+        }
+        for (int i = 1; i < numTypes; i++) {
+            if (types[i] != PathIterator.SEG_LINETO) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     private static PathConsumer2D initRenderer(
             final RendererContext rdrCtx,
             final BasicStroke stroke,
@@ -288,7 +331,7 @@ public final class MarlinPrismUtils {
         }
     }
 
-    public static MarlinRenderer setupRenderer(
+    public static MarlinEdgeRenderer setupRenderer(
             final RendererContext rdrCtx,
             final Shape shape,
             final BasicStroke stroke,
@@ -299,12 +342,16 @@ public final class MarlinPrismUtils {
         // Test if transform is identity:
         final BaseTransform tf = ((xform != null) && !xform.isIdentity()) ? xform : null;
 
-        final MarlinRenderer r =  (!FORCE_NO_AA && antialiasedShape) ?
-                rdrCtx.renderer : rdrCtx.getRendererNoAA();
+        final MarlinEdgeRenderer r =  (!FORCE_NO_AA && antialiasedShape) ?
+                rdrCtx.getRendererAA() : rdrCtx.getRendererNoAA();
 
         if (shape instanceof Path2D) {
             final Path2D p2d = (Path2D)shape;
-            final PathConsumer2D pc2d = initRenderer(rdrCtx, stroke, tf, rclip, p2d.getWindingRule(), r);
+            PathConsumer2D pc2d = initRenderer(rdrCtx, stroke, tf, rclip, p2d.getWindingRule(), r);
+            if (isDense(p2d, stroke, rclip)) {
+                // keep min / max points per pixel column:
+                pc2d = rdrCtx.decimator.init(pc2d);
+            }
             feedConsumer(rdrCtx, p2d, tf, pc2d);
         } else {
             final PathIterator pi = shape.getPathIterator(tf);
@@ -314,6 +361,362 @@ public final class MarlinPrismUtils {
         return r;
     }
 
+    /**
+     * Return the hairline renderer set up for the given stroked shape if its
+     * transformed line width is no more than 1 pixel (uniform scale only),
+     * or null if it must be stroked
+     */
+    public static MarlinRenderer setupHairlineRenderer(
+            final RendererContext rdrCtx,
+            final Shape shape,
+            final BasicStroke stroke,
+            final BaseTransform xform,
+            final Rectangle rclip)
+    {
+        // Test if transform is identity:
+        final BaseTransform tf = ((xform != null) && !xform.isIdentity()) ? xform : null;
+
+        float scale = 1.0f;
+        if (tf != null) {
+            final double a = tf.getMxx();
+            final double b = tf.getMxy();
+            final double c = tf.getMyx();
+            final double d = tf.getMyy();
+
+            // same test as initStroker(): lengths are only scaled
+            if (!nearZero(a*b + c*d) || !nearZero(a*a + c*c - (b*b + d*d))) {
+                return null;
+            }
+            scale = (float) Math.sqrt(a*a + c*c);
+        }
+        final float width = stroke.getLineWidth() * scale;
+
+        if (!(width > 0.0f) || (width > HairlineRenderer.MAX_WIDTH)) {
+            return null;
+        }
+
+        final HairlineRenderer r = rdrCtx.getHairlineRenderer();
+        r.init(rclip.x, rclip.y, rclip.width, rclip.height,
+               MarlinConst.WIND_NON_ZERO);
+        r.initStroke(width, stroke.getEndCap());
+
+        PathConsumer2D pc2d = r;
+
+        float[] dashes = stroke.getDashArray();
+        if (dashes != null) {
+            final int dashLen = dashes.length;
+            dashes = rdrCtx.dasher.copyDashArray(dashes);
+            for (int i = 0; i < dashLen; i++) {
+                dashes[i] *= scale;
+            }
+            pc2d = rdrCtx.dasher.init(pc2d, dashes, dashLen,
+                                      stroke.getDashPhase() * scale, true);
+        }
+
+        if (shape instanceof Path2D) {
+            final Path2D p2d = (Path2D)shape;
+            if (isDense(p2d, stroke, rclip)) {
+                // keep min / max points per pixel column:
+                pc2d = rdrCtx.decimator.init(pc2d);
+            }
+            feedConsumer(rdrCtx, p2d, tf, pc2d);
+        } else {
+            feedConsumer(rdrCtx, shape.getPathIterator(tf), pc2d);
+        }
+        return r;
+    }
+
+    /**
+     * Return the primitive renderer set up for the given shape if it is an
+     * axis-aligned rectangle, round rectangle or ellipse (filled or stroked
+     * without dash) to rasterize it from its analytic outline, or null
+     * if the general path renderer is needed
+     */
+    public static PrimitiveRenderer setupPrimitiveRenderer(
+            final RendererContext rdrCtx,
+            final Shape shape,
+            final BasicStroke stroke,
+            final BaseTransform xform,
+            final Rectangle rclip,
+            final boolean antialiasedShape)
+    {
+        // axis-aligned transforms only (scale + translate):
+        double sx = 1.0d, sy = 1.0d, tx = 0.0d, ty = 0.0d;
+        if ((xform != null) && !xform.isIdentity()) {
+            if (!xform.is2D() || (xform.getMxy() != 0.0d) || (xform.getMyx() != 0.0d)) {
+                return null;
+            }
+            sx = xform.getMxx();
+            sy = xform.getMyy();
+            tx = xform.getMxt();
+            ty = xform.getMyt();
+        }
+
+        final float x, y, w, h;
+        double rx, ry;
+        if (shape instanceof RoundRectangle2D) {
+            final RoundRectangle2D rr = (RoundRectangle2D) shape;
+            x = rr.x;
+            y = rr.y;
+            w = rr.width;
+            h = rr.height;
+            // see RoundRectIterator:
+            rx = 0.5d * Math.min(w, Math.abs(rr.arcWidth));
+            ry = 0.5d * Math.min(h, Math.abs(rr.arcHeight));
+        } else if (shape instanceof Ellipse2D) {
+            final Ellipse2D e = (Ellipse2D) shape;
+            x = e.x;
+            y = e.y;
+            w = e.width;
+            h = e.height;
+            rx = 0.5d * w;
+            ry = 0.5d * h;
+        } else if (stroke != null) {
+            return setupStrokedLines(rdrCtx, shape, stroke, sx, sy, tx, ty,
+                                     rclip, antialiasedShape);
+        } else {
+            return null;
+        }
+        // degenerated shapes (or NaN):
+        if (!(w > 0.0f && h > 0.0f)) {
+            return null;
+        }
+
+        // device coordinates (float like path iterators):
+        float x0 = (float) (sx * x + tx);
+        float x1 = (float) (sx * (x + w) + tx);
+        float y0 = (float) (sy * y + ty);
+        float y1 = (float) (sy * (y + h) + ty);
+        if (x0 > x1) {
+            final float t = x0; x0 = x1; x1 = t;
+        }
+        if (y0 > y1) {
+            final float t = y0; y0 = y1; y1 = t;
+        }
+        if (!(x0 < x1 && y0 < y1)) {
+            return null;
+        }
+        sx = Math.abs(sx);
+        sy = Math.abs(sy);
+        rx *= sx;
+        ry *= sy;
+        if (rx <= 0.0d || ry <= 0.0d) {
+            // rectangle:
+            rx = 0.0d;
+            ry = 0.0d;
+        }
+
+        final PrimitiveRenderer r = rdrCtx.getPrimitiveRenderer();
+
+        if (stroke == null) {
+            r.init(rclip.x, rclip.y, rclip.width, rclip.height,
+                   !FORCE_NO_AA && antialiasedShape);
+            r.setOutline(x0, y0, x1, y1, rx, ry);
+            return r;
+        }
+        // centered uniform strokes without dash only:
+        if ((stroke.getType() != BasicStroke.TYPE_CENTERED) || stroke.isDashed()
+            || (sx != sy))
+        {
+            return null;
+        }
+        final double hw = 0.5d * stroke.getLineWidth() * sx;
+        if (!(hw > 0.0d)) {
+            return null;
+        }
+        // outer corner radius and inner offset:
+        final double orad;
+        double ioff = hw;
+        if (rx == 0.0d) {
+            // corner joins (90 degrees):
+            if (stroke.getLineJoin() == BasicStroke.JOIN_ROUND) {
+                orad = hw;
+            } else if ((stroke.getLineJoin() == BasicStroke.JOIN_MITER)
+                        && (stroke.getMiterLimit() >= 1.5f))
+            {
+                // miter length = sqrt(2) x half width:
+                orad = 0.0d;
+            } else {
+                return null;
+            }
+        } else if (rx == ry) {
+            // circular arcs: offset curves are circular arcs
+            orad = rx + hw;
+            if (rx < hw) {
+                if (!(shape instanceof Ellipse2D)) {
+                    // inverted corner arcs make loops:
+                    return null;
+                }
+                // circle: the inverted inner offset leaves a hole
+                // (radius = hw - r) like the Stroker:
+                ioff = 2.0d * rx - hw;
+            }
+        } else {
+            return null;
+        }
+        r.init(rclip.x, rclip.y, rclip.width, rclip.height,
+               !FORCE_NO_AA && antialiasedShape);
+        r.setOutline(x0 - hw, y0 - hw, x1 + hw, y1 + hw, orad, orad);
+
+        if ((x0 + ioff < x1 - ioff) && (y0 + ioff < y1 - ioff)) {
+            // inner corner radius:
+            final double irad = (rx != 0.0d) ? Math.abs(rx - hw) : 0.0d;
+            r.setHole(x0 + ioff, y0 + ioff, x1 - ioff, y1 - ioff, irad, irad);
+        }
+        return r;
+    }
+
+    /**
+     * Setup the primitive renderer for the stroke of lines and polylines
+     * made of axis-aligned segments (Line2D or Path2D) as the union of
+     * rectangles, or return null if not supported
+     */
+    private static PrimitiveRenderer setupStrokedLines(
+            final RendererContext rdrCtx,
+            final Shape shape,
+            final BasicStroke stroke,
+            final double sx, final double sy,
+            final double tx, final double ty,
+            final Rectangle rclip,
+            final boolean antialiasedShape)
+    {
+        final float[] coords;
+        final byte[] types;
+        final int numTypes;
+        if (shape instanceof Line2D) {
+            final Line2D l = (Line2D) shape;
+            coords = rdrCtx.float6;
+            coords[0] = l.x1;
+            coords[1] = l.y1;
+            coords[2] = l.x2;
+            coords[3] = l.y2;
+            types = LINE_TYPES;
+            numTypes = 2;
+        } else if (shape instanceof Path2D) {
+            final Path2D p2d = (Path2D) shape;
+            coords = p2d.getFloatCoordsNoClone();
+            types = p2d.getCommandsNoClone();
+            numTypes = p2d.getNumCommands();
+        } else {
+            return null;
+        }
+        // centered uniform strokes without dash only; round caps are left
+        // to the Stroker (the round rectangle outline is not exact):
+        if ((stroke.getType() != BasicStroke.TYPE_CENTERED) || stroke.isDashed()
+            || (stroke.getEndCap() == BasicStroke.CAP_ROUND)
+            || (Math.abs(sx) != Math.abs(sy)))
+        {
+            return null;
+        }
+        final double hw = 0.5d * stroke.getLineWidth() * Math.abs(sx);
+        if (!(hw > 0.0d)) {
+            return null;
+        }
+        final PrimitiveRenderer r = rdrCtx.getPrimitiveRenderer();
+        r.init(rclip.x, rclip.y, rclip.width, rclip.height,
+               !FORCE_NO_AA && antialiasedShape);
+
+        // right angle joins: miter length = sqrt(2) x half width
+        final boolean miterJoin = (stroke.getLineJoin() == BasicStroke.JOIN_MITER)
+                                  && (stroke.getMiterLimit() >= 1.5f);
+
+        if (!r.addStrokedPolylines(coords, types, numTypes, sx, sy, tx, ty, hw,
+                (stroke.getEndCap() == BasicStroke.CAP_SQUARE) ? hw : 0.0d,
+                miterJoin))
+        {
+            r.dispose();
+            return null;
+        }
+        return r;
+    }
+
+    /**
+     * Variant of setupRenderer() for filled append-only paths (canvas paths
+     * growing between frames): if one of the given states matches the path
+     * prefix, the renderer edges are restored and only the appended segments
+     * are processed. The matching (or a recycled) state is updated with the
+     * processed path.
+     * Note: the path clipper and simplifier are not used as their state
+     * spans segments (edges are clipped by the renderer anyway).
+     */
+    public static MarlinRenderer setupRendererIncremental(
+            final RendererContext rdrCtx,
+            final Path2D p2d,
+            final BaseTransform xform,
+            final Rectangle rclip,
+            final boolean antialiasedShape,
+            final IncrementalPath.States states)
+    {
+        // Test if transform is identity:
+        final BaseTransform tf = ((xform != null) && !xform.isIdentity()) ? xform : null;
+
+        final MarlinEdgeRenderer r =  (!FORCE_NO_AA && antialiasedShape) ?
+                rdrCtx.getRendererAA() : rdrCtx.getRendererNoAA();
+
+        final int oprule = (p2d.getWindingRule() == PathIterator.WIND_EVEN_ODD) ?
+            MarlinConst.WIND_EVEN_ODD : MarlinConst.WIND_NON_ZERO;
+
+        r.init(rclip.x, rclip.y, rclip.width, rclip.height, oprule);
+
+        int fromSeg = 0;
+        int coff = 0;
+        boolean subpathStarted = false;
+
+        IncrementalPath state = states.find(p2d, tf, rclip, oprule, r);
+        if (state != null) {
+            r.restoreState(state);
+            fromSeg = state.getNumCommands();
+            coff = state.getNumCoords();
+            subpathStarted = state.isSubpathStarted();
+        } else {
+            state = states.recycle();
+        }
+        state.invalidate();
+
+        // mark context as DIRTY:
+        rdrCtx.dirty = true;
+
+        subpathStarted = feedSegments(rdrCtx, p2d, tf, r, fromSeg, coff,
+                                      subpathStarted);
+
+        // save the renderer state before closing the path:
+        r.saveState(state);
+        state.update(p2d, fromSeg, tf, rclip, oprule, r, subpathStarted);
+
+        r.pathDone();
+
+        // mark context as CLEAN:
+        rdrCtx.dirty = false;
+
+        return r;
+    }
+
+    /**
+     * Variant of setupRenderer() replaying the edges of the given compiled
+     * shape translated by the given pixel offsets (no path processing)
+     */
+    public static MarlinRenderer setupRenderer(
+            final RendererContext rdrCtx,
+            final CompiledShape cs,
+            final int dx, final int dy,
+            final Rectangle rclip)
+    {
+        final MarlinEdgeRenderer r = (cs.isAntialiased()) ?
+                rdrCtx.getRendererAA() : rdrCtx.getRendererNoAA();
+
+        r.init(rclip.x, rclip.y, rclip.width, rclip.height, cs.getWindingRule());
+
+        // mark context as DIRTY:
+        rdrCtx.dirty = true;
+
+        r.replayEdges(cs, dx, dy);
+
+        // mark context as CLEAN:
+        rdrCtx.dirty = false;
+
+        return r;
+    }
+
     public static void strokeTo(
             final RendererContext rdrCtx,
             final Shape shape,
@@ -469,18 +872,38 @@ public final class MarlinPrismUtils {
         // mark context as DIRTY:
         rdrCtx.dirty = true;
 
+        feedSegments(rdrCtx, p2d, xform, pc2d, 0, 0, false);
+
+        pc2d.pathDone();
+
+        // mark context as CLEAN:
+        rdrCtx.dirty = false;
+    }
+
+    /**
+     * Feeds the given consumer with path segments starting at the given
+     * segment / coordinate offsets (pathDone() is not called)
+     * @return true if a subpath is started
+     */
+    private static boolean feedSegments(final RendererContext rdrCtx,
+                                        final Path2D p2d,
+                                        final BaseTransform xform,
+                                        final PathConsumer2D pc2d,
+                                        final int fromSeg,
+                                        int coff,
+                                        boolean subpathStarted)
+    {
         final float[] coords = rdrCtx.float6;
 
         // ported from DuctusRenderingEngine.feedConsumer() but simplified:
         // - removed skip flag = !subpathStarted
         // - removed pathClosed (ie subpathStarted not set to false)
-        boolean subpathStarted = false;
 
         final float[] pCoords = p2d.getFloatCoordsNoClone();
         final byte[] pTypes = p2d.getCommandsNoClone();
         final int nsegs = p2d.getNumCommands();
 
-        for (int i = 0, coff = 0; i < nsegs; i++) {
+        for (int i = fromSeg; i < nsegs; i++) {
             switch (pTypes[i]) {
             case PathIterator.SEG_MOVETO:
                 if (xform == null) {
@@ -614,9 +1037,6 @@ public final class MarlinPrismUtils {
             default:
             }
         }
-        pc2d.pathDone();
-
-        // mark context as CLEAN:
-        rdrCtx.dirty = false;
+        return subpathStarted;
     }
 }
@@ -31,10 +31,19 @@ import com.sun.javafx.geom.Rectangle;
 import com.sun.javafx.geom.Shape;
 import com.sun.javafx.geom.transform.BaseTransform;
 import com.sun.javafx.sg.prism.NGCanvasPath;
+import com.sun.marlin.CompiledShape;
+import com.sun.marlin.DirectMarlinAlphaConsumer;
+import com.sun.marlin.IncrementalPath;
+import com.sun.marlin.MarlinConst;
+import com.sun.marlin.MarlinEdgeRenderer;
 import com.sun.marlin.MarlinRenderer;
 import com.sun.marlin.MarlinRenderingEngine;
 import com.sun.marlin.MaskMarlinAlphaConsumer;
+import com.sun.marlin.PrimitiveRenderer;
 import com.sun.marlin.RendererContext;
+import com.sun.marlin.RLEMarlinAlphaConsumer;
+import com.sun.marlin.TileMarlinAlphaConsumer;
+import com.sun.marlin.TileMarlinAlphaConsumer.TileHandler;
 import com.sun.prism.BasicStroke;
 import com.sun.prism.impl.PrismSettings;
 
@@ -51,47 +60,443 @@ public final class MarlinRasterizer implements ShapeRasterizer {
                                 BaseTransform xform,
                                 boolean close, boolean antialiasedShape)
     {
-        if (stroke != null && stroke.getType() != BasicStroke.TYPE_CENTERED) {
-            // RT-27427
-            // TODO: Optimize the combinatorial strokes for simple
-            // shapes and/or teach the rasterizer to be able to
-            // do a "differential fill" between two shapes.
-            // Note that most simple shapes will use a more optimized path
-            // than this method for the INNER/OUTER strokes anyway.
+        if (needsStrokedShape(stroke, xformBounds)) {
             shape = stroke.createStrokedShape(shape);
             stroke = null;
         }
-        if (xformBounds == null) {
-            if (stroke != null) {
-                // Note that all places that pass null for xformbounds also
-                // pass null for stroke so that the following is not typically
-                // executed, but just here as a safety net.
-                shape = stroke.createStrokedShape(shape);
-                stroke = null;
+        xformBounds = getDeviceBounds(shape, xform, xformBounds, new RectBounds());
+        if (xformBounds.isEmpty()) {
+            return EMPTY_MASK;
+        }
+
+        final RendererContext rdrCtx = MarlinRenderingEngine.getRendererContext();
+        MarlinRenderer renderer = null;
+        // time stages for slow rasterization events:
+        rdrCtx.timer.start();
+        try {
+            if (MarlinConst.USE_PRIMITIVES) {
+                final PrimitiveRenderer prim = setupPrimitiveRenderer(rdrCtx,
+                        shape, stroke, xformBounds, xform, antialiasedShape);
+                if (prim != null) {
+                    rdrCtx.timer.startSweep();
+                    final MaskData mask = getMaskData(rdrCtx, prim);
+                    rdrCtx.timer.endSweep();
+                    if (mask == null) {
+                        return EMPTY_MASK;
+                    }
+                    rdrCtx.timer.end(prim, mask.getWidth(), mask.getHeight(),
+                                     antialiasedShape, stroke, false);
+                    return mask;
+                }
             }
+            renderer = setupRenderer(rdrCtx, shape, stroke, xformBounds, xform,
+                                     antialiasedShape);
 
-            xformBounds = new RectBounds();
-            //TODO: Need to verify that this is a safe cast ... (RT-27427)
-            xformBounds = (RectBounds) xform.transform(shape.getBounds(), xformBounds);
+            final int outpix_xmin = renderer.getOutpixMinX();
+            final int outpix_xmax = renderer.getOutpixMaxX();
+            final int outpix_ymin = renderer.getOutpixMinY();
+            final int outpix_ymax = renderer.getOutpixMaxY();
+            final int w = outpix_xmax - outpix_xmin;
+            final int h = outpix_ymax - outpix_ymin;
+            if ((w <= 0) || (h <= 0)) {
+                return EMPTY_MASK;
+            }
+
+            final MaskMarlinAlphaConsumer consumer = getMaskConsumer(rdrCtx, w, h);
+            consumer.setBoundsNoClone(outpix_xmin, outpix_ymin, w, h);
+            rdrCtx.timer.startSweep();
+            renderer.produceAlphas(consumer);
+            rdrCtx.timer.endSweep();
+
+            rdrCtx.timer.end(renderer, w, h, antialiasedShape, stroke,
+                             rdrCtx.doClip);
+
+            return consumer.getMaskData();
+        } finally {
+            // stop timing on early returns and failures:
+            rdrCtx.timer.cancel();
+            if (renderer != null) {
+                renderer.dispose();
+            }
+            // recycle the RendererContext instance
+            MarlinRenderingEngine.returnRendererContext(rdrCtx);
         }
-        if (xformBounds.isEmpty()) {
-            return EMPTY_MASK;
+    }
+
+    /**
+     * Rasterizes the given shape and streams its coverage to the given
+     * handler as tiles (TileMarlinAlphaConsumer.TILE_SIZE) instead of
+     * producing a single mask (see getMaskData)
+     */
+    public void produceTiles(Shape shape,
+                             BasicStroke stroke,
+                             RectBounds xformBounds,
+                             BaseTransform xform,
+                             boolean antialiasedShape,
+                             TileHandler handler)
+    {
+        final RendererContext rdrCtx = MarlinRenderingEngine.getRendererContext();
+        MarlinRenderer renderer = null;
+        TileMarlinAlphaConsumer consumer = null;
+        // time stages for slow rasterization events:
+        rdrCtx.timer.start();
+        try {
+            renderer = setupOutputRenderer(rdrCtx, shape, stroke, xformBounds,
+                                           xform, antialiasedShape);
+            if (renderer == null) {
+                return;
+            }
+            final int outpix_xmin = renderer.getOutpixMinX();
+            final int outpix_ymin = renderer.getOutpixMinY();
+            final int w = renderer.getOutpixMaxX() - outpix_xmin;
+            final int h = renderer.getOutpixMaxY() - outpix_ymin;
+
+            consumer = rdrCtx.tileConsumer;
+            if (consumer == null || w > consumer.getMaxWidth()) {
+                // strip width aligned to 128 pixels:
+                final int cwidth = (w + 0x7f) & (~0x7f);
+                rdrCtx.tileConsumer = consumer = new TileMarlinAlphaConsumer(cwidth);
+                if (PrismSettings.verbose) {
+                    System.out.println("new tile strip with width = " + cwidth);
+                }
+            }
+            consumer.init(outpix_xmin, outpix_ymin, w, h, handler);
+            // the sweep time includes the tile handler:
+            rdrCtx.timer.startSweep();
+            renderer.produceAlphas(consumer);
+            rdrCtx.timer.endSweep();
+
+            rdrCtx.timer.end(renderer, w, h, antialiasedShape, stroke,
+                             rdrCtx.doClip);
+        } finally {
+            // stop timing on early returns and failures:
+            rdrCtx.timer.cancel();
+            if (consumer != null) {
+                consumer.dispose();
+            }
+            if (renderer != null) {
+                renderer.dispose();
+            }
+            // recycle the RendererContext instance
+            MarlinRenderingEngine.returnRendererContext(rdrCtx);
         }
+    }
 
+    /**
+     * Rasterizes the given shape into a sparse run-length encoded mask
+     * (transparent spans omitted, full coverage spans as explicit runs)
+     * instead of a dense mask (see getMaskData).
+     * The returned instance is owned by the renderer context and is only
+     * valid until the next rasterization.
+     * @return RLE mask or null if empty
+     */
+    public RLEMarlinAlphaConsumer getRLEMaskData(Shape shape,
+                                                 BasicStroke stroke,
+                                                 RectBounds xformBounds,
+                                                 BaseTransform xform,
+                                                 boolean antialiasedShape)
+    {
         final RendererContext rdrCtx = MarlinRenderingEngine.getRendererContext();
         MarlinRenderer renderer = null;
+        // time stages for slow rasterization events:
+        rdrCtx.timer.start();
+        try {
+            renderer = setupOutputRenderer(rdrCtx, shape, stroke, xformBounds,
+                                           xform, antialiasedShape);
+            if (renderer == null) {
+                return null;
+            }
+            final int outpix_xmin = renderer.getOutpixMinX();
+            final int outpix_ymin = renderer.getOutpixMinY();
+            final int w = renderer.getOutpixMaxX() - outpix_xmin;
+            final int h = renderer.getOutpixMaxY() - outpix_ymin;
+
+            RLEMarlinAlphaConsumer consumer = rdrCtx.rleConsumer;
+            if (consumer == null) {
+                rdrCtx.rleConsumer = consumer = new RLEMarlinAlphaConsumer();
+            }
+            consumer.setBoundsNoClone(outpix_xmin, outpix_ymin, w, h);
+            // block flags are enabled by the renderer for large spans (useRLE)
+            rdrCtx.timer.startSweep();
+            renderer.produceAlphas(consumer);
+            rdrCtx.timer.endSweep();
+
+            rdrCtx.timer.end(renderer, w, h, antialiasedShape, stroke,
+                             rdrCtx.doClip);
+
+            return consumer;
+        } finally {
+            // stop timing on early returns and failures:
+            rdrCtx.timer.cancel();
+            if (renderer != null) {
+                renderer.dispose();
+            }
+            // recycle the RendererContext instance
+            MarlinRenderingEngine.returnRendererContext(rdrCtx);
+        }
+    }
+
+    /**
+     * Rasterizes the given shape directly into the destination region of
+     * the given consumer (direct buffer or native memory with its own stride)
+     * to avoid copying the mask before uploading it (see getMaskData).
+     * The written mask bounds are given by the consumer origin and size.
+     * @return true if the mask is not empty
+     */
+    public boolean produceMask(Shape shape,
+                               BasicStroke stroke,
+                               RectBounds xformBounds,
+                               BaseTransform xform,
+                               boolean antialiasedShape,
+                               DirectMarlinAlphaConsumer consumer)
+    {
+        if (!consumer.hasRegion()) {
+            throw new IllegalStateException("Undefined destination region");
+        }
+        if (needsStrokedShape(stroke, xformBounds)) {
+            shape = stroke.createStrokedShape(shape);
+            stroke = null;
+        }
+        // copy the given bounds as they are clipped below:
+        xformBounds = (xformBounds != null) ? new RectBounds(xformBounds)
+                      : getDeviceBounds(shape, xform, null, new RectBounds());
+
+        // clip to the destination region:
+        final int dstX = consumer.getRegionX();
+        final int dstY = consumer.getRegionY();
+        xformBounds.intersectWith(dstX, dstY,
+                                  dstX + consumer.getRegionWidth(),
+                                  dstY + consumer.getRegionHeight());
+        final RendererContext rdrCtx = MarlinRenderingEngine.getRendererContext();
+        MarlinRenderer renderer = null;
+        // time stages for slow rasterization events:
+        rdrCtx.timer.start();
+        try {
+            renderer = setupOutputRenderer(rdrCtx, shape, stroke, xformBounds,
+                                           xform, antialiasedShape);
+            if (renderer == null) {
+                return false;
+            }
+            final int outpix_xmin = renderer.getOutpixMinX();
+            final int outpix_ymin = renderer.getOutpixMinY();
+            final int w = renderer.getOutpixMaxX() - outpix_xmin;
+            final int h = renderer.getOutpixMaxY() - outpix_ymin;
+
+            consumer.setBoundsNoClone(outpix_xmin, outpix_ymin, w, h);
+            rdrCtx.timer.startSweep();
+            renderer.produceAlphas(consumer);
+            rdrCtx.timer.endSweep();
+
+            rdrCtx.timer.end(renderer, w, h, antialiasedShape, stroke,
+                             rdrCtx.doClip);
+
+            return true;
+        } finally {
+            // stop timing on early returns and failures:
+            rdrCtx.timer.cancel();
+            if (renderer != null) {
+                renderer.dispose();
+            }
+            // recycle the RendererContext instance
+            MarlinRenderingEngine.returnRendererContext(rdrCtx);
+        }
+    }
+
+    /**
+     * Rasterizes the given shapes in one call and packs their masks into the
+     * given atlas (reset first): the renderer context is acquired once for
+     * the batch and all masks remain available together (single upload),
+     * unlike getMaskData whose mask is only valid until the next call.
+     * @param shapes shapes to rasterize
+     * @param strokes stroke per shape (null array or element means fill)
+     * @param xforms transform per shape (null array or element means identity)
+     * @param numShapes number of shapes
+     * @param xformBounds device clip shared by all shapes (null means the
+     * transformed shape bounds)
+     * @param atlas destination atlas
+     * @return atlas with one entry per shape (empty masks included)
+     */
+    public MaskAtlas getMaskAtlas(final Shape[] shapes,
+                                  final BasicStroke[] strokes,
+                                  final BaseTransform[] xforms,
+                                  final int numShapes,
+                                  final RectBounds xformBounds,
+                                  final boolean antialiasedShape,
+                                  final MaskAtlas atlas)
+    {
+        atlas.reset();
+
+        final RectBounds bounds = new RectBounds();
+
+        final RendererContext rdrCtx = MarlinRenderingEngine.getRendererContext();
+        MarlinRenderer renderer = null;
+        try {
+            for (int i = 0; i < numShapes; i++) {
+                Shape shape = shapes[i];
+                BasicStroke stroke = (strokes != null) ? strokes[i] : null;
+                final BaseTransform xform = (xforms != null && xforms[i] != null)
+                                            ? xforms[i] : BaseTransform.IDENTITY_TRANSFORM;
+
+                if (needsStrokedShape(stroke, xformBounds)) {
+                    shape = stroke.createStrokedShape(shape);
+                    stroke = null;
+                }
+                final RectBounds shapeBounds = getDeviceBounds(shape, xform,
+                                                               xformBounds, bounds);
+
+                if (shapeBounds.isEmpty()) {
+                    atlas.addEmpty();
+                    continue;
+                }
+                // time stages per shape for slow rasterization events:
+                rdrCtx.timer.start();
+
+                if (MarlinConst.USE_PRIMITIVES) {
+                    final PrimitiveRenderer prim = setupPrimitiveRenderer(rdrCtx,
+                            shape, stroke, shapeBounds, xform, antialiasedShape);
+                    if (prim != null) {
+                        rdrCtx.timer.startSweep();
+                        final MaskData mask = getMaskData(rdrCtx, prim);
+                        rdrCtx.timer.endSweep();
+                        if (mask != null) {
+                            rdrCtx.timer.end(prim, mask.getWidth(), mask.getHeight(),
+                                             antialiasedShape, stroke, false);
+                            atlas.add(mask);
+                        } else {
+                            rdrCtx.timer.cancel();
+                            atlas.addEmpty();
+                        }
+                        continue;
+                    }
+                }
+                renderer = setupRenderer(rdrCtx, shape, stroke, shapeBounds, xform,
+                                         antialiasedShape);
+
+                final int outpix_xmin = renderer.getOutpixMinX();
+                final int outpix_ymin = renderer.getOutpixMinY();
+                final int w = renderer.getOutpixMaxX() - outpix_xmin;
+                final int h = renderer.getOutpixMaxY() - outpix_ymin;
+                if ((w <= 0) || (h <= 0)) {
+                    rdrCtx.timer.cancel();
+                    atlas.addEmpty();
+                } else {
+                    final MaskMarlinAlphaConsumer consumer = getMaskConsumer(rdrCtx, w, h);
+                    consumer.setBoundsNoClone(outpix_xmin, outpix_ymin, w, h);
+                    rdrCtx.timer.startSweep();
+                    renderer.produceAlphas(consumer);
+                    rdrCtx.timer.endSweep();
+
+                    rdrCtx.timer.end(renderer, w, h, antialiasedShape, stroke,
+                                     rdrCtx.doClip);
+
+                    // copy the mask: cheaper than byte stores in place
+                    atlas.add(consumer.getMaskData());
+                }
+                renderer.dispose();
+                renderer = null;
+            }
+            return atlas;
+        } finally {
+            // stop timing on early returns and failures:
+            rdrCtx.timer.cancel();
+            if (renderer != null) {
+                renderer.dispose();
+            }
+            // recycle the RendererContext instance
+            MarlinRenderingEngine.returnRendererContext(rdrCtx);
+        }
+    }
+
+    /**
+     * Compiles the given shape (stroked if needed) under the given transform
+     * into an immutable edge list to rasterize it again later (see
+     * getMaskData(CompiledShape, ...)) without path iteration, curve
+     * subdivision nor stroking: useful for static vector assets drawn
+     * repeatedly with the same transform, possibly at integer offsets.
+     * @return compiled shape (off-heap memory freed once unreachable)
+     */
+    public CompiledShape compile(Shape shape,
+                                 BasicStroke stroke,
+                                 BaseTransform xform,
+                                 boolean antialiasedShape)
+    {
+        if (shape instanceof NGCanvasPath) {
+            final NGCanvasPath path = (NGCanvasPath)shape;
+            shape = path.getGeometry(); // use internal Path2D
+            // adjust xform:
+            xform = path.getCombinedTransform(xform);
+        }
+        if ((stroke != null) && (stroke.getType() != BasicStroke.TYPE_CENTERED)) {
+            // see needsStrokedShape()
+            shape = stroke.createStrokedShape(shape);
+            stroke = null;
+        }
+        // compile the whole shape: device bounds + 1 pixel margin
+        final float[] bbox = new float[] {
+            Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY,
+            Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY
+        };
+        if (stroke != null) {
+            stroke.accumulateShapeBounds(bbox, shape, xform);
+            // zero-length subpaths are drawn as caps but ignored above:
+            // add the path points padded by the largest cap extent
+            accumulatePadded(bbox, shape.getBounds(),
+                             0.75f * stroke.getLineWidth(), xform);
+        } else {
+            Shape.accumulate(bbox, shape, xform);
+        }
+        final RectBounds xformBounds = (bbox[0] <= bbox[2] && bbox[1] <= bbox[3])
+            ? new RectBounds(bbox[0] - 1f, bbox[1] - 1f, bbox[2] + 1f, bbox[3] + 1f)
+            : new RectBounds();
+
+        final RendererContext rdrCtx = MarlinRenderingEngine.getRendererContext();
+        MarlinEdgeRenderer renderer = null;
         try {
             final Rectangle rclip = rdrCtx.clip;
             rclip.setBounds(xformBounds);
 
-            if (shape instanceof NGCanvasPath) {
-                final NGCanvasPath path = (NGCanvasPath)shape;
-                shape = path.getGeometry(); // use internal Path2D
-                // adjust xform:
-                xform = path.getCombinedTransform(xform);
+            renderer = MarlinPrismUtils.setupRenderer(rdrCtx, shape, stroke,
+                    xform, rclip, antialiasedShape);
+
+            final CompiledShape cs = new CompiledShape();
+            renderer.compileEdges(cs);
+            return cs;
+        } finally {
+            if (renderer != null) {
+                renderer.dispose();
             }
-            renderer = MarlinPrismUtils.setupRenderer(rdrCtx, shape, stroke, xform, rclip,
-                    antialiasedShape);
+            // recycle the RendererContext instance
+            MarlinRenderingEngine.returnRendererContext(rdrCtx);
+        }
+    }
+
+    /**
+     * Rasterizes the given compiled shape (see compile) translated by the
+     * given pixel offsets, clipped to the given device bounds (null means
+     * the translated shape bounds).
+     * @throws IllegalArgumentException if the shape was compiled by the
+     * double-precision rasterizer
+     */
+    public MaskData getMaskData(CompiledShape cs, int dx, int dy,
+                                RectBounds xformBounds)
+    {
+        if (xformBounds == null) {
+            xformBounds = new RectBounds(cs.getMinX() + dx, cs.getMinY() + dy,
+                                         cs.getMaxX() + dx, cs.getMaxY() + dy);
+        }
+        if (cs.isEmpty() || xformBounds.isEmpty()) {
+            return EMPTY_MASK;
+        }
+
+        final RendererContext rdrCtx = MarlinRenderingEngine.getRendererContext();
+        MarlinRenderer renderer = null;
+        // time stages for slow rasterization events:
+        rdrCtx.timer.start();
+        try {
+            final Rectangle rclip = rdrCtx.clip;
+            rclip.setBounds(xformBounds);
+
+            renderer = MarlinPrismUtils.setupRenderer(rdrCtx, cs, dx, dy, rclip);
 
             final int outpix_xmin = renderer.getOutpixMinX();
             final int outpix_xmax = renderer.getOutpixMaxX();
@@ -103,19 +508,18 @@ public final class MarlinRasterizer implements ShapeRasterizer {
                 return EMPTY_MASK;
             }
 
-            MaskMarlinAlphaConsumer consumer = rdrCtx.consumer;
-            if (consumer == null || (w * h) > consumer.getAlphaLength()) {
-                final int csize = (w * h + 0xfff) & (~0xfff);
-                rdrCtx.consumer = consumer = new MaskMarlinAlphaConsumer(csize);
-                if (PrismSettings.verbose) {
-                    System.out.println("new alphas with length = " + csize);
-                }
-            }
+            final MaskMarlinAlphaConsumer consumer = getMaskConsumer(rdrCtx, w, h);
             consumer.setBoundsNoClone(outpix_xmin, outpix_ymin, w, h);
+            rdrCtx.timer.startSweep();
             renderer.produceAlphas(consumer);
+            rdrCtx.timer.endSweep();
+
+            rdrCtx.timer.end(renderer, w, h, cs.isAntialiased(), null, false);
 
             return consumer.getMaskData();
         } finally {
+            // stop timing on early returns and failures:
+            rdrCtx.timer.cancel();
             if (renderer != null) {
                 renderer.dispose();
             }
@@ -124,6 +528,195 @@ public final class MarlinRasterizer implements ShapeRasterizer {
         }
     }
 
+    /**
+     * Accumulates the transformed corners of the given bounds padded by the
+     * given margin into the given bbox [minX, minY, maxX, maxY]
+     */
+    private static void accumulatePadded(final float[] bbox,
+                                         final RectBounds bounds,
+                                         final float pad,
+                                         final BaseTransform xform)
+    {
+        final float x0 = bounds.getMinX() - pad;
+        final float y0 = bounds.getMinY() - pad;
+        final float x1 = bounds.getMaxX() + pad;
+        final float y1 = bounds.getMaxY() + pad;
+        final float[] pts = new float[] {x0, y0, x1, y0, x0, y1, x1, y1};
+        if (xform != null) {
+            xform.transform(pts, 0, pts, 0, 4);
+        }
+        for (int i = 0; i < 8; i += 2) {
+            bbox[0] = Math.min(bbox[0], pts[i]);
+            bbox[1] = Math.min(bbox[1], pts[i + 1]);
+            bbox[2] = Math.max(bbox[2], pts[i]);
+            bbox[3] = Math.max(bbox[3], pts[i + 1]);
+        }
+    }
+
+    /**
+     * Returns true if the given stroke must be applied as a filled stroked
+     * shape: the renderer only strokes centered strokes and needs the device
+     * bounds to clip them.
+     */
+    private static boolean needsStrokedShape(final BasicStroke stroke,
+                                             final RectBounds xformBounds)
+    {
+        // RT-27427
+        // TODO: Optimize the combinatorial strokes for simple
+        // shapes and/or teach the rasterizer to be able to
+        // do a "differential fill" between two shapes.
+        // Note that most simple shapes will use a more optimized path
+        // than this method for the INNER/OUTER strokes anyway.
+        // Note that all places that pass null for xformbounds also
+        // pass null for stroke so that the null bounds case is not typically
+        // encountered, but just here as a safety net.
+        return (stroke != null)
+            && (stroke.getType() != BasicStroke.TYPE_CENTERED || xformBounds == null);
+    }
+
+    /**
+     * Returns the given device bounds or the transformed shape bounds
+     * (stored in the given result) if null
+     */
+    private static RectBounds getDeviceBounds(final Shape shape,
+                                              final BaseTransform xform,
+                                              final RectBounds xformBounds,
+                                              final RectBounds result)
+    {
+        if (xformBounds != null) {
+            return xformBounds;
+        }
+        //TODO: Need to verify that this is a safe cast ... (RT-27427)
+        return (RectBounds) xform.transform(shape.getBounds(), result);
+    }
+
+    /**
+     * Common preamble of the output modes (tiles, RLE, direct): applies the
+     * stroke if needed (see needsStrokedShape), resolves the device bounds
+     * and sets up the renderer.
+     * @return renderer or null if the output bounds are empty
+     */
+    private static MarlinRenderer setupOutputRenderer(final RendererContext rdrCtx,
+                                                      Shape shape,
+                                                      BasicStroke stroke,
+                                                      RectBounds xformBounds,
+                                                      final BaseTransform xform,
+                                                      final boolean antialiasedShape)
+    {
+        if (needsStrokedShape(stroke, xformBounds)) {
+            shape = stroke.createStrokedShape(shape);
+            stroke = null;
+        }
+        xformBounds = getDeviceBounds(shape, xform, xformBounds, new RectBounds());
+        if (xformBounds.isEmpty()) {
+            return null;
+        }
+        final MarlinRenderer renderer = setupRenderer(rdrCtx, shape, stroke,
+                xformBounds, xform, antialiasedShape);
+
+        if ((renderer.getOutpixMaxX() <= renderer.getOutpixMinX())
+            || (renderer.getOutpixMaxY() <= renderer.getOutpixMinY()))
+        {
+            renderer.dispose();
+            return null;
+        }
+        return renderer;
+    }
+
+    private static MarlinRenderer setupRenderer(final RendererContext rdrCtx,
+                                                Shape shape,
+                                                final BasicStroke stroke,
+                                                final RectBounds xformBounds,
+                                                BaseTransform xform,
+                                                final boolean antialiasedShape)
+    {
+        final Rectangle rclip = rdrCtx.clip;
+        rclip.setBounds(xformBounds);
+
+        if (shape instanceof NGCanvasPath) {
+            final NGCanvasPath path = (NGCanvasPath)shape;
+            shape = path.getGeometry(); // use internal Path2D
+            // adjust xform:
+            xform = path.getCombinedTransform(xform);
+
+            if (MarlinConst.USE_INCREMENTAL_PATH && (stroke == null)) {
+                // canvas paths are rebuilt for every frame but often
+                // only grow: reuse edges of the previous path prefix
+                Object state = path.getRasterizerState();
+                if (!(state instanceof IncrementalPath.States)) {
+                    state = new IncrementalPath.States();
+                    path.setRasterizerState(state);
+                }
+                return MarlinPrismUtils.setupRendererIncremental(rdrCtx,
+                        (Path2D) shape, xform, rclip, antialiasedShape,
+                        (IncrementalPath.States) state);
+            }
+        }
+        if (MarlinConst.USE_HAIRLINES && (stroke != null) && antialiasedShape) {
+            // thin strokes are rasterized from their center line:
+            final MarlinRenderer r = MarlinPrismUtils.setupHairlineRenderer(rdrCtx,
+                    shape, stroke, xform, rclip);
+            if (r != null) {
+                return r;
+            }
+        }
+        return MarlinPrismUtils.setupRenderer(rdrCtx, shape, stroke, xform, rclip,
+                antialiasedShape);
+    }
+
+    private static MaskMarlinAlphaConsumer getMaskConsumer(final RendererContext rdrCtx,
+                                                           final int w, final int h)
+    {
+        MaskMarlinAlphaConsumer consumer = rdrCtx.consumer;
+        if (consumer == null || (w * h) > consumer.getAlphaLength()) {
+            final int csize = (w * h + 0xfff) & (~0xfff);
+            rdrCtx.consumer = consumer = new MaskMarlinAlphaConsumer(csize);
+            if (PrismSettings.verbose) {
+                System.out.println("new alphas with length = " + csize);
+            }
+        }
+        return consumer;
+    }
+
+    private static PrimitiveRenderer setupPrimitiveRenderer(final RendererContext rdrCtx,
+                                                            final Shape shape,
+                                                            final BasicStroke stroke,
+                                                            final RectBounds xformBounds,
+                                                            final BaseTransform xform,
+                                                            final boolean antialiasedShape)
+    {
+        final Rectangle rclip = rdrCtx.clip;
+        rclip.setBounds(xformBounds);
+
+        return MarlinPrismUtils.setupPrimitiveRenderer(rdrCtx, shape, stroke, xform,
+                rclip, antialiasedShape);
+    }
+
+    /**
+     * Produces the mask of the given primitive renderer (disposed)
+     * @return mask or null if empty
+     */
+    private static MaskData getMaskData(final RendererContext rdrCtx,
+                                        final PrimitiveRenderer prim)
+    {
+        try {
+            final int outpix_xmin = prim.getOutpixMinX();
+            final int outpix_ymin = prim.getOutpixMinY();
+            final int w = prim.getOutpixMaxX() - outpix_xmin;
+            final int h = prim.getOutpixMaxY() - outpix_ymin;
+            if ((w <= 0) || (h <= 0)) {
+                return null;
+            }
+            final MaskMarlinAlphaConsumer consumer = getMaskConsumer(rdrCtx, w, h);
+            consumer.setBoundsNoClone(outpix_xmin, outpix_ymin, w, h);
+            prim.produceAlphas(consumer);
+
+            return consumer.getMaskData();
+        } finally {
+            prim.dispose();
+        }
+    }
+
     static Shape createCenteredStrokedShape(Shape s, BasicStroke stroke)
     {
         final float lw = (stroke.getType() == BasicStroke.TYPE_CENTERED) ?
@@ -0,0 +1,257 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package com.sun.prism.impl.shape;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Mask atlas filled by batch rasterization (see
+ * MarlinRasterizer.getMaskAtlas): all masks are packed row by row (shelves)
+ * into a single byte buffer with a fixed stride, so they can be uploaded at
+ * once, and each mask is described by its rectangle in the atlas and its
+ * origin in device space.
+ *
+ * Only bytes inside mask rectangles are defined (gaps are not cleared).
+ * The atlas is not thread-safe but it can be reused across batches to
+ * avoid any allocation.
+ */
+public final class MaskAtlas {
+
+    // per-mask entry: atlas x, atlas y, width, height, origin x, origin y
+    private static final int ENTRY_X = 0;
+    private static final int ENTRY_Y = 1;
+    private static final int ENTRY_W = 2;
+    private static final int ENTRY_H = 3;
+    private static final int ENTRY_OX = 4;
+    private static final int ENTRY_OY = 5;
+    private static final int ENTRY_SIZE = 6;
+
+    // atlas storage (stride x capacity rows):
+    private byte[] data;
+    private ByteBuffer buffer;
+    private int stride;
+
+    // entries:
+    private int[] entries;
+    private int numMasks;
+
+    // shelf packing cursor:
+    private int shelfX, shelfY, shelfH;
+
+    /**
+     * Create an atlas with the given initial width (bytes per row); the
+     * atlas grows its height (and its width for wider masks) as needed
+     * @param width initial atlas width
+     * @param height initial atlas height
+     */
+    public MaskAtlas(final int width, final int height) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Invalid atlas size: "
+                + width + " x " + height);
+        }
+        this.stride = width;
+        this.data = new byte[width * height];
+        this.buffer = ByteBuffer.wrap(data);
+        this.entries = new int[16 * ENTRY_SIZE];
+    }
+
+    /**
+     * Remove all masks (storage is kept)
+     */
+    public void reset() {
+        numMasks = 0;
+        shelfX = 0;
+        shelfY = 0;
+        shelfH = 0;
+    }
+
+    /**
+     * @return atlas buffer (stride = getWidth(), valid rows = getHeight());
+     * the buffer instance changes if the atlas grows
+     */
+    public ByteBuffer getBuffer() {
+        return buffer;
+    }
+
+    /**
+     * @return atlas width (row stride)
+     */
+    public int getWidth() {
+        return stride;
+    }
+
+    /**
+     * @return used atlas height (rows)
+     */
+    public int getHeight() {
+        return shelfY + shelfH;
+    }
+
+    public int getNumMasks() {
+        return numMasks;
+    }
+
+    /**
+     * @return x of the given mask in the atlas
+     */
+    public int getX(final int i) {
+        return entry(i, ENTRY_X);
+    }
+
+    /**
+     * @return y of the given mask in the atlas
+     */
+    public int getY(final int i) {
+        return entry(i, ENTRY_Y);
+    }
+
+    /**
+     * @return width of the given mask (0 if empty)
+     */
+    public int getMaskWidth(final int i) {
+        return entry(i, ENTRY_W);
+    }
+
+    /**
+     * @return height of the given mask (0 if empty)
+     */
+    public int getMaskHeight(final int i) {
+        return entry(i, ENTRY_H);
+    }
+
+    /**
+     * @return x of the given mask origin in device space
+     */
+    public int getOriginX(final int i) {
+        return entry(i, ENTRY_OX);
+    }
+
+    /**
+     * @return y of the given mask origin in device space
+     */
+    public int getOriginY(final int i) {
+        return entry(i, ENTRY_OY);
+    }
+
+    /**
+     * @return true if the given mask is empty
+     */
+    public boolean isEmpty(final int i) {
+        return (entry(i, ENTRY_W) == 0);
+    }
+
+    private int entry(final int i, final int field) {
+        if (i < 0 || i >= numMasks) {
+            throw new IndexOutOfBoundsException("Invalid mask index: " + i);
+        }
+        return entries[i * ENTRY_SIZE + field];
+    }
+
+    /**
+     * Add an empty mask entry
+     */
+    void addEmpty() {
+        addEntry(0, 0, 0, 0, 0, 0);
+    }
+
+    /**
+     * Copy the given mask into a new rectangle of the atlas
+     */
+    void add(final MaskData mask) {
+        final int w = mask.getWidth();
+        final int h = mask.getHeight();
+        if (w <= 0 || h <= 0) {
+            addEmpty();
+            return;
+        }
+        if (w > stride) {
+            // widen the atlas: existing masks keep their position
+            resize(Math.max(w, stride + (stride >> 1)), getHeight() + h);
+        }
+        if (shelfX + w > stride) {
+            // start a new shelf:
+            shelfY += shelfH;
+            shelfX = 0;
+            shelfH = 0;
+        }
+        final int ax = shelfX;
+        final int ay = shelfY;
+        if ((long) (ay + h) * stride > data.length) {
+            resize(stride, Math.max(ay + h, 2 * (data.length / stride)));
+        }
+        shelfX += w;
+        shelfH = Math.max(shelfH, h);
+
+        addEntry(ax, ay, w, h, mask.getOriginX(), mask.getOriginY());
+
+        final ByteBuffer src = mask.getMaskBuffer();
+        final byte[] _data = data;
+        final int _stride = stride;
+        for (int y = 0, off = ay * _stride + ax; y < h; y++, off += _stride) {
+            src.position(y * w);
+            src.get(_data, off, w);
+        }
+        src.rewind();
+    }
+
+    private void addEntry(final int ax, final int ay, final int w, final int h,
+                          final int ox, final int oy)
+    {
+        int off = numMasks * ENTRY_SIZE;
+        if (off + ENTRY_SIZE > entries.length) {
+            entries = Arrays.copyOf(entries, 2 * entries.length);
+        }
+        final int[] _entries = entries;
+        _entries[off++] = ax;
+        _entries[off++] = ay;
+        _entries[off++] = w;
+        _entries[off++] = h;
+        _entries[off++] = ox;
+        _entries[off  ] = oy;
+        numMasks++;
+    }
+
+    private void resize(final int width, final int height) {
+        final long size = (long) width * height;
+        if (size > Integer.MAX_VALUE) {
+            throw new ArrayIndexOutOfBoundsException(
+                "Atlas exceeds maximum size: " + width + " x " + height);
+        }
+        final byte[] newData = new byte[(int) size];
+        final int rows = getHeight();
+        if (width == stride) {
+            System.arraycopy(data, 0, newData, 0, rows * stride);
+        } else {
+            for (int y = 0; y < rows; y++) {
+                System.arraycopy(data, y * stride, newData, y * width, stride);
+            }
+        }
+        data = newData;
+        buffer = ByteBuffer.wrap(newData);
+        stride = width;
+    }
+}
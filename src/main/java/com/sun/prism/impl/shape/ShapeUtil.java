@@ -67,6 +67,37 @@ public class ShapeUtil {
         return shapeRasterizer.getMaskData(shape, stroke, xformBounds, xform, close, antialiasedShape);
     }
 
+    /**
+     * Rasterizes the given shapes in one call into the given atlas (see
+     * MarlinRasterizer.getMaskAtlas); other rasterizers copy each mask.
+     */
+    public static MaskAtlas rasterizeShapes(Shape[] shapes,
+                                            BasicStroke[] strokes,
+                                            BaseTransform[] xforms,
+                                            int numShapes,
+                                            RectBounds xformBounds,
+                                            boolean antialiasedShape,
+                                            MaskAtlas atlas)
+    {
+        if (shapeRasterizer instanceof MarlinRasterizer) {
+            return ((MarlinRasterizer) shapeRasterizer).getMaskAtlas(shapes,
+                    strokes, xforms, numShapes, xformBounds, antialiasedShape, atlas);
+        }
+        if (shapeRasterizer instanceof DMarlinRasterizer) {
+            return ((DMarlinRasterizer) shapeRasterizer).getMaskAtlas(shapes,
+                    strokes, xforms, numShapes, xformBounds, antialiasedShape, atlas);
+        }
+        atlas.reset();
+        for (int i = 0; i < numShapes; i++) {
+            final BaseTransform xform = (xforms != null && xforms[i] != null)
+                                        ? xforms[i] : BaseTransform.IDENTITY_TRANSFORM;
+            atlas.add(shapeRasterizer.getMaskData(shapes[i],
+                    (strokes != null) ? strokes[i] : null,
+                    xformBounds, xform, true, antialiasedShape));
+        }
+        return atlas;
+    }
+
     public static Shape createCenteredStrokedShape(Shape s, BasicStroke stroke)
     {
         if (MARLIN_ENABLED) {
@@ -38,8 +38,8 @@ import java.lang.ref.WeakReference;
  * instance that must later be returned for reuse by a call to release(ctx)
  * (typically in a try/finally block).
  *
- * It has a couple of abstract implementations which store references in a queue
- * and/or thread-local storage.
+ * It has a few abstract implementations which store references in a queue,
+ * thread-local storage or a bounded striped pool.
  * The Providers can be configured to hold ReentrantContext instances in memory
  * using hard, soft or weak references.
  *
@@ -88,6 +88,10 @@ public abstract class ReentrantContextProvider<K extends ReentrantContext>
     static final byte USAGE_TL_IN_USE = 1;
     // CLQ storage
     static final byte USAGE_CLQ = 2;
+    // striped pool storage (counted in use)
+    static final byte USAGE_POOL = 3;
+    // striped pool storage: overflow (not counted in use)
+    static final byte USAGE_POOL_OVERFLOW = 4;
 
     // hard reference
     public static final int REF_HARD = 0;
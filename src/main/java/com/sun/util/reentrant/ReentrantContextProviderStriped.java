@@ -0,0 +1,256 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package com.sun.util.reentrant;
+
+import java.lang.ref.Reference;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This ReentrantContextProvider implementation uses a bounded pool of
+ * ReentrantContext instances split in slots (striped to limit contention)
+ * that never attaches contexts to threads: it suits many short-lived
+ * threads (like virtual threads) sharing few carrier threads as the number
+ * of contexts depends on the pool capacity (typically the carrier count)
+ * instead of the number of threads.
+ *
+ * At most capacity contexts are in use at the same time: acquire() waits
+ * for a context to be released up to the given maximum wait time, then
+ * gives a new context that will not be retained (overflow) to support
+ * reentrancy (nested acquire() calls) and avoid deadlocks.
+ *
+ * Note: acquire wait times are measured (see getWaitTime()).
+ *
+ * @param <K> ReentrantContext subclass
+ */
+public abstract class ReentrantContextProviderStriped<K extends ReentrantContext>
+    extends ReentrantContextProvider<K>
+{
+    // pooled context slots (null if empty)
+    private final AtomicReferenceArray<Reference<K>> slots;
+    // permits to bound the number of contexts in use
+    private final Semaphore permits;
+    // maximum wait time in nanoseconds
+    private final long maxWaitNanos;
+
+    // metrics:
+    private final LongAdder acquireCount  = new LongAdder();
+    private final LongAdder waitCount     = new LongAdder();
+    private final LongAdder waitTime      = new LongAdder();
+    private final AtomicLong maxWaitTime  = new AtomicLong();
+    private final LongAdder overflowCount = new LongAdder();
+    private final LongAdder createCount   = new LongAdder();
+
+    /**
+     * Create a new ReentrantContext provider using the given reference type
+     * among hard, soft or weak based using a striped bounded pool
+     *
+     * @param refType reference type
+     * @param capacity maximum number of contexts in use (and pooled)
+     * @param maxWaitMillis maximum time (ms) to wait for a released context
+     */
+    public ReentrantContextProviderStriped(final int refType,
+                                           final int capacity,
+                                           final long maxWaitMillis)
+    {
+        super(refType);
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Invalid capacity: " + capacity);
+        }
+        this.slots = new AtomicReferenceArray<Reference<K>>(capacity);
+        this.permits = new Semaphore(capacity);
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0L, maxWaitMillis));
+    }
+
+    /**
+     * Give a ReentrantContext instance for the current thread
+     *
+     * @return ReentrantContext instance
+     */
+    @Override
+    public final K acquire() {
+        acquireCount.increment();
+
+        byte usage = USAGE_POOL;
+
+        if (!permits.tryAcquire()) {
+            // all contexts are in use: wait for one
+            final long start = System.nanoTime();
+            boolean acquired = false;
+            if (maxWaitNanos != 0L) {
+                try {
+                    acquired = permits.tryAcquire(maxWaitNanos, TimeUnit.NANOSECONDS);
+                } catch (InterruptedException ie) {
+                    // restore the interrupted status:
+                    Thread.currentThread().interrupt();
+                }
+            }
+            final long elapsed = System.nanoTime() - start;
+
+            waitCount.increment();
+            waitTime.add(elapsed);
+            long max;
+            while (elapsed > (max = maxWaitTime.get())) {
+                if (maxWaitTime.compareAndSet(max, elapsed)) {
+                    break;
+                }
+            }
+            if (!acquired) {
+                overflowCount.increment();
+                usage = USAGE_POOL_OVERFLOW;
+            }
+        }
+
+        K ctx = poll();
+        if (ctx == null) {
+            // create a new ReentrantContext if none is available
+            ctx = newContext();
+            createCount.increment();
+        }
+        ctx.usage = usage;
+        return ctx;
+    }
+
+    /**
+     * Restore the given ReentrantContext instance for reuse
+     *
+     * @param ctx ReentrantContext instance
+     */
+    @Override
+    public final void release(final K ctx) {
+        final byte usage = ctx.usage;
+        if (usage == USAGE_POOL) {
+            offer(getOrCreateReference(ctx));
+            permits.release();
+        } else if (usage == USAGE_POOL_OVERFLOW) {
+            // keep it only if a slot is free:
+            offer(getOrCreateReference(ctx));
+        }
+    }
+
+    private K poll() {
+        final AtomicReferenceArray<Reference<K>> _slots = slots;
+        final int len = _slots.length();
+        // random start slot (no thread affinity):
+        final int start = (len == 1) ? 0 : ThreadLocalRandom.current().nextInt(len);
+
+        K ctx;
+        Reference<K> ref;
+        for (int n = 0, i = start; n < len; n++) {
+            ref = _slots.get(i);
+            if ((ref != null) && _slots.compareAndSet(i, ref, null)) {
+                ctx = ref.get();
+                if (ctx != null) {
+                    return ctx;
+                }
+            }
+            if (++i == len) {
+                i = 0;
+            }
+        }
+        return null;
+    }
+
+    private void offer(final Reference<K> ref) {
+        final AtomicReferenceArray<Reference<K>> _slots = slots;
+        final int len = _slots.length();
+        final int start = (len == 1) ? 0 : ThreadLocalRandom.current().nextInt(len);
+
+        for (int n = 0, i = start; n < len; n++) {
+            if ((_slots.get(i) == null) && _slots.compareAndSet(i, null, ref)) {
+                return;
+            }
+            if (++i == len) {
+                i = 0;
+            }
+        }
+        // pool full: discard the context
+    }
+
+    /**
+     * @return pool capacity
+     */
+    public final int getCapacity() {
+        return slots.length();
+    }
+
+    /**
+     * @return number of acquire() calls
+     */
+    public final long getAcquireCount() {
+        return acquireCount.sum();
+    }
+
+    /**
+     * @return number of acquire() calls that had to wait for a context
+     */
+    public final long getWaitCount() {
+        return waitCount.sum();
+    }
+
+    /**
+     * @return total acquire wait time in nanoseconds
+     */
+    public final long getWaitTime() {
+        return waitTime.sum();
+    }
+
+    /**
+     * @return maximum acquire wait time in nanoseconds
+     */
+    public final long getMaxWaitTime() {
+        return maxWaitTime.get();
+    }
+
+    /**
+     * @return number of contexts given after the maximum wait time elapsed
+     */
+    public final long getOverflowCount() {
+        return overflowCount.sum();
+    }
+
+    /**
+     * @return number of created contexts
+     */
+    public final long getCreateCount() {
+        return createCount.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "ReentrantContextProviderStriped[capacity: " + getCapacity()
+            + " acquire: " + getAcquireCount()
+            + " wait: " + getWaitCount()
+            + " waitTime(ns): " + getWaitTime()
+            + " maxWaitTime(ns): " + getMaxWaitTime()
+            + " overflow: " + getOverflowCount()
+            + " created: " + getCreateCount() + "]";
+    }
+}
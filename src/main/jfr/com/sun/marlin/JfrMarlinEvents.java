@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package com.sun.marlin;
+
+import jdk.jfr.EventType;
+
+/**
+ * JFR implementation of MarlinEvents (loaded by reflection in MarlinMetrics)
+ */
+final class JfrMarlinEvents implements MarlinEvents {
+
+    private final EventType slowRasterizationType
+        = EventType.getEventType(SlowRasterizationEvent.class);
+
+    JfrMarlinEvents() {
+        // only created by MarlinMetrics
+    }
+
+    @Override
+    public boolean isSlowRasterizationEnabled() {
+        return slowRasterizationType.isEnabled();
+    }
+
+    @Override
+    public void rendering(final long renderingTime, final int edges,
+                          final int width, final int height,
+                          final int rows, final long copyRowsTime)
+    {
+        final RenderingEvent event = new RenderingEvent();
+        if (event.isEnabled()) {
+            event.renderingTime = renderingTime;
+            event.edges = edges;
+            event.width = width;
+            event.height = height;
+            event.rows = rows;
+            event.copyRowsTime = copyRowsTime;
+            event.commit();
+        }
+    }
+
+    @Override
+    public void slowRasterization(final RasterizationTimer timer,
+                                  final long elapsed, final String renderer,
+                                  final int width, final int height,
+                                  final boolean antialiased,
+                                  final float strokeWidth,
+                                  final boolean dashed, final boolean clipped)
+    {
+        final SlowRasterizationEvent event = new SlowRasterizationEvent();
+        event.renderer = renderer;
+        event.rasterizationTime = elapsed;
+        event.edges = timer.edges;
+        event.curves = timer.curves;
+        event.width = width;
+        event.height = height;
+        event.antialiased = antialiased;
+        event.strokeWidth = strokeWidth;
+        event.dashed = dashed;
+        event.clipped = clipped;
+        if (timer.sweepStart != 0L) {
+            event.pathTime  = timer.sweepStart - timer.start;
+            event.sweepTime = timer.sweepEnd - timer.sweepStart
+                              - timer.copyNanos;
+        }
+        event.copyTime = timer.copyNanos;
+        event.commit();
+    }
+}
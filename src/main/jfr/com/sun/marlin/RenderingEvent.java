@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package com.sun.marlin;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * JFR event emitted for sampled renderings (see MarlinMetrics): only loaded
+ * by JfrMarlinEvents, enabled or disabled by recording settings.
+ */
+@Name("com.sun.marlin.Rendering")
+@Label("Marlin Rendering")
+@Category({"JavaFX", "Marlin"})
+@Description("Sampled rasterization (endRendering scanline sweep)")
+@StackTrace(false)
+final class RenderingEvent extends Event {
+
+    @Label("Rendering Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long renderingTime;
+
+    @Label("Edges")
+    int edges;
+
+    @Label("Mask Width")
+    int width;
+
+    @Label("Mask Height")
+    int height;
+
+    @Label("Rows")
+    int rows;
+
+    @Label("Copy Rows Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long copyRowsTime;
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package com.sun.marlin;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * JFR event emitted by RasterizationTimer for rasterizations slower than
+ * prism.marlin.metrics.slowThreshold (20 ms by default): the event is only
+ * allocated once the threshold is exceeded so its own duration is empty and
+ * the measured time is given by rasterizationTime.
+ */
+@Name("com.sun.marlin.SlowRasterization")
+@Label("Marlin Slow Rasterization")
+@Category({"JavaFX", "Marlin"})
+@Description("Rasterization (getMaskData) exceeding the threshold")
+@StackTrace(false)
+final class SlowRasterizationEvent extends Event {
+
+    @Label("Renderer")
+    String renderer;
+
+    @Label("Rasterization Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long rasterizationTime;
+
+    @Label("Edges")
+    int edges;
+
+    @Label("Curves")
+    int curves;
+
+    @Label("Mask Width")
+    int width;
+
+    @Label("Mask Height")
+    int height;
+
+    @Label("Antialiased")
+    boolean antialiased;
+
+    @Label("Stroke Width")
+    @Description("Stroke width or 0 for fills")
+    float strokeWidth;
+
+    @Label("Dashed")
+    boolean dashed;
+
+    @Label("Clipped")
+    @Description("Path clipping enabled (shape exceeding the clip)")
+    boolean clipped;
+
+    @Label("Path Time")
+    @Description("Path iteration, dashing, stroking and edge building")
+    @Timespan(Timespan.NANOSECONDS)
+    long pathTime;
+
+    @Label("Sweep Time")
+    @Description("Scanline sweep excluding alpha copy")
+    @Timespan(Timespan.NANOSECONDS)
+    long sweepTime;
+
+    @Label("Alpha Copy Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long copyTime;
+}
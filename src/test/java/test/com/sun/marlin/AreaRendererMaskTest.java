@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package test.com.sun.marlin;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import static test.com.sun.marlin.MaskGenerator.ShapeMode.*;
+import static test.com.sun.marlin.MaskGenerator.StyleMode.*;
+import test.com.sun.marlin.MaskGenerator.ShapeMode;
+import test.com.sun.marlin.MaskGenerator.StyleMode;
+import static test.com.sun.marlin.MaskTestSupport.AA;
+import static test.com.sun.marlin.MaskTestSupport.NO_AA;
+import test.com.sun.marlin.MaskTestSupport.Result;
+import static test.com.sun.marlin.MaskTestSupport.compareToBaseline;
+
+/**
+ * @test
+ * @summary verify that the analytic coverage renderer (prism.marlin.analytic)
+ * stays close to the subpixel Renderer: exact areas differ from the 8x8
+ * subpixel sampling by up to one subpixel row (32) along simple edges, more
+ * where edges cross inside a pixel (nonzero winding of overlaps)
+ */
+public class AreaRendererMaskTest {
+
+    static final int NUM_TESTS = 200;
+
+    static final String[] SETTINGS = new String[] {
+        "prism.marlin.analytic=true"
+    };
+
+    // one subpixel row (1/8 of 255):
+    static final int MAX_EDGE_DIFF = 32;
+
+    private static Result[] check(final ShapeMode shapeMode,
+                                  final StyleMode styleMode,
+                                  final double maxMeanDiff,
+                                  final double maxCoverageError)
+        throws Exception
+    {
+        final Result[] r = compareToBaseline(shapeMode, styleMode, NUM_TESTS,
+                                             SETTINGS);
+        // AreaRenderer only rasterizes antialiased shapes:
+        assertEquals("different noAA masks", 0, r[NO_AA].diffCases);
+
+        final Result aa = r[AA];
+        assertTrue("mean difference too high: " + aa,
+                   aa.meanDiff() <= maxMeanDiff);
+        assertTrue("coverage error too high: " + aa,
+                   aa.coverageError() <= maxCoverageError);
+        return r;
+    }
+
+    @Test
+    public void testCubics() throws Exception {
+        check(TWO_CUBICS, FILL, 0.5, 0.001);
+        check(TWO_CUBICS, STROKE, 2.0, 0.005);
+    }
+
+    @Test
+    public void testQuads() throws Exception {
+        check(FOUR_QUADS, FILL, 0.5, 0.001);
+        check(FOUR_QUADS, STROKE, 2.0, 0.005);
+    }
+
+    @Test
+    public void testPolygons() throws Exception {
+        check(NINE_LINE_POLYS, FILL, 0.5, 0.001);
+        check(NINE_LINE_POLYS, STROKE, 2.0, 0.005);
+    }
+
+    @Test
+    public void testConvexShapes() throws Exception {
+        // no edge crossing inside pixels:
+        for (ShapeMode shapeMode : new ShapeMode[] {OCTAGONS, OVALS}) {
+            final Result[] r = check(shapeMode, FILL, 0.5, 0.001);
+            assertTrue("max difference too high: " + r[AA],
+                       r[AA].maxDiff <= MAX_EDGE_DIFF);
+        }
+        check(OCTAGONS, STROKE, 2.0, 0.005);
+        check(OVALS, STROKE, 3.0, 0.005);
+    }
+
+    @Test
+    public void testDegenerate() throws Exception {
+        final Result[] r = check(DEGENERATE, FILL, 0.5, 0.001);
+        assertTrue("max difference too high: " + r[AA],
+                   r[AA].maxDiff <= MAX_EDGE_DIFF);
+        // stroked degenerate paths have self-overlapping outlines:
+        check(DEGENERATE, STROKE, 12.0, 0.05);
+    }
+}
@@ -0,0 +1,285 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+
+package test.com.sun.marlin;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import com.sun.javafx.geom.PathConsumer2D;
+import com.sun.marlin.DPathConsumer2D;
+import com.sun.marlin.DRendererContext;
+import com.sun.marlin.RendererContext;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import static test.com.sun.marlin.MaskGenerator.ShapeMode.*;
+import static test.com.sun.marlin.MaskGenerator.StyleMode.*;
+import test.com.sun.marlin.MaskGenerator.ShapeMode;
+import test.com.sun.marlin.MaskGenerator.StyleMode;
+import static test.com.sun.marlin.MaskTestSupport.AA;
+import static test.com.sun.marlin.MaskTestSupport.NO_AA;
+import test.com.sun.marlin.MaskTestSupport.Result;
+import static test.com.sun.marlin.MaskTestSupport.assertIdentical;
+import static test.com.sun.marlin.MaskTestSupport.compareToBaseline;
+
+/**
+ * @test
+ * @summary verify that the polyline decimator (prism.marlin.decimate) keeps
+ * every dropped point within one pixel of the decimated polyline, preserves
+ * the vertical extent of every pixel column and only alters the masks of
+ * dense stroked polylines
+ */
+public class DecimatorMaskTest {
+
+    static final int NUM_TESTS = 200;
+
+    static final String[] SETTINGS = new String[] {
+        "prism.marlin.decimate=true"
+    };
+
+    // number of random polylines given to the decimators:
+    static final int NUM_POLYLINES = 50;
+
+    // max distance (pixels) between a dropped point and the decimated polyline:
+    static final double MAX_DEVIATION = 1.0;
+
+    // records the moveTo / lineTo points (float or double precision):
+    static final class PointRecorder implements PathConsumer2D, DPathConsumer2D {
+        double[] points = new double[256];
+        int numPoints = 0;
+
+        private void add(final double x, final double y) {
+            if (points.length < 2 * numPoints + 2) {
+                points = Arrays.copyOf(points, 2 * points.length);
+            }
+            points[2 * numPoints    ] = x;
+            points[2 * numPoints + 1] = y;
+            numPoints++;
+        }
+
+        @Override
+        public void moveTo(float x0, float y0) {
+            add(x0, y0);
+        }
+
+        @Override
+        public void lineTo(float x1, float y1) {
+            add(x1, y1);
+        }
+
+        @Override
+        public void quadTo(float xc, float yc, float x1, float y1) {
+            throw new IllegalStateException("unexpected quadTo");
+        }
+
+        @Override
+        public void curveTo(float xc0, float yc0, float xc1, float yc1,
+                            float x1, float y1)
+        {
+            throw new IllegalStateException("unexpected curveTo");
+        }
+
+        @Override
+        public void moveTo(double x0, double y0) {
+            add(x0, y0);
+        }
+
+        @Override
+        public void lineTo(double x1, double y1) {
+            add(x1, y1);
+        }
+
+        @Override
+        public void quadTo(double xc, double yc, double x1, double y1) {
+            throw new IllegalStateException("unexpected quadTo");
+        }
+
+        @Override
+        public void curveTo(double xc0, double yc0, double xc1, double yc1,
+                            double x1, double y1)
+        {
+            throw new IllegalStateException("unexpected curveTo");
+        }
+
+        @Override
+        public void closePath() {
+            throw new IllegalStateException("unexpected closePath");
+        }
+
+        @Override
+        public void pathDone() {
+            // nothing to do
+        }
+    }
+
+    // dense polyline: time series (monotonic x) or random walk (x jitter),
+    // with float coordinates to give the same input to both decimators:
+    private static float[] genPolyline(final Random rnd, final boolean walk) {
+        final int n = 200 + rnd.nextInt(3000);
+        final float[] pts = new float[2 * n];
+        final float amp = 1f + 50f * rnd.nextFloat();
+        final float freq = 0.01f + 0.2f * rnd.nextFloat();
+        float x = 0.5f + 10f * rnd.nextFloat();
+        float y = 100f;
+        for (int i = 0; i < n; i++) {
+            if (walk) {
+                x += 0.5f * rnd.nextFloat() - 0.1f;
+                y += 4f * rnd.nextFloat() - 2f;
+            } else {
+                x += 0.125f;
+                y = 100f + amp * (float) Math.sin(freq * i)
+                    + 2f * rnd.nextFloat() - 1f;
+            }
+            pts[2 * i    ] = x;
+            pts[2 * i + 1] = y;
+        }
+        return pts;
+    }
+
+    private static void checkDecimation(final float[] in, final PointRecorder out) {
+        final int n = in.length / 2;
+        final int m = out.numPoints;
+        final double[] o = out.points;
+
+        assertTrue("no reduction: " + m + " points out of " + n, m < n);
+        assertEquals("first point", in[0], o[0], 0.0);
+        assertEquals("first point", in[1], o[1], 0.0);
+        assertEquals("last point", in[2 * n - 2], o[2 * m - 2], 0.0);
+        assertEquals("last point", in[2 * n - 1], o[2 * m - 1], 0.0);
+
+        // decimated points are a subsequence of the input points:
+        final boolean[] kept = new boolean[n];
+        for (int i = 0, j = 0; j < m; i++) {
+            assertTrue("point " + j + " not in the input polyline", i < n);
+            if ((in[2 * i] == o[2 * j]) && (in[2 * i + 1] == o[2 * j + 1])) {
+                kept[i] = true;
+                j++;
+            }
+        }
+
+        for (int i = 0; i < n; i++) {
+            if (kept[i]) {
+                continue;
+            }
+            final double px = in[2 * i];
+            final double py = in[2 * i + 1];
+            final int col = (int) Math.floor(px);
+
+            // distance to the decimated segments in the same pixel column:
+            double dist = Double.POSITIVE_INFINITY;
+            for (int j = 1; j < m; j++) {
+                final double x0 = o[2 * j - 2], y0 = o[2 * j - 1];
+                final double x1 = o[2 * j    ], y1 = o[2 * j + 1];
+                if (((int) Math.floor(x0) == col) && ((int) Math.floor(x1) == col)) {
+                    dist = Math.min(dist, distance(px, py, x0, y0, x1, y1));
+                }
+            }
+            assertTrue("point " + i + " (" + px + ", " + py + ") too far"
+                       + " from the decimated polyline: " + dist,
+                       dist < MAX_DEVIATION);
+        }
+    }
+
+    // distance between the point p and the segment [p0 p1]:
+    private static double distance(final double px, final double py,
+                                   final double x0, final double y0,
+                                   final double x1, final double y1)
+    {
+        final double dx = x1 - x0;
+        final double dy = y1 - y0;
+        final double l2 = dx * dx + dy * dy;
+        double t = (l2 == 0.0) ? 0.0 : ((px - x0) * dx + (py - y0) * dy) / l2;
+        t = Math.max(0.0, Math.min(1.0, t));
+        return Math.hypot(px - (x0 + t * dx), py - (y0 + t * dy));
+    }
+
+    @Test
+    public void testDeviationBound() {
+        final Random rnd = new Random(MaskGenerator.SEED);
+        final RendererContext rdrCtx = RendererContext.createContext();
+        final DRendererContext drdrCtx = DRendererContext.createContext();
+
+        for (int k = 0; k < NUM_POLYLINES; k++) {
+            final float[] in = genPolyline(rnd, (k & 1) != 0);
+            final int n = in.length / 2;
+
+            final PointRecorder out = new PointRecorder();
+            final PathConsumer2D pc2d = rdrCtx.decimator.init(out);
+            pc2d.moveTo(in[0], in[1]);
+            for (int i = 1; i < n; i++) {
+                pc2d.lineTo(in[2 * i], in[2 * i + 1]);
+            }
+            pc2d.pathDone();
+            checkDecimation(in, out);
+
+            final PointRecorder dout = new PointRecorder();
+            final DPathConsumer2D dpc2d = drdrCtx.decimator.init(dout);
+            dpc2d.moveTo(in[0], in[1]);
+            for (int i = 1; i < n; i++) {
+                dpc2d.lineTo(in[2 * i], in[2 * i + 1]);
+            }
+            dpc2d.pathDone();
+            checkDecimation(in, dout);
+        }
+    }
+
+    private static void check(final StyleMode styleMode,
+                              final double maxMeanDiff,
+                              final double maxCoverageError)
+        throws Exception
+    {
+        final Result[] r = compareToBaseline(DENSE_POLYLINES, styleMode,
+                                             NUM_TESTS, SETTINGS);
+        assertTrue("noAA coverage error too high: " + r[NO_AA],
+                   r[NO_AA].coverageError() <= maxCoverageError);
+        assertTrue("mean difference too high: " + r[AA],
+                   r[AA].meanDiff() <= maxMeanDiff);
+        assertTrue("coverage error too high: " + r[AA],
+                   r[AA].coverageError() <= maxCoverageError);
+    }
+
+    @Test
+    public void testDensePolylines() throws Exception {
+        check(STROKE, 20.0, 0.06);
+        check(HAIRLINE, 20.0, 0.06);
+        // fills are never decimated:
+        assertIdentical(compareToBaseline(DENSE_POLYLINES, FILL, NUM_TESTS,
+                                          SETTINGS));
+    }
+
+    @Test
+    public void testSparseShapes() throws Exception {
+        // polylines below the density threshold and curves are not decimated:
+        for (ShapeMode shapeMode : new ShapeMode[] {FIVE_LINE_POLYS, TWO_CUBICS,
+                                                    DEGENERATE}) {
+            assertIdentical(compareToBaseline(shapeMode, STROKE, NUM_TESTS,
+                                              SETTINGS));
+        }
+    }
+}
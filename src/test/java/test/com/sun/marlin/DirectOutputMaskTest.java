@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package test.com.sun.marlin;
+
+import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
+
+import com.sun.marlin.DirectMarlinAlphaConsumer;
+
+import org.junit.Test;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @test
+ * @summary verify that DirectMarlinAlphaConsumer rejects invalid or read-only
+ * regions and mask bounds outside of its region (see EquivalenceMaskTest for
+ * the produceMask output)
+ */
+public class DirectOutputMaskTest {
+
+    private static void assertRejected(final Class<? extends Exception> expected,
+                                       final Runnable action)
+    {
+        try {
+            action.run();
+        } catch (Exception e) {
+            if (expected.isInstance(e)) {
+                return;
+            }
+            fail("Expected " + expected.getSimpleName() + " but got " + e);
+        }
+        fail("Expected " + expected.getSimpleName());
+    }
+
+    @Test
+    public void testRegionChecks() {
+        final DirectMarlinAlphaConsumer consumer = new DirectMarlinAlphaConsumer();
+
+        for (ByteBuffer buffer : new ByteBuffer[] {
+                ByteBuffer.allocateDirect(100), ByteBuffer.allocate(100)})
+        {
+            // 10 x 10 pixels:
+            consumer.setBuffer(buffer, 0, 10, 0, 0, 10, 10);
+            assertTrue("region expected", consumer.hasRegion());
+            // the last row may end before the stride:
+            consumer.setBuffer(buffer, 5, 10, 0, 0, 5, 10);
+            consumer.dispose();
+
+            // invalid offset, size or stride:
+            assertRejected(IllegalArgumentException.class,
+                () -> consumer.setBuffer(buffer, -1, 10, 0, 0, 10, 10));
+            assertRejected(IllegalArgumentException.class,
+                () -> consumer.setBuffer(buffer, 0, 10, 0, 0, 0, 10));
+            assertRejected(IllegalArgumentException.class,
+                () -> consumer.setBuffer(buffer, 0, 9, 0, 0, 10, 10));
+            // exceeding capacity:
+            assertRejected(IllegalArgumentException.class,
+                () -> consumer.setBuffer(buffer, 1, 10, 0, 0, 10, 10));
+            assertRejected(IllegalArgumentException.class,
+                () -> consumer.setBuffer(buffer, 0, 11, 0, 0, 10, 10));
+            assertRejected(IllegalArgumentException.class,
+                () -> consumer.setBuffer(buffer, 0, 10, 0, 0, 10, 11));
+            // read-only:
+            assertRejected(ReadOnlyBufferException.class,
+                () -> consumer.setBuffer(buffer.asReadOnlyBuffer(), 0, 10,
+                                         0, 0, 10, 10));
+            assertTrue("no region expected", !consumer.hasRegion());
+        }
+
+        assertRejected(IllegalArgumentException.class,
+            () -> consumer.setMemory(0L, 100L, 10, 0, 0, 10, 10));
+
+        // mask bounds outside of the region [5, 5, 10, 10]:
+        consumer.setBuffer(ByteBuffer.allocate(100), 0, 10, 5, 5, 10, 10);
+        assertRejected(IllegalStateException.class,
+            () -> consumer.setBoundsNoClone(4, 5, 2, 2));
+        assertRejected(IllegalStateException.class,
+            () -> consumer.setBoundsNoClone(14, 14, 2, 1));
+        consumer.dispose();
+    }
+}
@@ -0,0 +1,247 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package test.com.sun.marlin;
+
+import java.util.Arrays;
+import java.util.Collection;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+import static test.com.sun.marlin.MaskGenerator.ShapeMode.*;
+import static test.com.sun.marlin.MaskGenerator.StyleMode.*;
+import static test.com.sun.marlin.MaskGenerator.XformMode.*;
+import test.com.sun.marlin.MaskGenerator.ShapeMode;
+import test.com.sun.marlin.MaskGenerator.StyleMode;
+import test.com.sun.marlin.MaskGenerator.XformMode;
+import static test.com.sun.marlin.MaskTestSupport.assertIdentical;
+import static test.com.sun.marlin.MaskTestSupport.compareSettings;
+
+/**
+ * @test
+ * @summary verify that Renderer settings and rasterizer outputs (see
+ * MaskGenerator.OutputMode) which must not change the output give masks
+ * identical to the baseline Renderer (or to the given reference settings),
+ * for filled and stroked shapes under identity, scale and rotate transforms
+ */
+@RunWith(Parameterized.class)
+public class EquivalenceMaskTest {
+
+    static final int NUM_TESTS = 200;
+
+    // reference settings: baseline Renderer
+    static final String[] BASELINE = new String[0];
+
+    @Parameters(name = "{0}")
+    public static Collection<Object[]> settings() {
+        return Arrays.asList(new Object[][] {
+            // mask rows written by 8-byte words:
+            {"wideStores", BASELINE,
+             new String[] {
+                 "prism.marlin.useWideStores=true"
+             },
+             new ShapeMode[] {TWO_CUBICS, FIVE_LINE_POLYS, OVALS, DEGENERATE}
+            },
+            // radix sort of crossings (prism.marlin.crossingSort) on
+            // scanlines with at least 40 crossings (dense polylines):
+            {"radixSort", BASELINE,
+             new String[] {
+                 "prism.marlin.crossingSort=radix",
+                 "prism.marlin.radixSort.threshold=40"
+             },
+             new ShapeMode[] {DENSE_POLYLINES, DEGENERATE}
+            },
+            // parallel band rasterization (prism.marlin.parallelBands),
+            // splitting small masks whatever the number of processors:
+            {"parallelBands", BASELINE,
+             new String[] {
+                 "prism.marlin.parallelBands=true",
+                 "prism.marlin.parallelBands.minArea=4096",
+                 "java.util.concurrent.ForkJoinPool.common.parallelism=4"
+             },
+             new ShapeMode[] {TWO_CUBICS, FOUR_QUADS, NINE_LINE_POLYS, OVALS,
+                              DENSE_POLYLINES, DEGENERATE}
+            },
+            // edges left of the clip folded into winding deltas, with and
+            // without the path clipper:
+            {"foldLeftEdges", BASELINE,
+             new String[] {
+                 "prism.marlin.foldLeftEdges=true"
+             },
+             new ShapeMode[] {LEFT_CLIPPED, TWO_CUBICS}
+            },
+            {"foldLeftEdgesNoClip",
+             new String[] {
+                 "prism.marlin.clip=false"
+             },
+             new String[] {
+                 "prism.marlin.foldLeftEdges=true"
+             },
+             new ShapeMode[] {LEFT_CLIPPED, TWO_CUBICS}
+            },
+            // produceMask into padded direct or heap buffers:
+            {"directOutput", BASELINE,
+             new String[] {
+                 "test.marlin.output=DIRECT"
+             },
+             new ShapeMode[] {TWO_CUBICS, NINE_LINE_POLYS, DEGENERATE}
+            },
+            // produceTiles with tile classification checks:
+            {"tileOutput", BASELINE,
+             new String[] {
+                 "test.marlin.output=TILES"
+             },
+             new ShapeMode[] {TWO_CUBICS, RECTANGLES, OVALS, DEGENERATE}
+            },
+            // expanded run-length encoded masks with run checks:
+            {"rleOutput", BASELINE,
+             new String[] {
+                 "test.marlin.output=RLE"
+             },
+             new ShapeMode[] {TWO_CUBICS, NINE_LINE_POLYS, RECTANGLES, OVALS,
+                              DEGENERATE}
+            },
+            // canvas paths grown from a prefix (incremental fills bypass
+            // the path clipper, so compare with the unclipped Renderer):
+            {"incremental",
+             new String[] {
+                 "prism.marlin.clip=false"
+             },
+             new String[] {
+                 "prism.marlin.incremental=true",
+                 "test.marlin.output=CANVAS"
+             },
+             new ShapeMode[] {TWO_CUBICS, NINE_LINE_POLYS, DENSE_POLYLINES,
+                              OVALS, DEGENERATE}
+            },
+            // compiled shapes (whole shape, unclipped) replayed at integer
+            // offsets; huge coordinates (DEGENERATE) are not compared as
+            // edges clipped at replay may round differently:
+            {"compiled",
+             new String[] {
+                 "prism.marlin.clip=false"
+             },
+             new String[] {
+                 "test.marlin.output=COMPILED"
+             },
+             new ShapeMode[] {TWO_CUBICS, NINE_LINE_POLYS, OVALS, DOTS}
+            },
+            // striped renderer context pool smaller than the number of
+            // rasterizing threads (waiting and overflow contexts):
+            {"stripedContexts", BASELINE,
+             new String[] {
+                 "prism.marlin.contextProvider=striped",
+                 "prism.marlin.contextPool.capacity=2",
+                 "prism.marlin.contextPool.maxWait=1",
+                 "test.marlin.output=THREADS"
+             },
+             new ShapeMode[] {TWO_CUBICS, NINE_LINE_POLYS, OVALS, DEGENERATE}
+            },
+            // array caches under a small global budget (reached), trimmed
+            // when idle (1s) and on heap pressure (after most collections);
+            // small initial arrays make the renderer use its caches:
+            {"arrayCacheBudget", BASELINE,
+             new String[] {
+                 "prism.marlin.edges=64",
+                 "prism.marlin.pixelWidth=64",
+                 "prism.marlin.pixelHeight=64",
+                 "prism.marlin.arrayCache.budget=65536",
+                 "prism.marlin.arrayCache.idleTime=1",
+                 "prism.marlin.arrayCache.heapPressure=0.01"
+             },
+             new ShapeMode[] {TWO_CUBICS, DENSE_POLYLINES, OVALS, DEGENERATE}
+            },
+            // large arrays (4096+ elements) shared by the renderer contexts
+            // of concurrent threads:
+            {"sharedArrays", BASELINE,
+             new String[] {
+                 "prism.marlin.arrayCache.shared=true",
+                 "prism.marlin.arrayCache.sharedMinSize=4096",
+                 "prism.marlin.pixelHeight=64",
+                 "test.marlin.output=THREADS"
+             },
+             new ShapeMode[] {TWO_CUBICS, DENSE_POLYLINES, OVALS, DEGENERATE}
+            },
+            // edges above 4K bytes spilled to memory-mapped files, by
+            // concurrent threads:
+            {"spilledEdges", BASELINE,
+             new String[] {
+                 "prism.marlin.edges=64",
+                 "prism.marlin.edges.spillSize=4096",
+                 "test.marlin.output=THREADS"
+             },
+             new ShapeMode[] {TWO_CUBICS, DENSE_POLYLINES, OVALS, DEGENERATE}
+            },
+            // batches of masks packed into growing and reused atlases:
+            {"maskAtlas", BASELINE,
+             new String[] {
+                 "test.marlin.output=ATLAS"
+             },
+             new ShapeMode[] {TWO_CUBICS, NINE_LINE_POLYS, RECTANGLES, OVALS,
+                              DEGENERATE}
+            },
+        });
+    }
+
+    private final String[] refSettings;
+    private final String[] settings;
+    private final ShapeMode[] shapeModes;
+
+    public EquivalenceMaskTest(final String name, final String[] refSettings,
+                               final String[] settings,
+                               final ShapeMode[] shapeModes)
+    {
+        this.refSettings = refSettings;
+        this.settings = settings;
+        this.shapeModes = shapeModes;
+    }
+
+    private void check(final XformMode xformMode) throws Exception {
+        for (ShapeMode shapeMode : shapeModes) {
+            for (StyleMode styleMode : new StyleMode[] {FILL, STROKE}) {
+                assertIdentical(compareSettings(shapeMode, styleMode,
+                                                xformMode, NUM_TESTS,
+                                                refSettings, settings));
+            }
+        }
+    }
+
+    @Test
+    public void testIdentity() throws Exception {
+        check(IDENTITY);
+    }
+
+    @Test
+    public void testScale() throws Exception {
+        check(SCALE);
+    }
+
+    @Test
+    public void testRotate() throws Exception {
+        check(ROTATE);
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package test.com.sun.marlin;
+
+import org.junit.Test;
+import static org.junit.Assert.assertTrue;
+
+import static test.com.sun.marlin.MaskGenerator.ShapeMode.*;
+import static test.com.sun.marlin.MaskGenerator.StyleMode.*;
+import test.com.sun.marlin.MaskGenerator.ShapeMode;
+import test.com.sun.marlin.MaskGenerator.StyleMode;
+import test.com.sun.marlin.MaskGenerator.XformMode;
+import static test.com.sun.marlin.MaskTestSupport.AA;
+import static test.com.sun.marlin.MaskTestSupport.NO_AA;
+import test.com.sun.marlin.MaskTestSupport.Result;
+import static test.com.sun.marlin.MaskTestSupport.compareToBaseline;
+
+/**
+ * @test
+ * @summary verify that masks rasterized with the flattening cache
+ * (prism.marlin.flatteningCache) stay within rounding errors of the masks
+ * rasterized without it: curves are flattened once (per quantized shape)
+ * and replayed as offsets from their start point, so a few pixels differ by
+ * one alpha level and a few noAA pixels flip
+ */
+public class FlatteningCacheMaskTest {
+
+    static final int NUM_TESTS = 200;
+
+    static final String[] SETTINGS = new String[] {
+        "prism.marlin.flatteningCache=true"
+    };
+
+    // max ratio of flipped noAA pixels:
+    static final double MAX_DIFF_RATIO = 1e-4;
+
+    // max alpha difference:
+    static final int MAX_AA_DIFF = 1;
+
+    private static void check(final ShapeMode shapeMode) throws Exception {
+        for (XformMode xformMode : XformMode.values()) {
+            for (StyleMode styleMode : new StyleMode[] {FILL, STROKE}) {
+                final Result[] r = compareToBaseline(shapeMode, styleMode,
+                                                     xformMode, NUM_TESTS,
+                                                     SETTINGS);
+                assertTrue("too many different noAA pixels: " + r[NO_AA],
+                           r[NO_AA].diffRatio() <= MAX_DIFF_RATIO);
+                assertTrue("max difference too high: " + r[AA],
+                           r[AA].maxDiff <= MAX_AA_DIFF);
+            }
+        }
+    }
+
+    @Test
+    public void testGlyphs() throws Exception {
+        check(GLYPHS);
+    }
+
+    @Test
+    public void testCubics() throws Exception {
+        check(TWO_CUBICS);
+    }
+
+    @Test
+    public void testQuads() throws Exception {
+        check(FOUR_QUADS);
+    }
+
+    @Test
+    public void testOvals() throws Exception {
+        check(OVALS);
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+
+package test.com.sun.marlin;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import static test.com.sun.marlin.MaskGenerator.ShapeMode.*;
+import static test.com.sun.marlin.MaskGenerator.StyleMode.*;
+import test.com.sun.marlin.MaskGenerator.ShapeMode;
+import static test.com.sun.marlin.MaskTestSupport.AA;
+import static test.com.sun.marlin.MaskTestSupport.NO_AA;
+import test.com.sun.marlin.MaskTestSupport.Result;
+import static test.com.sun.marlin.MaskTestSupport.compareToBaseline;
+
+/**
+ * @test
+ * @summary verify that thin strokes rasterized by the hairline renderer
+ * (prism.marlin.hairlines) stay close to the Stroker and Renderer: noAA masks
+ * are identical, AA coverage is spread along the line differently (per pixel)
+ * but the overall coverage must stay within a few percents
+ */
+public class HairlineMaskTest {
+
+    static final int NUM_TESTS = 200;
+
+    static final String[] SETTINGS = new String[] {
+        "prism.marlin.hairlines=true"
+    };
+
+    private static void check(final ShapeMode shapeMode,
+                              final double maxMeanDiff,
+                              final double maxCoverageError)
+        throws Exception
+    {
+        final Result[] r = compareToBaseline(shapeMode, HAIRLINE, NUM_TESTS,
+                                             SETTINGS);
+        assertEquals("different noAA masks: " + r[NO_AA], 0, r[NO_AA].diffCases);
+
+        final Result aa = r[AA];
+        assertTrue("mean difference too high: " + aa,
+                   aa.meanDiff() <= maxMeanDiff);
+        assertTrue("coverage error too high: " + aa,
+                   aa.coverageError() <= maxCoverageError);
+    }
+
+    @Test
+    public void testPolygons() throws Exception {
+        check(FIVE_LINE_POLYS, 12.0, 0.025);
+        check(NINE_LINE_POLYS, 12.0, 0.03);
+    }
+
+    @Test
+    public void testCurves() throws Exception {
+        check(TWO_CUBICS, 12.0, 0.025);
+        // quads cross themselves more often (overlapping coverage adds up):
+        check(FOUR_QUADS, 14.0, 0.06);
+    }
+
+    @Test
+    public void testAxisPolylines() throws Exception {
+        check(AXIS_POLYLINES, 8.0, 0.035);
+    }
+
+    @Test
+    public void testDensePolylines() throws Exception {
+        check(DENSE_POLYLINES, 20.0, 0.03);
+    }
+
+    @Test
+    public void testDegenerate() throws Exception {
+        // retraced segments accumulate coverage where the Stroker outline is
+        // filled only once (union):
+        check(DEGENERATE, 30.0, 0.3);
+    }
+}
@@ -0,0 +1,1096 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package test.com.sun.marlin;
+
+import com.sun.javafx.geom.Ellipse2D;
+import com.sun.javafx.geom.Line2D;
+import com.sun.javafx.geom.Path2D;
+import com.sun.javafx.geom.PathIterator;
+import com.sun.javafx.geom.RectBounds;
+import com.sun.javafx.geom.RoundRectangle2D;
+import com.sun.javafx.geom.Shape;
+import com.sun.javafx.geom.transform.Affine2D;
+import com.sun.javafx.geom.transform.BaseTransform;
+import com.sun.javafx.sg.prism.NGCanvasPath;
+import com.sun.marlin.CompiledShape;
+import com.sun.marlin.DirectMarlinAlphaConsumer;
+import com.sun.marlin.RLEMarlinAlphaConsumer;
+import com.sun.marlin.TileMarlinAlphaConsumer;
+import com.sun.marlin.TileMarlinAlphaConsumer.TileHandler;
+import com.sun.prism.BasicStroke;
+import com.sun.prism.impl.shape.DMarlinRasterizer;
+import com.sun.prism.impl.shape.MarlinRasterizer;
+import com.sun.prism.impl.shape.MaskAtlas;
+import com.sun.prism.impl.shape.MaskData;
+import com.sun.prism.impl.shape.ShapeRasterizer;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Mask generator run in a separate JVM by MaskTestSupport: Marlin settings
+ * are static final flags read at startup, so each rasterizer configuration
+ * needs its own JVM. Random shapes (see TestNonAARasterization) are
+ * rasterized by both float and double Marlin rasterizers, with and without
+ * antialiasing, under the given transform (random per shape), and all masks
+ * are written to the output file. The test.marlin.output system property
+ * selects the rasterizer output producing the masks (see OutputMode).
+ *
+ * Usage: MaskGenerator shapeMode styleMode xformMode numTests outputFile
+ */
+public final class MaskGenerator {
+
+    static enum ShapeMode {
+        TWO_CUBICS,
+        FOUR_QUADS,
+        FIVE_LINE_POLYS,
+        NINE_LINE_POLYS,
+        RECTANGLES,
+        ROUND_RECTANGLES,
+        OVALS,
+        OCTAGONS,
+        AXIS_POLYLINES,
+        AXIS_LINES,
+        DENSE_POLYLINES,
+        LEFT_CLIPPED,
+        DOTS,
+        GLYPHS,
+        DEGENERATE,
+        DEGENERATE_PRIMITIVES,
+    }
+
+    static enum StyleMode {
+        FILL,
+        HAIRLINE,
+        STROKE,
+        AXIS_STROKE,
+    }
+
+    static enum XformMode {
+        IDENTITY,
+        // non-uniform scale around the clip center:
+        SCALE,
+        // rotation and uniform scale around the clip center:
+        ROTATE,
+    }
+
+    static enum OutputMode {
+        // dense mask (getMaskData):
+        MASK,
+        // padded region of a direct (even shapes) or heap buffer
+        // (produceMask):
+        DIRECT,
+        // clip sized mask assembled from classified tiles (produceTiles):
+        TILES,
+        // expanded run-length encoded mask (getRLEMaskData):
+        RLE,
+        // dense mask rasterized at an integer offset (per shape) and moved
+        // back (mask reuse at pixel-aligned positions):
+        SHIFTED,
+        // dense mask of a canvas path grown from its first half, after an
+        // unrelated path sharing its rasterizer states (incremental paths):
+        CANVAS,
+        // dense mask of the compiled shape replayed at an integer offset
+        // (per shape) and moved back:
+        COMPILED,
+        // padded heap buffer filled (produceMask) by several threads at
+        // once, all masks being identical (renderer context pools):
+        THREADS,
+        // masks of batches of shapes packed into reused atlases (starting
+        // small to grow) by getMaskAtlas and extracted:
+        ATLAS,
+    }
+
+    static final OutputMode OUTPUT_MODE
+        = OutputMode.valueOf(System.getProperty("test.marlin.output", "MASK"));
+
+    // padding (pixels) around the clip in DIRECT buffers:
+    static final int PAD = 3;
+    // value of DIRECT buffer pixels outside of the mask:
+    static final byte SENTINEL = (byte) 0x5A;
+
+    // concurrent rasterizations of each mask in THREADS mode:
+    static final int NUM_THREADS = 4;
+    static ExecutorService executor = null;
+
+    // shapes per atlas in ATLAS mode:
+    static final int ATLAS_BATCH = 16;
+
+    static final double OCT_C = 1.0 / (2.0 + Math.sqrt(2.0));
+
+    static final int TESTW = 200;
+    static final int TESTH = 200;
+
+    static final long SEED = 1666133789L;
+    static final Random RAND = new Random(SEED);
+
+    // 16 degenerated shapes
+    static final int NUM_DEGENERATE = 16;
+    // 8 degenerated rectangles or ellipses
+    static final int NUM_DEGENERATE_PRIMITIVES = 8;
+
+    static {
+        Locale.setDefault(Locale.US);
+    }
+
+    private MaskGenerator() {
+        // forbidden
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 5) {
+            System.out.println("Usage: MaskGenerator shapeMode styleMode xformMode numTests outputFile");
+            System.exit(1);
+        }
+        final ShapeMode shapeMode = ShapeMode.valueOf(args[0]);
+        final StyleMode styleMode = StyleMode.valueOf(args[1]);
+        final XformMode xformMode = XformMode.valueOf(args[2]);
+        final int numTests = Integer.parseInt(args[3]);
+
+        final ShapeRasterizer[] rasterizers = new ShapeRasterizer[] {
+            new MarlinRasterizer(), new DMarlinRasterizer()
+        };
+        final RectBounds clip = new RectBounds(0f, 0f, TESTW, TESTH);
+
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(args[4]))))
+        {
+            if (OUTPUT_MODE == OutputMode.ATLAS) {
+                writeAtlasMasks(out, rasterizers, shapeMode, styleMode,
+                                xformMode, numTests, clip);
+                return;
+            }
+            for (int n = 0; n < numTests; n++) {
+                final Shape shape = genShape(shapeMode, n);
+                final BasicStroke stroke = genStroke(styleMode);
+                final BaseTransform xform = genTransform(xformMode);
+
+                for (ShapeRasterizer rasterizer : rasterizers) {
+                    for (int aa = 0; aa <= 1; aa++) {
+                        rasterize(out, rasterizer, shape, stroke, clip,
+                                  xform, (aa == 1), n);
+                    }
+                }
+            }
+        }
+    }
+
+    static void writeAtlasMasks(final DataOutputStream out,
+                                final ShapeRasterizer[] rasterizers,
+                                final ShapeMode shapeMode,
+                                final StyleMode styleMode,
+                                final XformMode xformMode,
+                                final int numTests,
+                                final RectBounds clip)
+        throws IOException
+    {
+        final Shape[] shapes = new Shape[ATLAS_BATCH];
+        final BasicStroke[] strokes = new BasicStroke[ATLAS_BATCH];
+        final BaseTransform[] xforms = new BaseTransform[ATLAS_BATCH];
+        // one atlas per rasterizer and aa setting, reused by all batches:
+        final MaskAtlas[] atlases = new MaskAtlas[2 * rasterizers.length];
+        for (int i = 0; i < atlases.length; i++) {
+            atlases[i] = new MaskAtlas(64, 64);
+        }
+        for (int start = 0; start < numTests; start += ATLAS_BATCH) {
+            final int numShapes = Math.min(ATLAS_BATCH, numTests - start);
+            // same generation order as other modes:
+            for (int i = 0; i < numShapes; i++) {
+                shapes[i] = genShape(shapeMode, start + i);
+                strokes[i] = genStroke(styleMode);
+                xforms[i] = genTransform(xformMode);
+            }
+            for (int r = 0; r < rasterizers.length; r++) {
+                for (int aa = 0; aa <= 1; aa++) {
+                    final MaskAtlas atlas = atlases[2 * r + aa];
+                    if (rasterizers[r] instanceof MarlinRasterizer) {
+                        ((MarlinRasterizer) rasterizers[r]).getMaskAtlas(
+                            shapes, strokes, xforms, numShapes, clip,
+                            (aa == 1), atlas);
+                    } else {
+                        ((DMarlinRasterizer) rasterizers[r]).getMaskAtlas(
+                            shapes, strokes, xforms, numShapes, clip,
+                            (aa == 1), atlas);
+                    }
+                    if (atlas.getNumMasks() != numShapes) {
+                        throw new IllegalStateException("Atlas has "
+                            + atlas.getNumMasks() + " masks, expected "
+                            + numShapes);
+                    }
+                }
+            }
+            for (int i = 0; i < numShapes; i++) {
+                for (MaskAtlas atlas : atlases) {
+                    writeAtlasMask(out, atlas, i);
+                }
+            }
+        }
+    }
+
+    static void writeAtlasMask(final DataOutputStream out,
+                               final MaskAtlas atlas, final int i)
+        throws IOException
+    {
+        final int w = atlas.getMaskWidth(i);
+        final int h = atlas.getMaskHeight(i);
+        final int stride = atlas.getWidth();
+        final ByteBuffer buffer = atlas.getBuffer();
+
+        final byte[] data = new byte[w * h];
+        for (int j = 0; j < h; j++) {
+            final int off = (atlas.getY(i) + j) * stride + atlas.getX(i);
+            for (int k = 0; k < w; k++) {
+                data[j * w + k] = buffer.get(off + k);
+            }
+        }
+        writeMask(out, atlas.getOriginX(i), atlas.getOriginY(i), w, h, data);
+    }
+
+    static double rand(double d) {
+        return RAND.nextDouble() * d;
+    }
+
+    static float randf(double d) {
+        return (float) rand(d);
+    }
+
+    static Shape genShape(final ShapeMode mode, final int n) {
+        final Path2D p2d = new Path2D();
+        float rx, ry, rw, rh;
+        switch (mode) {
+            case TWO_CUBICS:
+                p2d.moveTo(randf(TESTW), randf(TESTH));
+                p2d.curveTo(randf(TESTW), randf(TESTH), randf(TESTW), randf(TESTH), randf(TESTW), randf(TESTH));
+                p2d.curveTo(randf(TESTW), randf(TESTH), randf(TESTW), randf(TESTH), randf(TESTW), randf(TESTH));
+                break;
+            case FOUR_QUADS:
+                p2d.moveTo(randf(TESTW), randf(TESTH));
+                p2d.quadTo(randf(TESTW), randf(TESTH), randf(TESTW), randf(TESTH));
+                p2d.quadTo(randf(TESTW), randf(TESTH), randf(TESTW), randf(TESTH));
+                p2d.quadTo(randf(TESTW), randf(TESTH), randf(TESTW), randf(TESTH));
+                p2d.quadTo(randf(TESTW), randf(TESTH), randf(TESTW), randf(TESTH));
+                break;
+            case NINE_LINE_POLYS:
+            case FIVE_LINE_POLYS:
+                p2d.moveTo(randf(TESTW), randf(TESTH));
+                p2d.lineTo(randf(TESTW), randf(TESTH));
+                p2d.lineTo(randf(TESTW), randf(TESTH));
+                p2d.lineTo(randf(TESTW), randf(TESTH));
+                p2d.lineTo(randf(TESTW), randf(TESTH));
+                if (mode == ShapeMode.FIVE_LINE_POLYS) {
+                    // And an implicit close makes 5 lines
+                    break;
+                }
+                p2d.lineTo(randf(TESTW), randf(TESTH));
+                p2d.lineTo(randf(TESTW), randf(TESTH));
+                p2d.lineTo(randf(TESTW), randf(TESTH));
+                p2d.lineTo(randf(TESTW), randf(TESTH));
+                // And an implicit close makes 9 lines
+                break;
+            case RECTANGLES:
+                rw = randf(TESTW);
+                rh = randf(TESTH);
+                rx = randf(TESTW - rw);
+                ry = randf(TESTH - rh);
+                return new RoundRectangle2D(rx, ry, rw, rh, 0f, 0f);
+            case ROUND_RECTANGLES:
+                rw = randf(TESTW);
+                rh = randf(TESTH);
+                rx = randf(TESTW - rw);
+                ry = randf(TESTH - rh);
+                final float arc = randf(Math.min(rw, rh));
+                return new RoundRectangle2D(rx, ry, rw, rh, arc, arc);
+            case OVALS:
+                rw = randf(TESTW);
+                rh = randf(TESTH);
+                rx = randf(TESTW - rw);
+                ry = randf(TESTH - rh);
+                if ((n & 1) == 0) {
+                    // circles:
+                    rw = rh = Math.min(rw, rh);
+                }
+                return new Ellipse2D(rx, ry, rw, rh);
+            case OCTAGONS:
+                rw = randf(TESTW);
+                rh = randf(TESTH);
+                rx = randf(TESTW - rw);
+                ry = randf(TESTH - rh);
+                final float ow = (float) (rw * OCT_C);
+                final float oh = (float) (rh * OCT_C);
+                p2d.moveTo(rx + ow, ry);
+                p2d.lineTo(rx + rw - ow, ry);
+                p2d.lineTo(rx + rw, ry + oh);
+                p2d.lineTo(rx + rw, ry + rh - oh);
+                p2d.lineTo(rx + rw - ow, ry + rh);
+                p2d.lineTo(rx + ow, ry + rh);
+                p2d.lineTo(rx, ry + rh - oh);
+                p2d.lineTo(rx, ry + oh);
+                break;
+            case AXIS_POLYLINES:
+                // integer or half-integer coordinates (pixel aligned):
+                final float snap = ((n & 1) == 0) ? 0f : 0.5f;
+                float x = Math.round(randf(TESTW)) + snap;
+                float y = Math.round(randf(TESTH)) + snap;
+                p2d.moveTo(x, y);
+                boolean horizontal = RAND.nextBoolean();
+                for (int i = 1 + RAND.nextInt(6); i > 0; i--) {
+                    final float len = Math.round(randf(TESTW)) - TESTW / 2;
+                    if (horizontal) {
+                        x += len;
+                    } else {
+                        y += len;
+                    }
+                    p2d.lineTo(x, y);
+                    horizontal = !horizontal;
+                }
+                break;
+            case AXIS_LINES:
+                // unaligned horizontal or vertical line:
+                rx = randf(TESTW);
+                ry = randf(TESTH);
+                if (RAND.nextBoolean()) {
+                    return new Line2D(rx, ry, rx + randf(TESTW) - TESTW / 2, ry);
+                }
+                return new Line2D(rx, ry, rx, ry + randf(TESTH) - TESTH / 2);
+            case DENSE_POLYLINES:
+                // time series: 8 points per pixel column
+                final float y0 = randf(TESTH);
+                final float amp = 1f + randf(TESTH / 4);
+                final float freq = 0.01f + randf(0.2);
+                p2d.moveTo(0f, y0);
+                for (int i = 1; i < 8 * TESTW; i++) {
+                    p2d.lineTo(i / 8f, y0 + amp * (float) Math.sin(freq * i)
+                                          + randf(2.0) - 1f);
+                }
+                break;
+            case LEFT_CLIPPED:
+                // most vertices left of the clip (x < 0), odd shapes curved:
+                p2d.moveTo(randf(3 * TESTW) - 2 * TESTW, randf(TESTH));
+                for (int i = 0; i < 12; i++) {
+                    if ((n & 1) == 0) {
+                        p2d.lineTo(randf(3 * TESTW) - 2 * TESTW, randf(TESTH));
+                    } else {
+                        p2d.quadTo(randf(3 * TESTW) - 2 * TESTW, randf(TESTH),
+                                   randf(3 * TESTW) - 2 * TESTW, randf(TESTH));
+                    }
+                }
+                break;
+            case DOTS:
+                // zero-length subpaths (caps only when stroked):
+                for (int i = 0; i < 4; i++) {
+                    rx = randf(TESTW);
+                    ry = randf(TESTH);
+                    p2d.moveTo(rx, ry);
+                    if ((i & 1) == 0) {
+                        p2d.closePath();
+                    } else {
+                        p2d.lineTo(rx, ry);
+                    }
+                }
+                break;
+            case GLYPHS:
+                // small curved outline repeated at random positions (half of
+                // them pixel-aligned):
+                final float[] g = new float[12];
+                for (int i = 0; i < g.length; i++) {
+                    g[i] = randf(24.0);
+                }
+                for (int i = 0; i < 6; i++) {
+                    rx = randf(TESTW - 24);
+                    ry = randf(TESTH - 24);
+                    if ((i & 1) == 0) {
+                        rx = (int) rx;
+                        ry = (int) ry;
+                    }
+                    p2d.moveTo(rx + g[0], ry + g[1]);
+                    p2d.curveTo(rx + g[2], ry + g[3], rx + g[4], ry + g[5],
+                                rx + g[6], ry + g[7]);
+                    p2d.quadTo(rx + g[8], ry + g[9], rx + g[10], ry + g[11]);
+                    p2d.closePath();
+                }
+                break;
+            case DEGENERATE:
+                genDegenerate(p2d, n % NUM_DEGENERATE);
+                break;
+            case DEGENERATE_PRIMITIVES:
+                return genDegeneratePrimitive(n % NUM_DEGENERATE_PRIMITIVES,
+                                              (n & 8) == 0);
+            default:
+        }
+        return p2d;
+    }
+
+    static void genDegenerate(final Path2D p2d, final int kind) {
+        final float x = randf(TESTW);
+        final float y = randf(TESTH);
+        switch (kind) {
+            case 0:
+                // empty path
+                break;
+            case 1:
+                p2d.moveTo(x, y);
+                break;
+            case 2:
+                p2d.moveTo(x, y);
+                p2d.closePath();
+                break;
+            case 3:
+                // zero-length line
+                p2d.moveTo(x, y);
+                p2d.lineTo(x, y);
+                break;
+            case 4:
+                // coincident points
+                p2d.moveTo(x, y);
+                p2d.lineTo(x, y);
+                p2d.lineTo(x, y);
+                p2d.closePath();
+                break;
+            case 5:
+                // zero-height rectangle
+                p2d.moveTo(x, y);
+                p2d.lineTo(x + 50f, y);
+                p2d.lineTo(x + 50f, y);
+                p2d.lineTo(x, y);
+                p2d.closePath();
+                break;
+            case 6:
+                // collinear points
+                p2d.moveTo(x, y);
+                p2d.lineTo(x + 20f, y + 10f);
+                p2d.lineTo(x + 40f, y + 20f);
+                p2d.lineTo(x - 10f, y - 5f);
+                break;
+            case 7:
+                // sub-pixel triangle (smaller than a subpixel)
+                p2d.moveTo(x, y);
+                p2d.lineTo(x + 0.05f, y);
+                p2d.lineTo(x, y + 0.05f);
+                p2d.closePath();
+                break;
+            case 8:
+                // outside the clip
+                p2d.moveTo(-50f - x, -50f - y);
+                p2d.lineTo(-10f, -50f - y);
+                p2d.lineTo(-10f, -10f);
+                p2d.closePath();
+                break;
+            case 9:
+                // huge coordinates crossing the clip
+                p2d.moveTo(-1e6f, y);
+                p2d.lineTo(1e6f, y + 3f);
+                p2d.lineTo(x, 1e6f);
+                p2d.closePath();
+                break;
+            case 10:
+                // degenerated curves (control points on the line)
+                p2d.moveTo(x, y);
+                p2d.quadTo(x + 10f, y, x + 20f, y);
+                p2d.curveTo(x + 30f, y, x + 40f, y, x + 50f, y);
+                p2d.closePath();
+                break;
+            case 11:
+                // cusp
+                p2d.moveTo(x, y);
+                p2d.curveTo(x + 60f, y + 40f, x, y + 40f, x + 60f, y);
+                p2d.closePath();
+                break;
+            case 12:
+                // many subpaths reduced to points
+                for (int i = 0; i < 10; i++) {
+                    p2d.moveTo(x + i, y);
+                    p2d.lineTo(x + i, y);
+                }
+                break;
+            case 13:
+                // edges on pixel boundaries
+                p2d.moveTo(Math.round(x), Math.round(y));
+                p2d.lineTo(Math.round(x) + 16f, Math.round(y));
+                p2d.lineTo(Math.round(x) + 16f, Math.round(y) + 16f);
+                p2d.lineTo(Math.round(x), Math.round(y) + 16f);
+                p2d.closePath();
+                break;
+            case 14:
+                // self-overlapping path (winding 2)
+                p2d.moveTo(x, y);
+                p2d.lineTo(x + 40f, y);
+                p2d.lineTo(x + 40f, y + 40f);
+                p2d.lineTo(x, y + 40f);
+                p2d.closePath();
+                p2d.moveTo(x + 10f, y + 10f);
+                p2d.lineTo(x + 30f, y + 10f);
+                p2d.lineTo(x + 30f, y + 30f);
+                p2d.lineTo(x + 10f, y + 30f);
+                p2d.closePath();
+                break;
+            default:
+                // very thin sliver
+                p2d.moveTo(x, y);
+                p2d.lineTo(x + 100f, y + 0.01f);
+                p2d.lineTo(x, y + 0.02f);
+                p2d.closePath();
+                break;
+        }
+    }
+
+    static Shape genDegeneratePrimitive(final int kind, final boolean ellipse) {
+        final float x = randf(TESTW);
+        final float y = randf(TESTH);
+        float w = 10f + randf(50.0);
+        float h = 10f + randf(50.0);
+        float arc = 0f;
+        switch (kind) {
+            case 0:
+                // zero width
+                w = 0f;
+                break;
+            case 1:
+                // zero height
+                h = 0f;
+                break;
+            case 2:
+                // negative size
+                w = -w;
+                break;
+            case 3:
+                // smaller than a subpixel
+                w = 0.05f;
+                h = 0.05f;
+                break;
+            case 4:
+                // huge shape crossing the clip
+                return (ellipse) ? new Ellipse2D(-1e6f, -1e6f, 2e6f + x, 2e6f + y)
+                                 : new RoundRectangle2D(-1e6f, y, 2e6f, h, 0f, 0f);
+            case 5:
+                // NaN
+                w = Float.NaN;
+                break;
+            case 6:
+                // arcs larger than the rectangle
+                arc = 4f * Math.max(w, h);
+                break;
+            default:
+                // outside the clip
+                return (ellipse) ? new Ellipse2D(-100f, -100f, w, h)
+                                 : new RoundRectangle2D(-100f, -100f, w, h, 0f, 0f);
+        }
+        return (ellipse) ? new Ellipse2D(x, y, w, h)
+                         : new RoundRectangle2D(x, y, w, h, arc, arc);
+    }
+
+    static BaseTransform genTransform(final XformMode mode) {
+        if (mode == XformMode.IDENTITY) {
+            return BaseTransform.IDENTITY_TRANSFORM;
+        }
+        final Affine2D at = new Affine2D();
+        at.translate(TESTW / 2, TESTH / 2);
+        if (mode == XformMode.SCALE) {
+            at.scale(0.5 + rand(1.5), 0.5 + rand(1.5));
+        } else {
+            final double scale = 0.8 + rand(0.45);
+            at.rotate(rand(2.0 * Math.PI));
+            at.scale(scale, scale);
+        }
+        at.translate(-TESTW / 2, -TESTH / 2);
+        return at;
+    }
+
+    static BasicStroke genStroke(final StyleMode mode) {
+        switch (mode) {
+            case HAIRLINE:
+                return new BasicStroke(0.1f + randf(0.9), BasicStroke.CAP_BUTT,
+                                       BasicStroke.JOIN_MITER, 10f);
+            case STROKE:
+                return new BasicStroke(1f + randf(7.0), RAND.nextInt(3),
+                                       RAND.nextInt(3), 10f);
+            case AXIS_STROKE:
+                // round caps are not compared (outline approximation):
+                return new BasicStroke(0.5f + randf(5.5),
+                        RAND.nextBoolean() ? BasicStroke.CAP_BUTT : BasicStroke.CAP_SQUARE,
+                        RAND.nextBoolean() ? BasicStroke.JOIN_MITER : BasicStroke.JOIN_ROUND,
+                        10f);
+            default:
+                return null;
+        }
+    }
+
+    static void rasterize(final DataOutputStream out,
+                          final ShapeRasterizer rasterizer,
+                          final Shape shape, final BasicStroke stroke,
+                          final RectBounds clip, final BaseTransform xform,
+                          final boolean aa, final int n)
+        throws IOException
+    {
+        switch (OUTPUT_MODE) {
+            case DIRECT:
+                writeDirectMask(out, rasterizer, shape, stroke, clip, xform,
+                                aa, (n & 1) == 0);
+                break;
+            case TILES:
+                writeTiledMask(out, rasterizer, shape, stroke, clip, xform,
+                               aa);
+                break;
+            case RLE:
+                writeRLEMask(out, rasterizer, shape, stroke, clip, xform, aa);
+                break;
+            case SHIFTED:
+                writeShiftedMask(out, rasterizer, shape, stroke, clip, xform,
+                                 aa, (n % 7) - 3, ((n / 7) % 7) - 3);
+                break;
+            case CANVAS:
+                writeCanvasMask(out, rasterizer, shape, stroke, clip, xform,
+                                aa);
+                break;
+            case COMPILED:
+                writeCompiledMask(out, rasterizer, shape, stroke, clip, xform,
+                                  aa, (n % 7) - 3, ((n / 7) % 7) - 3);
+                break;
+            case THREADS:
+                writeThreadedMask(out, rasterizer, shape, stroke, clip, xform,
+                                  aa);
+                break;
+            case MASK:
+            default:
+                writeMask(out, rasterizer.getMaskData(shape, stroke, clip,
+                                                      xform, true, aa));
+        }
+    }
+
+    static void writeDirectMask(final DataOutputStream out,
+                                final ShapeRasterizer rasterizer,
+                                final Shape shape, final BasicStroke stroke,
+                                final RectBounds clip,
+                                final BaseTransform xform,
+                                final boolean aa, final boolean direct)
+        throws IOException
+    {
+        // clip region inside a padded buffer (offset and larger stride):
+        final int stride = TESTW + 2 * PAD;
+        final int capacity = (TESTH + 2 * PAD) * stride;
+        final ByteBuffer buffer = (direct) ? ByteBuffer.allocateDirect(capacity)
+                                  : ByteBuffer.allocate(capacity);
+        for (int i = 0; i < capacity; i++) {
+            buffer.put(i, SENTINEL);
+        }
+        final DirectMarlinAlphaConsumer consumer = new DirectMarlinAlphaConsumer();
+        consumer.setBuffer(buffer, PAD * stride + PAD, stride,
+                           0, 0, TESTW, TESTH);
+
+        final boolean notEmpty = (rasterizer instanceof MarlinRasterizer)
+            ? ((MarlinRasterizer) rasterizer).produceMask(shape, stroke, clip,
+                                                          xform, aa, consumer)
+            : ((DMarlinRasterizer) rasterizer).produceMask(shape, stroke, clip,
+                                                           xform, aa, consumer);
+        consumer.dispose();
+
+        final int x = (notEmpty) ? consumer.getOriginX() : 0;
+        final int y = (notEmpty) ? consumer.getOriginY() : 0;
+        final int w = (notEmpty) ? consumer.getWidth() : 0;
+        final int h = (notEmpty) ? consumer.getHeight() : 0;
+
+        final byte[] data = new byte[w * h];
+        for (int j = 0, pos = 0; j < TESTH + 2 * PAD; j++) {
+            final int py = j - PAD;
+            for (int i = 0; i < stride; i++, pos++) {
+                final int px = i - PAD;
+                if (px >= x && px < x + w && py >= y && py < y + h) {
+                    data[(py - y) * w + (px - x)] = buffer.get(pos);
+                } else if (buffer.get(pos) != SENTINEL) {
+                    throw new IllegalStateException(
+                        "Pixel written outside the mask at " + px + ", " + py);
+                }
+            }
+        }
+        writeMask(out, x, y, w, h, data);
+    }
+
+    static void writeThreadedMask(final DataOutputStream out,
+                                  final ShapeRasterizer rasterizer,
+                                  final Shape shape, final BasicStroke stroke,
+                                  final RectBounds clip,
+                                  final BaseTransform xform,
+                                  final boolean aa)
+        throws IOException
+    {
+        if (executor == null) {
+            executor = Executors.newFixedThreadPool(NUM_THREADS, r -> {
+                final Thread t = new Thread(r, "MaskGenerator");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        // all threads start rasterizing together:
+        final CountDownLatch start = new CountDownLatch(NUM_THREADS);
+        final Callable<byte[]> task = () -> {
+            start.countDown();
+            start.await();
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            writeDirectMask(new DataOutputStream(bytes), rasterizer, shape,
+                            stroke, clip, xform, aa, false);
+            return bytes.toByteArray();
+        };
+        final Future<?>[] futures = new Future<?>[NUM_THREADS];
+        for (int i = 0; i < NUM_THREADS; i++) {
+            futures[i] = executor.submit(task);
+        }
+        byte[] first = null;
+        for (Future<?> future : futures) {
+            final byte[] mask;
+            try {
+                mask = (byte[]) future.get();
+            } catch (InterruptedException | ExecutionException e) {
+                throw new IllegalStateException("Threaded rasterization failed", e);
+            }
+            if (first == null) {
+                first = mask;
+            } else if (!Arrays.equals(first, mask)) {
+                throw new IllegalStateException(
+                    "Threads produced different masks");
+            }
+        }
+        out.write(first);
+    }
+
+    static void writeTiledMask(final DataOutputStream out,
+                               final ShapeRasterizer rasterizer,
+                               final Shape shape, final BasicStroke stroke,
+                               final RectBounds clip,
+                               final BaseTransform xform,
+                               final boolean aa)
+        throws IOException
+    {
+        final byte[] data = new byte[TESTW * TESTH];
+        final boolean[] done = new boolean[TESTW * TESTH];
+
+        final TileHandler handler = (x, y, w, h, typicalAlpha,
+                                     alphas, offset, stride) ->
+        {
+            final byte first = alphas[offset];
+            boolean uniform = true;
+            for (int j = 0; j < h; j++) {
+                for (int i = 0; i < w; i++) {
+                    final int pos = (y + j) * TESTW + (x + i);
+                    if (done[pos]) {
+                        throw new IllegalStateException(
+                            "Overlapping tile at " + x + ", " + y);
+                    }
+                    done[pos] = true;
+                    // untouched empty tiles may hold stale alphas:
+                    if (typicalAlpha != TileMarlinAlphaConsumer.TILE_EMPTY) {
+                        final byte alpha = alphas[offset + j * stride + i];
+                        data[pos] = alpha;
+                        uniform &= (alpha == first);
+                    }
+                }
+            }
+            if ((typicalAlpha == TileMarlinAlphaConsumer.TILE_FULL)
+                    ? !(uniform && first == (byte) 0xFF)
+                    : (typicalAlpha == TileMarlinAlphaConsumer.TILE_MIXED)
+                      && uniform && (first == 0 || first == (byte) 0xFF))
+            {
+                throw new IllegalStateException("Wrong tile class "
+                    + typicalAlpha + " at " + x + ", " + y);
+            }
+        };
+        if (rasterizer instanceof MarlinRasterizer) {
+            ((MarlinRasterizer) rasterizer).produceTiles(shape, stroke, clip,
+                                                         xform, aa, handler);
+        } else {
+            ((DMarlinRasterizer) rasterizer).produceTiles(shape, stroke, clip,
+                                                          xform, aa, handler);
+        }
+        writeMask(out, 0, 0, TESTW, TESTH, data);
+    }
+
+    static void writeRLEMask(final DataOutputStream out,
+                             final ShapeRasterizer rasterizer,
+                             final Shape shape, final BasicStroke stroke,
+                             final RectBounds clip,
+                             final BaseTransform xform,
+                             final boolean aa)
+        throws IOException
+    {
+        final RLEMarlinAlphaConsumer rle = (rasterizer instanceof MarlinRasterizer)
+            ? ((MarlinRasterizer) rasterizer).getRLEMaskData(shape, stroke,
+                                                             clip, xform, aa)
+            : ((DMarlinRasterizer) rasterizer).getRLEMaskData(shape, stroke,
+                                                              clip, xform, aa);
+        if (rle == null) {
+            writeMask(out, 0, 0, 0, 0, new byte[0]);
+            return;
+        }
+        final int w = rle.getWidth();
+        final int h = rle.getHeight();
+
+        // expand with a padded stride: every pixel of the rows is written
+        final int stride = w + PAD;
+        final byte[] padded = new byte[h * stride];
+        Arrays.fill(padded, SENTINEL);
+        rle.expand(padded, 0, stride);
+
+        final byte[] data = new byte[w * h];
+        for (int j = 0; j < h; j++) {
+            for (int i = w; i < stride; i++) {
+                if (padded[j * stride + i] != SENTINEL) {
+                    throw new IllegalStateException(
+                        "Pixel expanded outside the row " + j);
+                }
+            }
+            System.arraycopy(padded, j * stride, data, j * w, w);
+
+            // runs are sorted, disjoint, opaque and match the expanded row:
+            for (int run = rle.getRowStart(j), px = 0;
+                 run < rle.getRowEnd(j); run++)
+            {
+                final int rx = rle.getRunX(run);
+                final int len = rle.getRunLength(run);
+                final int alpha = rle.getRunAlpha(run);
+                if (rx < px || len <= 0 || rx + len > w || alpha == 0
+                        || rle.isFullRun(run) != (alpha == 0xFF))
+                {
+                    throw new IllegalStateException("Invalid run " + rx
+                        + " x " + len + " (" + alpha + ") in row " + j);
+                }
+                for (int i = rx; i < rx + len; i++) {
+                    if ((data[j * w + i] & 0xFF) != alpha) {
+                        throw new IllegalStateException(
+                            "Run " + rx + " not expanded in row " + j);
+                    }
+                }
+                px = rx + len;
+            }
+        }
+        writeMask(out, rle.getOriginX(), rle.getOriginY(), w, h, data);
+    }
+
+    static void writeShiftedMask(final DataOutputStream out,
+                                 final ShapeRasterizer rasterizer,
+                                 final Shape shape, final BasicStroke stroke,
+                                 final RectBounds clip,
+                                 final BaseTransform xform,
+                                 final boolean aa, final int dx, final int dy)
+        throws IOException
+    {
+        final BaseTransform shifted = BaseTransform.getInstance(
+            xform.getMxx(), xform.getMyx(), xform.getMxy(), xform.getMyy(),
+            xform.getMxt() + dx, xform.getMyt() + dy);
+        final RectBounds shiftedClip = new RectBounds(
+            clip.getMinX() + dx, clip.getMinY() + dy,
+            clip.getMaxX() + dx, clip.getMaxY() + dy);
+
+        final MaskData mask = rasterizer.getMaskData(shape, stroke,
+                shiftedClip, shifted, true, aa);
+        final int w = mask.getWidth();
+        final int h = mask.getHeight();
+
+        final byte[] data = new byte[w * h];
+        final ByteBuffer buffer = mask.getMaskBuffer();
+        if (buffer != null) {
+            buffer.position(0);
+            buffer.get(data);
+            buffer.position(0);
+        }
+        writeMask(out, mask.getOriginX() - dx, mask.getOriginY() - dy, w, h,
+                  data);
+    }
+
+    // canvas path keeping its geometry and rasterizer states between frames:
+    static final class CanvasPath extends NGCanvasPath {
+
+        final Path2D geometry = new Path2D();
+
+        @Override
+        public Path2D getGeometry() {
+            return geometry;
+        }
+
+        @Override
+        public BaseTransform getCombinedTransform(final BaseTransform tx) {
+            return tx;
+        }
+
+        @Override
+        public RectBounds getBounds() {
+            return geometry.getBounds();
+        }
+
+        @Override
+        public boolean contains(final float x, final float y) {
+            return geometry.contains(x, y);
+        }
+
+        @Override
+        public boolean intersects(final float x, final float y,
+                                  final float w, final float h)
+        {
+            return geometry.intersects(x, y, w, h);
+        }
+
+        @Override
+        public boolean contains(final float x, final float y,
+                                final float w, final float h)
+        {
+            return geometry.contains(x, y, w, h);
+        }
+
+        @Override
+        public PathIterator getPathIterator(final BaseTransform tx) {
+            return geometry.getPathIterator(tx);
+        }
+
+        @Override
+        public PathIterator getPathIterator(final BaseTransform tx,
+                                            final float flatness)
+        {
+            return geometry.getPathIterator(tx, flatness);
+        }
+
+        @Override
+        public Shape copy() {
+            return geometry.copy();
+        }
+    }
+
+    static Path2D prefix(final Path2D p2d, final int numTypes,
+                         final float firstDx)
+    {
+        final byte[] types = p2d.getCommandsNoClone();
+        int numCoords = 0;
+        for (int i = 0; i < numTypes; i++) {
+            numCoords += (types[i] == PathIterator.SEG_CLOSE) ? 0
+                         : (types[i] == PathIterator.SEG_CUBICTO) ? 6
+                         : (types[i] == PathIterator.SEG_QUADTO) ? 4 : 2;
+        }
+        final float[] coords = Arrays.copyOf(p2d.getFloatCoordsNoClone(),
+                                             numCoords);
+        if (numCoords != 0) {
+            coords[0] += firstDx;
+        }
+        return new Path2D(p2d.getWindingRule(), types, numTypes,
+                          coords, numCoords);
+    }
+
+    static void writeCanvasMask(final DataOutputStream out,
+                                final ShapeRasterizer rasterizer,
+                                final Shape shape, final BasicStroke stroke,
+                                final RectBounds clip,
+                                final BaseTransform xform,
+                                final boolean aa)
+        throws IOException
+    {
+        final Path2D p2d = (shape instanceof Path2D) ? (Path2D) shape
+                           : new Path2D(shape);
+        final int half = p2d.getNumCommands() / 2;
+        final CanvasPath path = new CanvasPath();
+
+        // previous frame: first half of the path
+        path.geometry.setTo(prefix(p2d, half, 0f));
+        rasterizer.getMaskData(path, stroke, clip, xform, true, aa);
+        // other path (modified first point) recorded in the same states:
+        path.geometry.setTo(prefix(p2d, half, 1f));
+        rasterizer.getMaskData(path, stroke, clip, xform, true, aa);
+        // current frame: appended second half
+        path.geometry.setTo(p2d);
+        writeMask(out, rasterizer.getMaskData(path, stroke, clip, xform,
+                                              true, aa));
+    }
+
+    static void writeCompiledMask(final DataOutputStream out,
+                                  final ShapeRasterizer rasterizer,
+                                  final Shape shape, final BasicStroke stroke,
+                                  final RectBounds clip,
+                                  final BaseTransform xform,
+                                  final boolean aa, final int dx, final int dy)
+        throws IOException
+    {
+        final RectBounds shiftedClip = new RectBounds(
+            clip.getMinX() + dx, clip.getMinY() + dy,
+            clip.getMaxX() + dx, clip.getMaxY() + dy);
+
+        final MaskData mask;
+        if (rasterizer instanceof MarlinRasterizer) {
+            final MarlinRasterizer r = (MarlinRasterizer) rasterizer;
+            final CompiledShape cs = r.compile(shape, stroke, xform, aa);
+            mask = r.getMaskData(cs, dx, dy, shiftedClip);
+        } else {
+            final DMarlinRasterizer r = (DMarlinRasterizer) rasterizer;
+            final CompiledShape cs = r.compile(shape, stroke, xform, aa);
+            mask = r.getMaskData(cs, dx, dy, shiftedClip);
+        }
+        final int w = mask.getWidth();
+        final int h = mask.getHeight();
+
+        final byte[] data = new byte[w * h];
+        final ByteBuffer buffer = mask.getMaskBuffer();
+        if (buffer != null) {
+            buffer.position(0);
+            buffer.get(data);
+            buffer.position(0);
+        }
+        writeMask(out, mask.getOriginX() - dx, mask.getOriginY() - dy, w, h,
+                  data);
+    }
+
+    static void writeMask(final DataOutputStream out, final MaskData mask)
+        throws IOException
+    {
+        final int w = mask.getWidth();
+        final int h = mask.getHeight();
+
+        final byte[] data = new byte[w * h];
+        final ByteBuffer buffer = mask.getMaskBuffer();
+        if (buffer != null) {
+            buffer.position(0);
+            buffer.get(data);
+            buffer.position(0);
+        }
+        writeMask(out, mask.getOriginX(), mask.getOriginY(), w, h, data);
+    }
+
+    static void writeMask(final DataOutputStream out,
+                          final int x, final int y, final int w, final int h,
+                          final byte[] data)
+        throws IOException
+    {
+        out.writeInt(x);
+        out.writeInt(y);
+        out.writeInt(w);
+        out.writeInt(h);
+        out.write(data);
+    }
+}
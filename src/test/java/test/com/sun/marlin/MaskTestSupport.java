@@ -0,0 +1,368 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package test.com.sun.marlin;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.AssertionFailedError;
+import static org.junit.Assert.assertEquals;
+
+import test.com.sun.marlin.MaskGenerator.ShapeMode;
+import test.com.sun.marlin.MaskGenerator.StyleMode;
+import test.com.sun.marlin.MaskGenerator.XformMode;
+
+/**
+ * Mask equivalence support: masks are generated by MaskGenerator in forked
+ * JVMs (one per Marlin configuration) and compared pixel by pixel against
+ * the masks of the baseline Renderer (all optional rasterization paths
+ * disabled).
+ */
+final class MaskTestSupport {
+
+    // baseline Renderer settings:
+    static final String[] BASELINE = new String[] {
+        "prism.marlin.primitives=false",
+        "prism.marlin.hairlines=false",
+        "prism.marlin.decimate=false",
+        "prism.marlin.analytic=false",
+        "prism.marlin.parallelBands=false",
+        "prism.marlin.crossingSort=merge",
+        "prism.marlin.useWideStores=false",
+        "prism.marlin.foldLeftEdges=false"
+    };
+
+    // result indices (non-antialiased / antialiased masks):
+    static final int NO_AA = 0;
+    static final int AA = 1;
+
+    // timeout of one generator run
+    static final long MAX_DURATION_SEC = 300L;
+
+    /**
+     * Comparison result of two mask sets (antialiased or not)
+     */
+    static final class Result {
+
+        int cases;
+        int diffCases;
+        long pixels;
+        long diffPixels;
+        int maxDiff;
+        long sumDiff;
+        long refCoverage;
+        long testCoverage;
+
+        /**
+         * @return mean absolute difference per compared pixel (0..255)
+         */
+        double meanDiff() {
+            return (pixels != 0L) ? ((double) sumDiff) / pixels : 0.0;
+        }
+
+        /**
+         * @return ratio of different pixels among compared pixels
+         */
+        double diffRatio() {
+            return (pixels != 0L) ? ((double) diffPixels) / pixels : 0.0;
+        }
+
+        /**
+         * @return relative difference of the total coverage
+         */
+        double coverageError() {
+            return (refCoverage != 0L)
+                ? Math.abs(testCoverage - refCoverage) / ((double) refCoverage)
+                : ((testCoverage != 0L) ? 1.0 : 0.0);
+        }
+
+        @Override
+        public String toString() {
+            return "Result[cases=" + cases + " diffCases=" + diffCases
+                + " pixels=" + pixels + " diffPixels=" + diffPixels
+                + " diffRatio=" + diffRatio()
+                + " maxDiff=" + maxDiff + " meanDiff=" + meanDiff()
+                + " coverageError=" + coverageError() + "]";
+        }
+    }
+
+    private MaskTestSupport() {
+        // forbidden
+    }
+
+    /**
+     * Check that both non-antialiased and antialiased masks are identical
+     * @param results comparison results
+     */
+    static void assertIdentical(final Result[] results) {
+        assertEquals("different noAA masks", 0, results[NO_AA].diffCases);
+        assertEquals("different AA masks", 0, results[AA].diffCases);
+    }
+
+    /**
+     * Rasterize the same shapes with the baseline Renderer and the given
+     * settings, then compare their masks
+     * @param shapeMode shapes to generate
+     * @param styleMode fill or stroke
+     * @param numTests number of shapes
+     * @param settings system properties (key=value) overriding the baseline
+     * @return comparison results indexed by NO_AA and AA
+     */
+    static Result[] compareToBaseline(final ShapeMode shapeMode,
+                                    final StyleMode styleMode,
+                                    final int numTests,
+                                    final String... settings)
+        throws IOException, InterruptedException
+    {
+        return compareToBaseline(shapeMode, styleMode, XformMode.IDENTITY,
+                                 numTests, settings);
+    }
+
+    /**
+     * Rasterize the same shapes with the baseline Renderer and the given
+     * settings under the given transforms, then compare their masks
+     * @param shapeMode shapes to generate
+     * @param styleMode fill or stroke
+     * @param xformMode transforms to generate
+     * @param numTests number of shapes
+     * @param settings system properties (key=value) overriding the baseline
+     * @return comparison results indexed by NO_AA and AA
+     */
+    static Result[] compareToBaseline(final ShapeMode shapeMode,
+                                    final StyleMode styleMode,
+                                    final XformMode xformMode,
+                                    final int numTests,
+                                    final String... settings)
+        throws IOException, InterruptedException
+    {
+        return compareSettings(shapeMode, styleMode, xformMode, numTests,
+                               new String[0], settings);
+    }
+
+    /**
+     * Rasterize the same shapes with the reference settings and the given
+     * settings (both overriding the baseline) under the given transforms,
+     * then compare their masks
+     * @param shapeMode shapes to generate
+     * @param styleMode fill or stroke
+     * @param xformMode transforms to generate
+     * @param numTests number of shapes
+     * @param refSettings system properties (key=value) of the reference
+     * @param settings system properties (key=value) overriding the reference
+     * @return comparison results indexed by NO_AA and AA
+     */
+    static Result[] compareSettings(final ShapeMode shapeMode,
+                                    final StyleMode styleMode,
+                                    final XformMode xformMode,
+                                    final int numTests,
+                                    final String[] refSettings,
+                                    final String[] settings)
+        throws IOException, InterruptedException
+    {
+        final String[] testSettings
+            = Arrays.copyOf(refSettings, refSettings.length + settings.length);
+        System.arraycopy(settings, 0, testSettings, refSettings.length,
+                         settings.length);
+
+        final File ref = generate(shapeMode, styleMode, xformMode, numTests,
+                                  refSettings);
+        final File test = generate(shapeMode, styleMode, xformMode, numTests,
+                                   testSettings);
+        try {
+            final Result[] r = compare(ref, test);
+            System.out.println(shapeMode + " " + styleMode + " " + xformMode
+                + ": noAA " + r[NO_AA] + "\n\tAA " + r[AA]);
+            return r;
+        } finally {
+            ref.delete();
+            test.delete();
+        }
+    }
+
+    static File generate(final ShapeMode shapeMode,
+                         final StyleMode styleMode,
+                         final XformMode xformMode,
+                         final int numTests,
+                         final String... settings)
+        throws IOException, InterruptedException
+    {
+        final File file = File.createTempFile("marlin-" + shapeMode, ".masks");
+        file.deleteOnExit();
+
+        final Map<String, String> props = new LinkedHashMap<>();
+        props.put("prism.marlin", "true");
+        props.put("prism.marlin.log", "true");
+        props.put("prism.marlin.doChecks", "true");
+        putSettings(props, BASELINE);
+        putSettings(props, settings);
+
+        final ArrayList<String> cmd = new ArrayList<>(20);
+        cmd.add(System.getProperty("java.home") + File.separator + "bin"
+                + File.separator + "java");
+        // JDK 8: MarlinFX classes are patched in the boot class path:
+        final String bootClassPath = System.getProperty("sun.boot.class.path");
+        if (bootClassPath != null) {
+            cmd.add("-Xbootclasspath:" + bootClassPath);
+        }
+        cmd.add("-cp");
+        cmd.add(System.getProperty("java.class.path"));
+        for (Map.Entry<String, String> e : props.entrySet()) {
+            cmd.add("-D" + e.getKey() + "=" + e.getValue());
+        }
+        cmd.add(MaskGenerator.class.getName());
+        cmd.add(shapeMode.name());
+        cmd.add(styleMode.name());
+        cmd.add(xformMode.name());
+        cmd.add(Integer.toString(numTests));
+        cmd.add(file.getAbsolutePath());
+
+        final Process p = new ProcessBuilder(cmd).inheritIO().start();
+        if (!p.waitFor(MAX_DURATION_SEC, TimeUnit.SECONDS)) {
+            p.destroy();
+            throw new AssertionFailedError("MaskGenerator timeout: " + cmd);
+        }
+        if (p.exitValue() != 0) {
+            throw new AssertionFailedError("MaskGenerator failed ("
+                + p.exitValue() + "): " + cmd);
+        }
+        return file;
+    }
+
+    private static void putSettings(final Map<String, String> props,
+                                    final String[] settings)
+    {
+        for (String s : settings) {
+            final int pos = s.indexOf('=');
+            props.put(s.substring(0, pos), s.substring(pos + 1));
+        }
+    }
+
+    /**
+     * Compare two mask files (same shapes) over the union of mask bounds
+     * @return comparison results indexed by NO_AA and AA
+     */
+    static Result[] compare(final File ref, final File test) throws IOException {
+        final Result[] results = new Result[] {new Result(), new Result()};
+
+        try (DataInputStream inRef = open(ref);
+             DataInputStream inTest = open(test))
+        {
+            for (;;) {
+                final Mask mRef = Mask.read(inRef);
+                final Mask mTest = Mask.read(inTest);
+                if ((mRef == null) || (mTest == null)) {
+                    if (mRef != mTest) {
+                        throw new AssertionFailedError("Mask count mismatch");
+                    }
+                    break;
+                }
+                // masks alternate non-antialiased / antialiased:
+                final Result r = results[(results[NO_AA].cases
+                                          + results[AA].cases) & 1];
+                r.cases++;
+
+                final int x0 = Math.min(mRef.x, mTest.x);
+                final int y0 = Math.min(mRef.y, mTest.y);
+                final int x1 = Math.max(mRef.x + mRef.w, mTest.x + mTest.w);
+                final int y1 = Math.max(mRef.y + mRef.h, mTest.y + mTest.h);
+
+                boolean same = true;
+                for (int y = y0; y < y1; y++) {
+                    for (int x = x0; x < x1; x++) {
+                        final int a = mRef.get(x, y);
+                        final int b = mTest.get(x, y);
+                        r.refCoverage += a;
+                        r.testCoverage += b;
+                        if ((a | b) == 0) {
+                            continue;
+                        }
+                        r.pixels++;
+                        if (a != b) {
+                            same = false;
+                            final int d = Math.abs(a - b);
+                            r.diffPixels++;
+                            r.sumDiff += d;
+                            if (d > r.maxDiff) {
+                                r.maxDiff = d;
+                            }
+                        }
+                    }
+                }
+                if (!same) {
+                    r.diffCases++;
+                }
+            }
+        }
+        return results;
+    }
+
+    private static DataInputStream open(final File file) throws IOException {
+        return new DataInputStream(new BufferedInputStream(
+            new FileInputStream(file)));
+    }
+
+    static final class Mask {
+
+        final int x, y, w, h;
+        final byte[] data;
+
+        Mask(final int x, final int y, final int w, final int h) {
+            this.x = x;
+            this.y = y;
+            this.w = w;
+            this.h = h;
+            this.data = new byte[w * h];
+        }
+
+        static Mask read(final DataInputStream in) throws IOException {
+            final int x;
+            try {
+                x = in.readInt();
+            } catch (EOFException eofe) {
+                return null;
+            }
+            final Mask m = new Mask(x, in.readInt(), in.readInt(), in.readInt());
+            in.readFully(m.data);
+            return m;
+        }
+
+        int get(final int px, final int py) {
+            if ((px < x) || (py < y) || (px >= x + w) || (py >= y + h)) {
+                return 0;
+            }
+            return data[(py - y) * w + (px - x)] & 0xFF;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+
+package test.com.sun.marlin;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import static test.com.sun.marlin.MaskGenerator.ShapeMode.*;
+import static test.com.sun.marlin.MaskGenerator.StyleMode.*;
+import test.com.sun.marlin.MaskGenerator.ShapeMode;
+import test.com.sun.marlin.MaskGenerator.StyleMode;
+import static test.com.sun.marlin.MaskTestSupport.AA;
+import static test.com.sun.marlin.MaskTestSupport.NO_AA;
+import test.com.sun.marlin.MaskTestSupport.Result;
+import static test.com.sun.marlin.MaskTestSupport.assertIdentical;
+import static test.com.sun.marlin.MaskTestSupport.compareToBaseline;
+
+/**
+ * @test
+ * @summary verify that strokes of axis-aligned polylines rasterized as
+ * rectangles (prism.marlin.primitives) give the same masks as the Stroker and
+ * Renderer for pixel aligned coordinates, including short segments and
+ * reversals at joins; unaligned square caps may differ by 1/255 in the float
+ * pipeline (rounding of the cap extent)
+ */
+public class PolylineMaskTest {
+
+    static final int NUM_TESTS = 200;
+
+    static final String[] SETTINGS = new String[] {
+        "prism.marlin.primitives=true"
+    };
+
+    private static void check(final ShapeMode shapeMode) throws Exception {
+        for (StyleMode styleMode : new StyleMode[] {HAIRLINE, STROKE, AXIS_STROKE}) {
+            assertIdentical(compareToBaseline(shapeMode, styleMode,
+                                              NUM_TESTS, SETTINGS));
+        }
+    }
+
+    @Test
+    public void testAxisPolylines() throws Exception {
+        check(AXIS_POLYLINES);
+    }
+
+    @Test
+    public void testLines() throws Exception {
+        for (StyleMode styleMode : new StyleMode[] {HAIRLINE, STROKE, AXIS_STROKE}) {
+            final Result[] r = compareToBaseline(AXIS_LINES, styleMode,
+                                                 NUM_TESTS, SETTINGS);
+            assertEquals("different noAA masks: " + r[NO_AA], 0,
+                         r[NO_AA].diffCases);
+            assertTrue("max difference too high: " + r[AA],
+                       r[AA].maxDiff <= 1);
+        }
+    }
+
+    @Test
+    public void testDegenerate() throws Exception {
+        check(DEGENERATE);
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package test.com.sun.marlin;
+
+import org.junit.Test;
+import static org.junit.Assert.assertTrue;
+
+import static test.com.sun.marlin.MaskGenerator.ShapeMode.*;
+import static test.com.sun.marlin.MaskGenerator.StyleMode.*;
+import test.com.sun.marlin.MaskGenerator.ShapeMode;
+import test.com.sun.marlin.MaskGenerator.StyleMode;
+import static test.com.sun.marlin.MaskTestSupport.AA;
+import static test.com.sun.marlin.MaskTestSupport.NO_AA;
+import test.com.sun.marlin.MaskTestSupport.Result;
+import static test.com.sun.marlin.MaskTestSupport.assertIdentical;
+import static test.com.sun.marlin.MaskTestSupport.compareToBaseline;
+
+/**
+ * @test
+ * @summary verify that rectangles, round rectangles and ellipses rasterized
+ * from their analytic outline (prism.marlin.primitives) stay close to the
+ * Renderer: arcs differ from the flattened curves (and stroke joins from the
+ * Stroker) by less than one subpixel row (32) per AA pixel; non-AA pixels may
+ * flip along edges. Only filled rectangles are exact.
+ */
+public class PrimitiveMaskTest {
+
+    static final int NUM_TESTS = 200;
+
+    static final String[] SETTINGS = new String[] {
+        "prism.marlin.primitives=true"
+    };
+
+    // one subpixel row (1/8 of 255):
+    static final int MAX_AA_DIFF = 32;
+
+    private static void check(final ShapeMode shapeMode,
+                              final StyleMode styleMode,
+                              final double maxMeanDiff)
+        throws Exception
+    {
+        final Result[] r = compareToBaseline(shapeMode, styleMode, NUM_TESTS,
+                                             SETTINGS);
+        final Result noAA = r[NO_AA];
+        assertTrue("too many different noAA pixels: " + noAA,
+                   noAA.diffRatio() <= 0.015);
+
+        final Result aa = r[AA];
+        assertTrue("max difference too high: " + aa,
+                   aa.maxDiff <= MAX_AA_DIFF);
+        assertTrue("mean difference too high: " + aa,
+                   aa.meanDiff() <= maxMeanDiff);
+        assertTrue("coverage error too high: " + aa,
+                   aa.coverageError() <= 0.002);
+    }
+
+    @Test
+    public void testRectangles() throws Exception {
+        // exact rectangle fills:
+        assertIdentical(compareToBaseline(RECTANGLES, FILL, NUM_TESTS,
+                                          SETTINGS));
+        check(RECTANGLES, STROKE, 0.1);
+        check(RECTANGLES, AXIS_STROKE, 0.1);
+    }
+
+    @Test
+    public void testRoundRectangles() throws Exception {
+        check(ROUND_RECTANGLES, FILL, 0.5);
+        check(ROUND_RECTANGLES, STROKE, 2.0);
+        check(ROUND_RECTANGLES, AXIS_STROKE, 2.0);
+    }
+
+    @Test
+    public void testOvals() throws Exception {
+        check(OVALS, FILL, 0.5);
+        check(OVALS, STROKE, 2.0);
+        check(OVALS, AXIS_STROKE, 2.0);
+    }
+
+    @Test
+    public void testDegenerate() throws Exception {
+        check(DEGENERATE_PRIMITIVES, FILL, 0.5);
+        check(DEGENERATE_PRIMITIVES, STROKE, 2.0);
+    }
+}